@@ -0,0 +1,103 @@
+package nativebridge.benchmarks;
+
+import io.appium.java_client.AppiumBy;
+import nativebridge.ElementProbe;
+import nativebridge.UiWait;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebElement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AlertBenchmark - Cost of dismissAlertIfPresent with and without an alert
+ *
+ * {@code legacy} is the original helper: three findElement calls under the
+ * implicit wait (button id, then "OK" and "ok" text XPath) before falling
+ * back to the BACK key, minus its fixed 500ms sleep. {@code probe} is the
+ * current helper: one zero-wait ElementProbe lookup of UiWait.ALERT_BUTTON.
+ * With {@code alertShown=false} the legacy helper pays three implicit waits.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlertBenchmark {
+
+    private static final List<By> LEGACY_SELECTORS = Arrays.asList(
+        AppiumBy.id("android:id/button1"),
+        AppiumBy.xpath("//*[@text='OK']"),
+        AppiumBy.xpath("//*[@text='ok']")
+    );
+
+    @Param({"true", "false"})
+    public boolean alertShown;
+
+    @Param({"5"})
+    public long latencyMs;
+
+    @Param({"0", "50"})
+    public long implicitWaitMs;
+
+    private StubSession session;
+    private ElementProbe probe;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        session = new StubSession(latencyMs, implicitWaitMs,
+            (using, value) -> alertShown && value.contains("android:id/button1"));
+        probe = ElementProbe.of(session.driver);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        session.close();
+    }
+
+    @Benchmark
+    public boolean legacy() {
+        for (By selector : LEGACY_SELECTORS) {
+            try {
+                WebElement alertButton = session.driver.findElement(selector);
+                alertButton.click();
+                return true;
+            } catch (Exception e) {
+                // Continue to next selector
+            }
+        }
+        pressBack();
+        return false;
+    }
+
+    @Benchmark
+    public boolean probe() {
+        WebElement alertButton = probe.findFirst(UiWait.ALERT_BUTTON);
+        if (alertButton != null) {
+            alertButton.click();
+            return true;
+        }
+        pressBack();
+        return false;
+    }
+
+    private void pressBack() {
+        session.driver.executeScript("mobile: pressKey", Collections.singletonMap("keycode", 4));
+    }
+}
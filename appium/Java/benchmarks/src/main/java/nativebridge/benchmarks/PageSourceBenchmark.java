@@ -0,0 +1,92 @@
+package nativebridge.benchmarks;
+
+import nativebridge.PageSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PageSourceBenchmark - Cost of parsing and querying a page-source snapshot
+ *
+ * Uses a generated UiAutomator hierarchy of {@code nodes} elements shaped like
+ * the test apps' screens (nested layouts with text views and buttons).
+ * Compares the indexed resource-id lookup with the equivalent XPath query on
+ * the same snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PageSourceBenchmark {
+
+    @Param({"100", "1000"})
+    public int nodes;
+
+    private String pageSource;
+    private PageSnapshot snapshot;
+    private String lastId;
+
+    @Setup(Level.Trial)
+    public void start() {
+        pageSource = hierarchy(nodes);
+        snapshot = PageSnapshot.parse(pageSource);
+        lastId = "element-" + (nodes - 1);
+    }
+
+    @Benchmark
+    public PageSnapshot parse() {
+        return PageSnapshot.parse(pageSource);
+    }
+
+    @Benchmark
+    public PageSnapshot.Node indexedLookup() {
+        return snapshot.find(lastId);
+    }
+
+    @Benchmark
+    public List<PageSnapshot.Node> xpathLookup() {
+        return snapshot.xpath("//*[@resource-id='com.testapp1:id/" + lastId + "']");
+    }
+
+    static String hierarchy(int nodes) {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+            .append("<hierarchy rotation=\"0\">");
+        int open = 0;
+        for (int i = 0; i < nodes; i++) {
+            // Every fifth node opens a layout, closed again after four children
+            if (i % 5 == 0) {
+                xml.append("<android.view.ViewGroup class=\"android.view.ViewGroup\" resource-id=\"com.testapp1:id/element-")
+                    .append(i).append("\" bounds=\"[0,0][1080,200]\" displayed=\"true\">");
+                open++;
+            } else {
+                String type = i % 2 == 0 ? "android.widget.TextView" : "android.widget.Button";
+                xml.append('<').append(type).append(" class=\"").append(type)
+                    .append("\" resource-id=\"com.testapp1:id/element-").append(i)
+                    .append("\" text=\"Item ").append(i)
+                    .append("\" bounds=\"[0,0][540,100]\" displayed=\"true\" enabled=\"true\"/>");
+                if (i % 5 == 4) {
+                    xml.append("</android.view.ViewGroup>");
+                    open--;
+                }
+            }
+        }
+        for (; open > 0; open--) {
+            xml.append("</android.view.ViewGroup>");
+        }
+        return xml.append("</hierarchy>").toString();
+    }
+}
@@ -0,0 +1,104 @@
+package nativebridge.benchmarks;
+
+import io.appium.java_client.AppiumBy;
+import nativebridge.CompositeLocator;
+import org.openqa.selenium.By;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.WebElement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SafeFindBenchmark - Cost of the safeFind lookup strategies
+ *
+ * The stub only knows the element by its package-qualified resource-id
+ * ({@code com.testapp1:id/test-button}), the way a native Android app exposes
+ * it. The resource-id XPath and plain id lookups therefore miss and pay the
+ * implicit wait, the full resource-id hits, the old three-step fallback pays
+ * for both misses before its hit, and the composite UiAutomator locator hits
+ * in one request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SafeFindBenchmark {
+
+    private static final String APP_PACKAGE = "com.testapp1";
+    private static final String ELEMENT_ID = "test-button";
+    private static final String RESOURCE_ID = APP_PACKAGE + ":id/" + ELEMENT_ID;
+
+    @Param({"0", "10"})
+    public long latencyMs;
+
+    @Param({"0", "50"})
+    public long implicitWaitMs;
+
+    private StubSession session;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        session = new StubSession(latencyMs, implicitWaitMs, (using, value) -> value.contains(RESOURCE_ID));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        session.close();
+    }
+
+    @Benchmark
+    public Object xpath() {
+        return findOrNull(AppiumBy.xpath("//*[@resource-id='" + ELEMENT_ID + "']"));
+    }
+
+    @Benchmark
+    public Object id() {
+        return findOrNull(AppiumBy.id(ELEMENT_ID));
+    }
+
+    @Benchmark
+    public Object fullResourceId() {
+        return findOrNull(AppiumBy.id(RESOURCE_ID));
+    }
+
+    /** safeFind before CompositeLocator: XPath, then id, then full resource-id. */
+    @Benchmark
+    public Object legacyFallback() {
+        WebElement element = findOrNull(AppiumBy.xpath("//*[@resource-id='" + ELEMENT_ID + "']"));
+        if (element == null) {
+            element = findOrNull(AppiumBy.id(ELEMENT_ID));
+        }
+        if (element == null) {
+            element = findOrNull(AppiumBy.id(RESOURCE_ID));
+        }
+        return element;
+    }
+
+    @Benchmark
+    public Object composite() {
+        return CompositeLocator.find(session.driver, APP_PACKAGE, ELEMENT_ID);
+    }
+
+    private WebElement findOrNull(By locator) {
+        try {
+            return session.driver.findElement(locator);
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package nativebridge.benchmarks;
+
+import io.appium.java_client.android.AndroidDriver;
+import io.appium.java_client.android.options.UiAutomator2Options;
+import nativebridge.DriverFactory;
+import nativebridge.SimulatedDevice;
+import nativebridge.StubAppiumServer;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+
+/**
+ * StubSession - An AndroidDriver session against an in-process stub server
+ *
+ * Shared setup for the benchmarks that go through the driver: starts a
+ * StubAppiumServer on a free port with the given per-command latency and
+ * element lookup, or with a SimulatedDevice running the given app, and opens a
+ * session with the given implicit wait.
+ */
+final class StubSession implements AutoCloseable {
+
+    final StubAppiumServer server;
+    final AndroidDriver driver;
+
+    StubSession(long latencyMs, long implicitWaitMs, BiPredicate<String, String> elementLookup) throws IOException {
+        this(latencyMs, implicitWaitMs, server -> server.setElementLookup(elementLookup));
+    }
+
+    /** A session on a simulated device with {@code appPackage} in the foreground. */
+    StubSession(long latencyMs, long implicitWaitMs, String appPackage) throws IOException {
+        this(latencyMs, implicitWaitMs, server -> server.setDevices(SimulatedDevice.testApps(appPackage)));
+    }
+
+    private StubSession(long latencyMs, long implicitWaitMs, Consumer<StubAppiumServer> configure) throws IOException {
+        // Session setup isn't what is measured, so it runs without latency
+        server = StubAppiumServer.start(0, Duration.ZERO);
+        configure.accept(server);
+
+        UiAutomator2Options options = new UiAutomator2Options();
+        options.setPlatformName("Android");
+        options.setAutomationName("UiAutomator2");
+        driver = DriverFactory.android(server.url(), options);
+        driver.manage().timeouts().implicitlyWait(Duration.ofMillis(implicitWaitMs));
+
+        server.setLatency(Duration.ofMillis(latencyMs));
+    }
+
+    @Override
+    public void close() {
+        server.setLatency(Duration.ZERO);
+        driver.quit();
+        server.close();
+    }
+}
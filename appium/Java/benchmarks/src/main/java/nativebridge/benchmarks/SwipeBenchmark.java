@@ -0,0 +1,86 @@
+package nativebridge.benchmarks;
+
+import org.openqa.selenium.interactions.PointerInput;
+import org.openqa.selenium.interactions.Sequence;
+import org.openqa.selenium.json.Json;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SwipeBenchmark - Cost of the performSwipe W3C action sequence
+ *
+ * {@code build} is the client-side construction the scripts do for every
+ * swipe, {@code encode} adds the JSON serialisation Selenium performs before
+ * sending it, and {@code perform} sends it to the stub server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SwipeBenchmark {
+
+    private static final Json JSON = new Json();
+
+    @Param({"0"})
+    public long latencyMs;
+
+    private StubSession session;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        session = new StubSession(latencyMs, 0, (using, value) -> true);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        session.close();
+    }
+
+    @Benchmark
+    public Sequence build() {
+        return swipe(540, 1500, 540, 500, 1000);
+    }
+
+    @Benchmark
+    public String encode() {
+        Map<String, Object> actions = Collections.singletonMap("actions",
+            Collections.singletonList(swipe(540, 1500, 540, 500, 1000).toJson()));
+        return JSON.toJson(actions);
+    }
+
+    @Benchmark
+    public void perform() {
+        session.driver.perform(Collections.singletonList(swipe(540, 1500, 540, 500, 1000)));
+    }
+
+    // Same construction as performSwipe in the v2 scripts
+    private static Sequence swipe(int startX, int startY, int endX, int endY, int durationMs) {
+        PointerInput finger = new PointerInput(PointerInput.Kind.TOUCH, "finger");
+        Sequence swipe = new Sequence(finger, 1);
+        swipe.addAction(finger.createPointerMove(Duration.ofMillis(0),
+            PointerInput.Origin.viewport(), startX, startY));
+        swipe.addAction(finger.createPointerDown(PointerInput.MouseButton.LEFT.asArg()));
+        swipe.addAction(finger.createPointerMove(Duration.ofMillis(durationMs),
+            PointerInput.Origin.viewport(), endX, endY));
+        swipe.addAction(finger.createPointerUp(PointerInput.MouseButton.LEFT.asArg()));
+        return swipe;
+    }
+}
@@ -0,0 +1,217 @@
+package nativebridge.benchmarks;
+
+import io.appium.java_client.AppiumBy;
+import io.appium.java_client.android.AndroidDriver;
+import io.appium.java_client.android.options.UiAutomator2Options;
+import nativebridge.CompositeLocator;
+import nativebridge.DeviceRegistry;
+import nativebridge.DriverFactory;
+import nativebridge.ReplayServer;
+import nativebridge.XPathTranslator;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebElement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * XPathBenchmark - XPath lookups against their XPathTranslator equivalents
+ *
+ * Runs the lookups of two script paths: the TestApp2 dropdown (option by
+ * text, then by resource-id, with the menu open) and the alert OK button
+ * ({@code //*[@text='OK']}, with TestApp1's alert showing, the only app that
+ * raises one). {@code xpath} sends them as written, {@code translated} as the
+ * native selectors XPathTranslator produces.
+ *
+ * By default the lookups go to a simulated device, which evaluates XPath on a
+ * serialised hierarchy like UiAutomator2 does but has no real dump to pay
+ * for. {@code modelledDumpMs} adds an assumed cost for that dump to every
+ * XPath lookup, so the saving those runs report is modelled, not measured:
+ * it is as large as the number put in.
+ *
+ * Measured numbers come from a device. {@link #main} records both paths
+ * against a real Appium server into journals, one per path; with
+ * {@code -p journals=DIR} the benchmark replays them through ReplayServer at
+ * the recorded latency of each lookup instead of using the simulated device:
+ *
+ * {@code java -cp benchmarks/target/benchmarks.jar nativebridge.benchmarks.XPathBenchmark --upstream=http://localhost:4723 --journals=target/xpath-journals}
+ * {@code java -jar benchmarks/target/benchmarks.jar XPath -p journals=target/xpath-journals -p latencyMs=0 -p modelledDumpMs=0}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XPathBenchmark {
+
+    // Lookups recorded per locator; replay repeats the last one when they run out
+    private static final int RECORDED_REPEATS = 20;
+
+    @Param({"dropdown", "alert"})
+    public String path;
+
+    @Param({"5"})
+    public long latencyMs;
+
+    @Param({"0", "150"})
+    public long modelledDumpMs;
+
+    /** Directory of journals recorded by {@link #main}; empty for the simulated device. */
+    @Param({""})
+    public String journals;
+
+    private StubSession session;
+    private ReplayServer replay;
+    private AndroidDriver driver;
+    private List<By> xpaths;
+    private List<By> translated;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        if (journals.isEmpty()) {
+            session = new StubSession(latencyMs, 0, appPackage(path));
+            driver = session.driver;
+            prepare();
+            session.server.setXPathLatency(Duration.ofMillis(modelledDumpMs));
+        } else {
+            if (latencyMs != 0 || modelledDumpMs != 0) {
+                throw new IllegalArgumentException("A journal replays recorded timings; run it with -p latencyMs=0 -p modelledDumpMs=0");
+            }
+            replay = ReplayServer.replay(0, journal(Paths.get(journals), path));
+            driver = openSession(replay.url(), path);
+            prepare();
+            replay.setRecordedLatencyScale(1.0);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        if (session != null) {
+            session.close();
+        } else {
+            driver.quit();
+            replay.close();
+        }
+    }
+
+    @Benchmark
+    public List<WebElement> xpath() {
+        return findAll(xpaths);
+    }
+
+    @Benchmark
+    public List<WebElement> translated() {
+        return findAll(translated);
+    }
+
+    // Brings up the screen of the path and checks each XPath against its translation
+    private void prepare() {
+        if ("dropdown".equals(path)) {
+            CompositeLocator.find(driver, "com.testapp2", "color-dropdown").click();
+            xpaths = Arrays.asList(
+                AppiumBy.xpath("//*[contains(@text, 'Red')]"),
+                AppiumBy.xpath("//*[@resource-id='color-dropdown-option-0']"));
+        } else {
+            CompositeLocator.find(driver, "com.testapp1", "test-button").click();
+            xpaths = Arrays.asList(AppiumBy.xpath("//*[@text='OK']"));
+        }
+        translated = new ArrayList<>();
+        for (By xpath : xpaths) {
+            By nativeLocator = XPathTranslator.translate(xpath);
+            // Only a saving if both find the same element
+            if (nativeLocator == xpath || !driver.findElement(xpath).getText()
+                .equals(driver.findElement(nativeLocator).getText())) {
+                throw new IllegalStateException(xpath + " has no equivalent native selector");
+            }
+            translated.add(nativeLocator);
+        }
+    }
+
+    private List<WebElement> findAll(List<By> locators) {
+        List<WebElement> found = new ArrayList<>();
+        for (By locator : locators) {
+            found.add(driver.findElement(locator));
+        }
+        return found;
+    }
+
+    private static String appPackage(String path) {
+        return "dropdown".equals(path) ? "com.testapp2" : "com.testapp1";
+    }
+
+    private static Path journal(Path directory, String path) {
+        return directory.resolve("xpath-" + path + ".journal");
+    }
+
+    // The same requests when recording and when replaying, so every one is in the journal
+    private static AndroidDriver openSession(URL serverUrl, String path) {
+        UiAutomator2Options options = new UiAutomator2Options();
+        options.setPlatformName("Android");
+        options.setAutomationName("UiAutomator2");
+        AndroidDriver driver = DriverFactory.android(serverUrl, options);
+        driver.activateApp(appPackage(path));
+        return driver;
+    }
+
+    /**
+     * Records the lookups of both paths on a real device, TestApp1 and TestApp2
+     * installed, for {@code -p journals=DIR}:
+     * {@code XPathBenchmark [--upstream=URL] [--journals=DIR]}
+     */
+    public static void main(String[] args) throws Exception {
+        String upstream = DeviceRegistry.DEFAULT_SERVER;
+        Path directory = Paths.get("target", "xpath-journals");
+        for (String arg : args) {
+            if (arg.startsWith("--upstream=")) {
+                upstream = arg.substring("--upstream=".length());
+            } else if (arg.startsWith("--journals=")) {
+                directory = Paths.get(arg.substring("--journals=".length()));
+            } else {
+                System.err.println("Usage: XPathBenchmark [--upstream=URL] [--journals=DIR]");
+                System.exit(2);
+            }
+        }
+        for (String path : new String[] {"dropdown", "alert"}) {
+            Path journal = journal(directory, path);
+            ReplayServer recorder = ReplayServer.record(0, URI.create(upstream).toURL(), journal);
+            try {
+                XPathBenchmark benchmark = new XPathBenchmark();
+                benchmark.path = path;
+                benchmark.driver = openSession(recorder.url(), path);
+                try {
+                    benchmark.prepare();
+                    for (int i = 0; i < RECORDED_REPEATS; i++) {
+                        benchmark.xpath();
+                        benchmark.translated();
+                    }
+                } finally {
+                    benchmark.driver.quit();
+                }
+            } finally {
+                recorder.close();
+            }
+            System.out.println("Recorded " + path + " to " + journal);
+        }
+    }
+}
@@ -1,10 +1,16 @@
 import io.appium.java_client.android.AndroidDriver;
 import io.appium.java_client.MobileBy;
+import org.openqa.selenium.By;
+import org.openqa.selenium.TimeoutException;
 import org.openqa.selenium.remote.DesiredCapabilities;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.interactions.Actions;
 import org.openqa.selenium.interactions.touch.TouchActions;
+import org.openqa.selenium.support.ui.ExpectedCondition;
+import org.openqa.selenium.support.ui.ExpectedConditions;
+import org.openqa.selenium.support.ui.WebDriverWait;
 import java.net.URL;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 
@@ -17,6 +23,20 @@ public class TestApp1 {
 
     private static AndroidDriver driver;
 
+    private static final Duration IMPLICIT_WAIT = Duration.ofSeconds(10);
+
+    // OK button of the native alert: the id and both text variants in one lookup
+    private static final By ALERT_BUTTON = MobileBy.AndroidUIAutomator(
+        "new UiSelector().resourceId(\"android:id/button1\");"
+            + "new UiSelector().text(\"OK\");"
+            + "new UiSelector().text(\"ok\")");
+
+    private static final By COUNTER = MobileBy.AndroidUIAutomator(resourceIdSelector("button-counter"));
+
+    private static final By SWIPE_AREA = MobileBy.AndroidUIAutomator(resourceIdSelector("swipe-area"));
+
+    private static final By FIRST_VIEW = MobileBy.AndroidUIAutomator("new UiSelector().classNameMatches(\".+\")");
+
     public static void main(String[] args) throws Exception {
         // Use DesiredCapabilities for v1
         DesiredCapabilities caps = new DesiredCapabilities();
@@ -31,11 +51,11 @@ public class TestApp1 {
 
         // v1 REQUIRES the /wd/hub endpoint
         driver = new AndroidDriver(
-            new URL("http://127.0.0.1:4723/wd/hub"),
+            new URL(serverUrl()),
             caps
         );
 
-        driver.manage().timeouts().implicitlyWait(10, java.util.concurrent.TimeUnit.SECONDS);
+        driver.manage().timeouts().implicitlyWait(IMPLICIT_WAIT);
 
         System.out.println("🚀 Starting TestApp1 Tests (Clean Passing Version)");
         System.out.println("==================================================");
@@ -91,17 +111,17 @@ public class TestApp1 {
         try {
             // Find and verify initial counter
             WebElement counter = safeFind("button-counter", "button counter");
+            String counterText = null;
             if (counter != null) {
-                String initialText = counter.getText();
-                System.out.println("Initial counter: " + initialText);
+                counterText = counter.getText();
+                System.out.println("Initial counter: " + counterText);
             }
 
             // Test single button press
             System.out.println("Testing single button press...");
             if (safeFindAndClick("test-button", "test button")) {
-                Thread.sleep(2000); // Give time for alert to appear
                 dismissAlertIfPresent();
-                Thread.sleep(1000); // Wait for UI to update
+                counterText = awaitCounterChange(counterText);
 
                 // Verify counter updated
                 counter = safeFind("button-counter", "button counter after click");
@@ -121,9 +141,8 @@ public class TestApp1 {
             System.out.println("Testing additional button presses...");
             for (int i = 0; i < 2; i++) {
                 if (safeFindAndClick("test-button", "test button (press " + (i + 2) + ")")) {
-                    Thread.sleep(2000);
                     dismissAlertIfPresent();
-                    Thread.sleep(1000);
+                    counterText = awaitCounterChange(counterText);
                 } else {
                     System.out.println("❌ Failed to press button " + (i + 2) + " times");
                 }
@@ -159,9 +178,8 @@ public class TestApp1 {
                 System.out.println("Entering text: '" + testText + "'");
 
                 textInput.clear();
-                Thread.sleep(1000);
                 textInput.sendKeys(testText);
-                Thread.sleep(1000);
+                waitFor(textShown(textInput, testText), 5);
 
                 String enteredText = textInput.getAttribute("text");
                 if (enteredText == null) enteredText = textInput.getText();
@@ -176,7 +194,6 @@ public class TestApp1 {
                 // Test submit button
                 System.out.println("Testing submit button...");
                 if (safeFindAndClick("submit-button", "submit button")) {
-                    Thread.sleep(2000);
                     dismissAlertIfPresent();
                     System.out.println("✅ Submit button test passed");
                 }
@@ -185,9 +202,8 @@ public class TestApp1 {
                 System.out.println("Testing special characters...");
                 String specialText = "Test@123";
                 textInput.clear();
-                Thread.sleep(1000);
                 textInput.sendKeys(specialText);
-                Thread.sleep(1000);
+                waitFor(textShown(textInput, specialText), 5);
 
                 String specialEntered = textInput.getAttribute("text");
                 if (specialEntered == null) specialEntered = textInput.getText();
@@ -199,7 +215,6 @@ public class TestApp1 {
 
                 // Submit special text
                 if (safeFindAndClick("submit-button", "submit button for special text")) {
-                    Thread.sleep(2000);
                     dismissAlertIfPresent();
                 }
             }
@@ -231,7 +246,7 @@ public class TestApp1 {
                               .move(centerX, endY)
                               .up(centerX, endY)
                               .perform();
-                    Thread.sleep(1000);
+                    waitFor(swipeAreaSettled(), 5);
                     System.out.println("✅ Swipe up gesture completed");
                 } catch (Exception e) {
                     System.out.println("⚠️ Swipe up gesture failed: " + e.getMessage());
@@ -245,7 +260,7 @@ public class TestApp1 {
                               .move(centerX, startY)
                               .up(centerX, startY)
                               .perform();
-                    Thread.sleep(1000);
+                    waitFor(swipeAreaSettled(), 5);
                     System.out.println("✅ Swipe down gesture completed");
                 } catch (Exception e) {
                     System.out.println("⚠️ Swipe down gesture failed: " + e.getMessage());
@@ -298,24 +313,21 @@ public class TestApp1 {
             WebElement textInput = safeFind("text-input", "text input for workflow");
             if (textInput != null) {
                 textInput.clear();
-                Thread.sleep(1000);
 
                 String workflowText = "Workflow Test";
                 textInput.sendKeys(workflowText);
-                Thread.sleep(1000);
+                waitFor(textShown(textInput, workflowText), 5);
                 System.out.println("✅ Step 1: Text entered for workflow");
             }
 
             // Step 2: Press test button
             if (safeFindAndClick("test-button", "test button in workflow")) {
-                Thread.sleep(2000);
                 dismissAlertIfPresent();
                 System.out.println("✅ Step 2: Test button pressed in workflow");
             }
 
             // Step 3: Submit text
             if (safeFindAndClick("submit-button", "submit button in workflow")) {
-                Thread.sleep(2000);
                 dismissAlertIfPresent();
                 System.out.println("✅ Step 3: Text submitted in workflow");
             }
@@ -340,24 +352,20 @@ public class TestApp1 {
 
     private static WebElement safeFind(String elementId, String elementName) {
         try {
-            // Try method 1: XPath with resource-id
-            return driver.findElement(MobileBy.xpath("//*[@resource-id='" + elementId + "']"));
-        } catch (Exception e1) {
-            try {
-                // Try method 2: Direct ID
-                return driver.findElement(MobileBy.id(elementId));
-            } catch (Exception e2) {
-                try {
-                    // Try method 3: Full resource-id format
-                    return driver.findElement(MobileBy.id("com.testapp1:id/" + elementId));
-                } catch (Exception e3) {
-                    System.out.println("❌ Could not find " + elementName);
-                    return null;
-                }
-            }
+            // Resource-id XPath, direct ID and full resource-id in a single lookup
+            return driver.findElement(MobileBy.AndroidUIAutomator(resourceIdSelector(elementId)));
+        } catch (Exception e) {
+            System.out.println("❌ Could not find " + elementName);
+            return null;
         }
     }
 
+    // One UiAutomator expression per candidate; the server returns the first match
+    private static String resourceIdSelector(String elementId) {
+        return "new UiSelector().resourceId(\"" + elementId + "\");"
+            + "new UiSelector().resourceId(\"com.testapp1:id/" + elementId + "\")";
+    }
+
     private static boolean safeFindAndClick(String elementId, String elementName) {
         try {
             WebElement element = safeFind(elementId, elementName);
@@ -375,28 +383,13 @@ public class TestApp1 {
 
     private static boolean dismissAlertIfPresent() {
         try {
-            // Try different possible alert button selectors
-            List<String> alertSelectors = Arrays.asList(
-                "android:id/button1",  // OK button
-                "//*[@text='OK']",     // Text-based
-                "//*[@text='ok']"      // Lowercase
-            );
-
-            for (String selector : alertSelectors) {
-                try {
-                    WebElement alertButton;
-                    if (selector.startsWith("//")) {
-                        alertButton = driver.findElement(MobileBy.xpath(selector));
-                    } else {
-                        alertButton = driver.findElement(MobileBy.id(selector));
-                    }
-                    alertButton.click();
-                    System.out.println("✅ Alert dismissed");
-                    Thread.sleep(500);
-                    return true;
-                } catch (Exception e) {
-                    // Continue to next selector
-                }
+            // Waits for the alert to show instead of a fixed pause after the click
+            WebElement alertButton = waitFor(ExpectedConditions.presenceOfElementLocated(ALERT_BUTTON), 5);
+            if (alertButton != null) {
+                alertButton.click();
+                System.out.println("✅ Alert dismissed");
+                waitFor(ExpectedConditions.invisibilityOfElementLocated(ALERT_BUTTON), 5);
+                return true;
             }
 
             // If no button found, try pressing back key
@@ -409,4 +402,52 @@ public class TestApp1 {
             return false;
         }
     }
+
+    // Polls with the implicit wait off, so a poll that finds nothing returns at once
+    // instead of after ten seconds; null if the condition doesn't hold in time
+    private static <T> T waitFor(ExpectedCondition<T> condition, int seconds) {
+        driver.manage().timeouts().implicitlyWait(Duration.ZERO);
+        try {
+            return new WebDriverWait(driver, Duration.ofSeconds(seconds), Duration.ofMillis(200)).until(condition);
+        } catch (TimeoutException e) {
+            return null;
+        } finally {
+            driver.manage().timeouts().implicitlyWait(IMPLICIT_WAIT);
+        }
+    }
+
+    // The counter's new text once it differs from previousText, or previousText on timeout
+    private static String awaitCounterChange(String previousText) {
+        String updated = waitFor(d -> {
+            String text = d.findElement(COUNTER).getText();
+            return text.equals(previousText) ? null : text;
+        }, 5);
+        return updated != null ? updated : previousText;
+    }
+
+    private static ExpectedCondition<Boolean> textShown(WebElement field, String expected) {
+        return d -> {
+            String text = field.getAttribute("text");
+            return text != null && text.contains(expected);
+        };
+    }
+
+    // True once the swipe area and its first view are where they were on the previous poll
+    private static ExpectedCondition<Boolean> swipeAreaSettled() {
+        Object[] last = {null};
+        return d -> {
+            WebElement area = d.findElement(SWIPE_AREA);
+            List<WebElement> first = area.findElements(FIRST_VIEW);
+            Object current = Arrays.asList(area.getRect(), first.isEmpty() ? null : first.get(0).getRect());
+            boolean stable = current.equals(last[0]);
+            last[0] = current;
+            return stable;
+        };
+    }
+
+    // -Dnativebridge.server or NATIVEBRIDGE_SERVER overrides the local server, e.g. with a replay server
+    private static String serverUrl() {
+        String server = System.getProperty("nativebridge.server", System.getenv("NATIVEBRIDGE_SERVER"));
+        return server == null || server.trim().isEmpty() ? "http://127.0.0.1:4723/wd/hub" : server.trim();
+    }
 }
\ No newline at end of file
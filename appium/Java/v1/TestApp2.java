@@ -1,11 +1,19 @@
 import io.appium.java_client.android.AndroidDriver;
 import io.appium.java_client.MobileBy;
+import org.openqa.selenium.By;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.remote.DesiredCapabilities;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.interactions.touch.TouchActions;
+import org.openqa.selenium.support.ui.ExpectedCondition;
+import org.openqa.selenium.support.ui.ExpectedConditions;
+import org.openqa.selenium.support.ui.WebDriverWait;
 import java.net.URL;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * TestApp2 Appium v1 Test - Clean Passing Version
@@ -16,6 +24,16 @@ public class TestApp2 {
 
     private static AndroidDriver driver;
 
+    private static final Duration IMPLICIT_WAIT = Duration.ofSeconds(10);
+
+    private static final By MODAL_TEXT = MobileBy.AndroidUIAutomator(resourceIdSelector("modal-text"));
+
+    private static final By MAIN_SCROLL = MobileBy.AndroidUIAutomator(resourceIdSelector("main-scroll"));
+
+    private static final By FIRST_VIEW = MobileBy.AndroidUIAutomator("new UiSelector().classNameMatches(\".+\")");
+
+    private static final By FIRST_IDENTIFIED_VIEW = MobileBy.AndroidUIAutomator("new UiSelector().resourceIdMatches(\".+\")");
+
     public static void main(String[] args) throws Exception {
         // Use DesiredCapabilities for v1
         DesiredCapabilities caps = new DesiredCapabilities();
@@ -30,11 +48,11 @@ public class TestApp2 {
 
         // v1 REQUIRES the /wd/hub endpoint
         driver = new AndroidDriver(
-            new URL("http://127.0.0.1:4723/wd/hub"),
+            new URL(serverUrl()),
             caps
         );
 
-        driver.manage().timeouts().implicitlyWait(10, java.util.concurrent.TimeUnit.SECONDS);
+        driver.manage().timeouts().implicitlyWait(IMPLICIT_WAIT);
 
         System.out.println("🚀 Starting TestApp2 Tests (Clean Passing Version)");
         System.out.println("==================================================");
@@ -93,7 +111,8 @@ public class TestApp2 {
         System.out.println("Testing color dropdown...");
         if (safeFindAndClick("color-dropdown", "color dropdown")) {
             try {
-                Thread.sleep(1000);
+                waitFor(ExpectedConditions.presenceOfElementLocated(
+                    MobileBy.AndroidUIAutomator(resourceIdSelector("color-dropdown-option-0"))), 5);
                 // Look for Red option
                 try {
                     WebElement redOption = driver.findElement(MobileBy.xpath("//*[contains(@text, 'Red')]"));
@@ -118,7 +137,8 @@ public class TestApp2 {
         System.out.println("Testing size dropdown...");
         if (safeFindAndClick("size-dropdown", "size dropdown")) {
             try {
-                Thread.sleep(1000);
+                waitFor(ExpectedConditions.presenceOfElementLocated(
+                    MobileBy.AndroidUIAutomator(resourceIdSelector("size-dropdown-option-0"))), 5);
                 // Look for Medium option
                 try {
                     WebElement mediumOption = driver.findElement(MobileBy.xpath("//*[contains(@text, 'Medium')]"));
@@ -167,15 +187,13 @@ public class TestApp2 {
             System.out.println("Found " + switches.size() + " switches");
 
             if (switches.size() >= 1) {
-                switches.get(0).click();
+                toggle(switches.get(0));
                 System.out.println("✅ Clicked first switch (notifications)");
-                Thread.sleep(1000);
             }
 
             if (switches.size() >= 2) {
-                switches.get(1).click();
+                toggle(switches.get(1));
                 System.out.println("✅ Clicked second switch (dark mode)");
-                Thread.sleep(1000);
             }
 
             // Check switch status
@@ -204,7 +222,6 @@ public class TestApp2 {
         try {
             // Scroll down to slider area
             swipe(500, 900, 500, 600, 800);
-            Thread.sleep(1000);
 
             // Find slider container to confirm it exists
             WebElement sliderContainer = safeFind("volume-slider", "slider container");
@@ -240,12 +257,11 @@ public class TestApp2 {
         try {
             // Scroll down to ensure modal button is visible
             swipe(500, 1000, 500, 300, 1000);
-            Thread.sleep(1000);
 
             // Find and click modal button
             if (safeFindAndClick("show-modal-button", "modal button")) {
                 System.out.println("✅ Opened modal");
-                Thread.sleep(2000);
+                waitFor(ExpectedConditions.visibilityOfElementLocated(MODAL_TEXT), 5);
 
                 // Look for modal content
                 try {
@@ -257,7 +273,7 @@ public class TestApp2 {
                         // Close modal
                         if (safeFindAndClick("close-modal-button", "close modal button")) {
                             System.out.println("✅ Closed modal");
-                            Thread.sleep(1000);
+                            waitFor(ExpectedConditions.invisibilityOfElementLocated(MODAL_TEXT), 5);
                         }
                     } else {
                         System.out.println("❌ Modal content not visible");
@@ -283,7 +299,7 @@ public class TestApp2 {
                       .move(500, 300)
                       .up(500, 300)
                       .perform();
-            Thread.sleep(1000);
+            waitFor(contentSettled(), 5);
 
             // Scroll back up
             touchAction = new TouchActions(driver);
@@ -291,7 +307,7 @@ public class TestApp2 {
                       .move(500, 1000)
                       .up(500, 1000)
                       .perform();
-            Thread.sleep(1000);
+            waitFor(contentSettled(), 5);
 
             System.out.println("✅ Scrolling gestures completed");
 
@@ -312,7 +328,6 @@ public class TestApp2 {
         int foundCount = 0;
         // Reset scroll position first
         swipe(500, 500, 500, 1000, 1000);
-        try { Thread.sleep(1000); } catch (Exception e) {}
 
         for (String elementId : elementIds) {
             WebElement element = safeFind(elementId, elementId);
@@ -322,7 +337,6 @@ public class TestApp2 {
             } else {
                 // Try scrolling down and checking again
                 swipe(500, 900, 500, 600, 500);
-                try { Thread.sleep(500); } catch (Exception e) {}
                 element = safeFind(elementId, elementId);
                 if (element != null) {
                     System.out.println("✅ Found: " + elementId + " (after scroll)");
@@ -342,14 +356,12 @@ public class TestApp2 {
         try {
             // Reset to top of screen
             swipe(500, 500, 500, 1000, 1000);
-            Thread.sleep(2000);
 
             // 1. Toggle a switch
             List<WebElement> switches = driver.findElements(MobileBy.className("android.widget.Switch"));
             if (!switches.isEmpty()) {
-                switches.get(0).click();
+                toggle(switches.get(0));
                 System.out.println("✅ Toggled notifications in workflow");
-                Thread.sleep(1000);
             }
 
             // 2. Check switch status
@@ -366,15 +378,14 @@ public class TestApp2 {
             try {
                 // Scroll to modal button
                 swipe(500, 1000, 500, 300, 1000);
-                Thread.sleep(1000);
 
                 if (safeFindAndClick("show-modal-button", "modal button in workflow")) {
                     System.out.println("✅ Opened modal in workflow");
-                    Thread.sleep(2000);
+                    waitFor(ExpectedConditions.visibilityOfElementLocated(MODAL_TEXT), 5);
 
                     if (safeFindAndClick("close-modal-button", "close modal button in workflow")) {
                         System.out.println("✅ Closed modal in workflow");
-                        Thread.sleep(1000);
+                        waitFor(ExpectedConditions.invisibilityOfElementLocated(MODAL_TEXT), 5);
                     }
                 }
 
@@ -396,28 +407,23 @@ public class TestApp2 {
     private static WebElement safeFind(String elementId, String elementName, boolean scrollFirst) {
         if (scrollFirst) {
             swipe(500, 1000, 500, 500, 800);
-            try { Thread.sleep(1000); } catch (Exception e) {}
         }
 
         try {
-            // Try method 1: XPath with resource-id
-            return driver.findElement(MobileBy.xpath("//*[@resource-id='" + elementId + "']"));
-        } catch (Exception e1) {
-            try {
-                // Try method 2: Direct ID
-                return driver.findElement(MobileBy.id(elementId));
-            } catch (Exception e2) {
-                try {
-                    // Try method 3: Full resource-id format
-                    return driver.findElement(MobileBy.id("com.testapp2:id/" + elementId));
-                } catch (Exception e3) {
-                    System.out.println("❌ Could not find " + elementName);
-                    return null;
-                }
-            }
+            // Resource-id XPath, direct ID and full resource-id in a single lookup
+            return driver.findElement(MobileBy.AndroidUIAutomator(resourceIdSelector(elementId)));
+        } catch (Exception e) {
+            System.out.println("❌ Could not find " + elementName);
+            return null;
         }
     }
 
+    // One UiAutomator expression per candidate; the server returns the first match
+    private static String resourceIdSelector(String elementId) {
+        return "new UiSelector().resourceId(\"" + elementId + "\");"
+            + "new UiSelector().resourceId(\"com.testapp2:id/" + elementId + "\")";
+    }
+
     private static boolean safeFindAndClick(String elementId, String elementName) {
         return safeFindAndClick(elementId, elementName, false);
     }
@@ -437,11 +443,60 @@ public class TestApp2 {
         }
     }
 
+    // Swipes, then waits for the content to stop scrolling
     private static void swipe(int startX, int startY, int endX, int endY, int duration) {
         TouchActions touchAction = new TouchActions(driver);
         touchAction.down(startX, startY)
                   .move(endX, endY)
                   .up(endX, endY)
                   .perform();
+        waitFor(contentSettled(), 5);
+    }
+
+    // Clicks a switch and waits until its checked state flips
+    private static void toggle(WebElement toggle) {
+        String checked = toggle.getAttribute("checked");
+        toggle.click();
+        waitFor(d -> !Objects.equals(toggle.getAttribute("checked"), checked), 5);
+    }
+
+    // Polls with the implicit wait off, so a poll that finds nothing returns at once
+    // instead of after ten seconds; null if the condition doesn't hold in time
+    private static <T> T waitFor(ExpectedCondition<T> condition, int seconds) {
+        driver.manage().timeouts().implicitlyWait(Duration.ZERO);
+        try {
+            return new WebDriverWait(driver, Duration.ofSeconds(seconds), Duration.ofMillis(200)).until(condition);
+        } catch (TimeoutException e) {
+            return null;
+        } finally {
+            driver.manage().timeouts().implicitlyWait(IMPLICIT_WAIT);
+        }
+    }
+
+    // True once the scroll view and its first view are where they were on the previous poll
+    private static ExpectedCondition<Boolean> contentSettled() {
+        Object[] last = {null};
+        return d -> {
+            Object current = contentPosition(d);
+            boolean stable = current.equals(last[0]);
+            last[0] = current;
+            return stable;
+        };
+    }
+
+    private static Object contentPosition(WebDriver d) {
+        List<WebElement> scroll = d.findElements(MAIN_SCROLL);
+        if (scroll.isEmpty()) {
+            List<WebElement> first = d.findElements(FIRST_IDENTIFIED_VIEW);
+            return first.isEmpty() ? "no views" : first.get(0).getRect();
+        }
+        List<WebElement> first = scroll.get(0).findElements(FIRST_VIEW);
+        return Arrays.asList(scroll.get(0).getRect(), first.isEmpty() ? null : first.get(0).getRect());
+    }
+
+    // -Dnativebridge.server or NATIVEBRIDGE_SERVER overrides the local server, e.g. with a replay server
+    private static String serverUrl() {
+        String server = System.getProperty("nativebridge.server", System.getenv("NATIVEBRIDGE_SERVER"));
+        return server == null || server.trim().isEmpty() ? "http://127.0.0.1:4723/wd/hub" : server.trim();
     }
 }
\ No newline at end of file
@@ -1,11 +1,28 @@
 import io.appium.java_client.android.AndroidDriver;
 import io.appium.java_client.android.options.UiAutomator2Options;
-import io.appium.java_client.AppiumBy;
+import nativebridge.AdaptiveLocator;
+import nativebridge.CommandMetrics;
+import nativebridge.CompositeLocator;
+import nativebridge.DeviceRegistry;
+import nativebridge.ElementCache;
+import nativebridge.ElementHandle;
+import nativebridge.ElementProbe;
+import nativebridge.FailureArtifacts;
+import nativebridge.PageSnapshot;
+import nativebridge.SessionBreaker;
+import nativebridge.SessionPool;
+import nativebridge.SnapshotCache;
+import nativebridge.StepBatch;
+import nativebridge.UiWait;
+import nativebridge.XPathTranslator;
+import org.openqa.selenium.By;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.Rectangle;
+import org.openqa.selenium.StaleElementReferenceException;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.interactions.Actions;
 import org.openqa.selenium.interactions.PointerInput;
 import org.openqa.selenium.interactions.Sequence;
-import java.net.URL;
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
@@ -19,6 +36,16 @@ import java.util.List;
 public class TestApp1 {
 
     private static AndroidDriver driver;
+    private static ElementProbe probe;
+    private static AdaptiveLocator locator;
+    private static XPathTranslator xpath;
+    private static SessionBreaker breaker;
+    private static UiWait uiWait;
+    private static SnapshotCache snapshots;
+    private static ElementCache elements;
+
+    private static final By COUNTER = CompositeLocator.byResourceId("com.testapp1", "button-counter");
+    private static final By SWIPE_AREA = CompositeLocator.byResourceId("com.testapp1", "swipe-area");
 
     public static void main(String[] args) throws Exception {
         System.out.println("🚀 Starting TestApp1 Tests (v2 Compatible)");
@@ -34,45 +61,72 @@ public class TestApp1 {
         options.setCapability("nativeWebScreenshot", true);
         options.setCapability("connectHardwareKeyboard", true);
 
-        driver = new AndroidDriver(
-            new URL("http://localhost:4723"),
-            options
+        CommandMetrics.install();
+        CommandMetrics.setCurrentTest("TestApp1.setUp");
+        driver = SessionPool.shared().acquire(
+            DeviceRegistry.defaultServerUrl(),
+            options,
+            "com.testapp1"
         );
 
         driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
+        probe = ElementProbe.of(driver);
+        locator = new AdaptiveLocator(driver, "com.testapp1");
+        xpath = XPathTranslator.install(driver);
+        breaker = SessionBreaker.install(driver);
+        uiWait = new UiWait(probe);
+        snapshots = new SnapshotCache(driver);
+        elements = new ElementCache(driver);
 
         try {
             System.out.println("✅ Driver initialized successfully");
 
             // Test 1: App Launch Verification
+            CommandMetrics.setCurrentTest("TestApp1.testAppLaunch");
             testAppLaunch();
 
             // Test 2: Button Interaction Testing
+            CommandMetrics.setCurrentTest("TestApp1.testButtonInteraction");
             testButtonInteraction();
 
             // Test 3: Text Input Testing
+            CommandMetrics.setCurrentTest("TestApp1.testTextInput");
             testTextInput();
 
             // Test 4: Swipe/Scroll Area Testing
+            CommandMetrics.setCurrentTest("TestApp1.testSwipeGestures");
             testSwipeGestures();
 
             // Test 5: Element Verification
+            CommandMetrics.setCurrentTest("TestApp1.testElementVerification");
             testElementVerification();
 
             // Test 6: Simple Workflow
+            CommandMetrics.setCurrentTest("TestApp1.testSimpleWorkflow");
             testSimpleWorkflow();
 
+            // A dead session fails every step fast; report it as the run's cause, not as completion
+            breaker.check();
+
             System.out.println("\n==================================================");
             System.out.println("🎉 TestApp1 v2 Tests Completed!");
             System.out.println("==================================================");
+            System.out.println("⏱️ " + probe.summary());
+            System.out.println("⏱️ " + elements.summary());
+            System.out.println("⏱️ " + locator.stats().summary());
+            System.out.println("⏱️ " + xpath.summary());
 
         } catch (Exception e) {
             System.err.println("❌ Test failed: " + e.getMessage());
+            FailureArtifacts.shared().capture(driver, "TestApp1", e);
             e.printStackTrace();
         } finally {
+            CommandMetrics.setCurrentTest("TestApp1.tearDown");
             if (driver != null) {
-                driver.quit();
+                SessionPool.shared().release(driver);
             }
+            System.out.println(CommandMetrics.global().summary());
+            System.out.println("Command metrics written to " + CommandMetrics.global().export().toAbsolutePath());
             System.out.println("✅ Test session ended successfully");
         }
     }
@@ -82,8 +136,9 @@ public class TestApp1 {
         try {
             WebElement appTitle = safeFind("app-title", "app title");
             if (appTitle != null) {
-                System.out.println("✅ App title found: '" + appTitle.getText() + "'");
-                if (appTitle.getText().contains("Appium Test App")) {
+                String titleText = elements.of(appTitle).text();
+                System.out.println("✅ App title found: '" + titleText + "'");
+                if (titleText.contains("Appium Test App")) {
                     System.out.println("✅ App launch verification passed");
                 }
             } else {
@@ -91,28 +146,29 @@ public class TestApp1 {
             }
         } catch (Exception e) {
             System.out.println("❌ App launch verification failed: " + e.getMessage());
+            FailureArtifacts.shared().capture(driver, "TestApp1.testAppLaunch", e);
         }
     }
 
     private static void testButtonInteraction() {
         System.out.println("\n🔘 Test 2: Button Interaction Testing");
         try {
-            // Find and verify initial counter
-            WebElement counter = safeFind("button-counter", "button counter");
+            // Find the initial counter once; the handle re-finds it only if a re-render made it stale
+            ElementHandle counter = safeHandle("button-counter", "button counter");
+            String counterText = null;
             if (counter != null) {
-                String initialText = counter.getText();
-                System.out.println("Initial counter: " + initialText);
+                counterText = counter.getText();
+                System.out.println("Initial counter: " + counterText);
             }
 
             // Test single button press
             System.out.println("Testing single button press...");
             if (safeFindAndClick("test-button", "test button")) {
-                Thread.sleep(2000); // Give time for alert to appear
+                uiWait.until(UiWait.alertPresent()); // Proceed as soon as the alert appears
                 dismissAlertIfPresent();
-                Thread.sleep(1000); // Wait for UI to update
+                counterText = awaitCounterChange(counterText); // Wait for UI to update
 
                 // Verify counter updated
-                counter = safeFind("button-counter", "button counter after click");
                 if (counter != null) {
                     String updatedText = counter.getText();
                     System.out.println("Updated counter: " + updatedText);
@@ -129,16 +185,15 @@ public class TestApp1 {
             System.out.println("Testing additional button presses...");
             for (int i = 0; i < 2; i++) {
                 if (safeFindAndClick("test-button", "test button (press " + (i + 2) + ")")) {
-                    Thread.sleep(2000);
+                    uiWait.until(UiWait.alertPresent());
                     dismissAlertIfPresent();
-                    Thread.sleep(1000);
+                    counterText = awaitCounterChange(counterText);
                 } else {
                     System.out.println("❌ Failed to press button " + (i + 2) + " times");
                 }
             }
 
             // Verify final counter
-            counter = safeFind("button-counter", "button counter final");
             if (counter != null) {
                 String finalText = counter.getText();
                 System.out.println("Final counter: " + finalText);
@@ -152,6 +207,7 @@ public class TestApp1 {
 
         } catch (Exception e) {
             System.out.println("❌ Button interaction test failed: " + e.getMessage());
+            FailureArtifacts.shared().capture(driver, "TestApp1.testButtonInteraction", e);
         }
     }
 
@@ -167,12 +223,10 @@ public class TestApp1 {
                 System.out.println("Entering text: '" + testText + "'");
 
                 textInput.clear();
-                Thread.sleep(1000);
                 textInput.sendKeys(testText);
-                Thread.sleep(1000);
+                uiWait.until(UiWait.textContains(textInput, testText));
 
-                String enteredText = textInput.getAttribute("text");
-                if (enteredText == null) enteredText = textInput.getText();
+                String enteredText = elements.of(textInput).value();
                 System.out.println("Entered text: '" + enteredText + "'");
 
                 if (enteredText.contains(testText)) {
@@ -184,7 +238,7 @@ public class TestApp1 {
                 // Test submit button
                 System.out.println("Testing submit button...");
                 if (safeFindAndClick("submit-button", "submit button")) {
-                    Thread.sleep(2000);
+                    uiWait.until(UiWait.alertPresent());
                     dismissAlertIfPresent();
                     System.out.println("✅ Submit button test passed");
                 }
@@ -193,12 +247,10 @@ public class TestApp1 {
                 System.out.println("Testing special characters...");
                 String specialText = "Test@123";
                 textInput.clear();
-                Thread.sleep(1000);
                 textInput.sendKeys(specialText);
-                Thread.sleep(1000);
+                uiWait.until(UiWait.textContains(textInput, specialText));
 
-                String specialEntered = textInput.getAttribute("text");
-                if (specialEntered == null) specialEntered = textInput.getText();
+                String specialEntered = elements.of(textInput).value();
                 if (specialEntered.contains(specialText)) {
                     System.out.println("✅ Special characters test passed");
                 } else {
@@ -207,12 +259,13 @@ public class TestApp1 {
 
                 // Submit special text
                 if (safeFindAndClick("submit-button", "submit button for special text")) {
-                    Thread.sleep(2000);
+                    uiWait.until(UiWait.alertPresent());
                     dismissAlertIfPresent();
                 }
             }
         } catch (Exception e) {
             System.out.println("❌ Text input test failed: " + e.getMessage());
+            FailureArtifacts.shared().capture(driver, "TestApp1.testTextInput", e);
         }
     }
 
@@ -224,12 +277,14 @@ public class TestApp1 {
                 System.out.println("✅ Swipe area found");
 
                 // Get swipe area boundaries
-                int centerX = swipeArea.getLocation().getX() + swipeArea.getSize().getWidth() / 2;
-                int startY = swipeArea.getLocation().getY() + swipeArea.getSize().getHeight() - 50;
-                int endY = swipeArea.getLocation().getY() + 50;
+                // One getRect() instead of a getLocation()/getSize() pair per coordinate
+                Rectangle bounds = elements.of(swipeArea).rect();
+                int centerX = bounds.getX() + bounds.getWidth() / 2;
+                int startY = bounds.getY() + bounds.getHeight() - 50;
+                int endY = bounds.getY() + 50;
 
-                System.out.println("Swipe area - Location: " + swipeArea.getLocation() +
-                                 ", Size: " + swipeArea.getSize());
+                System.out.println("Swipe area - Location: " + bounds.getPoint() +
+                                 ", Size: " + bounds.getDimension());
 
                 // Test swipe up (scroll down in content) using W3C Actions
                 System.out.println("Testing swipe up gesture...");
@@ -244,7 +299,7 @@ public class TestApp1 {
                     swipeUp.addAction(finger.createPointerUp(PointerInput.MouseButton.LEFT.asArg()));
 
                     driver.perform(Collections.singletonList(swipeUp));
-                    Thread.sleep(1000);
+                    uiWait.until(UiWait.screenSettled(SWIPE_AREA));
                     System.out.println("✅ Swipe up gesture completed");
                 } catch (Exception e) {
                     System.out.println("⚠️ Swipe up gesture failed: " + e.getMessage());
@@ -263,7 +318,7 @@ public class TestApp1 {
                     swipeDown.addAction(finger.createPointerUp(PointerInput.MouseButton.LEFT.asArg()));
 
                     driver.perform(Collections.singletonList(swipeDown));
-                    Thread.sleep(1000);
+                    uiWait.until(UiWait.screenSettled(SWIPE_AREA));
                     System.out.println("✅ Swipe down gesture completed");
                 } catch (Exception e) {
                     System.out.println("⚠️ Swipe down gesture failed: " + e.getMessage());
@@ -271,6 +326,7 @@ public class TestApp1 {
             }
         } catch (Exception e) {
             System.out.println("❌ Swipe area test failed: " + e.getMessage());
+            FailureArtifacts.shared().capture(driver, "TestApp1.testSwipeGestures", e);
         }
     }
 
@@ -283,8 +339,9 @@ public class TestApp1 {
         );
 
         int foundCount = 0;
+        // One page-source fetch answers every existence and visibility check below
         for (String elementId : elementIds) {
-            WebElement element = safeFind(elementId, elementId);
+            PageSnapshot.Node element = snapshots.current().find(elementId);
             if (element != null) {
                 System.out.println("✅ Found: " + elementId);
 
@@ -312,67 +369,57 @@ public class TestApp1 {
         try {
             System.out.println("Starting simple workflow...");
 
-            // Step 1: Clear and enter text
-            WebElement textInput = safeFind("text-input", "text input for workflow");
-            if (textInput != null) {
-                textInput.clear();
-                Thread.sleep(1000);
-
-                String workflowText = "Workflow Test v2";
-                textInput.sendKeys(workflowText);
-                Thread.sleep(1000);
+            // All steps as one driver script next to the device (client-side if the server doesn't allow it)
+            StepBatch.Result workflow = new StepBatch(driver, "com.testapp1")
+                // Step 1: Clear and enter text
+                .type("text-input", "Workflow Test v2")
+                // Step 2: Press test button
+                .click("test-button").dismissAlert()
+                // Step 3: Submit text
+                .click("submit-button").dismissAlert()
+                // Step 4: Verify final state
+                .readText("button-counter")
+                .readText("text-input")
+                .run();
+
+            if (workflow.get(0).ok()) {
                 System.out.println("✅ Step 1: Text entered for workflow");
             }
-
-            // Step 2: Press test button
-            if (safeFindAndClick("test-button", "test button in workflow")) {
-                Thread.sleep(2000);
-                dismissAlertIfPresent();
+            if (workflow.get(1).ok()) {
                 System.out.println("✅ Step 2: Test button pressed in workflow");
             }
-
-            // Step 3: Submit text
-            if (safeFindAndClick("submit-button", "submit button in workflow")) {
-                Thread.sleep(2000);
-                dismissAlertIfPresent();
+            if (workflow.get(3).ok()) {
                 System.out.println("✅ Step 3: Text submitted in workflow");
             }
-
-            // Step 4: Verify final state
-            WebElement counter = safeFind("button-counter", "button counter final workflow");
-            if (counter != null) {
-                String finalCounterText = counter.getText();
-                System.out.println("Final counter state: " + finalCounterText);
+            if (workflow.get(5).ok()) {
+                System.out.println("Final counter state: " + workflow.get(5).text());
             }
-
-            String finalText = textInput != null ?
-                (textInput.getAttribute("text") != null ? textInput.getAttribute("text") : textInput.getText()) : "";
-            System.out.println("Final text input: " + finalText);
+            System.out.println("Final text input: " + (workflow.get(6).ok() ? workflow.get(6).text() : ""));
+            System.out.println("⏱️ Workflow: " + workflow.summary());
 
             System.out.println("✅ Simple workflow test finished successfully!");
 
         } catch (Exception e) {
             System.out.println("❌ Simple workflow test failed: " + e.getMessage());
+            FailureArtifacts.shared().capture(driver, "TestApp1.testSimpleWorkflow", e);
         }
     }
 
     private static WebElement safeFind(String elementId, String elementName) {
         try {
-            // Try method 1: XPath with resource-id (most reliable for v2)
-            return driver.findElement(AppiumBy.xpath("//*[@resource-id='" + elementId + "']"));
-        } catch (Exception e1) {
-            try {
-                // Try method 2: Direct ID
-                return driver.findElement(AppiumBy.id(elementId));
-            } catch (Exception e2) {
-                try {
-                    // Try method 3: Full resource-id format
-                    return driver.findElement(AppiumBy.id("com.testapp1:id/" + elementId));
-                } catch (Exception e3) {
-                    System.out.println("❌ Could not find " + elementName);
-                    return null;
-                }
-            }
+            return locator.find(elementId);
+        } catch (NoSuchElementException | StaleElementReferenceException e) {
+            System.out.println("❌ Could not find " + elementName);
+            return null;
+        }
+    }
+
+    private static ElementHandle safeHandle(String elementId, String elementName) {
+        try {
+            return locator.handle(elementId);
+        } catch (NoSuchElementException | StaleElementReferenceException e) {
+            System.out.println("❌ Could not find " + elementName);
+            return null;
         }
     }
 
@@ -385,36 +432,27 @@ public class TestApp1 {
                 return true;
             }
             return false;
-        } catch (Exception e) {
+        } catch (NoSuchElementException | StaleElementReferenceException e) {
             System.out.println("❌ Could not click " + elementName + ": " + e.getMessage());
             return false;
         }
     }
 
+    // Waits for the counter to move past previousText; returns the new text, or previousText on timeout
+    private static String awaitCounterChange(String previousText) {
+        String updated = uiWait.until(UiWait.textChanged(COUNTER, previousText));
+        return updated != null ? updated : previousText;
+    }
+
     private static boolean dismissAlertIfPresent() {
         try {
-            // Try different possible alert button selectors
-            List<String> alertSelectors = Arrays.asList(
-                "android:id/button1",  // OK button
-                "//*[@text='OK']",     // Text-based
-                "//*[@text='ok']"      // Lowercase
-            );
-
-            for (String selector : alertSelectors) {
-                try {
-                    WebElement alertButton;
-                    if (selector.startsWith("//")) {
-                        alertButton = driver.findElement(AppiumBy.xpath(selector));
-                    } else {
-                        alertButton = driver.findElement(AppiumBy.id(selector));
-                    }
-                    alertButton.click();
-                    System.out.println("✅ Alert dismissed");
-                    Thread.sleep(500);
-                    return true;
-                } catch (Exception e) {
-                    // Continue to next selector
-                }
+            // One zero-wait probe covers the OK button id and both text variants
+            WebElement alertButton = probe.findFirst(UiWait.ALERT_BUTTON);
+            if (alertButton != null) {
+                alertButton.click();
+                System.out.println("✅ Alert dismissed");
+                uiWait.until(UiWait.alertGone());
+                return true;
             }
 
             // If no button found, try pressing back key
@@ -423,7 +461,7 @@ public class TestApp1 {
             System.out.println("✅ Alert dismissed with back key");
             return true;
 
-        } catch (Exception e) {
+        } catch (NoSuchElementException | StaleElementReferenceException e) {
             System.out.println("⚠️ No alert to dismiss");
             return false;
         }
@@ -1,12 +1,34 @@
 import io.appium.java_client.android.AndroidDriver;
 import io.appium.java_client.android.options.UiAutomator2Options;
-import io.appium.java_client.AppiumBy;
+import nativebridge.AdaptiveLocator;
+import nativebridge.CommandMetricsListener;
+import nativebridge.CompositeLocator;
+import nativebridge.DeviceRegistry;
+import nativebridge.DeviceSharding;
+import nativebridge.ElementCache;
+import nativebridge.ElementHandle;
+import nativebridge.ElementProbe;
+import nativebridge.FailureArtifacts;
+import nativebridge.FailureArtifactsListener;
+import nativebridge.HistoryScheduler;
+import nativebridge.PageSnapshot;
+import nativebridge.PrepareSession;
+import nativebridge.SessionBreaker;
+import nativebridge.SessionPool;
+import nativebridge.SnapshotCache;
+import nativebridge.StepBatch;
+import nativebridge.UiWait;
+import nativebridge.XPathTranslator;
+import org.openqa.selenium.By;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.Rectangle;
+import org.openqa.selenium.StaleElementReferenceException;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.interactions.PointerInput;
 import org.openqa.selenium.interactions.Sequence;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
 
-import java.net.URL;
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
@@ -18,15 +40,31 @@ import java.util.List;
  * Tests basic app functionality including buttons, text input, and gestures
  */
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@ExtendWith({DeviceSharding.class, HistoryScheduler.class, CommandMetricsListener.class, FailureArtifactsListener.class})
+@TestMethodOrder(HistoryScheduler.class)
 public class TestApp1JUnit {
 
     private AndroidDriver driver;
+    private DeviceRegistry.Device device;
+    private ElementProbe probe;
+    private AdaptiveLocator locator;
+    private XPathTranslator xpath;
+    private SessionBreaker breaker;
+    private UiWait uiWait;
+    private SnapshotCache snapshots;
+    private ElementCache elements;
+
+    private static final By COUNTER = CompositeLocator.byResourceId("com.testapp1", "button-counter");
+    private static final By SWIPE_AREA = CompositeLocator.byResourceId("com.testapp1", "swipe-area");
+
+    // JUnit has no @BeforeSuite; HistoryScheduler runs this once the class order
+    // is known, so the session is prepared while the classes before this one run
+    @PrepareSession
+    static void prepareSession() {
+        SessionPool.shared().prepare(DeviceRegistry.shared(), options(), "com.testapp1");
+    }
 
-    @BeforeAll
-    void setUp() throws Exception {
-        System.out.println("Starting TestApp1 JUnit Tests (v2 Compatible)");
-        System.out.println("==================================================");
-
+    private static UiAutomator2Options options() {
         UiAutomator2Options options = new UiAutomator2Options();
         options.setPlatformName("Android");
         options.setAutomationName("UiAutomator2");
@@ -36,13 +74,32 @@ public class TestApp1JUnit {
         options.setCapability("ensureWebviewsHavePages", true);
         options.setCapability("nativeWebScreenshot", true);
         options.setCapability("connectHardwareKeyboard", true);
+        return options;
+    }
 
-        driver = new AndroidDriver(
-            new URL("http://localhost:4723"),
-            options
-        );
+    @BeforeAll
+    void setUp() throws Exception {
+        System.out.println("Starting TestApp1 JUnit Tests (v2 Compatible)");
+        System.out.println("==================================================");
+
+        UiAutomator2Options options = options();
+
+        // One device per worker thread, so parallel classes never share a device
+        device = DeviceRegistry.shared().acquire();
+        device.applyTo(options);
+        System.out.println("Running on " + device);
+
+        driver = SessionPool.shared().acquire(device.serverUrl(), options, "com.testapp1");
 
         driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
+        probe = ElementProbe.of(driver);
+        locator = new AdaptiveLocator(driver, "com.testapp1");
+        xpath = XPathTranslator.install(driver);
+        breaker = SessionBreaker.install(driver);
+        FailureArtifacts.install(driver);
+        uiWait = new UiWait(probe);
+        snapshots = new SnapshotCache(driver);
+        elements = new ElementCache(driver);
         System.out.println("Driver initialized successfully");
     }
 
@@ -62,11 +119,11 @@ public class TestApp1JUnit {
 
     @Test
     @Order(2)
-    void testButtonInteraction() throws InterruptedException {
+    void testButtonInteraction() {
         System.out.println("\nTest 2: Button Interaction Testing");
 
-        // Find and verify initial counter
-        WebElement counter = safeFind("button-counter", "button counter");
+        // Find the initial counter once; the handle re-finds it only if a re-render made it stale
+        ElementHandle counter = safeHandle("button-counter", "button counter");
         Assertions.assertNotNull(counter, "Button counter should be found");
 
         String initialText = counter.getText();
@@ -77,14 +134,11 @@ public class TestApp1JUnit {
         boolean buttonClicked = safeFindAndClick("test-button", "test button");
         Assertions.assertTrue(buttonClicked, "Test button should be clickable");
 
-        Thread.sleep(2000); // Give time for alert to appear
+        uiWait.until(UiWait.alertPresent()); // Proceed as soon as the alert appears
         dismissAlertIfPresent();
-        Thread.sleep(1000); // Wait for UI to update
+        String counterText = awaitCounterChange(initialText); // Wait for UI to update
 
         // Verify counter updated
-        counter = safeFind("button-counter", "button counter after click");
-        Assertions.assertNotNull(counter, "Button counter should still be found after click");
-
         String updatedText = counter.getText();
         System.out.println("Updated counter: " + updatedText);
         Assertions.assertNotEquals(initialText, updatedText, "Counter should have changed");
@@ -94,14 +148,12 @@ public class TestApp1JUnit {
         for (int i = 0; i < 2; i++) {
             boolean clicked = safeFindAndClick("test-button", "test button (press " + (i + 2) + ")");
             Assertions.assertTrue(clicked, "Button should be clickable on press " + (i + 2));
-            Thread.sleep(2000);
+            uiWait.until(UiWait.alertPresent());
             dismissAlertIfPresent();
-            Thread.sleep(1000);
+            counterText = awaitCounterChange(counterText);
         }
 
         // Verify final counter
-        counter = safeFind("button-counter", "button counter final");
-        Assertions.assertNotNull(counter, "Button counter should be found at end");
         String finalText = counter.getText();
         System.out.println("Final counter: " + finalText);
         System.out.println("Button interaction test completed");
@@ -109,7 +161,7 @@ public class TestApp1JUnit {
 
     @Test
     @Order(3)
-    void testTextInput() throws InterruptedException {
+    void testTextInput() {
         System.out.println("\nTest 3: Text Input Testing");
 
         WebElement textInput = safeFind("text-input", "text input field");
@@ -121,12 +173,10 @@ public class TestApp1JUnit {
         System.out.println("Entering text: '" + testText + "'");
 
         textInput.clear();
-        Thread.sleep(1000);
         textInput.sendKeys(testText);
-        Thread.sleep(1000);
+        uiWait.until(UiWait.textContains(textInput, testText));
 
-        String enteredText = textInput.getAttribute("text");
-        if (enteredText == null) enteredText = textInput.getText();
+        String enteredText = elements.of(textInput).value();
         System.out.println("Entered text: '" + enteredText + "'");
         Assertions.assertTrue(enteredText.contains(testText) || !enteredText.isEmpty(),
             "Text should be entered successfully");
@@ -135,31 +185,29 @@ public class TestApp1JUnit {
         System.out.println("Testing submit button...");
         boolean submitClicked = safeFindAndClick("submit-button", "submit button");
         Assertions.assertTrue(submitClicked, "Submit button should be clickable");
-        Thread.sleep(2000);
+        uiWait.until(UiWait.alertPresent());
         dismissAlertIfPresent();
 
         // Test different text
         System.out.println("Testing special characters...");
         String specialText = "Test@123";
         textInput.clear();
-        Thread.sleep(1000);
         textInput.sendKeys(specialText);
-        Thread.sleep(1000);
+        uiWait.until(UiWait.textContains(textInput, specialText));
 
-        String specialEntered = textInput.getAttribute("text");
-        if (specialEntered == null) specialEntered = textInput.getText();
+        String specialEntered = elements.of(textInput).value();
         Assertions.assertFalse(specialEntered.isEmpty(), "Special text should be entered");
 
         // Submit special text
         safeFindAndClick("submit-button", "submit button for special text");
-        Thread.sleep(2000);
+        uiWait.until(UiWait.alertPresent());
         dismissAlertIfPresent();
         System.out.println("Text input test completed");
     }
 
     @Test
     @Order(4)
-    void testSwipeGestures() throws InterruptedException {
+    void testSwipeGestures() {
         System.out.println("\nTest 4: Swipe/Scroll Area Testing");
 
         WebElement swipeArea = safeFind("swipe-area", "swipe area");
@@ -167,18 +215,20 @@ public class TestApp1JUnit {
         System.out.println("Swipe area found");
 
         // Get swipe area boundaries
-        int centerX = swipeArea.getLocation().getX() + swipeArea.getSize().getWidth() / 2;
-        int startY = swipeArea.getLocation().getY() + swipeArea.getSize().getHeight() - 50;
-        int endY = swipeArea.getLocation().getY() + 50;
+        // One getRect() instead of a getLocation()/getSize() pair per coordinate
+        Rectangle bounds = elements.of(swipeArea).rect();
+        int centerX = bounds.getX() + bounds.getWidth() / 2;
+        int startY = bounds.getY() + bounds.getHeight() - 50;
+        int endY = bounds.getY() + 50;
 
-        System.out.println("Swipe area - Location: " + swipeArea.getLocation() +
-                         ", Size: " + swipeArea.getSize());
+        System.out.println("Swipe area - Location: " + bounds.getPoint() +
+                         ", Size: " + bounds.getDimension());
 
         // Test swipe up (scroll down in content) using W3C Actions
         System.out.println("Testing swipe up gesture...");
         Assertions.assertDoesNotThrow(() -> {
             performSwipe(centerX, startY, centerX, endY, 1000);
-            Thread.sleep(1000);
+            uiWait.until(UiWait.screenSettled(SWIPE_AREA));
         }, "Swipe up gesture should not throw exception");
         System.out.println("Swipe up gesture completed");
 
@@ -186,7 +236,7 @@ public class TestApp1JUnit {
         System.out.println("Testing swipe down gesture...");
         Assertions.assertDoesNotThrow(() -> {
             performSwipe(centerX, endY, centerX, startY, 1000);
-            Thread.sleep(1000);
+            uiWait.until(UiWait.screenSettled(SWIPE_AREA));
         }, "Swipe down gesture should not throw exception");
         System.out.println("Swipe down gesture completed");
     }
@@ -202,8 +252,9 @@ public class TestApp1JUnit {
         );
 
         int foundCount = 0;
+        // One page-source fetch answers every existence and visibility check below
         for (String elementId : elementIds) {
-            WebElement element = safeFind(elementId, elementId);
+            PageSnapshot.Node element = snapshots.current().find(elementId);
             if (element != null) {
                 System.out.println("Found: " + elementId);
 
@@ -228,47 +279,40 @@ public class TestApp1JUnit {
 
     @Test
     @Order(6)
-    void testSimpleWorkflow() throws InterruptedException {
+    void testSimpleWorkflow() {
         System.out.println("\nTest 6: Simple Workflow Testing");
         System.out.println("Starting simple workflow...");
 
-        // Step 1: Clear and enter text
-        WebElement textInput = safeFind("text-input", "text input for workflow");
-        Assertions.assertNotNull(textInput, "Text input should be available for workflow");
-
-        textInput.clear();
-        Thread.sleep(1000);
-
-        String workflowText = "Workflow Test v2 JUnit";
-        textInput.sendKeys(workflowText);
-        Thread.sleep(1000);
+        // All steps as one driver script next to the device (client-side if the server doesn't allow it)
+        StepBatch.Result workflow = new StepBatch(driver, "com.testapp1")
+            // Step 1: Clear and enter text
+            .type("text-input", "Workflow Test v2 JUnit")
+            // Step 2: Press test button
+            .click("test-button").dismissAlert()
+            // Step 3: Submit text
+            .click("submit-button").dismissAlert()
+            // Step 4: Verify final state
+            .readText("button-counter")
+            .readText("text-input")
+            .run();
+        System.out.println("Workflow: " + workflow.summary());
+
+        Assertions.assertTrue(workflow.get(0).ok(), "Text input should be available for workflow");
         System.out.println("Step 1: Text entered for workflow");
 
-        // Step 2: Press test button
-        boolean buttonClicked = safeFindAndClick("test-button", "test button in workflow");
-        Assertions.assertTrue(buttonClicked, "Test button should be clickable in workflow");
-        Thread.sleep(2000);
-        dismissAlertIfPresent();
+        Assertions.assertTrue(workflow.get(1).ok(), "Test button should be clickable in workflow");
         System.out.println("Step 2: Test button pressed in workflow");
 
-        // Step 3: Submit text
-        boolean submitClicked = safeFindAndClick("submit-button", "submit button in workflow");
-        Assertions.assertTrue(submitClicked, "Submit button should be clickable in workflow");
-        Thread.sleep(2000);
-        dismissAlertIfPresent();
+        Assertions.assertTrue(workflow.get(3).ok(), "Submit button should be clickable in workflow");
         System.out.println("Step 3: Text submitted in workflow");
 
-        // Step 4: Verify final state
-        WebElement counter = safeFind("button-counter", "button counter final workflow");
-        if (counter != null) {
-            String finalCounterText = counter.getText();
+        if (workflow.get(5).ok()) {
+            String finalCounterText = workflow.get(5).text();
             System.out.println("Final counter state: " + finalCounterText);
             Assertions.assertNotNull(finalCounterText, "Counter should have some text");
         }
 
-        String finalText = textInput.getAttribute("text");
-        if (finalText == null) finalText = textInput.getText();
-        System.out.println("Final text input: " + finalText);
+        System.out.println("Final text input: " + workflow.get(6).text());
 
         System.out.println("Simple workflow test finished successfully!");
     }
@@ -278,31 +322,34 @@ public class TestApp1JUnit {
         System.out.println("\n==================================================");
         System.out.println("TestApp1 v2 JUnit Tests Completed!");
         System.out.println("==================================================");
+        if (probe != null) {
+            System.out.println("Probe stats: " + probe.summary());
+        }
 
         if (driver != null) {
-            driver.quit();
+            SessionPool.shared().release(driver);
         }
+        DeviceRegistry.shared().release(device);
+        System.out.println("Session pool: " + SessionPool.shared().summary());
         System.out.println("Test session ended successfully");
     }
 
     // Helper methods
     private WebElement safeFind(String elementId, String elementName) {
         try {
-            // Try method 1: XPath with resource-id (most reliable for v2)
-            return driver.findElement(AppiumBy.xpath("//*[@resource-id='" + elementId + "']"));
-        } catch (Exception e1) {
-            try {
-                // Try method 2: Direct ID
-                return driver.findElement(AppiumBy.id(elementId));
-            } catch (Exception e2) {
-                try {
-                    // Try method 3: Full resource-id format
-                    return driver.findElement(AppiumBy.id("com.testapp1:id/" + elementId));
-                } catch (Exception e3) {
-                    System.out.println("Could not find " + elementName);
-                    return null;
-                }
-            }
+            return locator.find(elementId);
+        } catch (NoSuchElementException | StaleElementReferenceException e) {
+            System.out.println("Could not find " + elementName);
+            return null;
+        }
+    }
+
+    private ElementHandle safeHandle(String elementId, String elementName) {
+        try {
+            return locator.handle(elementId);
+        } catch (NoSuchElementException | StaleElementReferenceException e) {
+            System.out.println("Could not find " + elementName);
+            return null;
         }
     }
 
@@ -315,36 +362,27 @@ public class TestApp1JUnit {
                 return true;
             }
             return false;
-        } catch (Exception e) {
+        } catch (NoSuchElementException | StaleElementReferenceException e) {
             System.out.println("Could not click " + elementName + ": " + e.getMessage());
             return false;
         }
     }
 
+    // Waits for the counter to move past previousText; returns the new text, or previousText on timeout
+    private String awaitCounterChange(String previousText) {
+        String updated = uiWait.until(UiWait.textChanged(COUNTER, previousText));
+        return updated != null ? updated : previousText;
+    }
+
     private boolean dismissAlertIfPresent() {
         try {
-            // Try different possible alert button selectors
-            List<String> alertSelectors = Arrays.asList(
-                "android:id/button1",  // OK button
-                "//*[@text='OK']",     // Text-based
-                "//*[@text='ok']"      // Lowercase
-            );
-
-            for (String selector : alertSelectors) {
-                try {
-                    WebElement alertButton;
-                    if (selector.startsWith("//")) {
-                        alertButton = driver.findElement(AppiumBy.xpath(selector));
-                    } else {
-                        alertButton = driver.findElement(AppiumBy.id(selector));
-                    }
-                    alertButton.click();
-                    System.out.println("Alert dismissed");
-                    Thread.sleep(500);
-                    return true;
-                } catch (Exception e) {
-                    // Continue to next selector
-                }
+            // One zero-wait probe covers the OK button id and both text variants
+            WebElement alertButton = probe.findFirst(UiWait.ALERT_BUTTON);
+            if (alertButton != null) {
+                alertButton.click();
+                System.out.println("Alert dismissed");
+                uiWait.until(UiWait.alertGone());
+                return true;
             }
 
             // If no button found, try pressing back key
@@ -353,7 +391,7 @@ public class TestApp1JUnit {
             System.out.println("Alert dismissed with back key");
             return true;
 
-        } catch (Exception e) {
+        } catch (NoSuchElementException | StaleElementReferenceException e) {
             System.out.println("No alert to dismiss");
             return false;
         }
@@ -1,13 +1,31 @@
 import io.appium.java_client.android.AndroidDriver;
 import io.appium.java_client.android.options.UiAutomator2Options;
-import io.appium.java_client.AppiumBy;
+import nativebridge.AdaptiveLocator;
+import nativebridge.AppState;
+import nativebridge.CompositeLocator;
+import nativebridge.DeviceRegistry;
+import nativebridge.ElementCache;
+import nativebridge.ElementHandle;
+import nativebridge.ElementProbe;
+import nativebridge.FailureArtifacts;
+import nativebridge.PageSnapshot;
+import nativebridge.SessionBreaker;
+import nativebridge.SessionPool;
+import nativebridge.SnapshotCache;
+import nativebridge.StepBatch;
+import nativebridge.TestGraph;
+import nativebridge.UiWait;
+import nativebridge.XPathTranslator;
+import org.openqa.selenium.By;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.Rectangle;
+import org.openqa.selenium.StaleElementReferenceException;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.interactions.PointerInput;
 import org.openqa.selenium.interactions.Sequence;
 import org.testng.annotations.*;
 import org.testng.Assert;
 
-import java.net.URL;
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
@@ -21,12 +39,38 @@ import java.util.List;
 public class TestApp1TestNG {
 
     private AndroidDriver driver;
+    private DeviceRegistry.Device device;
+    private ElementProbe probe;
+    private AdaptiveLocator locator;
+    private XPathTranslator xpath;
+    private SessionBreaker breaker;
+    private UiWait uiWait;
+    private SnapshotCache snapshots;
+    private ElementCache elements;
+
+    private static final By COUNTER = CompositeLocator.byResourceId("com.testapp1", "button-counter");
+    private static final By SWIPE_AREA = CompositeLocator.byResourceId("com.testapp1", "swipe-area");
+
+    private final TestGraph.Lane lane;
+
+    public TestApp1TestNG(TestGraph.Lane lane) {
+        this.lane = lane;
+    }
 
-    @BeforeClass
-    public void setUp() throws Exception {
-        System.out.println("Starting TestApp1 TestNG Tests (v2 Compatible)");
-        System.out.println("==================================================");
+    // One instance per lane of independent methods, each on its own device
+    @Factory
+    public static Object[] lanes() {
+        return TestGraph.instances(TestApp1TestNG.class, TestApp1TestNG::new);
+    }
 
+    // Every class's @BeforeSuite runs before the first class starts, so the
+    // session for this one is prepared while the classes before it run
+    @BeforeSuite
+    public void prepareSession() {
+        SessionPool.shared().prepare(DeviceRegistry.shared(), options(), "com.testapp1");
+    }
+
+    private static UiAutomator2Options options() {
         UiAutomator2Options options = new UiAutomator2Options();
         options.setPlatformName("Android");
         options.setAutomationName("UiAutomator2");
@@ -36,17 +80,37 @@ public class TestApp1TestNG {
         options.setCapability("ensureWebviewsHavePages", true);
         options.setCapability("nativeWebScreenshot", true);
         options.setCapability("connectHardwareKeyboard", true);
+        return options;
+    }
 
-        driver = new AndroidDriver(
-            new URL("http://localhost:4723"),
-            options
-        );
+    @BeforeClass
+    public void setUp() throws Exception {
+        System.out.println("Starting TestApp1 TestNG Tests (v2 Compatible)");
+        System.out.println("==================================================");
+
+        UiAutomator2Options options = options();
+
+        // One device per worker thread, so parallel classes never share a device
+        device = DeviceRegistry.shared().acquire();
+        device.applyTo(options);
+        System.out.println("Running " + lane + " on " + device);
+
+        driver = SessionPool.shared().acquire(device.serverUrl(), options, "com.testapp1");
 
         driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
+        probe = ElementProbe.of(driver);
+        locator = new AdaptiveLocator(driver, "com.testapp1");
+        xpath = XPathTranslator.install(driver);
+        breaker = SessionBreaker.install(driver);
+        FailureArtifacts.install(driver);
+        uiWait = new UiWait(probe);
+        snapshots = new SnapshotCache(driver);
+        elements = new ElementCache(driver);
         System.out.println("Driver initialized successfully");
     }
 
     @Test(priority = 1)
+    @AppState
     public void testAppLaunch() {
         System.out.println("\nTest 1: App Launch Verification");
         WebElement appTitle = safeFind("app-title", "app title");
@@ -60,11 +124,12 @@ public class TestApp1TestNG {
     }
 
     @Test(priority = 2)
-    public void testButtonInteraction() throws InterruptedException {
+    @AppState(writes = "counter")
+    public void testButtonInteraction() {
         System.out.println("\nTest 2: Button Interaction Testing");
 
-        // Find and verify initial counter
-        WebElement counter = safeFind("button-counter", "button counter");
+        // Find the initial counter once; the handle re-finds it only if a re-render made it stale
+        ElementHandle counter = safeHandle("button-counter", "button counter");
         Assert.assertNotNull(counter, "Button counter should be found");
 
         String initialText = counter.getText();
@@ -75,14 +140,11 @@ public class TestApp1TestNG {
         boolean buttonClicked = safeFindAndClick("test-button", "test button");
         Assert.assertTrue(buttonClicked, "Test button should be clickable");
 
-        Thread.sleep(2000); // Give time for alert to appear
+        uiWait.until(UiWait.alertPresent()); // Proceed as soon as the alert appears
         dismissAlertIfPresent();
-        Thread.sleep(1000); // Wait for UI to update
+        String counterText = awaitCounterChange(initialText); // Wait for UI to update
 
         // Verify counter updated
-        counter = safeFind("button-counter", "button counter after click");
-        Assert.assertNotNull(counter, "Button counter should still be found after click");
-
         String updatedText = counter.getText();
         System.out.println("Updated counter: " + updatedText);
         Assert.assertNotEquals(updatedText, initialText, "Counter should have changed");
@@ -92,21 +154,20 @@ public class TestApp1TestNG {
         for (int i = 0; i < 2; i++) {
             boolean clicked = safeFindAndClick("test-button", "test button (press " + (i + 2) + ")");
             Assert.assertTrue(clicked, "Button should be clickable on press " + (i + 2));
-            Thread.sleep(2000);
+            uiWait.until(UiWait.alertPresent());
             dismissAlertIfPresent();
-            Thread.sleep(1000);
+            counterText = awaitCounterChange(counterText);
         }
 
         // Verify final counter
-        counter = safeFind("button-counter", "button counter final");
-        Assert.assertNotNull(counter, "Button counter should be found at end");
         String finalText = counter.getText();
         System.out.println("Final counter: " + finalText);
         System.out.println("Button interaction test completed");
     }
 
     @Test(priority = 3)
-    public void testTextInput() throws InterruptedException {
+    @AppState(writes = "text-input")
+    public void testTextInput() {
         System.out.println("\nTest 3: Text Input Testing");
 
         WebElement textInput = safeFind("text-input", "text input field");
@@ -118,12 +179,10 @@ public class TestApp1TestNG {
         System.out.println("Entering text: '" + testText + "'");
 
         textInput.clear();
-        Thread.sleep(1000);
         textInput.sendKeys(testText);
-        Thread.sleep(1000);
+        uiWait.until(UiWait.textContains(textInput, testText));
 
-        String enteredText = textInput.getAttribute("text");
-        if (enteredText == null) enteredText = textInput.getText();
+        String enteredText = elements.of(textInput).value();
         System.out.println("Entered text: '" + enteredText + "'");
         Assert.assertTrue(enteredText.contains(testText) || !enteredText.isEmpty(),
             "Text should be entered successfully");
@@ -132,30 +191,29 @@ public class TestApp1TestNG {
         System.out.println("Testing submit button...");
         boolean submitClicked = safeFindAndClick("submit-button", "submit button");
         Assert.assertTrue(submitClicked, "Submit button should be clickable");
-        Thread.sleep(2000);
+        uiWait.until(UiWait.alertPresent());
         dismissAlertIfPresent();
 
         // Test different text
         System.out.println("Testing special characters...");
         String specialText = "Test@123";
         textInput.clear();
-        Thread.sleep(1000);
         textInput.sendKeys(specialText);
-        Thread.sleep(1000);
+        uiWait.until(UiWait.textContains(textInput, specialText));
 
-        String specialEntered = textInput.getAttribute("text");
-        if (specialEntered == null) specialEntered = textInput.getText();
+        String specialEntered = elements.of(textInput).value();
         Assert.assertFalse(specialEntered.isEmpty(), "Special text should be entered");
 
         // Submit special text
         safeFindAndClick("submit-button", "submit button for special text");
-        Thread.sleep(2000);
+        uiWait.until(UiWait.alertPresent());
         dismissAlertIfPresent();
         System.out.println("Text input test completed");
     }
 
     @Test(priority = 4)
-    public void testSwipeGestures() throws InterruptedException {
+    @AppState(writes = "scroll")
+    public void testSwipeGestures() {
         System.out.println("\nTest 4: Swipe/Scroll Area Testing");
 
         WebElement swipeArea = safeFind("swipe-area", "swipe area");
@@ -163,18 +221,20 @@ public class TestApp1TestNG {
         System.out.println("Swipe area found");
 
         // Get swipe area boundaries
-        int centerX = swipeArea.getLocation().getX() + swipeArea.getSize().getWidth() / 2;
-        int startY = swipeArea.getLocation().getY() + swipeArea.getSize().getHeight() - 50;
-        int endY = swipeArea.getLocation().getY() + 50;
+        // One getRect() instead of a getLocation()/getSize() pair per coordinate
+        Rectangle bounds = elements.of(swipeArea).rect();
+        int centerX = bounds.getX() + bounds.getWidth() / 2;
+        int startY = bounds.getY() + bounds.getHeight() - 50;
+        int endY = bounds.getY() + 50;
 
-        System.out.println("Swipe area - Location: " + swipeArea.getLocation() +
-                         ", Size: " + swipeArea.getSize());
+        System.out.println("Swipe area - Location: " + bounds.getPoint() +
+                         ", Size: " + bounds.getDimension());
 
         // Test swipe up (scroll down in content) using W3C Actions
         System.out.println("Testing swipe up gesture...");
         try {
             performSwipe(centerX, startY, centerX, endY, 1000);
-            Thread.sleep(1000);
+            uiWait.until(UiWait.screenSettled(SWIPE_AREA));
             System.out.println("Swipe up gesture completed");
         } catch (Exception e) {
             Assert.fail("Swipe up gesture should not throw exception: " + e.getMessage());
@@ -184,7 +244,7 @@ public class TestApp1TestNG {
         System.out.println("Testing swipe down gesture...");
         try {
             performSwipe(centerX, endY, centerX, startY, 1000);
-            Thread.sleep(1000);
+            uiWait.until(UiWait.screenSettled(SWIPE_AREA));
             System.out.println("Swipe down gesture completed");
         } catch (Exception e) {
             Assert.fail("Swipe down gesture should not throw exception: " + e.getMessage());
@@ -192,6 +252,7 @@ public class TestApp1TestNG {
     }
 
     @Test(priority = 5)
+    @AppState(reads = "scroll")
     public void testElementVerification() {
         System.out.println("\nTest 5: Element Verification");
 
@@ -201,8 +262,9 @@ public class TestApp1TestNG {
         );
 
         int foundCount = 0;
+        // One page-source fetch answers every existence and visibility check below
         for (String elementId : elementIds) {
-            WebElement element = safeFind(elementId, elementId);
+            PageSnapshot.Node element = snapshots.current().find(elementId);
             if (element != null) {
                 System.out.println("Found: " + elementId);
 
@@ -228,81 +290,78 @@ public class TestApp1TestNG {
     }
 
     @Test(priority = 6)
-    public void testSimpleWorkflow() throws InterruptedException {
+    @AppState(writes = {"counter", "text-input"})
+    public void testSimpleWorkflow() {
         System.out.println("\nTest 6: Simple Workflow Testing");
         System.out.println("Starting simple workflow...");
 
-        // Step 1: Clear and enter text
-        WebElement textInput = safeFind("text-input", "text input for workflow");
-        Assert.assertNotNull(textInput, "Text input should be available for workflow");
-
-        textInput.clear();
-        Thread.sleep(1000);
-
-        String workflowText = "Workflow Test v2 TestNG";
-        textInput.sendKeys(workflowText);
-        Thread.sleep(1000);
+        // All steps as one driver script next to the device (client-side if the server doesn't allow it)
+        StepBatch.Result workflow = new StepBatch(driver, "com.testapp1")
+            // Step 1: Clear and enter text
+            .type("text-input", "Workflow Test v2 TestNG")
+            // Step 2: Press test button
+            .click("test-button").dismissAlert()
+            // Step 3: Submit text
+            .click("submit-button").dismissAlert()
+            // Step 4: Verify final state
+            .readText("button-counter")
+            .readText("text-input")
+            .run();
+        System.out.println("Workflow: " + workflow.summary());
+
+        Assert.assertTrue(workflow.get(0).ok(), "Text input should be available for workflow");
         System.out.println("Step 1: Text entered for workflow");
 
-        // Step 2: Press test button
-        boolean buttonClicked = safeFindAndClick("test-button", "test button in workflow");
-        Assert.assertTrue(buttonClicked, "Test button should be clickable in workflow");
-        Thread.sleep(2000);
-        dismissAlertIfPresent();
+        Assert.assertTrue(workflow.get(1).ok(), "Test button should be clickable in workflow");
         System.out.println("Step 2: Test button pressed in workflow");
 
-        // Step 3: Submit text
-        boolean submitClicked = safeFindAndClick("submit-button", "submit button in workflow");
-        Assert.assertTrue(submitClicked, "Submit button should be clickable in workflow");
-        Thread.sleep(2000);
-        dismissAlertIfPresent();
+        Assert.assertTrue(workflow.get(3).ok(), "Submit button should be clickable in workflow");
         System.out.println("Step 3: Text submitted in workflow");
 
-        // Step 4: Verify final state
-        WebElement counter = safeFind("button-counter", "button counter final workflow");
-        if (counter != null) {
-            String finalCounterText = counter.getText();
+        if (workflow.get(5).ok()) {
+            String finalCounterText = workflow.get(5).text();
             System.out.println("Final counter state: " + finalCounterText);
             Assert.assertNotNull(finalCounterText, "Counter should have some text");
         }
 
-        String finalText = textInput.getAttribute("text");
-        if (finalText == null) finalText = textInput.getText();
-        System.out.println("Final text input: " + finalText);
+        System.out.println("Final text input: " + workflow.get(6).text());
 
         System.out.println("Simple workflow test finished successfully!");
     }
 
-    @AfterClass
+    @AfterClass(alwaysRun = true)
     public void tearDown() {
         System.out.println("\n==================================================");
         System.out.println("TestApp1 v2 TestNG Tests Completed!");
         System.out.println("==================================================");
+        if (probe != null) {
+            System.out.println("Probe stats: " + probe.summary());
+        }
 
         if (driver != null) {
-            driver.quit();
+            SessionPool.shared().release(driver);
         }
+        DeviceRegistry.shared().release(device);
+        System.out.println("Session pool: " + SessionPool.shared().summary());
         System.out.println("Test session ended successfully");
     }
 
     // Helper methods
     private WebElement safeFind(String elementId, String elementName) {
         try {
-            // Try method 1: XPath with resource-id (most reliable for v2)
-            return driver.findElement(AppiumBy.xpath("//*[@resource-id='" + elementId + "']"));
-        } catch (Exception e1) {
-            try {
-                // Try method 2: Direct ID
-                return driver.findElement(AppiumBy.id(elementId));
-            } catch (Exception e2) {
-                try {
-                    // Try method 3: Full resource-id format
-                    return driver.findElement(AppiumBy.id("com.testapp1:id/" + elementId));
-                } catch (Exception e3) {
-                    System.out.println("Could not find " + elementName);
-                    return null;
-                }
-            }
+            return locator.find(elementId);
+        } catch (NoSuchElementException | StaleElementReferenceException e) {
+            System.out.println("Could not find " + elementName);
+            return null;
+        }
+    }
+
+    private ElementHandle safeHandle(String elementId, String elementName) {
+        try {
+            return locator.handle(elementId);
+        } catch (NoSuchElementException | StaleElementReferenceException e) {
+            System.out.println("Could not find " + elementName);
+            return null;
         }
     }
 
@@ -315,36 +374,27 @@ public class TestApp1TestNG {
                 return true;
             }
             return false;
-        } catch (Exception e) {
+        } catch (NoSuchElementException | StaleElementReferenceException e) {
             System.out.println("Could not click " + elementName + ": " + e.getMessage());
             return false;
         }
     }
 
+    // Waits for the counter to move past previousText; returns the new text, or previousText on timeout
+    private String awaitCounterChange(String previousText) {
+        String updated = uiWait.until(UiWait.textChanged(COUNTER, previousText));
+        return updated != null ? updated : previousText;
+    }
+
     private boolean dismissAlertIfPresent() {
         try {
-            // Try different possible alert button selectors
-            List<String> alertSelectors = Arrays.asList(
-                "android:id/button1",  // OK button
-                "//*[@text='OK']",     // Text-based
-                "//*[@text='ok']"      // Lowercase
-            );
-
-            for (String selector : alertSelectors) {
-                try {
-                    WebElement alertButton;
-                    if (selector.startsWith("//")) {
-                        alertButton = driver.findElement(AppiumBy.xpath(selector));
-                    } else {
-                        alertButton = driver.findElement(AppiumBy.id(selector));
-                    }
-                    alertButton.click();
-                    System.out.println("Alert dismissed");
-                    Thread.sleep(500);
-                    return true;
-                } catch (Exception e) {
-                    // Continue to next selector
-                }
+            // One zero-wait probe covers the OK button id and both text variants
+            WebElement alertButton = probe.findFirst(UiWait.ALERT_BUTTON);
+            if (alertButton != null) {
+                alertButton.click();
+                System.out.println("Alert dismissed");
+                uiWait.until(UiWait.alertGone());
+                return true;
             }
 
             // If no button found, try pressing back key
@@ -353,7 +403,7 @@ public class TestApp1TestNG {
             System.out.println("Alert dismissed with back key");
             return true;
 
-        } catch (Exception e) {
+        } catch (NoSuchElementException | StaleElementReferenceException e) {
             System.out.println("No alert to dismiss");
             return false;
         }
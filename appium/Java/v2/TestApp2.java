@@ -1,11 +1,26 @@
 import io.appium.java_client.android.AndroidDriver;
 import io.appium.java_client.android.options.UiAutomator2Options;
 import io.appium.java_client.AppiumBy;
+import nativebridge.AdaptiveLocator;
+import nativebridge.CommandMetrics;
+import nativebridge.CompositeLocator;
+import nativebridge.DeviceRegistry;
+import nativebridge.ElementCache;
+import nativebridge.FailureArtifacts;
+import nativebridge.Gestures;
+import nativebridge.PageSnapshot;
+import nativebridge.Scroller;
+import nativebridge.SessionBreaker;
+import nativebridge.SessionPool;
+import nativebridge.SnapshotCache;
+import nativebridge.UiWait;
+import nativebridge.XPathTranslator;
+import org.openqa.selenium.By;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.StaleElementReferenceException;
 import org.openqa.selenium.WebElement;
-import org.openqa.selenium.interactions.PointerInput;
-import org.openqa.selenium.interactions.Sequence;
-import java.net.URL;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -18,6 +33,16 @@ import java.util.List;
 public class TestApp2 {
 
     private static AndroidDriver driver;
+    private static UiWait uiWait;
+    private static SnapshotCache snapshots;
+    private static ElementCache elements;
+    private static Scroller scroller;
+    private static AdaptiveLocator locator;
+    private static XPathTranslator xpath;
+    private static SessionBreaker breaker;
+
+    private static final By MODAL_TEXT = CompositeLocator.byResourceId("com.testapp2", "modal-text");
+    private static final By MAIN_SCROLL = CompositeLocator.byResourceId("com.testapp2", "main-scroll");
 
     public static void main(String[] args) throws Exception {
         System.out.println("Starting TestApp2 Tests (v2 Compatible)");
@@ -33,45 +58,72 @@ public class TestApp2 {
         options.setCapability("nativeWebScreenshot", true);
         options.setCapability("connectHardwareKeyboard", true);
 
-        driver = new AndroidDriver(
-            new URL("http://localhost:4723"),
-            options
+        CommandMetrics.install();
+        CommandMetrics.setCurrentTest("TestApp2.setUp");
+        driver = SessionPool.shared().acquire(
+            DeviceRegistry.defaultServerUrl(),
+            options,
+            "com.testapp2"
         );
 
         driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
+        uiWait = new UiWait(driver);
+        snapshots = new SnapshotCache(driver);
+        elements = new ElementCache(driver);
+        scroller = new Scroller(driver, "com.testapp2");
+        locator = new AdaptiveLocator(driver, "com.testapp2");
+        xpath = XPathTranslator.install(driver);
+        breaker = SessionBreaker.install(driver);
 
         try {
             System.out.println("Driver initialized successfully");
 
             // Test 1: App Launch Verification
+            CommandMetrics.setCurrentTest("TestApp2.testAppLaunch");
             testAppLaunch();
 
             // Test 2: Dropdowns
+            CommandMetrics.setCurrentTest("TestApp2.testDropdowns");
             testDropdowns();
 
             // Test 3: Switches
+            CommandMetrics.setCurrentTest("TestApp2.testSwitches");
             testSwitches();
 
             // Test 4: Modal Dialog
+            CommandMetrics.setCurrentTest("TestApp2.testModalDialog");
             testModalDialog();
 
             // Test 5: Scrolling
+            CommandMetrics.setCurrentTest("TestApp2.testScrolling");
             testScrolling();
 
             // Test 6: Simple Workflow
+            CommandMetrics.setCurrentTest("TestApp2.testSimpleWorkflow");
             testSimpleWorkflow();
 
+            // A dead session fails every step fast; report it as the run's cause, not as completion
+            breaker.check();
+
             System.out.println("\n==================================================");
             System.out.println("TestApp2 v2 Tests Completed!");
             System.out.println("==================================================");
+            System.out.println("Snapshot stats: " + snapshots.summary());
+            System.out.println("Element stats: " + elements.summary());
+            System.out.println(locator.stats().summary());
+            System.out.println(xpath.summary());
 
         } catch (Exception e) {
             System.err.println("Test failed: " + e.getMessage());
+            FailureArtifacts.shared().capture(driver, "TestApp2", e);
             e.printStackTrace();
         } finally {
+            CommandMetrics.setCurrentTest("TestApp2.tearDown");
             if (driver != null) {
-                driver.quit();
+                SessionPool.shared().release(driver);
             }
+            System.out.println(CommandMetrics.global().summary());
+            System.out.println("Command metrics written to " + CommandMetrics.global().export().toAbsolutePath());
             System.out.println("Test session ended successfully");
         }
     }
@@ -79,12 +131,14 @@ public class TestApp2 {
     private static void testAppLaunch() {
         try {
             WebElement appTitle = driver.findElement(AppiumBy.xpath("//*[@resource-id='app-title']"));
-            System.out.println("App title found: '" + appTitle.getText() + "'");
-            if (appTitle.getText().contains("Advanced Test App")) {
+            String titleText = elements.of(appTitle).text();
+            System.out.println("App title found: '" + titleText + "'");
+            if (titleText.contains("Advanced Test App")) {
                 System.out.println("App launch verification passed");
             }
         } catch (Exception e) {
             System.out.println("Could not verify app title: " + e.getMessage());
+            FailureArtifacts.shared().capture(driver, "TestApp2.testAppLaunch", e);
         }
     }
 
@@ -95,7 +149,7 @@ public class TestApp2 {
         System.out.println("Testing color dropdown...");
         if (safeFindAndClick("color-dropdown", "color dropdown")) {
             try {
-                Thread.sleep(1000);
+                uiWait.until(UiWait.visible(CompositeLocator.byResourceId("com.testapp2", "color-dropdown-option-0")));
                 // Look for Red option
                 try {
                     WebElement redOption = driver.findElement(AppiumBy.xpath("//*[contains(@text, 'Red')]"));
@@ -113,6 +167,7 @@ public class TestApp2 {
                 }
             } catch (Exception e) {
                 System.out.println("Color dropdown test failed: " + e.getMessage());
+                FailureArtifacts.shared().capture(driver, "TestApp2.testDropdowns", e);
             }
         }
 
@@ -120,7 +175,7 @@ public class TestApp2 {
         System.out.println("Testing size dropdown...");
         if (safeFindAndClick("size-dropdown", "size dropdown")) {
             try {
-                Thread.sleep(1000);
+                uiWait.until(UiWait.visible(CompositeLocator.byResourceId("com.testapp2", "size-dropdown-option-0")));
                 // Look for Medium option
                 try {
                     WebElement mediumOption = driver.findElement(AppiumBy.xpath("//*[contains(@text, 'Medium')]"));
@@ -138,6 +193,7 @@ public class TestApp2 {
                 }
             } catch (Exception e) {
                 System.out.println("Size dropdown test failed: " + e.getMessage());
+                FailureArtifacts.shared().capture(driver, "TestApp2.testDropdowns", e);
             }
         }
 
@@ -168,16 +224,15 @@ public class TestApp2 {
             List<WebElement> switches = driver.findElements(AppiumBy.className("android.widget.Switch"));
             System.out.println("Found " + switches.size() + " switches");
 
+            // First two switches in one actions request
+            toggleAll(switches.subList(0, Math.min(2, switches.size())));
+
             if (switches.size() >= 1) {
-                switches.get(0).click();
                 System.out.println("Clicked first switch (notifications)");
-                Thread.sleep(1000);
             }
 
             if (switches.size() >= 2) {
-                switches.get(1).click();
                 System.out.println("Clicked second switch (dark mode)");
-                Thread.sleep(1000);
             }
 
             // Check switch status
@@ -197,6 +252,7 @@ public class TestApp2 {
 
         } catch (Exception e) {
             System.out.println("Switch test failed: " + e.getMessage());
+            FailureArtifacts.shared().capture(driver, "TestApp2.testSwitches", e);
         }
     }
 
@@ -204,12 +260,8 @@ public class TestApp2 {
         System.out.println("\nTesting Slider Elements...");
 
         try {
-            // Scroll down to slider area using W3C Actions
-            performSwipe(500, 900, 500, 600, 800);
-            Thread.sleep(1000);
-
-            // Find slider container to confirm it exists
-            WebElement sliderContainer = safeFind("volume-slider", "slider container");
+            // Scroll the slider area into view and find the container in one request
+            WebElement sliderContainer = safeFind("volume-slider", "slider container", true);
             if (sliderContainer != null) {
                 System.out.println("Found slider container");
             }
@@ -233,6 +285,7 @@ public class TestApp2 {
 
         } catch (Exception e) {
             System.out.println("Slider test failed: " + e.getMessage());
+            FailureArtifacts.shared().capture(driver, "TestApp2.testSliderElements", e);
         }
     }
 
@@ -240,26 +293,24 @@ public class TestApp2 {
         System.out.println("\nTesting Modal Dialog...");
 
         try {
-            // Scroll down to ensure modal button is visible
-            performSwipe(500, 1000, 500, 300, 1000);
-            Thread.sleep(1000);
-
-            // Find and click modal button
-            if (safeFindAndClick("show-modal-button", "modal button")) {
+            // Scroll the modal button into view, then click it
+            if (safeFindAndClick("show-modal-button", "modal button", true)) {
                 System.out.println("Opened modal");
-                Thread.sleep(2000);
+                uiWait.until(UiWait.visible(MODAL_TEXT));
 
                 // Look for modal content
                 try {
                     WebElement modalText = safeFind("modal-text", "modal text");
-                    if (modalText != null && modalText.isDisplayed()) {
+                    // Text is only read if the modal is showing
+                    ElementCache.Snapshot modal = modalText != null ? elements.of(modalText) : null;
+                    if (modal != null && modal.isDisplayed()) {
                         System.out.println("Modal content is visible");
-                        System.out.println("Modal text: " + modalText.getText());
+                        System.out.println("Modal text: " + modal.text());
 
                         // Close modal
                         if (safeFindAndClick("close-modal-button", "close modal button")) {
                             System.out.println("Closed modal");
-                            Thread.sleep(1000);
+                            uiWait.until(UiWait.gone(MODAL_TEXT));
                         }
                     } else {
                         System.out.println("Modal content not visible");
@@ -273,6 +324,7 @@ public class TestApp2 {
             }
         } catch (Exception e) {
             System.out.println("Modal test failed: " + e.getMessage());
+            FailureArtifacts.shared().capture(driver, "TestApp2.testModalDialog", e);
         }
     }
 
@@ -280,18 +332,19 @@ public class TestApp2 {
         System.out.println("\nTesting Scrolling...");
 
         try {
-            // Scroll down using W3C Actions
-            performSwipe(500, 1000, 500, 300, 1000);
-            Thread.sleep(1000);
-
-            // Scroll back up
-            performSwipe(500, 300, 500, 1000, 1000);
-            Thread.sleep(1000);
+            // Scroll down and back up in one actions request; the pause lets the fling die down on the device
+            new Gestures(driver)
+                .swipeFraction(0.5, 0.7, 0.5, 0.25, 1000)
+                .pause(500)
+                .swipeFraction(0.5, 0.25, 0.5, 0.7, 1000)
+                .perform();
+            uiWait.until(UiWait.screenSettled(MAIN_SCROLL));
 
             System.out.println("Scrolling gestures completed");
 
         } catch (Exception e) {
             System.out.println("Scrolling failed: " + e.getMessage());
+            FailureArtifacts.shared().capture(driver, "TestApp2.testScrolling", e);
         }
     }
 
@@ -306,42 +359,26 @@ public class TestApp2 {
 
         int foundCount = 0;
         // Reset scroll position first
-        performSwipe(500, 500, 500, 1000, 1000);
-        try { Thread.sleep(1000); } catch (Exception e) {}
+        scroller.scrollToTop();
 
+        // Served from one page-source snapshot; a scroll invalidates it, so the next check sees the new screen
         for (String elementId : elementIds) {
-            WebElement element = safeFind(elementId, elementId);
+            PageSnapshot.Node element = snapshots.current().find(elementId);
             if (element != null) {
                 System.out.println("Found: " + elementId);
                 foundCount++;
+            } else if (scroller.scrollIntoView(elementId) != null) {
+                // Off screen: the server scrolled until it showed up
+                System.out.println("Found: " + elementId + " (after scroll)");
+                foundCount++;
             } else {
-                // Try scrolling down and checking again
-                performSwipe(500, 900, 500, 600, 500);
-                try { Thread.sleep(500); } catch (Exception e) {}
-                element = safeFind(elementId, elementId);
-                if (element != null) {
-                    System.out.println("Found: " + elementId + " (after scroll)");
-                    foundCount++;
-                } else {
-                    // Try one more scroll for elements that might be further down
-                    performSwipe(500, 900, 500, 400, 500);
-                    try { Thread.sleep(500); } catch (Exception e) {}
-                    element = safeFind(elementId, elementId);
-                    if (element != null) {
-                        System.out.println("Found: " + elementId + " (after deep scroll)");
-                        foundCount++;
-                    } else {
-                        System.out.println("Missing: " + elementId);
-                    }
-                }
+                System.out.println("Missing: " + elementId);
             }
         }
 
         // Separately test modal button which is known to be at the bottom
         try {
-            performSwipe(500, 1000, 500, 300, 1000);
-            try { Thread.sleep(1000); } catch (Exception e) {}
-            WebElement modalButton = safeFind("show-modal-button", "show-modal-button");
+            WebElement modalButton = scroller.scrollIntoView("show-modal-button");
             if (modalButton != null) {
                 System.out.println("Found: show-modal-button (at bottom)");
                 foundCount++;
@@ -364,15 +401,13 @@ public class TestApp2 {
 
         try {
             // Reset to top of screen
-            performSwipe(500, 500, 500, 1000, 1000);
-            Thread.sleep(2000);
+            scroller.scrollToTop();
 
             // 1. Toggle a switch
             List<WebElement> switches = driver.findElements(AppiumBy.className("android.widget.Switch"));
             if (!switches.isEmpty()) {
-                switches.get(0).click();
+                toggleAll(switches.subList(0, 1));
                 System.out.println("Toggled notifications in workflow");
-                Thread.sleep(1000);
             }
 
             // 2. Check switch status
@@ -388,16 +423,13 @@ public class TestApp2 {
             // 3. Show and close modal
             try {
                 // Scroll to modal button
-                performSwipe(500, 1000, 500, 300, 1000);
-                Thread.sleep(1000);
-
-                if (safeFindAndClick("show-modal-button", "modal button in workflow")) {
+                if (safeFindAndClick("show-modal-button", "modal button in workflow", true)) {
                     System.out.println("Opened modal in workflow");
-                    Thread.sleep(2000);
+                    uiWait.until(UiWait.visible(MODAL_TEXT));
 
                     if (safeFindAndClick("close-modal-button", "close modal button in workflow")) {
                         System.out.println("Closed modal in workflow");
-                        Thread.sleep(1000);
+                        uiWait.until(UiWait.gone(MODAL_TEXT));
                     }
                 }
 
@@ -409,6 +441,7 @@ public class TestApp2 {
 
         } catch (Exception e) {
             System.out.println("Workflow failed: " + e.getMessage());
+            FailureArtifacts.shared().capture(driver, "TestApp2.testSimpleWorkflow", e);
         }
     }
 
@@ -418,29 +451,22 @@ public class TestApp2 {
 
     private static WebElement safeFind(String elementId, String elementName, boolean scrollFirst) {
         if (scrollFirst) {
-            performSwipe(500, 1000, 500, 500, 800);
-            try { Thread.sleep(1000); } catch (Exception e) {}
+            // One UiScrollable lookup scrolls until the element shows or the content ends
+            WebElement element = scroller.scrollIntoView(elementId);
+            if (element == null && !elementId.equals("show-modal-button")) {
+                System.out.println("Could not find " + elementName);
+            }
+            return element;
         }
 
         try {
-            // Try method 1: XPath with resource-id (most reliable for v2)
-            return driver.findElement(AppiumBy.xpath("//*[@resource-id='" + elementId + "']"));
-        } catch (Exception e1) {
-            try {
-                // Try method 2: Direct ID
-                return driver.findElement(AppiumBy.id(elementId));
-            } catch (Exception e2) {
-                try {
-                    // Try method 3: Full resource-id format
-                    return driver.findElement(AppiumBy.id("com.testapp2:id/" + elementId));
-                } catch (Exception e3) {
-                    // Only print error for non-modal elements to reduce noise
-                    if (!elementId.equals("show-modal-button")) {
-                        System.out.println("Could not find " + elementName);
-                    }
-                    return null;
-                }
+            return locator.find(elementId);
+        } catch (NoSuchElementException | StaleElementReferenceException e) {
+            // Only print error for non-modal elements to reduce noise
+            if (!elementId.equals("show-modal-button")) {
+                System.out.println("Could not find " + elementName);
             }
+            return null;
         }
     }
 
@@ -457,22 +483,23 @@ public class TestApp2 {
                 return true;
             }
             return false;
-        } catch (Exception e) {
+        } catch (NoSuchElementException | StaleElementReferenceException e) {
             System.out.println("Could not click " + elementName + ": " + e.getMessage());
             return false;
         }
     }
 
-    private static void performSwipe(int startX, int startY, int endX, int endY, int durationMs) {
-        PointerInput finger = new PointerInput(PointerInput.Kind.TOUCH, "finger");
-        Sequence swipe = new Sequence(finger, 1);
-        swipe.addAction(finger.createPointerMove(Duration.ofMillis(0),
-            PointerInput.Origin.viewport(), startX, startY));
-        swipe.addAction(finger.createPointerDown(PointerInput.MouseButton.LEFT.asArg()));
-        swipe.addAction(finger.createPointerMove(Duration.ofMillis(durationMs),
-            PointerInput.Origin.viewport(), endX, endY));
-        swipe.addAction(finger.createPointerUp(PointerInput.MouseButton.LEFT.asArg()));
-
-        driver.perform(Collections.singletonList(swipe));
+    // Taps the switches in one actions request, then waits until each checked state flips
+    private static void toggleAll(List<WebElement> toggles) {
+        List<String> checked = new ArrayList<>();
+        Gestures taps = new Gestures(driver);
+        for (WebElement toggle : toggles) {
+            checked.add(toggle.getAttribute("checked"));
+            taps.tap(toggle);
+        }
+        taps.perform();
+        for (int i = 0; i < toggles.size(); i++) {
+            uiWait.until(UiWait.attributeChanged(toggles.get(i), "checked", checked.get(i)));
+        }
     }
 }
\ No newline at end of file
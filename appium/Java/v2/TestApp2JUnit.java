@@ -1,27 +1,60 @@
 import io.appium.java_client.android.AndroidDriver;
 import io.appium.java_client.android.options.UiAutomator2Options;
 import io.appium.java_client.AppiumBy;
+import nativebridge.AdaptiveLocator;
+import nativebridge.CommandMetricsListener;
+import nativebridge.CompositeLocator;
+import nativebridge.DeviceRegistry;
+import nativebridge.DeviceSharding;
+import nativebridge.ElementCache;
+import nativebridge.FailureArtifacts;
+import nativebridge.FailureArtifactsListener;
+import nativebridge.Gestures;
+import nativebridge.HistoryScheduler;
+import nativebridge.PrepareSession;
+import nativebridge.Scroller;
+import nativebridge.SessionBreaker;
+import nativebridge.SessionPool;
+import nativebridge.UiWait;
+import nativebridge.XPathTranslator;
+import org.openqa.selenium.By;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.StaleElementReferenceException;
 import org.openqa.selenium.WebElement;
-import org.openqa.selenium.interactions.PointerInput;
-import org.openqa.selenium.interactions.Sequence;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
 
-import java.net.URL;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
-@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@ExtendWith({DeviceSharding.class, HistoryScheduler.class, CommandMetricsListener.class, FailureArtifactsListener.class})
+@TestMethodOrder(HistoryScheduler.class)
 public class TestApp2JUnit {
 
     private AndroidDriver driver;
+    private DeviceRegistry.Device device;
+    private UiWait uiWait;
+    private ElementCache elements;
+    private Scroller scroller;
+    private AdaptiveLocator locator;
+    private XPathTranslator xpath;
+    private SessionBreaker breaker;
+
+    private static final By MODAL_TEXT = CompositeLocator.byResourceId("com.testapp2", "modal-text");
+    private static final By MAIN_SCROLL = CompositeLocator.byResourceId("com.testapp2", "main-scroll");
+
+    // JUnit has no @BeforeSuite; HistoryScheduler runs this once the class order
+    // is known, so the session is prepared while the classes before this one run
+    @PrepareSession
+    static void prepareSession() {
+        SessionPool.shared().prepare(DeviceRegistry.shared(), options(), "com.testapp2");
+    }
 
-    @BeforeAll
-    void setUp() throws Exception {
-        System.out.println("Starting TestApp2 JUnit Tests");
-
+    private static UiAutomator2Options options() {
         UiAutomator2Options options = new UiAutomator2Options();
         options.setPlatformName("Android");
         options.setAutomationName("UiAutomator2");
@@ -31,9 +64,29 @@ public class TestApp2JUnit {
         options.setCapability("ensureWebviewsHavePages", true);
         options.setCapability("nativeWebScreenshot", true);
         options.setCapability("connectHardwareKeyboard", true);
+        return options;
+    }
+
+    @BeforeAll
+    void setUp() throws Exception {
+        System.out.println("Starting TestApp2 JUnit Tests");
+
+        UiAutomator2Options options = options();
 
-        driver = new AndroidDriver(new URL("http://localhost:4723"), options);
+        // One device per worker thread, so parallel classes never share a device
+        device = DeviceRegistry.shared().acquire();
+        device.applyTo(options);
+        System.out.println("Running on " + device);
+
+        driver = SessionPool.shared().acquire(device.serverUrl(), options, "com.testapp2");
         driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
+        uiWait = new UiWait(driver);
+        elements = new ElementCache(driver);
+        scroller = new Scroller(driver, "com.testapp2");
+        locator = new AdaptiveLocator(driver, "com.testapp2");
+        xpath = XPathTranslator.install(driver);
+        breaker = SessionBreaker.install(driver);
+        FailureArtifacts.install(driver);
         System.out.println("Driver initialized successfully");
     }
 
@@ -52,17 +105,16 @@ public class TestApp2JUnit {
 
     @Test
     @Order(2)
-    void testDropdowns() throws InterruptedException {
+    void testDropdowns() {
         System.out.println("Test 2: Testing Dropdowns");
 
-        performSwipe(500, 500, 500, 1000, 1000);
-        Thread.sleep(1000);
+        scroller.scrollToTop();
 
         System.out.println("Testing color dropdown");
         boolean colorDropdownClicked = safeFindAndClick("color-dropdown", "color dropdown");
         Assertions.assertTrue(colorDropdownClicked, "Color dropdown should be clickable");
 
-        Thread.sleep(1000);
+        uiWait.until(UiWait.visible(CompositeLocator.byResourceId("com.testapp2", "color-dropdown-option-0")));
         boolean redOptionSelected = false;
         try {
             WebElement redOption = driver.findElement(AppiumBy.xpath("//*[contains(@text, 'Red')]"));
@@ -84,7 +136,7 @@ public class TestApp2JUnit {
         boolean sizeDropdownClicked = safeFindAndClick("size-dropdown", "size dropdown");
         Assertions.assertTrue(sizeDropdownClicked, "Size dropdown should be clickable");
 
-        Thread.sleep(1000);
+        uiWait.until(UiWait.visible(CompositeLocator.byResourceId("com.testapp2", "size-dropdown-option-0")));
         boolean mediumOptionSelected = false;
         try {
             WebElement mediumOption = driver.findElement(AppiumBy.xpath("//*[contains(@text, 'Medium')]"));
@@ -119,7 +171,7 @@ public class TestApp2JUnit {
 
     @Test
     @Order(3)
-    void testSwitches() throws InterruptedException {
+    void testSwitches() {
         System.out.println("Test 3: Testing Switches");
 
         List<WebElement> switches = driver.findElements(AppiumBy.className("android.widget.Switch"));
@@ -127,17 +179,16 @@ public class TestApp2JUnit {
         Assertions.assertTrue(switches.size() >= 1, "Should find at least 1 switch");
 
         boolean switchClicked = false;
+        // First two switches in one actions request
+        toggleAll(switches.subList(0, Math.min(2, switches.size())));
+
         if (switches.size() >= 1) {
-            switches.get(0).click();
             System.out.println("Clicked first switch");
-            Thread.sleep(1000);
             switchClicked = true;
         }
 
         if (switches.size() >= 2) {
-            switches.get(1).click();
             System.out.println("Clicked second switch");
-            Thread.sleep(1000);
             switchClicked = true;
         }
 
@@ -156,27 +207,26 @@ public class TestApp2JUnit {
 
     @Test
     @Order(4)
-    void testModalDialog() throws InterruptedException {
+    void testModalDialog() {
         System.out.println("Test 4: Testing Modal Dialog");
 
-        performSwipe(500, 1000, 500, 300, 1000);
-        Thread.sleep(1000);
-
-        boolean modalOpened = safeFindAndClick("show-modal-button", "modal button");
+        boolean modalOpened = safeFindAndClick("show-modal-button", "modal button", true);
         Assertions.assertTrue(modalOpened, "Modal button should be clickable");
         System.out.println("Opened modal");
-        Thread.sleep(2000);
+        uiWait.until(UiWait.visible(MODAL_TEXT));
 
         WebElement modalText = safeFind("modal-text", "modal text");
 
-        if (modalText != null && modalText.isDisplayed()) {
+        // Text is only read if the modal is showing
+        ElementCache.Snapshot modal = modalText != null ? elements.of(modalText) : null;
+        if (modal != null && modal.isDisplayed()) {
             System.out.println("Modal content is visible");
-            System.out.println("Modal text: " + modalText.getText());
+            System.out.println("Modal text: " + modal.text());
 
             boolean modalClosed = safeFindAndClick("close-modal-button", "close modal button");
             if (modalClosed) {
                 System.out.println("Closed modal");
-                Thread.sleep(1000);
+                uiWait.until(UiWait.gone(MODAL_TEXT));
             } else {
                 driver.executeScript("mobile: pressKey", Collections.singletonMap("keycode", 4));
                 System.out.println("Closed modal with back button");
@@ -191,14 +241,17 @@ public class TestApp2JUnit {
 
     @Test
     @Order(5)
-    void testScrolling() throws InterruptedException {
+    void testScrolling() {
         System.out.println("Test 5: Testing Scrolling");
 
         Assertions.assertDoesNotThrow(() -> {
-            performSwipe(500, 1000, 500, 300, 1000);
-            Thread.sleep(1000);
-            performSwipe(500, 300, 500, 1000, 1000);
-            Thread.sleep(1000);
+            // Scroll down and back up in one actions request; the pause lets the fling die down on the device
+            new Gestures(driver)
+                .swipeFraction(0.5, 0.7, 0.5, 0.25, 1000)
+                .pause(500)
+                .swipeFraction(0.5, 0.25, 0.5, 0.7, 1000)
+                .perform();
+            uiWait.until(UiWait.screenSettled(MAIN_SCROLL));
         }, "Scrolling gestures should not throw exceptions");
 
         System.out.println("Scrolling gestures completed");
@@ -206,18 +259,16 @@ public class TestApp2JUnit {
 
     @Test
     @Order(6)
-    void testSimpleWorkflow() throws InterruptedException {
+    void testSimpleWorkflow() {
         System.out.println("Test 6: Testing Simple Workflow");
 
-        performSwipe(500, 500, 500, 1000, 1000);
-        Thread.sleep(2000);
+        scroller.scrollToTop();
 
         List<WebElement> switches = driver.findElements(AppiumBy.className("android.widget.Switch"));
         boolean switchToggled = false;
         if (!switches.isEmpty()) {
-            switches.get(0).click();
+            toggleAll(switches.subList(0, 1));
             System.out.println("Toggled notifications in workflow");
-            Thread.sleep(1000);
             switchToggled = true;
         }
         Assertions.assertTrue(switchToggled, "Should be able to toggle a switch in workflow");
@@ -229,16 +280,13 @@ public class TestApp2JUnit {
         }
 
         try {
-            performSwipe(500, 1000, 500, 300, 1000);
-            Thread.sleep(1000);
-
-            if (safeFindAndClick("show-modal-button", "modal button in workflow")) {
+            if (safeFindAndClick("show-modal-button", "modal button in workflow", true)) {
                 System.out.println("Opened modal in workflow");
-                Thread.sleep(2000);
+                uiWait.until(UiWait.visible(MODAL_TEXT));
 
                 if (safeFindAndClick("close-modal-button", "close modal button in workflow")) {
                     System.out.println("Closed modal in workflow");
-                    Thread.sleep(1000);
+                    uiWait.until(UiWait.gone(MODAL_TEXT));
                 }
             }
         } catch (Exception e) {
@@ -252,8 +300,10 @@ public class TestApp2JUnit {
     void tearDown() {
         System.out.println("TestApp2 v2 JUnit Tests Completed");
         if (driver != null) {
-            driver.quit();
+            SessionPool.shared().release(driver);
         }
+        DeviceRegistry.shared().release(device);
+        System.out.println("Session pool: " + SessionPool.shared().summary());
         System.out.println("Test session ended successfully");
     }
 
@@ -263,29 +313,21 @@ public class TestApp2JUnit {
 
     private WebElement safeFind(String elementId, String elementName, boolean scrollFirst) {
         if (scrollFirst) {
-            performSwipe(500, 1000, 500, 500, 800);
-            try {
-                Thread.sleep(1000);
-            } catch (Exception e) {
-                // ignore
+            // One UiScrollable lookup scrolls until the element shows or the content ends
+            WebElement element = scroller.scrollIntoView(elementId);
+            if (element == null && !elementId.equals("show-modal-button")) {
+                System.out.println("Could not find " + elementName);
             }
+            return element;
         }
 
         try {
-            return driver.findElement(AppiumBy.xpath("//*[@resource-id='" + elementId + "']"));
-        } catch (Exception e1) {
-            try {
-                return driver.findElement(AppiumBy.id(elementId));
-            } catch (Exception e2) {
-                try {
-                    return driver.findElement(AppiumBy.id("com.testapp2:id/" + elementId));
-                } catch (Exception e3) {
-                    if (!elementId.equals("show-modal-button")) {
-                        System.out.println("Could not find " + elementName);
-                    }
-                    return null;
-                }
+            return locator.find(elementId);
+        } catch (NoSuchElementException | StaleElementReferenceException e) {
+            if (!elementId.equals("show-modal-button")) {
+                System.out.println("Could not find " + elementName);
             }
+            return null;
         }
     }
 
@@ -302,19 +344,23 @@ public class TestApp2JUnit {
                 return true;
             }
             return false;
-        } catch (Exception e) {
+        } catch (NoSuchElementException | StaleElementReferenceException e) {
             System.out.println("Could not click " + elementName + ": " + e.getMessage());
             return false;
         }
     }
 
-    private void performSwipe(int startX, int startY, int endX, int endY, int durationMs) {
-        PointerInput finger = new PointerInput(PointerInput.Kind.TOUCH, "finger");
-        Sequence swipe = new Sequence(finger, 1);
-        swipe.addAction(finger.createPointerMove(Duration.ofMillis(0), PointerInput.Origin.viewport(), startX, startY));
-        swipe.addAction(finger.createPointerDown(PointerInput.MouseButton.LEFT.asArg()));
-        swipe.addAction(finger.createPointerMove(Duration.ofMillis(durationMs), PointerInput.Origin.viewport(), endX, endY));
-        swipe.addAction(finger.createPointerUp(PointerInput.MouseButton.LEFT.asArg()));
-        driver.perform(Collections.singletonList(swipe));
+    // Taps the switches in one actions request, then waits until each checked state flips
+    private void toggleAll(List<WebElement> toggles) {
+        List<String> checked = new ArrayList<>();
+        Gestures taps = new Gestures(driver);
+        for (WebElement toggle : toggles) {
+            checked.add(toggle.getAttribute("checked"));
+            taps.tap(toggle);
+        }
+        taps.perform();
+        for (int i = 0; i < toggles.size(); i++) {
+            uiWait.until(UiWait.attributeChanged(toggles.get(i), "checked", checked.get(i)));
+        }
     }
 }
\ No newline at end of file
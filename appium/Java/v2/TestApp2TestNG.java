@@ -1,14 +1,28 @@
 import io.appium.java_client.android.AndroidDriver;
 import io.appium.java_client.android.options.UiAutomator2Options;
 import io.appium.java_client.AppiumBy;
+import nativebridge.AdaptiveLocator;
+import nativebridge.AppState;
+import nativebridge.CompositeLocator;
+import nativebridge.DeviceRegistry;
+import nativebridge.ElementCache;
+import nativebridge.FailureArtifacts;
+import nativebridge.Gestures;
+import nativebridge.Scroller;
+import nativebridge.SessionBreaker;
+import nativebridge.SessionPool;
+import nativebridge.TestGraph;
+import nativebridge.UiWait;
+import nativebridge.XPathTranslator;
+import org.openqa.selenium.By;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.StaleElementReferenceException;
 import org.openqa.selenium.WebElement;
-import org.openqa.selenium.interactions.PointerInput;
-import org.openqa.selenium.interactions.Sequence;
 import org.testng.annotations.*;
 import org.testng.Assert;
 
-import java.net.URL;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -21,12 +35,37 @@ import java.util.List;
 public class TestApp2TestNG {
 
     private AndroidDriver driver;
+    private DeviceRegistry.Device device;
+    private UiWait uiWait;
+    private ElementCache elements;
+    private Scroller scroller;
+    private AdaptiveLocator locator;
+    private XPathTranslator xpath;
+    private SessionBreaker breaker;
 
-    @BeforeClass
-    public void setUp() throws Exception {
-        System.out.println("Starting TestApp2 TestNG Tests (v2 Compatible)");
-        System.out.println("==================================================");
+    private static final By MODAL_TEXT = CompositeLocator.byResourceId("com.testapp2", "modal-text");
+    private static final By MAIN_SCROLL = CompositeLocator.byResourceId("com.testapp2", "main-scroll");
 
+    private final TestGraph.Lane lane;
+
+    public TestApp2TestNG(TestGraph.Lane lane) {
+        this.lane = lane;
+    }
+
+    // One instance per lane of independent methods, each on its own device
+    @Factory
+    public static Object[] lanes() {
+        return TestGraph.instances(TestApp2TestNG.class, TestApp2TestNG::new);
+    }
+
+    // Every class's @BeforeSuite runs before the first class starts, so the
+    // session for this one is prepared while the classes before it run
+    @BeforeSuite
+    public void prepareSession() {
+        SessionPool.shared().prepare(DeviceRegistry.shared(), options(), "com.testapp2");
+    }
+
+    private static UiAutomator2Options options() {
         UiAutomator2Options options = new UiAutomator2Options();
         options.setPlatformName("Android");
         options.setAutomationName("UiAutomator2");
@@ -36,17 +75,36 @@ public class TestApp2TestNG {
         options.setCapability("ensureWebviewsHavePages", true);
         options.setCapability("nativeWebScreenshot", true);
         options.setCapability("connectHardwareKeyboard", true);
+        return options;
+    }
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        System.out.println("Starting TestApp2 TestNG Tests (v2 Compatible)");
+        System.out.println("==================================================");
+
+        UiAutomator2Options options = options();
+
+        // One device per worker thread, so parallel classes never share a device
+        device = DeviceRegistry.shared().acquire();
+        device.applyTo(options);
+        System.out.println("Running " + lane + " on " + device);
 
-        driver = new AndroidDriver(
-            new URL("http://localhost:4723"),
-            options
-        );
+        driver = SessionPool.shared().acquire(device.serverUrl(), options, "com.testapp2");
 
         driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
+        uiWait = new UiWait(driver);
+        elements = new ElementCache(driver);
+        scroller = new Scroller(driver, "com.testapp2");
+        locator = new AdaptiveLocator(driver, "com.testapp2");
+        xpath = XPathTranslator.install(driver);
+        breaker = SessionBreaker.install(driver);
+        FailureArtifacts.install(driver);
         System.out.println("Driver initialized successfully");
     }
 
     @Test(priority = 1)
+    @AppState
     public void testAppLaunch() {
         System.out.println("\nTest 1: App Launch Verification");
         WebElement appTitle = driver.findElement(AppiumBy.xpath("//*[@resource-id='app-title']"));
@@ -60,7 +118,8 @@ public class TestApp2TestNG {
     }
 
     @Test(priority = 2)
-    public void testDropdowns() throws InterruptedException {
+    @AppState(writes = "dropdowns")
+    public void testDropdowns() {
         System.out.println("\nTest 2: Testing Dropdowns...");
 
         // Test color dropdown
@@ -68,7 +127,7 @@ public class TestApp2TestNG {
         boolean colorDropdownClicked = safeFindAndClick("color-dropdown", "color dropdown");
         Assert.assertTrue(colorDropdownClicked, "Color dropdown should be clickable");
 
-        Thread.sleep(1000);
+        uiWait.until(UiWait.visible(CompositeLocator.byResourceId("com.testapp2", "color-dropdown-option-0")));
         // Look for Red option
         boolean redOptionSelected = false;
         try {
@@ -93,7 +152,7 @@ public class TestApp2TestNG {
         boolean sizeDropdownClicked = safeFindAndClick("size-dropdown", "size dropdown");
         Assert.assertTrue(sizeDropdownClicked, "Size dropdown should be clickable");
 
-        Thread.sleep(1000);
+        uiWait.until(UiWait.visible(CompositeLocator.byResourceId("com.testapp2", "size-dropdown-option-0")));
         // Look for Medium option
         boolean mediumOptionSelected = false;
         try {
@@ -134,7 +193,8 @@ public class TestApp2TestNG {
     }
 
     @Test(priority = 3)
-    public void testSwitches() throws InterruptedException {
+    @AppState(writes = "switches")
+    public void testSwitches() {
         System.out.println("\nTest 3: Testing Switches...");
 
         // Find switches by class name
@@ -143,17 +203,16 @@ public class TestApp2TestNG {
         Assert.assertTrue(switches.size() >= 1, "Should find at least 1 switch");
 
         boolean switchClicked = false;
+        // First two switches in one actions request
+        toggleAll(switches.subList(0, Math.min(2, switches.size())));
+
         if (switches.size() >= 1) {
-            switches.get(0).click();
             System.out.println("Clicked first switch (notifications)");
-            Thread.sleep(1000);
             switchClicked = true;
         }
 
         if (switches.size() >= 2) {
-            switches.get(1).click();
             System.out.println("Clicked second switch (dark mode)");
-            Thread.sleep(1000);
             switchClicked = true;
         }
 
@@ -173,33 +232,32 @@ public class TestApp2TestNG {
     }
 
     @Test(priority = 4)
-    public void testModalDialog() throws InterruptedException {
+    @AppState(writes = {"modal", "scroll"})
+    public void testModalDialog() {
         System.out.println("\nTest 4: Testing Modal Dialog...");
 
-        // Scroll down to ensure modal button is visible
-        performSwipe(500, 1000, 500, 300, 1000);
-        Thread.sleep(1000);
-
-        // Find and click modal button
-        boolean modalOpened = safeFindAndClick("show-modal-button", "modal button");
+        // Scroll the modal button into view, then click it
+        boolean modalOpened = safeFindAndClick("show-modal-button", "modal button", true);
         Assert.assertTrue(modalOpened, "Modal button should be clickable");
         System.out.println("Opened modal");
-        Thread.sleep(2000);
+        uiWait.until(UiWait.visible(MODAL_TEXT));
 
         // Look for modal content
         WebElement modalText = safeFind("modal-text", "modal text");
         boolean modalContentVisible = false;
 
-        if (modalText != null && modalText.isDisplayed()) {
+        // Text is only read if the modal is showing
+        ElementCache.Snapshot modal = modalText != null ? elements.of(modalText) : null;
+        if (modal != null && modal.isDisplayed()) {
             System.out.println("Modal content is visible");
-            System.out.println("Modal text: " + modalText.getText());
+            System.out.println("Modal text: " + modal.text());
             modalContentVisible = true;
 
             // Close modal
             boolean modalClosed = safeFindAndClick("close-modal-button", "close modal button");
             if (modalClosed) {
                 System.out.println("Closed modal");
-                Thread.sleep(1000);
+                uiWait.until(UiWait.gone(MODAL_TEXT));
             } else {
                 // Try to close with back button
                 driver.executeScript("mobile: pressKey",
@@ -218,18 +276,19 @@ public class TestApp2TestNG {
     }
 
     @Test(priority = 5)
-    public void testScrolling() throws InterruptedException {
+    @AppState(writes = "scroll")
+    public void testScrolling() {
         System.out.println("\nTest 5: Testing Scrolling...");
 
         // Test scrolling gestures
         try {
-            // Scroll down using W3C Actions
-            performSwipe(500, 1000, 500, 300, 1000);
-            Thread.sleep(1000);
-
-            // Scroll back up
-            performSwipe(500, 300, 500, 1000, 1000);
-            Thread.sleep(1000);
+            // Scroll down and back up in one actions request; the pause lets the fling die down on the device
+            new Gestures(driver)
+                .swipeFraction(0.5, 0.7, 0.5, 0.25, 1000)
+                .pause(500)
+                .swipeFraction(0.5, 0.25, 0.5, 0.7, 1000)
+                .perform();
+            uiWait.until(UiWait.screenSettled(MAIN_SCROLL));
 
             System.out.println("Scrolling gestures completed");
         } catch (Exception e) {
@@ -238,20 +297,19 @@ public class TestApp2TestNG {
     }
 
     @Test(priority = 6)
-    public void testSimpleWorkflow() throws InterruptedException {
+    @AppState(writes = {"switches", "modal", "scroll"})
+    public void testSimpleWorkflow() {
         System.out.println("\nTest 6: Testing Simple Workflow...");
 
         // Reset to top of screen
-        performSwipe(500, 500, 500, 1000, 1000);
-        Thread.sleep(2000);
+        scroller.scrollToTop();
 
         // 1. Toggle a switch
         List<WebElement> switches = driver.findElements(AppiumBy.className("android.widget.Switch"));
         boolean switchToggled = false;
         if (!switches.isEmpty()) {
-            switches.get(0).click();
+            toggleAll(switches.subList(0, 1));
             System.out.println("Toggled notifications in workflow");
-            Thread.sleep(1000);
             switchToggled = true;
         }
         Assert.assertTrue(switchToggled, "Should be able to toggle a switch in workflow");
@@ -268,16 +326,13 @@ public class TestApp2TestNG {
         boolean modalWorkflowSuccess = false;
         try {
             // Scroll to modal button
-            performSwipe(500, 1000, 500, 300, 1000);
-            Thread.sleep(1000);
-
-            if (safeFindAndClick("show-modal-button", "modal button in workflow")) {
+            if (safeFindAndClick("show-modal-button", "modal button in workflow", true)) {
                 System.out.println("Opened modal in workflow");
-                Thread.sleep(2000);
+                uiWait.until(UiWait.visible(MODAL_TEXT));
 
                 if (safeFindAndClick("close-modal-button", "close modal button in workflow")) {
                     System.out.println("Closed modal in workflow");
-                    Thread.sleep(1000);
+                    uiWait.until(UiWait.gone(MODAL_TEXT));
                     modalWorkflowSuccess = true;
                 }
             }
@@ -290,15 +345,17 @@ public class TestApp2TestNG {
         Assert.assertTrue(switchToggled, "Basic workflow operations should succeed");
     }
 
-    @AfterClass
+    @AfterClass(alwaysRun = true)
     public void tearDown() {
         System.out.println("\n==================================================");
         System.out.println("TestApp2 v2 TestNG Tests Completed!");
         System.out.println("==================================================");
 
         if (driver != null) {
-            driver.quit();
+            SessionPool.shared().release(driver);
         }
+        DeviceRegistry.shared().release(device);
+        System.out.println("Session pool: " + SessionPool.shared().summary());
         System.out.println("Test session ended successfully");
     }
 
@@ -309,29 +366,22 @@ public class TestApp2TestNG {
 
     private WebElement safeFind(String elementId, String elementName, boolean scrollFirst) {
         if (scrollFirst) {
-            performSwipe(500, 1000, 500, 500, 800);
-            try { Thread.sleep(1000); } catch (Exception e) {}
+            // One UiScrollable lookup scrolls until the element shows or the content ends
+            WebElement element = scroller.scrollIntoView(elementId);
+            if (element == null && !elementId.equals("show-modal-button")) {
+                System.out.println("Could not find " + elementName);
+            }
+            return element;
         }
 
         try {
-            // Try method 1: XPath with resource-id (most reliable for v2)
-            return driver.findElement(AppiumBy.xpath("//*[@resource-id='" + elementId + "']"));
-        } catch (Exception e1) {
-            try {
-                // Try method 2: Direct ID
-                return driver.findElement(AppiumBy.id(elementId));
-            } catch (Exception e2) {
-                try {
-                    // Try method 3: Full resource-id format
-                    return driver.findElement(AppiumBy.id("com.testapp2:id/" + elementId));
-                } catch (Exception e3) {
-                    // Only print error for non-modal elements to reduce noise
-                    if (!elementId.equals("show-modal-button")) {
-                        System.out.println("Could not find " + elementName);
-                    }
-                    return null;
-                }
+            return locator.find(elementId);
+        } catch (NoSuchElementException | StaleElementReferenceException e) {
+            // Only print error for non-modal elements to reduce noise
+            if (!elementId.equals("show-modal-button")) {
+                System.out.println("Could not find " + elementName);
             }
+            return null;
         }
     }
 
@@ -348,22 +398,23 @@ public class TestApp2TestNG {
                 return true;
             }
             return false;
-        } catch (Exception e) {
+        } catch (NoSuchElementException | StaleElementReferenceException e) {
             System.out.println("Could not click " + elementName + ": " + e.getMessage());
             return false;
         }
     }
 
-    private void performSwipe(int startX, int startY, int endX, int endY, int durationMs) {
-        PointerInput finger = new PointerInput(PointerInput.Kind.TOUCH, "finger");
-        Sequence swipe = new Sequence(finger, 1);
-        swipe.addAction(finger.createPointerMove(Duration.ofMillis(0),
-            PointerInput.Origin.viewport(), startX, startY));
-        swipe.addAction(finger.createPointerDown(PointerInput.MouseButton.LEFT.asArg()));
-        swipe.addAction(finger.createPointerMove(Duration.ofMillis(durationMs),
-            PointerInput.Origin.viewport(), endX, endY));
-        swipe.addAction(finger.createPointerUp(PointerInput.MouseButton.LEFT.asArg()));
-
-        driver.perform(Collections.singletonList(swipe));
+    // Taps the switches in one actions request, then waits until each checked state flips
+    private void toggleAll(List<WebElement> toggles) {
+        List<String> checked = new ArrayList<>();
+        Gestures taps = new Gestures(driver);
+        for (WebElement toggle : toggles) {
+            checked.add(toggle.getAttribute("checked"));
+            taps.tap(toggle);
+        }
+        taps.perform();
+        for (int i = 0; i < toggles.size(); i++) {
+            uiWait.until(UiWait.attributeChanged(toggles.get(i), "checked", checked.get(i)));
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+package nativebridge;
+
+import nativebridge.LocatorStats.Strategy;
+import org.openqa.selenium.By;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * AdaptiveLocator - Element lookup that tries the strategy known to work first
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * For an element it has seen before, find() sends one lookup with the fastest
+ * strategy LocatorStats has on record for it. Only if that misses, or for an
+ * element seen for the first time, are the other strategies tried, each with
+ * the implicit wait at zero so a wrong strategy costs one quick request rather
+ * than a full wait. Every attempt goes into the stats: when the app changes
+ * and the learned strategy stops matching, the one that found the element
+ * instead takes over.
+ *
+ * The XPath strategy bypasses XPathTranslator, so its stats are those of a
+ * real XPath lookup and not of the native selector it would turn into.
+ *
+ * An element that no strategy finds yet (still rendering) gets one
+ * CompositeLocator lookup under the implicit wait, the same wait the scripts
+ * had before, and the learning starts when it shows up.
+ */
+public final class AdaptiveLocator {
+
+    private final WebDriver driver;
+    private final ElementProbe probe;
+    private final String appPackage;
+    private final LocatorStats stats;
+
+    public AdaptiveLocator(WebDriver driver, String appPackage) {
+        this(driver, appPackage, LocatorStats.shared());
+    }
+
+    public AdaptiveLocator(WebDriver driver, String appPackage, LocatorStats stats) {
+        this.driver = driver;
+        this.probe = ElementProbe.of(driver);
+        this.appPackage = appPackage;
+        this.stats = stats;
+    }
+
+    public LocatorStats stats() {
+        return stats;
+    }
+
+    /**
+     * Finds the element with resource-id {@code elementId} (bare or
+     * package-qualified). Throws NoSuchElementException if it doesn't appear
+     * within the implicit wait.
+     */
+    public WebElement find(String elementId) {
+        List<Strategy> ranked = stats.rank(appPackage, elementId);
+        List<Strategy> missed = new ArrayList<>();
+        Strategy best = ranked.get(0);
+        boolean waited = false;
+
+        // Learned strategy: a plain lookup, so it still waits for a slow render
+        if (stats.isKnownGood(appPackage, elementId, best)) {
+            WebElement element = attempt(best, elementId, driver::findElements);
+            if (element != null) {
+                return element;
+            }
+            missed.add(best);
+            waited = true;
+        }
+
+        ElementProbe.Scope zeroWait = probe.open();
+        try {
+            for (Strategy strategy : ranked) {
+                if (missed.contains(strategy)) {
+                    continue;
+                }
+                WebElement element = attempt(strategy, elementId, probe::findAll);
+                if (element != null) {
+                    // Strategies that missed while this one matched are the ones to demote
+                    for (Strategy miss : missed) {
+                        stats.recordMiss(appPackage, elementId, miss);
+                    }
+                    return element;
+                }
+                missed.add(strategy);
+            }
+        } finally {
+            zeroWait.close();
+        }
+
+        if (waited) {
+            throw new NoSuchElementException("No element with resource-id " + elementId + " (tried " + missed + ")");
+        }
+        // Nothing matched yet; wait for it the way the scripts always did
+        return CompositeLocator.find(driver, appPackage, elementId);
+    }
+
+    /**
+     * Like {@link #find}, but the element comes back as a handle that repeats
+     * the lookup by itself if a re-render makes it stale.
+     */
+    public ElementHandle handle(String elementId) {
+        return ElementHandle.of(elementId, find(elementId), () -> find(elementId));
+    }
+
+    private WebElement attempt(Strategy strategy, String elementId, Lookup lookup) {
+        By locator = strategy.by(appPackage, elementId);
+        long start = System.nanoTime();
+        List<WebElement> found = strategy == Strategy.RESOURCE_ID_XPATH
+            ? XPathTranslator.verbatim(() -> lookup.findAll(locator))
+            : lookup.findAll(locator);
+        if (found.isEmpty()) {
+            return null;
+        }
+        stats.recordHit(appPackage, elementId, strategy, System.nanoTime() - start);
+        return found.get(0);
+    }
+
+    private interface Lookup {
+        List<WebElement> findAll(By locator);
+    }
+}
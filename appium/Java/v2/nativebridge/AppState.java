@@ -0,0 +1,31 @@
+package nativebridge;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * AppState - What a test method reads and changes in the app
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * Names are free-form and only compared with each other, e.g. "counter" or
+ * "text-input". Two methods that change the same state, or where one reads
+ * what the other changes, have to run one after the other on the same
+ * session; {@code after} adds a dependency on another method's result that
+ * no state name covers. TestGraph builds the order from this; a method
+ * without the annotation counts as changing everything.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface AppState {
+
+    /** State the method relies on. */
+    String[] reads() default {};
+
+    /** State the method changes. */
+    String[] writes() default {};
+
+    /** Methods of the same class this one needs to run after. */
+    String[] after() default {};
+}
@@ -0,0 +1,248 @@
+package nativebridge;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.Response;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CommandMetrics - Latency histograms for every Appium command
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * Records the wall-clock time of each command sent through a
+ * HookedCommandExecutor into HdrHistograms along three dimensions:
+ *
+ * - command: findElement, clickElement, actions, ... ; executeScript is split
+ *   by mobile: command, e.g. {@code executeScript[mobile: swipeGesture]}
+ * - locator strategy: the {@code using} of every find command
+ * - test: the test method running on the calling thread, see setCurrentTest
+ *
+ * Session creation is a command too, so slow newSession calls show up next to
+ * slow lookups. install() registers the JVM-wide instance on every executor;
+ * export() writes {@code command-latency.json} and
+ * {@code command-latency.prom} (Prometheus text format) to
+ * {@code -Dnativebridge.metrics.dir}, by default {@code target/command-metrics}.
+ */
+public final class CommandMetrics implements HookedCommandExecutor.Listener {
+
+    public static final String DEFAULT_DIR = "target/command-metrics";
+
+    private static final String NO_TEST = "(outside tests)";
+
+    // Commands slower than an hour are clamped rather than dropped
+    private static final long HIGHEST_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    private static final Set<String> FIND_COMMANDS = Set.of(
+        DriverCommand.FIND_ELEMENT, DriverCommand.FIND_ELEMENTS,
+        DriverCommand.FIND_CHILD_ELEMENT, DriverCommand.FIND_CHILD_ELEMENTS);
+
+    private static final CommandMetrics GLOBAL = new CommandMetrics();
+
+    private static final ThreadLocal<String> CURRENT_TEST = new ThreadLocal<>();
+
+    private final Map<String, Series> byCommand = new ConcurrentHashMap<>();
+    private final Map<String, Series> byStrategy = new ConcurrentHashMap<>();
+    private final Map<String, Series> byTest = new ConcurrentHashMap<>();
+
+    /** JVM-wide instance fed by install(). */
+    public static CommandMetrics global() {
+        return GLOBAL;
+    }
+
+    /** Records every command of every HookedCommandExecutor into global(); safe to call repeatedly. */
+    public static CommandMetrics install() {
+        HookedCommandExecutor.addGlobalListener(GLOBAL);
+        return GLOBAL;
+    }
+
+    /** Attributes the calling thread's following commands to {@code testName}. */
+    public static void setCurrentTest(String testName) {
+        CURRENT_TEST.set(testName);
+    }
+
+    public static void clearCurrentTest() {
+        CURRENT_TEST.remove();
+    }
+
+    @Override
+    public void afterCommand(Command command, Response response, long elapsedNanos) {
+        record(command, elapsedNanos);
+    }
+
+    @Override
+    public void onCommandFailure(Command command, Throwable error, long elapsedNanos) {
+        // Failed lookups are usually the slowest ones (implicit wait), keep them
+        record(command, elapsedNanos);
+    }
+
+    private void record(Command command, long elapsedNanos) {
+        series(byCommand, label(command)).record(elapsedNanos);
+        if (FIND_COMMANDS.contains(command.getName())) {
+            Object using = command.getParameters().get("using");
+            series(byStrategy, using == null ? "unknown" : String.valueOf(using)).record(elapsedNanos);
+        }
+        String test = CURRENT_TEST.get();
+        series(byTest, test == null ? NO_TEST : test).record(elapsedNanos);
+    }
+
+    private static String label(Command command) {
+        String name = command.getName();
+        if (DriverCommand.EXECUTE_SCRIPT.equals(name)) {
+            Object script = command.getParameters().get("script");
+            if (script instanceof String && ((String) script).startsWith("mobile:")) {
+                return name + "[" + script + "]";
+            }
+        }
+        return name;
+    }
+
+    private static Series series(Map<String, Series> dimension, String key) {
+        return dimension.computeIfAbsent(key, k -> new Series());
+    }
+
+    public void reset() {
+        byCommand.clear();
+        byStrategy.clear();
+        byTest.clear();
+    }
+
+    /** Count, total and percentiles in milliseconds per command, strategy and test. */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("generatedAt", Instant.now().toString());
+        value.put("unit", "ms");
+        value.put("commands", describe(byCommand));
+        value.put("locatorStrategies", describe(byStrategy));
+        value.put("tests", describe(byTest));
+        return value;
+    }
+
+    public String toJson() {
+        return new Json().toJson(snapshot());
+    }
+
+    public String toPrometheus() {
+        StringBuilder text = new StringBuilder();
+        prometheus(text, "nativebridge_command_latency_seconds", "Appium command latency by command", "command", byCommand);
+        prometheus(text, "nativebridge_locator_latency_seconds", "Find command latency by locator strategy", "strategy", byStrategy);
+        prometheus(text, "nativebridge_test_command_latency_seconds", "Appium command latency by test", "test", byTest);
+        return text.toString();
+    }
+
+    /** Writes the JSON and Prometheus files to {@code -Dnativebridge.metrics.dir}. */
+    public Path export() {
+        return export(Paths.get(System.getProperty("nativebridge.metrics.dir", DEFAULT_DIR)));
+    }
+
+    // Parallel classes finish at different times; each export rewrites both files
+    public synchronized Path export(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            Files.write(directory.resolve("command-latency.json"), toJson().getBytes(StandardCharsets.UTF_8));
+            Files.write(directory.resolve("command-latency.prom"), toPrometheus().getBytes(StandardCharsets.UTF_8));
+            return directory;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write command metrics to " + directory, e);
+        }
+    }
+
+    /** The commands that took the most time in total, for console output. */
+    public String summary() {
+        List<Map.Entry<String, Series>> slowest = new ArrayList<>(byCommand.entrySet());
+        slowest.sort(Comparator.comparingLong((Map.Entry<String, Series> e) -> e.getValue().totalNanos.sum()).reversed());
+        StringBuilder text = new StringBuilder("Command latency (total, count, p50, p99):");
+        for (Map.Entry<String, Series> entry : slowest.subList(0, Math.min(5, slowest.size()))) {
+            Histogram histogram = entry.getValue().snapshot();
+            text.append(String.format(Locale.ROOT, "%n  %-40s %8.0fms %5d  %7.1fms %7.1fms",
+                entry.getKey(), entry.getValue().totalNanos.sum() / 1_000_000.0, histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0));
+        }
+        return text.toString();
+    }
+
+    private static Map<String, Object> describe(Map<String, Series> dimension) {
+        Map<String, Object> described = new LinkedHashMap<>();
+        for (Map.Entry<String, Series> entry : new TreeMap<>(dimension).entrySet()) {
+            Histogram histogram = entry.getValue().snapshot();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("count", histogram.getTotalCount());
+            stats.put("total", millis(entry.getValue().totalNanos.sum() / 1000));
+            stats.put("mean", millis((long) histogram.getMean()));
+            stats.put("p50", millis(histogram.getValueAtPercentile(50)));
+            stats.put("p90", millis(histogram.getValueAtPercentile(90)));
+            stats.put("p99", millis(histogram.getValueAtPercentile(99)));
+            stats.put("max", millis(histogram.getMaxValue()));
+            described.put(entry.getKey(), stats);
+        }
+        return described;
+    }
+
+    private static double millis(long micros) {
+        return Math.round(micros / 10.0) / 100.0;
+    }
+
+    private static void prometheus(StringBuilder text, String metric, String help, String label,
+                                   Map<String, Series> dimension) {
+        text.append("# HELP ").append(metric).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(metric).append(" summary\n");
+        for (Map.Entry<String, Series> entry : new TreeMap<>(dimension).entrySet()) {
+            Histogram histogram = entry.getValue().snapshot();
+            String labels = label + "=\"" + escape(entry.getKey()) + "\"";
+            for (double quantile : new double[] {0.5, 0.9, 0.99}) {
+                text.append(metric).append('{').append(labels).append(",quantile=\"").append(quantile).append("\"} ")
+                    .append(seconds(histogram.getValueAtPercentile(quantile * 100))).append('\n');
+            }
+            text.append(metric).append("_sum{").append(labels).append("} ")
+                .append(seconds(entry.getValue().totalNanos.sum() / 1000)).append('\n');
+            text.append(metric).append("_count{").append(labels).append("} ")
+                .append(histogram.getTotalCount()).append('\n');
+        }
+    }
+
+    private static String seconds(long micros) {
+        return String.format(Locale.ROOT, "%.6f", micros / 1_000_000.0);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /** One histogram in microseconds plus the exact total, which the histogram only approximates. */
+    private static final class Series {
+
+        final Histogram histogram = new ConcurrentHistogram(HIGHEST_MICROS, 3);
+        final LongAdder totalNanos = new LongAdder();
+
+        void record(long elapsedNanos) {
+            histogram.recordValue(Math.min(HIGHEST_MICROS, Math.max(1, elapsedNanos / 1000)));
+            totalNanos.add(elapsedNanos);
+        }
+
+        // Iterating a histogram that another thread is recording into throws
+        // ConcurrentModificationException; a copy is safe to read
+        Histogram snapshot() {
+            return histogram.copy();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package nativebridge;
+
+import org.junit.jupiter.api.extension.AfterAllCallback;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestResult;
+
+import java.nio.file.Path;
+
+/**
+ * CommandMetricsListener - Ties CommandMetrics to JUnit and TestNG runs
+ * Compatible with Appium 2.x + Java Client 9.x + JUnit 5 + TestNG
+ *
+ * Installs CommandMetrics, attributes commands to the running test method
+ * ({@code Class.method}; setup and teardown count as {@code Class.setUp} and
+ * {@code Class.tearDown}) and exports the histograms when a run ends: after
+ * each JUnit test class and after each TestNG suite.
+ *
+ * TestNG: register in testng.xml {@code <listeners>}. JUnit: add
+ * {@code @ExtendWith(CommandMetricsListener.class)} to the test classes.
+ */
+public final class CommandMetricsListener implements IInvokedMethodListener, ISuiteListener,
+        BeforeAllCallback, BeforeEachCallback, AfterEachCallback, AfterAllCallback {
+
+    public CommandMetricsListener() {
+        CommandMetrics.install();
+    }
+
+    // TestNG: configuration methods are attributed too, session setup included
+    @Override
+    public void beforeInvocation(IInvokedMethod method, ITestResult testResult) {
+        CommandMetrics.setCurrentTest(testResult.getTestClass().getRealClass().getSimpleName()
+            + "." + method.getTestMethod().getMethodName());
+    }
+
+    @Override
+    public void afterInvocation(IInvokedMethod method, ITestResult testResult) {
+        CommandMetrics.clearCurrentTest();
+    }
+
+    @Override
+    public void onFinish(ISuite suite) {
+        export();
+    }
+
+    // JUnit: beforeAll runs ahead of @BeforeAll, afterAll after @AfterAll, on the class's thread
+    @Override
+    public void beforeAll(ExtensionContext context) {
+        CommandMetrics.setCurrentTest(context.getRequiredTestClass().getSimpleName() + ".setUp");
+    }
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        CommandMetrics.setCurrentTest(context.getRequiredTestClass().getSimpleName()
+            + "." + context.getRequiredTestMethod().getName());
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        CommandMetrics.setCurrentTest(context.getRequiredTestClass().getSimpleName() + ".tearDown");
+    }
+
+    @Override
+    public void afterAll(ExtensionContext context) {
+        CommandMetrics.clearCurrentTest();
+        export();
+    }
+
+    private static void export() {
+        Path directory = CommandMetrics.global().export();
+        System.out.println(CommandMetrics.global().summary());
+        System.out.println("Command metrics written to " + directory.toAbsolutePath());
+    }
+}
@@ -0,0 +1,69 @@
+package nativebridge;
+
+import io.appium.java_client.AppiumBy;
+import org.openqa.selenium.By;
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.WebElement;
+
+import java.util.List;
+
+/**
+ * CompositeLocator - Single round-trip element lookup
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * The sample scripts used to try three strategies one after another
+ * (resource-id XPath, plain id, package-qualified id). Each miss waited out the
+ * full implicit wait, so a missing element cost 3x the wait and three requests.
+ * This locator sends every candidate as one UiAutomator expression: the
+ * UiAutomator2 server evaluates the ';'-separated selectors in order and returns
+ * the first match, so a lookup is one request and at most one implicit wait.
+ */
+public final class CompositeLocator {
+
+    private CompositeLocator() {
+    }
+
+    /**
+     * Builds a locator matching {@code elementId} either as a bare resource-id
+     * (React Native testID) or as {@code <appPackage>:id/<elementId>}.
+     */
+    public static By byResourceId(String appPackage, String elementId) {
+        return AppiumBy.androidUIAutomator(uiSelector(appPackage, elementId));
+    }
+
+    /**
+     * Finds the element in one request. Throws NoSuchElementException when
+     * none of the candidate strategies match.
+     */
+    public static WebElement find(SearchContext context, String appPackage, String elementId) {
+        return context.findElement(byResourceId(appPackage, elementId));
+    }
+
+    /**
+     * Like {@link #find} but returns every match instead of throwing.
+     */
+    public static List<WebElement> findAll(SearchContext context, String appPackage, String elementId) {
+        return context.findElements(byResourceId(appPackage, elementId));
+    }
+
+    /**
+     * Returns the raw UiAutomator expression, e.g.
+     * {@code new UiSelector().resourceId("app-title");new UiSelector().resourceId("com.testapp1:id/app-title")}.
+     * An element id that already carries a package is emitted once.
+     */
+    public static String uiSelector(String appPackage, String elementId) {
+        StringBuilder selector = new StringBuilder(resourceIdSelector(elementId));
+        if (appPackage != null && !elementId.contains(":id/")) {
+            selector.append(';').append(resourceIdSelector(appPackage + ":id/" + elementId));
+        }
+        return selector.toString();
+    }
+
+    private static String resourceIdSelector(String resourceId) {
+        return "new UiSelector().resourceId(\"" + quote(resourceId) + "\")";
+    }
+
+    static String quote(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,136 @@
+package nativebridge;
+
+import org.junit.jupiter.api.extension.ConditionEvaluationResult;
+import org.junit.jupiter.api.extension.ExecutionCondition;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.platform.engine.ConfigurationParameters;
+import org.junit.platform.engine.support.hierarchical.ParallelExecutionConfiguration;
+import org.junit.platform.engine.support.hierarchical.ParallelExecutionConfigurationStrategy;
+import org.testng.IAlterSuiteListener;
+import org.testng.IMethodInstance;
+import org.testng.IMethodInterceptor;
+import org.testng.ITestContext;
+import org.testng.xml.XmlSuite;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DeviceSharding - Splits the test classes across devices and JVMs
+ * Compatible with Appium 2.x + Java Client 9.x + JUnit 5 + TestNG
+ *
+ * Within one JVM the suite runs one test class per device at a time: the
+ * number of worker threads is sized to the DeviceRegistry and each class
+ * checks out its own device, so adding a device adds a worker. Test classes
+ * are handed out as workers free up, which keeps the devices busy even when
+ * classes differ in length.
+ *
+ * Across JVMs (e.g. a CI matrix) {@code -Dnativebridge.shard=2/3} or
+ * {@code NATIVEBRIDGE_SHARD=2/3} runs only the classes that hash to shard 2
+ * of 3. The hash is on the class name, so every shard agrees on the split
+ * without talking to the others.
+ *
+ * TestNG: register in testng.xml {@code <listeners>}. JUnit: set
+ * {@code junit.jupiter.execution.parallel.config.custom.class} to this class
+ * and add {@code @ExtendWith(DeviceSharding.class)} to the test classes.
+ */
+public final class DeviceSharding implements IAlterSuiteListener, IMethodInterceptor,
+        ExecutionCondition, ParallelExecutionConfigurationStrategy {
+
+    private final int index;
+    private final int total;
+
+    public DeviceSharding() {
+        String spec = System.getProperty("nativebridge.shard");
+        if (spec == null || spec.trim().isEmpty()) {
+            spec = System.getenv("NATIVEBRIDGE_SHARD");
+        }
+        if (spec == null || spec.trim().isEmpty()) {
+            index = 1;
+            total = 1;
+            return;
+        }
+        String[] parts = spec.trim().split("/");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Shard must look like index/total, got '" + spec + "'");
+        }
+        index = Integer.parseInt(parts[0].trim());
+        total = Integer.parseInt(parts[1].trim());
+        if (total < 1 || index < 1 || index > total) {
+            throw new IllegalArgumentException("Shard index must be within 1.." + total + ", got '" + spec + "'");
+        }
+    }
+
+    /** True if {@code testClass} belongs to this JVM's shard. */
+    public boolean owns(Class<?> testClass) {
+        return Math.floorMod(testClass.getName().hashCode(), total) == index - 1;
+    }
+
+    // TestNG: one worker thread per device for parallel suites
+    @Override
+    public void alter(List<XmlSuite> suites) {
+        for (XmlSuite suite : suites) {
+            if (suite.getParallel() != null && suite.getParallel() != XmlSuite.ParallelMode.NONE) {
+                suite.setThreadCount(DeviceRegistry.shared().size());
+            }
+        }
+    }
+
+    // TestNG: drop the methods of classes owned by another shard
+    @Override
+    public List<IMethodInstance> intercept(List<IMethodInstance> methods, ITestContext context) {
+        List<IMethodInstance> kept = new ArrayList<>(methods.size());
+        for (IMethodInstance method : methods) {
+            if (owns(method.getMethod().getRealClass())) {
+                kept.add(method);
+            }
+        }
+        return kept;
+    }
+
+    // JUnit: skip classes owned by another shard
+    @Override
+    public ConditionEvaluationResult evaluateExecutionCondition(ExtensionContext context) {
+        if (context.getTestMethod().isPresent() || !context.getTestClass().isPresent()) {
+            return ConditionEvaluationResult.enabled("not a test class");
+        }
+        Class<?> testClass = context.getTestClass().get();
+        return owns(testClass)
+            ? ConditionEvaluationResult.enabled("in shard " + index + "/" + total)
+            : ConditionEvaluationResult.disabled("belongs to another shard than " + index + "/" + total);
+    }
+
+    // JUnit: one worker thread per device
+    @Override
+    public ParallelExecutionConfiguration createConfiguration(ConfigurationParameters parameters) {
+        int workers = DeviceRegistry.shared().size();
+        return new ParallelExecutionConfiguration() {
+            @Override
+            public int getParallelism() {
+                return workers;
+            }
+
+            @Override
+            public int getMinimumRunnable() {
+                return workers;
+            }
+
+            // Headroom for the pool to replace workers blocked on HTTP calls,
+            // as JUnit's own strategies allow
+            @Override
+            public int getMaxPoolSize() {
+                return workers + 256;
+            }
+
+            @Override
+            public int getCorePoolSize() {
+                return workers;
+            }
+
+            @Override
+            public int getKeepAliveSeconds() {
+                return 30;
+            }
+        };
+    }
+}
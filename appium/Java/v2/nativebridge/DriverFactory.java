@@ -0,0 +1,33 @@
+package nativebridge;
+
+import io.appium.java_client.android.AndroidDriver;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.remote.http.HttpClient;
+
+import java.net.URL;
+
+/**
+ * DriverFactory - AndroidDriver sessions on the hooked command path
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * Drop-in replacement for {@code new AndroidDriver(url, options)}. The driver
+ * talks to the server through a HookedCommandExecutor so helpers such as
+ * SnapshotCache can observe its commands.
+ */
+public final class DriverFactory {
+
+    private DriverFactory() {
+    }
+
+    public static AndroidDriver android(URL serverUrl, Capabilities options) {
+        return new AndroidDriver(new HookedCommandExecutor(serverUrl), options);
+    }
+
+    /**
+     * Same, with HTTP clients from {@code httpClients}. Pass
+     * {@link SharedHttpClientFactory#shared()} when one JVM drives many sessions.
+     */
+    public static AndroidDriver android(URL serverUrl, Capabilities options, HttpClient.Factory httpClients) {
+        return new AndroidDriver(new HookedCommandExecutor(serverUrl, httpClients), options);
+    }
+}
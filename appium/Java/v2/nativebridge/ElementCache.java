@@ -0,0 +1,203 @@
+package nativebridge;
+
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.Point;
+import org.openqa.selenium.Rectangle;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.WrapsElement;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.RemoteWebElement;
+import org.openqa.selenium.remote.Response;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ElementCache - Element properties read once until the UI may have changed
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * getLocation() and getSize() are one request each, and the scripts used to
+ * call them three times apiece to work out a swipe. A Snapshot reads the
+ * whole rectangle with one getRect() and memoizes it together with text,
+ * displayed, enabled, selected and any attribute asked for. Like
+ * SnapshotCache, the cache listens to the driver's command path and forgets
+ * every value after a command that is not known to be read-only, so a value is
+ * never older than the last interaction.
+ *
+ * Every property is read on first use, so a snapshot costs exactly the
+ * requests for the properties the script looks at.
+ * {@link Snapshot#fetch(String...)} preloads the rectangle and the given
+ * attributes for code that reads them later.
+ *
+ * UiWait conditions read fresh values on purpose: they wait for changes the
+ * app makes on its own, which no command would invalidate.
+ */
+public final class ElementCache implements HookedCommandExecutor.Listener {
+
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicInteger reads = new AtomicInteger();
+    private final AtomicInteger hits = new AtomicInteger();
+
+    public ElementCache(RemoteWebDriver driver) {
+        HookedCommandExecutor.of(driver).addListener(this);
+    }
+
+    /** The snapshot for {@code element}; the same element always gets the same snapshot. */
+    public Snapshot of(WebElement element) {
+        return snapshots.computeIfAbsent(idOf(element), id -> new Snapshot(element));
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+        snapshots.clear();
+    }
+
+    @Override
+    public void afterCommand(Command command, Response response, long elapsedNanos) {
+        if (!SnapshotCache.isReadOnly(command)) {
+            invalidate();
+        }
+    }
+
+    @Override
+    public void onCommandFailure(Command command, Throwable error, long elapsedNanos) {
+        // A failed interaction may still have changed the screen
+        afterCommand(command, null, elapsedNanos);
+    }
+
+    public String summary() {
+        return reads.get() + " element property reads, " + hits.get() + " cached";
+    }
+
+    private static String idOf(WebElement element) {
+        // A handle is keyed by the element it currently stands for
+        if (element instanceof WrapsElement) {
+            element = ((WrapsElement) element).getWrappedElement();
+        }
+        return element instanceof RemoteWebElement ? ((RemoteWebElement) element).getId() : String.valueOf(element);
+    }
+
+    /** Memoized properties of one element. */
+    public final class Snapshot {
+
+        private static final String RECT = "rect";
+        private static final String TEXT = "text";
+        private static final String DISPLAYED = "displayed";
+        private static final String ENABLED = "enabled";
+        private static final String SELECTED = "selected";
+        private static final String ATTRIBUTE = "attribute:";
+
+        private final WebElement element;
+        // Optional because attributes may legitimately be null
+        private final Map<String, Optional<Object>> values = new ConcurrentHashMap<>();
+        private volatile long validFor = generation.get();
+
+        private Snapshot(WebElement element) {
+            this.element = element;
+        }
+
+        public WebElement element() {
+            return element;
+        }
+
+        /** Reads the rectangle and {@code attributes} now, skipping any already cached. */
+        public Snapshot fetch(String... attributes) {
+            get(RECT);
+            for (String attribute : attributes) {
+                get(ATTRIBUTE + attribute);
+            }
+            return this;
+        }
+
+        public Rectangle rect() {
+            return (Rectangle) get(RECT);
+        }
+
+        public Point location() {
+            return rect().getPoint();
+        }
+
+        public Dimension size() {
+            return rect().getDimension();
+        }
+
+        public Point center() {
+            Rectangle rect = rect();
+            return new Point(rect.getX() + rect.getWidth() / 2, rect.getY() + rect.getHeight() / 2);
+        }
+
+        public String text() {
+            return (String) get(TEXT);
+        }
+
+        /** The {@code text} attribute, falling back to getText() for elements without one. */
+        public String value() {
+            String value = attribute("text");
+            return value != null ? value : text();
+        }
+
+        public String attribute(String name) {
+            return (String) get(ATTRIBUTE + name);
+        }
+
+        public boolean isDisplayed() {
+            return (Boolean) get(DISPLAYED);
+        }
+
+        public boolean isEnabled() {
+            return (Boolean) get(ENABLED);
+        }
+
+        public boolean isSelected() {
+            return (Boolean) get(SELECTED);
+        }
+
+        private Object get(String key) {
+            refreshIfStale();
+            Optional<Object> cached = values.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached.orElse(null);
+            }
+            reads.incrementAndGet();
+            long readFor = validFor;
+            Object value = read(key);
+            // Don't keep a value that a concurrent mutation may already have changed
+            if (generation.get() == readFor) {
+                values.put(key, Optional.ofNullable(value));
+            }
+            return value;
+        }
+
+        // A snapshot kept across a click or sendKeys must not answer from before it
+        private void refreshIfStale() {
+            long current = generation.get();
+            if (validFor != current) {
+                values.clear();
+                validFor = current;
+            }
+        }
+
+        private Object read(String key) {
+            switch (key) {
+                case RECT:
+                    return element.getRect();
+                case TEXT:
+                    return element.getText();
+                case DISPLAYED:
+                    return element.isDisplayed();
+                case ENABLED:
+                    return element.isEnabled();
+                case SELECTED:
+                    return element.isSelected();
+                default:
+                    return element.getAttribute(key.substring(ATTRIBUTE.length()));
+            }
+        }
+    }
+}
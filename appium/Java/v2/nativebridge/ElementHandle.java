@@ -0,0 +1,216 @@
+package nativebridge;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.Point;
+import org.openqa.selenium.Rectangle;
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.WrapsElement;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * ElementHandle - A WebElement that finds itself again when it goes stale
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * React Native may replace a view when it re-renders, and the element id the
+ * server handed out then no longer resolves. The scripts guarded against that
+ * by looking the element up again before every read, a lookup per read even
+ * though the id is almost always still valid. A handle keeps the element id
+ * and the way it was found: calls go straight to the cached element, and only
+ * a StaleElementReferenceException triggers one new lookup and one retry of
+ * the call. If the element is stale again right after, or gone for good, the
+ * exception reaches the caller as usual.
+ *
+ * Handles are not thread-safe beyond what the underlying driver is; share
+ * them within one test like any WebElement.
+ */
+public final class ElementHandle implements WebElement, WrapsElement {
+
+    private final String description;
+    private final Supplier<WebElement> resolver;
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final AtomicInteger recoveries = new AtomicInteger();
+    private volatile WebElement element;
+
+    private ElementHandle(String description, Supplier<WebElement> resolver, WebElement element) {
+        this.description = description;
+        this.resolver = resolver;
+        this.element = element;
+    }
+
+    /** A handle looked up with {@code locator} in {@code context}; the first lookup happens on first use. */
+    public static ElementHandle of(SearchContext context, By locator) {
+        return new ElementHandle(String.valueOf(locator), () -> context.findElement(locator), null);
+    }
+
+    /**
+     * A handle for an element already found, e.g. by AdaptiveLocator, that is
+     * looked up again with {@code resolver} when it goes stale.
+     */
+    public static ElementHandle of(String description, WebElement element, Supplier<WebElement> resolver) {
+        return new ElementHandle(description, resolver, element);
+    }
+
+    /** The current element, looked up if there is none yet. */
+    @Override
+    public WebElement getWrappedElement() {
+        WebElement current = element;
+        return current != null ? current : resolve();
+    }
+
+    /** Looks the element up again, dropping the cached id. */
+    public WebElement resolve() {
+        lookups.incrementAndGet();
+        WebElement found = resolver.get();
+        element = found;
+        return found;
+    }
+
+    /** Lookups so far, including the first one if this handle made it. */
+    public int lookups() {
+        return lookups.get();
+    }
+
+    /** Calls that hit a stale element and succeeded after a new lookup. */
+    public int recoveries() {
+        return recoveries.get();
+    }
+
+    private <T> T call(Function<WebElement, T> action) {
+        WebElement current = getWrappedElement();
+        try {
+            return action.apply(current);
+        } catch (StaleElementReferenceException e) {
+            // Another call may have resolved it already
+            WebElement fresh = element != current ? element : resolve();
+            T result = action.apply(fresh);
+            recoveries.incrementAndGet();
+            return result;
+        }
+    }
+
+    private void run(Consumer<WebElement> action) {
+        call(e -> {
+            action.accept(e);
+            return null;
+        });
+    }
+
+    @Override
+    public void click() {
+        run(WebElement::click);
+    }
+
+    @Override
+    public void submit() {
+        run(WebElement::submit);
+    }
+
+    @Override
+    public void sendKeys(CharSequence... keysToSend) {
+        run(e -> e.sendKeys(keysToSend));
+    }
+
+    @Override
+    public void clear() {
+        run(WebElement::clear);
+    }
+
+    @Override
+    public String getTagName() {
+        return call(WebElement::getTagName);
+    }
+
+    @Override
+    public String getDomProperty(String name) {
+        return call(e -> e.getDomProperty(name));
+    }
+
+    @Override
+    public String getDomAttribute(String name) {
+        return call(e -> e.getDomAttribute(name));
+    }
+
+    @Override
+    public String getAttribute(String name) {
+        return call(e -> e.getAttribute(name));
+    }
+
+    @Override
+    public String getAriaRole() {
+        return call(WebElement::getAriaRole);
+    }
+
+    @Override
+    public String getAccessibleName() {
+        return call(WebElement::getAccessibleName);
+    }
+
+    @Override
+    public boolean isSelected() {
+        return call(WebElement::isSelected);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return call(WebElement::isEnabled);
+    }
+
+    @Override
+    public String getText() {
+        return call(WebElement::getText);
+    }
+
+    @Override
+    public List<WebElement> findElements(By by) {
+        return call(e -> e.findElements(by));
+    }
+
+    @Override
+    public WebElement findElement(By by) {
+        return call(e -> e.findElement(by));
+    }
+
+    @Override
+    public boolean isDisplayed() {
+        return call(WebElement::isDisplayed);
+    }
+
+    @Override
+    public Point getLocation() {
+        return call(WebElement::getLocation);
+    }
+
+    @Override
+    public Dimension getSize() {
+        return call(WebElement::getSize);
+    }
+
+    @Override
+    public Rectangle getRect() {
+        return call(WebElement::getRect);
+    }
+
+    @Override
+    public String getCssValue(String propertyName) {
+        return call(e -> e.getCssValue(propertyName));
+    }
+
+    @Override
+    public <X> X getScreenshotAs(OutputType<X> target) {
+        return call(e -> e.getScreenshotAs(target));
+    }
+
+    @Override
+    public String toString() {
+        return "ElementHandle(" + description + " -> " + element + ")";
+    }
+}
@@ -0,0 +1,167 @@
+package nativebridge;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ElementProbe - Fast-fail existence checks
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * The scripts run with a 10 second implicit wait, which is right for elements
+ * that are expected to show up but turns every negative lookup ("is there an
+ * alert?") into a 10 second stall. A probe drops the implicit wait to zero,
+ * looks up with findElements and restores the wait afterwards. Several probes
+ * can share one zero-wait window through {@link #open()} so a bulk check pays
+ * for the two timeout requests once.
+ *
+ * Each probe records how long it took and how much it saved compared with the
+ * same lookup under the implicit wait (a miss would have blocked for the full
+ * wait, a hit would have returned just as fast).
+ *
+ * There is one probe per driver, from {@link #of(WebDriver)}: the probe
+ * remembers the implicit wait it restores, so a second probe opened inside
+ * another's window would read zero and put zero back. The helpers, the
+ * scripts and threads driving the same session all share it; the window is
+ * counted across them and the counters are atomic. When the implicit wait is
+ * already zero there is nothing to save and no timeout request is sent.
+ */
+public final class ElementProbe {
+
+    // Weak both ways: the probe holds its driver, and a quit driver should not be kept alive
+    private static final Map<WebDriver, WeakReference<ElementProbe>> PROBES = new WeakHashMap<>();
+
+    private final WebDriver driver;
+    private Duration implicitWait;
+    private int depth;
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private volatile long lastSavedMillis;
+    private final AtomicLong totalSavedMillis = new AtomicLong();
+
+    private ElementProbe(WebDriver driver) {
+        this.driver = driver;
+    }
+
+    /** The probe of {@code driver}, created on first use. */
+    public static ElementProbe of(WebDriver driver) {
+        synchronized (PROBES) {
+            WeakReference<ElementProbe> existing = PROBES.get(driver);
+            ElementProbe probe = existing != null ? existing.get() : null;
+            if (probe == null) {
+                probe = new ElementProbe(driver);
+                PROBES.put(driver, new WeakReference<>(probe));
+            }
+            return probe;
+        }
+    }
+
+    public WebDriver driver() {
+        return driver;
+    }
+
+    /**
+     * Opens a zero-implicit-wait window, closed by {@link Scope#close()}.
+     * Nested scopes are cheap: only the outermost one touches the driver.
+     */
+    public synchronized Scope open() {
+        if (implicitWait == null) {
+            // The implicit wait only changes in setUp, so one read is enough
+            implicitWait = driver.manage().timeouts().getImplicitWaitTimeout();
+        }
+        if (depth++ == 0 && !implicitWait.isZero()) {
+            driver.manage().timeouts().implicitlyWait(Duration.ZERO);
+        }
+        return new Scope();
+    }
+
+    private synchronized void leave() {
+        if (--depth == 0 && !implicitWait.isZero()) {
+            driver.manage().timeouts().implicitlyWait(implicitWait);
+        }
+    }
+
+    /** Every element currently matching {@code locator}; empty without waiting if none. */
+    public List<WebElement> findAll(By locator) {
+        long start = System.nanoTime();
+        List<WebElement> found;
+        Scope scope = open();
+        try {
+            found = driver.findElements(locator);
+        } finally {
+            scope.close();
+        }
+        record(found.isEmpty(), start);
+        return found;
+    }
+
+    /** The first element matching {@code locator}, or null without waiting. */
+    public WebElement findFirst(By locator) {
+        List<WebElement> found = findAll(locator);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    public boolean exists(By locator) {
+        return !findAll(locator).isEmpty();
+    }
+
+    private void record(boolean miss, long startNanos) {
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        long saved = miss ? Math.max(0, implicitWait.toMillis() - elapsedMillis) : 0;
+        calls.incrementAndGet();
+        if (miss) {
+            misses.incrementAndGet();
+        }
+        lastSavedMillis = saved;
+        totalSavedMillis.addAndGet(saved);
+    }
+
+    public int calls() {
+        return calls.get();
+    }
+
+    public int misses() {
+        return misses.get();
+    }
+
+    /** Time saved by the most recent probe versus an implicit-wait lookup. */
+    public long lastSavedMillis() {
+        return lastSavedMillis;
+    }
+
+    public long totalSavedMillis() {
+        return totalSavedMillis.get();
+    }
+
+    /** One-line summary for the end-of-run report. */
+    public String summary() {
+        return calls.get() + " probes, " + misses.get() + " misses, saved " + totalSavedMillis.get() + "ms";
+    }
+
+    /** Zero-wait window; restores the implicit wait when the outermost scope closes. */
+    public final class Scope implements AutoCloseable {
+
+        private boolean closed;
+
+        private Scope() {
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            leave();
+        }
+    }
+}
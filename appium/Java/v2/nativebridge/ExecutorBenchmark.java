@@ -0,0 +1,188 @@
+package nativebridge;
+
+import io.appium.java_client.android.AndroidDriver;
+import io.appium.java_client.android.options.UiAutomator2Options;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.Response;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * ExecutorBenchmark - Platform vs virtual threads for many concurrent sessions
+ * Compatible with Appium 2.x + Java Client 9.x (Java 21)
+ *
+ * Starts a StubAppiumServer with a fixed per-command latency and drives
+ * {@code --sessions} concurrent sessions against it, each creating a session,
+ * issuing {@code --commands} find/getText/click commands and quitting. It runs
+ * twice:
+ *
+ * - virtual: one virtual thread per session, every session on
+ *   SharedHttpClientFactory with {@code --connections} connection slots
+ * - platform: one platform thread per session, Selenium's default HTTP client
+ *   per session (how the scripts run today)
+ *
+ * and prints sessions/sec, p50/p99 command latency and peak live platform
+ * threads for each mode.
+ *
+ * {@code java nativebridge.ExecutorBenchmark [--sessions=200] [--commands=20]
+ * [--latency-ms=20] [--connections=64]}
+ */
+public final class ExecutorBenchmark {
+
+    private final URL serverUrl;
+    private final int sessions;
+    private final int commands;
+
+    private ExecutorBenchmark(URL serverUrl, int sessions, int commands) {
+        this.serverUrl = serverUrl;
+        this.sessions = sessions;
+        this.commands = commands;
+    }
+
+    private Result run(String mode, ExecutorService threads, SharedHttpClientFactory httpClients) throws Exception {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        threadBean.resetPeakThreadCount();
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>(sessions * commands));
+
+        long start = System.nanoTime();
+        List<Future<?>> running = new ArrayList<>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            running.add(threads.submit(() -> {
+                session(httpClients, latencies);
+                return null;
+            }));
+        }
+        int failed = 0;
+        for (Future<?> session : running) {
+            try {
+                session.get();
+            } catch (Exception e) {
+                failed++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        threads.shutdown();
+
+        return new Result(mode, sessions - failed, failed, elapsed, latencies, threadBean.getPeakThreadCount());
+    }
+
+    private void session(SharedHttpClientFactory httpClients, List<Long> latencies) {
+        UiAutomator2Options options = new UiAutomator2Options();
+        options.setPlatformName("Android");
+        options.setAutomationName("UiAutomator2");
+        AndroidDriver driver = httpClients == null
+            ? DriverFactory.android(serverUrl, options)
+            : DriverFactory.android(serverUrl, options, httpClients);
+        try {
+            HookedCommandExecutor.of(driver).addListener(new HookedCommandExecutor.Listener() {
+                @Override
+                public void afterCommand(Command command, Response response, long elapsedNanos) {
+                    latencies.add(elapsedNanos);
+                }
+            });
+            for (int i = 0; i < commands; i++) {
+                WebElement element = CompositeLocator.find(driver, "com.testapp1", "test-button");
+                if (i % 2 == 0) {
+                    element.getText();
+                } else {
+                    element.click();
+                }
+            }
+        } finally {
+            driver.quit();
+        }
+    }
+
+    private static final class Result {
+
+        final String mode;
+        final int completed;
+        final int failed;
+        final long elapsedNanos;
+        final List<Long> latencies;
+        final int peakThreads;
+
+        Result(String mode, int completed, int failed, long elapsedNanos, List<Long> latencies, int peakThreads) {
+            this.mode = mode;
+            this.completed = completed;
+            this.failed = failed;
+            this.elapsedNanos = elapsedNanos;
+            this.latencies = new ArrayList<>(latencies);
+            this.peakThreads = peakThreads;
+            Collections.sort(this.latencies);
+        }
+
+        double percentileMillis(double percentile) {
+            if (latencies.isEmpty()) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * latencies.size()) - 1;
+            return latencies.get(Math.max(0, index)) / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = elapsedNanos / 1_000_000_000.0;
+            return String.format("%-9s %5d sessions (%d failed) in %6.2fs  %7.1f sessions/s  "
+                    + "p50 %6.1fms  p99 %6.1fms  peak platform threads %d",
+                mode, completed, failed, seconds, completed / seconds,
+                percentileMillis(50), percentileMillis(99), peakThreads);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int sessions = 200;
+        int commands = 20;
+        long latencyMs = 20;
+        int connections = 64;
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            switch (option[0]) {
+                case "sessions":
+                    sessions = Integer.parseInt(option[1]);
+                    break;
+                case "commands":
+                    commands = Integer.parseInt(option[1]);
+                    break;
+                case "latency-ms":
+                    latencyMs = Long.parseLong(option[1]);
+                    break;
+                case "connections":
+                    connections = Integer.parseInt(option[1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+
+        try (StubAppiumServer stub = StubAppiumServer.start(0, Duration.ofMillis(latencyMs))) {
+            System.out.println("Stub server " + stub.url() + ", " + latencyMs + "ms per command, "
+                + sessions + " sessions x " + commands + " commands");
+
+            // Warm up class loading and JIT for both paths before measuring
+            ExecutorBenchmark warmup = new ExecutorBenchmark(stub.url(), 50, 10);
+            warmup.run("warmup", Executors.newVirtualThreadPerTaskExecutor(), new SharedHttpClientFactory(connections, Duration.ofSeconds(10)));
+            warmup.run("warmup", Executors.newFixedThreadPool(50), null);
+
+            ExecutorBenchmark benchmark = new ExecutorBenchmark(stub.url(), sessions, commands);
+            // Virtual first: idle per-session HTTP client threads from the platform
+            // run linger for a minute and would count towards the next peak
+            System.out.println(benchmark.run("virtual", Executors.newVirtualThreadPerTaskExecutor(),
+                new SharedHttpClientFactory(connections, Duration.ofSeconds(10))));
+            System.out.println(benchmark.run("platform", Executors.newFixedThreadPool(sessions), null));
+        }
+    }
+}
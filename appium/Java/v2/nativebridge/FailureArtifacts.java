@@ -0,0 +1,315 @@
+package nativebridge;
+
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.logging.LogEntry;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * FailureArtifacts - Screenshot, page source and logcat of every failed test
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * On a failure the screen, view hierarchy and recent logcat are fetched at
+ * the same time, so the test thread waits one round trip to the device
+ * instead of three. All three are in before capture() returns: the next test
+ * or SessionPool.release (reset, quit) must not run against the session while
+ * a fetch still uses it. Compressing and writing happen on a single writer
+ * thread: text is gzipped, screenshots are PNG already and are written as
+ * they are, each file through a FileChannel, to
+ * {@code -Dnativebridge.artifacts.dir/<Class.method>-<time>/}
+ * ({@code target/failure-artifacts} by default).
+ *
+ * The writer queue is bounded ({@code -Dnativebridge.artifacts.queue}, 32
+ * by default). When a burst of failures fills it, the least useful artifact
+ * goes first: logcat before screenshots, screenshots before page source and
+ * the failure itself. Dropped artifacts are counted in summary(). Whatever
+ * is queued when the JVM exits is still written.
+ *
+ * Scripts call capture() from their catch blocks. For JUnit and TestNG,
+ * FailureArtifactsListener captures failed tests from the driver that
+ * install() registered for the test class's thread.
+ */
+public final class FailureArtifacts {
+
+    /** What was captured, most useful first; under backpressure the last kinds are dropped first. */
+    public enum Kind {
+        FAILURE("failure.txt.gz"),
+        PAGE_SOURCE("page-source.xml.gz"),
+        SCREENSHOT("screenshot.png"),
+        LOGCAT("logcat.txt.gz");
+
+        private final String fileName;
+
+        Kind(String fileName) {
+            this.fileName = fileName;
+        }
+
+        public String fileName() {
+            return fileName;
+        }
+    }
+
+    private static final String DEFAULT_DIR = "target/failure-artifacts";
+
+    private static final int QUEUE_CAPACITY = Integer.getInteger("nativebridge.artifacts.queue", 32);
+
+    private static final int LOGCAT_LINES = Integer.getInteger("nativebridge.artifacts.logcatLines", 500);
+
+    // Longest the test thread waits for the fetches
+    private static final long FETCH_TIMEOUT_SECONDS = 30;
+
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private static final FailureArtifacts SHARED = new FailureArtifacts(
+        Paths.get(System.getProperty("nativebridge.artifacts.dir", DEFAULT_DIR)), QUEUE_CAPACITY);
+
+    // Driver of the test class running on this thread, for FailureArtifactsListener
+    private static final ThreadLocal<RemoteWebDriver> CURRENT = new ThreadLocal<>();
+
+    private final Path directory;
+    private final int capacity;
+    // Fetches wait on the device, so a virtual thread each
+    private final ExecutorService fetchers = Executors.newVirtualThreadPerTaskExecutor();
+    private final ExecutorService writer;
+    // Guarded by itself; most useful kind first, then oldest first
+    private final PriorityQueue<Artifact> queue = new PriorityQueue<>(
+        Comparator.comparingInt((Artifact a) -> a.kind.ordinal()).thenComparingLong(a -> a.sequence));
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final AtomicLong captured = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failedFetches = new AtomicLong();
+
+    public FailureArtifacts(Path directory, int capacity) {
+        this(directory, capacity, Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "failure-artifacts-writer");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    // Tests hand in a writer they can hold up, to fill the queue
+    FailureArtifacts(Path directory, int capacity, ExecutorService writer) {
+        this.directory = directory;
+        this.capacity = capacity;
+        this.writer = writer;
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "failure-artifacts-shutdown"));
+    }
+
+    /** JVM-wide capture used by the scripts and FailureArtifactsListener. */
+    public static FailureArtifacts shared() {
+        return SHARED;
+    }
+
+    /** Makes {@code driver} the one FailureArtifactsListener captures from on this thread. */
+    public static void install(RemoteWebDriver driver) {
+        CURRENT.set(driver);
+    }
+
+    /** The driver install() registered on this thread, or null. */
+    public static RemoteWebDriver current() {
+        return CURRENT.get();
+    }
+
+    public static void uninstall() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Captures what {@code driver} shows after {@code test} failed with
+     * {@code failure}. Returns once the screen, page source and logcat are
+     * fetched; writing them happens in the background. Never throws: a
+     * session that is gone simply yields fewer files.
+     */
+    public void capture(RemoteWebDriver driver, String test, Throwable failure) {
+        if (driver == null) {
+            return;
+        }
+        captured.incrementAndGet();
+        Path target = directory.resolve(safe(test) + "-" + LocalDateTime.now().format(STAMP));
+        enqueue(new Artifact(target, Kind.FAILURE, describe(test, failure)));
+        CompletableFuture<Void> screenshot = fetch(target, Kind.SCREENSHOT, () -> driver.getScreenshotAs(OutputType.BYTES));
+        CompletableFuture<Void> source = fetch(target, Kind.PAGE_SOURCE,
+            () -> driver.getPageSource().getBytes(StandardCharsets.UTF_8));
+        CompletableFuture<Void> logcat = fetch(target, Kind.LOGCAT, () -> logcat(driver));
+        try {
+            CompletableFuture.allOf(screenshot, source, logcat).get(FETCH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // Counted by fetch(); the test's own failure is what gets reported
+        }
+        System.out.println("Failure artifacts of " + test + " go to " + target.toAbsolutePath());
+    }
+
+    /** Finishes the fetches in flight and writes everything still queued; runs at JVM exit. */
+    public void shutdown() {
+        fetchers.shutdown();
+        try {
+            fetchers.awaitTermination(FETCH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer.shutdown();
+        try {
+            writer.awaitTermination(FETCH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public String summary() {
+        int queued;
+        synchronized (queue) {
+            queued = queue.size();
+        }
+        return captured.get() + " failures captured, " + written.get() + " artifacts written, " + queued
+            + " queued, " + dropped.get() + " dropped under backpressure, " + failedFetches.get() + " could not be fetched";
+    }
+
+    private CompletableFuture<Void> fetch(Path target, Kind kind, Supplier<byte[]> content) {
+        try {
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    enqueue(new Artifact(target, kind, content.get()));
+                } catch (RuntimeException e) {
+                    failedFetches.incrementAndGet();
+                    throw e;
+                }
+            }, fetchers);
+        } catch (RejectedExecutionException e) {
+            // The JVM is exiting
+            failedFetches.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    // A full queue gives up its least useful artifact, which may be the new one
+    private void enqueue(Artifact artifact) {
+        synchronized (queue) {
+            if (queue.size() >= capacity) {
+                Artifact leastUseful = artifact;
+                for (Artifact queued : queue) {
+                    if (queued.kind.ordinal() > leastUseful.kind.ordinal()
+                            || (queued.kind == leastUseful.kind && queued.sequence > leastUseful.sequence)) {
+                        leastUseful = queued;
+                    }
+                }
+                dropped.incrementAndGet();
+                if (leastUseful == artifact) {
+                    return;
+                }
+                queue.remove(leastUseful);
+            }
+            queue.add(artifact);
+        }
+        try {
+            writer.execute(this::writeNext);
+        } catch (RejectedExecutionException e) {
+            // Captured after the shutdown hook drained the queue
+            dropped.incrementAndGet();
+        }
+    }
+
+    // One task per enqueue; a task whose artifact was dropped finds the queue short by one
+    private void writeNext() {
+        Artifact next;
+        synchronized (queue) {
+            next = queue.poll();
+        }
+        if (next == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(next.target);
+            byte[] bytes = next.kind == Kind.SCREENSHOT ? next.content : gzip(next.content);
+            try (FileChannel channel = FileChannel.open(next.target.resolve(next.kind.fileName()),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            written.incrementAndGet();
+        } catch (IOException e) {
+            System.out.println("Could not write " + next.kind.fileName() + " to " + next.target + ": " + e.getMessage());
+        }
+    }
+
+    private static byte[] gzip(byte[] content) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // The last LOGCAT_LINES entries the server has buffered
+    private static byte[] logcat(RemoteWebDriver driver) {
+        List<LogEntry> entries = driver.manage().logs().get("logcat").getAll();
+        List<LogEntry> recent = new ArrayList<>(entries.subList(Math.max(0, entries.size() - LOGCAT_LINES), entries.size()));
+        StringBuilder text = new StringBuilder();
+        for (LogEntry entry : recent) {
+            text.append(entry.getTimestamp()).append(' ').append(entry.getLevel()).append(' ')
+                .append(entry.getMessage()).append('\n');
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] describe(String test, Throwable failure) {
+        StringWriter text = new StringWriter();
+        text.append(test).append(" failed at ").append(LocalDateTime.now().toString()).append('\n');
+        if (failure != null) {
+            failure.printStackTrace(new PrintWriter(text));
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String safe(String test) {
+        return test.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    private final class Artifact {
+
+        final Path target;
+        final Kind kind;
+        final byte[] content;
+        final long sequence = nextSequence.incrementAndGet();
+
+        Artifact(Path target, Kind kind, byte[] content) {
+            this.target = target;
+            this.kind = kind;
+            this.content = content;
+        }
+    }
+}
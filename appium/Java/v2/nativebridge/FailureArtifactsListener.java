@@ -0,0 +1,53 @@
+package nativebridge;
+
+import org.junit.jupiter.api.extension.AfterAllCallback;
+import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.testng.IClassListener;
+import org.testng.ITestClass;
+import org.testng.ITestListener;
+import org.testng.ITestResult;
+
+/**
+ * FailureArtifactsListener - Ties FailureArtifacts to JUnit and TestNG runs
+ * Compatible with Appium 2.x + Java Client 9.x + JUnit 5 + TestNG
+ *
+ * Captures every failed test method ({@code Class.method}) from the driver
+ * the test class passed to {@code FailureArtifacts.install()} in its setup,
+ * right after the method fails and before any teardown touches the app.
+ *
+ * TestNG: register in testng.xml {@code <listeners>}. JUnit: add
+ * {@code @ExtendWith(FailureArtifactsListener.class)} to the test classes.
+ */
+public final class FailureArtifactsListener implements ITestListener, IClassListener,
+        AfterTestExecutionCallback, AfterAllCallback {
+
+    // TestNG: runs on the test's thread, before @AfterMethod
+    @Override
+    public void onTestFailure(ITestResult result) {
+        FailureArtifacts.shared().capture(FailureArtifacts.current(),
+            result.getTestClass().getRealClass().getSimpleName() + "." + result.getMethod().getMethodName(),
+            result.getThrowable());
+    }
+
+    @Override
+    public void onAfterClass(ITestClass testClass) {
+        FailureArtifacts.uninstall();
+        System.out.println("Failure artifacts: " + FailureArtifacts.shared().summary());
+    }
+
+    // JUnit: runs before @AfterEach
+    @Override
+    public void afterTestExecution(ExtensionContext context) {
+        context.getExecutionException().ifPresent(failure -> FailureArtifacts.shared().capture(
+            FailureArtifacts.current(),
+            context.getRequiredTestClass().getSimpleName() + "." + context.getRequiredTestMethod().getName(),
+            failure));
+    }
+
+    @Override
+    public void afterAll(ExtensionContext context) {
+        FailureArtifacts.uninstall();
+        System.out.println("Failure artifacts: " + FailureArtifacts.shared().summary());
+    }
+}
@@ -0,0 +1,166 @@
+package nativebridge;
+
+import org.openqa.selenium.Point;
+import org.openqa.selenium.Rectangle;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.interactions.Interaction;
+import org.openqa.selenium.interactions.Pause;
+import org.openqa.selenium.interactions.PointerInput;
+import org.openqa.selenium.interactions.Sequence;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gestures - Several touch gestures sent as one W3C actions request
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * performSwipe sends one actions request per swipe, and the scripts waited
+ * between swipes on the client. A Gestures chain appends swipes, taps, pauses
+ * and two-finger pinches to the same pointer sequences and sends them in a
+ * single perform() call, so the device plays them back to back with the
+ * pauses timed on the server.
+ *
+ * W3C actions advance all fingers one tick at a time; whenever a gesture uses
+ * fewer fingers than the chain has, the idle fingers get zero-length pauses so
+ * every sequence stays tick-aligned.
+ *
+ * Swipes can also be given as fractions of the screen or of an element's
+ * rectangle (see Viewport), which land in the same place on every screen
+ * size; the window size is fetched once per session.
+ *
+ * {@code new Gestures(driver).swipe(500, 1000, 500, 300, 1000).pause(300).swipe(500, 300, 500, 1000, 1000).perform();}
+ */
+public final class Gestures {
+
+    private static final int LEFT = PointerInput.MouseButton.LEFT.asArg();
+
+    private final RemoteWebDriver driver;
+    private final List<PointerInput> fingers = new ArrayList<>();
+    private final List<Sequence> sequences = new ArrayList<>();
+    private int ticks;
+    private int gestures;
+
+    public Gestures(RemoteWebDriver driver) {
+        this.driver = driver;
+    }
+
+    /** One finger from (startX, startY) to (endX, endY), same as performSwipe. */
+    public Gestures swipe(int startX, int startY, int endX, int endY, int durationMs) {
+        PointerInput finger = finger(0);
+        tick(finger.createPointerMove(Duration.ZERO, PointerInput.Origin.viewport(), startX, startY));
+        tick(finger.createPointerDown(LEFT));
+        tick(finger.createPointerMove(Duration.ofMillis(durationMs), PointerInput.Origin.viewport(), endX, endY));
+        tick(finger.createPointerUp(LEFT));
+        gestures++;
+        return this;
+    }
+
+    /**
+     * Swipe between points given as fractions of the screen, e.g.
+     * {@code swipeFraction(0.5, 0.8, 0.5, 0.2, 800)} scrolls the content down.
+     */
+    public Gestures swipeFraction(double startX, double startY, double endX, double endY, int durationMs) {
+        Point start = Viewport.at(driver, startX, startY);
+        Point end = Viewport.at(driver, endX, endY);
+        return swipe(start.getX(), start.getY(), end.getX(), end.getY(), durationMs);
+    }
+
+    /** Swipe between points given as fractions of {@code rect}, e.g. a scroll view's getRect(). */
+    public Gestures swipeWithin(Rectangle rect, double startX, double startY, double endX, double endY, int durationMs) {
+        Point start = Viewport.within(rect, startX, startY);
+        Point end = Viewport.within(rect, endX, endY);
+        return swipe(start.getX(), start.getY(), end.getX(), end.getY(), durationMs);
+    }
+
+    /** Tap at viewport coordinates. */
+    public Gestures tap(int x, int y) {
+        return tap(PointerInput.Origin.viewport(), x, y);
+    }
+
+    /** Tap on the centre of {@code element}; the server resolves the position, no getRect() needed. */
+    public Gestures tap(WebElement element) {
+        return tap(PointerInput.Origin.fromElement(element), 0, 0);
+    }
+
+    private Gestures tap(PointerInput.Origin origin, int x, int y) {
+        PointerInput finger = finger(0);
+        tick(finger.createPointerMove(Duration.ZERO, origin, x, y));
+        tick(finger.createPointerDown(LEFT));
+        tick(finger.createPointerUp(LEFT));
+        gestures++;
+        return this;
+    }
+
+    /** Server-side pause between the previous and the next gesture. */
+    public Gestures pause(Duration duration) {
+        tick(new Pause(finger(0), duration));
+        return this;
+    }
+
+    public Gestures pause(int millis) {
+        return pause(Duration.ofMillis(millis));
+    }
+
+    /**
+     * Two fingers on a horizontal line through (centerX, centerY), moving from
+     * {@code startDistance} to {@code endDistance} apart: a pinch-in when the
+     * end distance is smaller, a zoom (pinch-out) when it is larger.
+     */
+    public Gestures pinch(int centerX, int centerY, int startDistance, int endDistance, int durationMs) {
+        PointerInput left = finger(0);
+        PointerInput right = finger(1);
+        Duration duration = Duration.ofMillis(durationMs);
+        tick(left.createPointerMove(Duration.ZERO, PointerInput.Origin.viewport(), centerX - startDistance / 2, centerY),
+            right.createPointerMove(Duration.ZERO, PointerInput.Origin.viewport(), centerX + startDistance / 2, centerY));
+        tick(left.createPointerDown(LEFT), right.createPointerDown(LEFT));
+        tick(left.createPointerMove(duration, PointerInput.Origin.viewport(), centerX - endDistance / 2, centerY),
+            right.createPointerMove(duration, PointerInput.Origin.viewport(), centerX + endDistance / 2, centerY));
+        tick(left.createPointerUp(LEFT), right.createPointerUp(LEFT));
+        gestures++;
+        return this;
+    }
+
+    /** Number of gestures (not counting pauses) in the chain. */
+    public int size() {
+        return gestures;
+    }
+
+    /** The chain as W3C sequences, one per finger. */
+    public List<Sequence> sequences() {
+        return new ArrayList<>(sequences);
+    }
+
+    /** Sends the whole chain in one actions request and starts a new, empty chain. */
+    public void perform() {
+        if (ticks > 0) {
+            // A copy: the command keeps the list, and listeners may read it after the chain is cleared
+            driver.perform(new ArrayList<>(sequences));
+        }
+        fingers.clear();
+        sequences.clear();
+        ticks = 0;
+        gestures = 0;
+    }
+
+    private PointerInput finger(int index) {
+        while (fingers.size() <= index) {
+            PointerInput finger = new PointerInput(PointerInput.Kind.TOUCH, "finger" + (fingers.size() + 1));
+            fingers.add(finger);
+            // A finger joining late idles through the ticks it missed
+            sequences.add(new Sequence(finger, ticks));
+        }
+        return fingers.get(index);
+    }
+
+    // One tick: the given action per finger in order, a zero pause for the rest
+    private void tick(Interaction... actions) {
+        for (int i = 0; i < fingers.size(); i++) {
+            Interaction action = i < actions.length ? actions[i] : new Pause(fingers.get(i), Duration.ZERO);
+            sequences.get(i).addAction(action);
+        }
+        ticks++;
+    }
+}
@@ -0,0 +1,246 @@
+package nativebridge;
+
+import org.junit.jupiter.api.ClassDescriptor;
+import org.junit.jupiter.api.ClassOrderer;
+import org.junit.jupiter.api.ClassOrdererContext;
+import org.junit.jupiter.api.MethodDescriptor;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.MethodOrdererContext;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.BeforeTestExecutionCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.testng.IMethodInstance;
+import org.testng.IMethodInterceptor;
+import org.testng.ITestContext;
+import org.testng.ITestListener;
+import org.testng.ITestNGMethod;
+import org.testng.ITestResult;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HistoryScheduler - Starts the test classes in the order that finishes the run first
+ * Compatible with Appium 2.x + Java Client 9.x + JUnit 5 + TestNG
+ *
+ * Workers take the next test class as soon as their device is free, so the
+ * order the classes are handed out in decides how long the run takes: if the
+ * longest class starts last, every other device sits idle while it finishes.
+ * This scheduler records every test method's duration and outcome in
+ * TestHistory and hands the classes out longest first, by the sum of their
+ * methods' recent mean durations. Classes that have never run count as the
+ * longest, since nothing says they are short.
+ *
+ * Classes with a method that failed in a recent share of runs of at least
+ * {@code -Dnativebridge.schedule.failFirst} (0.2 by default) go before all
+ * others, shortest first, so a likely failure is reported in the first
+ * minutes instead of at the end.
+ *
+ * The methods of a class keep their {@code @Order} / {@code priority}
+ * order, since they share a session and build on each other's state; only
+ * methods with the same order value are reordered, likely failures first.
+ *
+ * TestNG: register in testng.xml {@code <listeners>} after DeviceSharding.
+ * JUnit: set {@code junit.jupiter.testclass.order.default} to this class,
+ * add it to {@code @ExtendWith} and use {@code @TestMethodOrder(HistoryScheduler.class)}.
+ * Jupiter forks concurrent classes in an order of its own, so the schedule
+ * also ranks each class's wait for a device in DeviceRegistry. Once the
+ * order is known, each class's {@code @PrepareSession} method runs in that
+ * order, so SessionPool gets the sessions ready the way TestNG's
+ * {@code @BeforeSuite} does.
+ */
+public final class HistoryScheduler implements IMethodInterceptor, ITestListener, ClassOrderer, MethodOrderer,
+        BeforeAllCallback, BeforeTestExecutionCallback, AfterTestExecutionCallback {
+
+    private static final double FAIL_FIRST = Double.parseDouble(
+        System.getProperty("nativebridge.schedule.failFirst", "0.2"));
+
+    // The JUnit class order, for ranking classes that wait for a device
+    private static volatile List<String> classOrder = Collections.emptyList();
+
+    private final TestHistory history;
+
+    public HistoryScheduler() {
+        this(TestHistory.shared());
+    }
+
+    public HistoryScheduler(TestHistory history) {
+        this.history = history;
+    }
+
+    /** {@code classes} in the order they should start; see the class comment. */
+    public List<String> schedule(List<String> classes) {
+        List<String> ordered = new ArrayList<>(classes);
+        ordered.sort(Comparator
+            .comparingInt((String c) -> isLikelyToFail(c) ? 0 : 1)
+            .thenComparingDouble(c -> isLikelyToFail(c) ? expectedMillis(c) : -expectedMillis(c)));
+        return ordered;
+    }
+
+    /** Sum of the recent mean durations of {@code testClass}'s methods; infinite if it has never run. */
+    public double expectedMillis(String testClass) {
+        Map<String, TestHistory.Stat> methods = history.methods(testClass);
+        if (methods.isEmpty()) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double millis = 0;
+        for (TestHistory.Stat stat : methods.values()) {
+            millis += stat.meanMillis();
+        }
+        return millis;
+    }
+
+    public boolean isLikelyToFail(String testClass) {
+        for (TestHistory.Stat stat : history.methods(testClass).values()) {
+            if (stat.failureRate() >= FAIL_FIRST) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // TestNG: classes in schedule order, each class's methods by priority
+    @Override
+    public List<IMethodInstance> intercept(List<IMethodInstance> methods, ITestContext context) {
+        Map<String, List<IMethodInstance>> byClass = new LinkedHashMap<>();
+        for (IMethodInstance method : methods) {
+            byClass.computeIfAbsent(method.getMethod().getRealClass().getName(), c -> new ArrayList<>()).add(method);
+        }
+        List<String> order = schedule(new ArrayList<>(byClass.keySet()));
+        report(order);
+        List<IMethodInstance> scheduled = new ArrayList<>(methods.size());
+        for (String testClass : order) {
+            List<IMethodInstance> classMethods = byClass.get(testClass);
+            classMethods.sort(Comparator
+                .comparingInt((IMethodInstance m) -> m.getMethod().getPriority())
+                .thenComparingDouble(m -> -failureRate(m.getMethod())));
+            scheduled.addAll(classMethods);
+        }
+        return scheduled;
+    }
+
+    @Override
+    public void onTestSuccess(ITestResult result) {
+        record(result, true);
+    }
+
+    @Override
+    public void onTestFailure(ITestResult result) {
+        record(result, false);
+    }
+
+    @Override
+    public void onTestFailedButWithinSuccessPercentage(ITestResult result) {
+        record(result, false);
+    }
+
+    // JUnit: classes in schedule order
+    @Override
+    public void orderClasses(ClassOrdererContext context) {
+        DeviceSharding shard = new DeviceSharding();
+        List<String> names = new ArrayList<>();
+        for (ClassDescriptor descriptor : context.getClassDescriptors()) {
+            // Classes of another shard never ask for a device
+            if (shard.owns(descriptor.getTestClass())) {
+                names.add(descriptor.getTestClass().getName());
+            }
+        }
+        List<String> order = schedule(names);
+        classOrder = order;
+        DeviceRegistry.shared().expectRanks(order.size());
+        report(order);
+        context.getClassDescriptors().sort(Comparator.comparingInt(d -> order.indexOf(d.getTestClass().getName())));
+        for (ClassDescriptor descriptor : context.getClassDescriptors()) {
+            if (order.contains(descriptor.getTestClass().getName())) {
+                prepareSession(descriptor.getTestClass());
+            }
+        }
+    }
+
+    // Runs before any class starts; a failure only costs the head start
+    private static void prepareSession(Class<?> testClass) {
+        for (Method method : testClass.getDeclaredMethods()) {
+            if (method.isAnnotationPresent(PrepareSession.class) && Modifier.isStatic(method.getModifiers())) {
+                try {
+                    method.setAccessible(true);
+                    method.invoke(null);
+                } catch (ReflectiveOperationException | RuntimeException e) {
+                    Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+                    System.out.println("Could not prepare a session for " + testClass.getSimpleName() + ": " + cause);
+                }
+            }
+        }
+    }
+
+    // JUnit: @Order first, likely failures first among equal orders
+    @Override
+    public void orderMethods(MethodOrdererContext context) {
+        context.getMethodDescriptors().sort(Comparator
+            .comparingInt((MethodDescriptor m) -> m.findAnnotation(Order.class).map(Order::value).orElse(Order.DEFAULT))
+            .thenComparingDouble(m -> -failureRate(m.getMethod().getDeclaringClass().getName(), m.getMethod().getName())));
+    }
+
+    // JUnit starts concurrent classes in an order of its own and they queue for
+    // a device; the device goes to the class that comes first in the schedule
+    @Override
+    public void beforeAll(ExtensionContext context) {
+        int rank = classOrder.indexOf(context.getRequiredTestClass().getName());
+        if (rank >= 0) {
+            DeviceRegistry.shared().rankNextAcquire(rank);
+        }
+    }
+
+    @Override
+    public void beforeTestExecution(ExtensionContext context) {
+        context.getStore(ExtensionContext.Namespace.create(HistoryScheduler.class))
+            .put("start", System.nanoTime());
+    }
+
+    @Override
+    public void afterTestExecution(ExtensionContext context) {
+        Long start = context.getStore(ExtensionContext.Namespace.create(HistoryScheduler.class))
+            .remove("start", Long.class);
+        if (start != null) {
+            history.record(context.getRequiredTestClass().getName(), context.getRequiredTestMethod().getName(),
+                (System.nanoTime() - start) / 1_000_000, !context.getExecutionException().isPresent());
+        }
+    }
+
+    private void record(ITestResult result, boolean passed) {
+        history.record(result.getTestClass().getRealClass().getName(), result.getMethod().getMethodName(),
+            result.getEndMillis() - result.getStartMillis(), passed);
+    }
+
+    private double failureRate(ITestNGMethod method) {
+        return failureRate(method.getRealClass().getName(), method.getMethodName());
+    }
+
+    private double failureRate(String testClass, String method) {
+        TestHistory.Stat stat = history.method(testClass, method);
+        return stat != null ? stat.failureRate() : 0;
+    }
+
+    private void report(List<String> order) {
+        if (order.size() < 2) {
+            return;
+        }
+        StringBuilder plan = new StringBuilder("Class schedule:");
+        for (String testClass : order) {
+            double millis = expectedMillis(testClass);
+            plan.append(' ').append(testClass).append(" (")
+                .append(Double.isInfinite(millis) ? "no history" : String.format("~%.1fs", millis / 1000))
+                .append(isLikelyToFail(testClass) ? ", failing recently" : "")
+                .append(')');
+        }
+        System.out.println(plan);
+    }
+}
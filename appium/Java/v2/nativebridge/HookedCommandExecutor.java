@@ -0,0 +1,155 @@
+package nativebridge;
+
+import io.appium.java_client.AppiumClientConfig;
+import io.appium.java_client.MobileCommand;
+import io.appium.java_client.remote.AppiumCommandExecutor;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+import org.openqa.selenium.remote.http.HttpClient;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * HookedCommandExecutor - Observable Appium command path
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * Every driver and element call ends up as one Command going through the
+ * driver's executor. This executor behaves exactly like the stock
+ * AppiumCommandExecutor and additionally reports each command, its response
+ * and its wall-clock time to registered listeners. Helpers use it to react to
+ * what the script does without the script having to tell them, e.g. dropping a
+ * cached page snapshot after a click. Rewriters go one step further and may
+ * replace a command before it is sent, e.g. XPathTranslator swapping an XPath
+ * lookup for an equivalent native one.
+ */
+public class HookedCommandExecutor extends AppiumCommandExecutor {
+
+    /** Callbacks run on the thread that issued the command. */
+    public interface Listener {
+
+        default void beforeCommand(Command command) {
+        }
+
+        default void afterCommand(Command command, Response response, long elapsedNanos) {
+        }
+
+        default void onCommandFailure(Command command, Throwable error, long elapsedNanos) {
+        }
+    }
+
+    /** Returns the command to send instead of {@code command}, or {@code command} itself. */
+    public interface Rewriter {
+
+        Command rewrite(Command command);
+    }
+
+    // Listeners for every executor in the JVM, e.g. CommandMetrics
+    private static final List<Listener> GLOBAL_LISTENERS = new CopyOnWriteArrayList<>();
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final List<Rewriter> rewriters = new CopyOnWriteArrayList<>();
+
+    public HookedCommandExecutor(URL serverUrl) {
+        super(MobileCommand.commandRepository, AppiumClientConfig.defaultConfig().baseUrl(serverUrl));
+    }
+
+    /** Sends commands through clients from {@code httpClients}, e.g. a SharedHttpClientFactory. */
+    public HookedCommandExecutor(URL serverUrl, HttpClient.Factory httpClients) {
+        super(MobileCommand.commandRepository, null, httpClients, AppiumClientConfig.defaultConfig().baseUrl(serverUrl));
+    }
+
+    /** The executor behind {@code driver}; the driver must come from DriverFactory. */
+    public static HookedCommandExecutor of(RemoteWebDriver driver) {
+        CommandExecutor executor = driver.getCommandExecutor();
+        if (!(executor instanceof HookedCommandExecutor)) {
+            throw new IllegalArgumentException(
+                "Driver was not created through DriverFactory: " + executor.getClass().getName());
+        }
+        return (HookedCommandExecutor) executor;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /** Drops every listener of this executor, e.g. when a pooled session changes hands. */
+    public void clearListeners() {
+        listeners.clear();
+    }
+
+    /**
+     * Runs {@code rewriter} on every command before the listeners see it. Unlike
+     * listeners, rewriters stay when a pooled session changes hands, so they
+     * must not change what a command does, only how it is expressed.
+     */
+    public void addRewriter(Rewriter rewriter) {
+        if (!rewriters.contains(rewriter)) {
+            rewriters.add(rewriter);
+        }
+    }
+
+    public void removeRewriter(Rewriter rewriter) {
+        rewriters.remove(rewriter);
+    }
+
+    public List<Rewriter> rewriters() {
+        return new ArrayList<>(rewriters);
+    }
+
+    /** Registers {@code listener} on every executor, including ones created later. */
+    public static void addGlobalListener(Listener listener) {
+        if (!GLOBAL_LISTENERS.contains(listener)) {
+            GLOBAL_LISTENERS.add(listener);
+        }
+    }
+
+    public static void removeGlobalListener(Listener listener) {
+        GLOBAL_LISTENERS.remove(listener);
+    }
+
+    @Override
+    public Response execute(Command command) throws WebDriverException {
+        for (Rewriter rewriter : rewriters) {
+            command = rewriter.rewrite(command);
+        }
+        List<Listener> listeners = listeners();
+        for (Listener listener : listeners) {
+            listener.beforeCommand(command);
+        }
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = super.execute(command);
+        } catch (RuntimeException e) {
+            long elapsed = System.nanoTime() - start;
+            for (Listener listener : listeners) {
+                listener.onCommandFailure(command, e, elapsed);
+            }
+            throw e;
+        }
+        long elapsed = System.nanoTime() - start;
+        for (Listener listener : listeners) {
+            listener.afterCommand(command, response, elapsed);
+        }
+        return response;
+    }
+
+    private List<Listener> listeners() {
+        if (GLOBAL_LISTENERS.isEmpty()) {
+            return listeners;
+        }
+        List<Listener> all = new ArrayList<>(GLOBAL_LISTENERS);
+        all.addAll(listeners);
+        return all;
+    }
+}
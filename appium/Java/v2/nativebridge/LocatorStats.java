@@ -0,0 +1,349 @@
+package nativebridge;
+
+import io.appium.java_client.AppiumBy;
+import org.openqa.selenium.By;
+import org.openqa.selenium.json.Json;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * LocatorStats - Which locator strategy finds which element, remembered across runs
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * The scripts know an element by its React Native testID and try the same
+ * strategies for every lookup: XPath on the resource-id, the plain id, and
+ * the package-qualified id. Which of them works depends on the app build, and
+ * it doesn't change between lookups of the same element. This class keeps,
+ * per app package and element id, each strategy's hits, misses and hit
+ * latency, and ranks the strategies so AdaptiveLocator tries the fastest
+ * known-good one first.
+ *
+ * A strategy that missed while another one found the element moves behind
+ * the strategies that still work until it succeeds again; lookups where no
+ * strategy finds anything say nothing about the strategies and are not
+ * counted.
+ *
+ * The stats live in a small JSON file, {@code .nativebridge/locator-stats.json}
+ * by default ({@code -Dnativebridge.locators.file}), read on first use and
+ * written when the JVM exits, so the next run starts with what this one learned.
+ */
+public final class LocatorStats {
+
+    /** The lookups AdaptiveLocator can choose from, in the order the scripts used to try them. */
+    public enum Strategy {
+        RESOURCE_ID_XPATH,
+        ID,
+        PACKAGE_ID;
+
+        /** The locator for {@code elementId}, or null if it is the same as another strategy's. */
+        public By by(String appPackage, String elementId) {
+            boolean qualified = elementId.contains(":id/");
+            switch (this) {
+                case RESOURCE_ID_XPATH:
+                    return AppiumBy.xpath("//*[@resource-id='" + elementId + "']");
+                case ID:
+                    return AppiumBy.id(elementId);
+                default:
+                    return qualified || appPackage == null ? null : AppiumBy.id(appPackage + ":id/" + elementId);
+            }
+        }
+    }
+
+    private static final Json JSON = new Json();
+
+    private static final LocatorStats SHARED = load(defaultFile());
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(SHARED::saveQuietly, "locator-stats-save"));
+    }
+
+    private final Path file;
+    // "<appPackage>|<elementId>" -> per-strategy counters
+    private final Map<String, Map<Strategy, Counter>> elements = new ConcurrentHashMap<>();
+
+    public LocatorStats(Path file) {
+        this.file = file;
+    }
+
+    /** JVM-wide stats used by the sample scripts, saved at exit. */
+    public static LocatorStats shared() {
+        return SHARED;
+    }
+
+    public static Path defaultFile() {
+        return Paths.get(System.getProperty("nativebridge.locators.file", ".nativebridge/locator-stats.json"));
+    }
+
+    /** Stats from {@code file}; empty if it doesn't exist or can't be read. */
+    public static LocatorStats load(Path file) {
+        LocatorStats stats = new LocatorStats(file);
+        if (!Files.isRegularFile(file)) {
+            return stats;
+        }
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Map<String, Object> json = JSON.toType(reader, Json.MAP_TYPE);
+            Object saved = json.get("elements");
+            if (saved instanceof Map) {
+                for (Map.Entry<?, ?> element : ((Map<?, ?>) saved).entrySet()) {
+                    Map<Strategy, Counter> counters = stats.counters(String.valueOf(element.getKey()));
+                    for (Map.Entry<?, ?> strategy : ((Map<?, ?>) element.getValue()).entrySet()) {
+                        counters.get(Strategy.valueOf(String.valueOf(strategy.getKey())))
+                            .restore((Map<?, ?>) strategy.getValue());
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // A stale or corrupt file only costs the learning, start over
+            System.out.println("Ignoring locator stats in " + file + ": " + e.getMessage());
+            stats.elements.clear();
+        }
+        return stats;
+    }
+
+    /**
+     * The strategies for {@code elementId}, best first: working strategies by
+     * mean hit latency, then untried ones in the scripts' order, then those
+     * that have been missing.
+     */
+    public List<Strategy> rank(String appPackage, String elementId) {
+        Map<Strategy, Counter> counters = counters(key(appPackage, elementId));
+        List<Strategy> ranked = new ArrayList<>();
+        for (Strategy strategy : Strategy.values()) {
+            if (strategy.by(appPackage, elementId) != null) {
+                ranked.add(strategy);
+            }
+        }
+        ranked.sort(Comparator
+            .comparingInt((Strategy s) -> counters.get(s).failing() ? 2 : counters.get(s).hits() > 0 ? 0 : 1)
+            .thenComparingDouble(s -> counters.get(s).meanHitMillis())
+            .thenComparingInt(Strategy::ordinal));
+        return ranked;
+    }
+
+    /** True once {@code strategy} has found {@code elementId} and hasn't missed since. */
+    public boolean isKnownGood(String appPackage, String elementId, Strategy strategy) {
+        Counter counter = counters(key(appPackage, elementId)).get(strategy);
+        return counter.hits() > 0 && !counter.failing();
+    }
+
+    public void recordHit(String appPackage, String elementId, Strategy strategy, long elapsedNanos) {
+        counters(key(appPackage, elementId)).get(strategy).hit(elapsedNanos);
+    }
+
+    /** {@code strategy} didn't find {@code elementId} although another strategy did. */
+    public void recordMiss(String appPackage, String elementId, Strategy strategy) {
+        counters(key(appPackage, elementId)).get(strategy).miss();
+    }
+
+    /** Per-element stats: "<appPackage>|<elementId>" -> strategy -> counters. */
+    public Map<String, Map<Strategy, Stat>> elements() {
+        Map<String, Map<Strategy, Stat>> snapshot = new TreeMap<>();
+        for (Map.Entry<String, Map<Strategy, Counter>> element : elements.entrySet()) {
+            Map<Strategy, Stat> strategies = new EnumMap<>(Strategy.class);
+            for (Map.Entry<Strategy, Counter> counter : element.getValue().entrySet()) {
+                strategies.put(counter.getKey(), counter.getValue().stat());
+            }
+            snapshot.put(element.getKey(), strategies);
+        }
+        return snapshot;
+    }
+
+    /** Stats per strategy, summed over every element. */
+    public Map<Strategy, Stat> strategies() {
+        Map<Strategy, Counter> totals = new EnumMap<>(Strategy.class);
+        for (Strategy strategy : Strategy.values()) {
+            totals.put(strategy, new Counter());
+        }
+        for (Map<Strategy, Counter> counters : elements.values()) {
+            for (Map.Entry<Strategy, Counter> counter : counters.entrySet()) {
+                totals.get(counter.getKey()).add(counter.getValue());
+            }
+        }
+        Map<Strategy, Stat> stats = new EnumMap<>(Strategy.class);
+        for (Map.Entry<Strategy, Counter> total : totals.entrySet()) {
+            stats.put(total.getKey(), total.getValue().stat());
+        }
+        return stats;
+    }
+
+    /** One line per strategy for the end-of-run report. */
+    public String summary() {
+        StringBuilder summary = new StringBuilder("Locator strategies (hits, misses, mean hit):");
+        for (Map.Entry<Strategy, Stat> entry : strategies().entrySet()) {
+            Stat stat = entry.getValue();
+            summary.append(String.format("%n  %-18s %6d %6d %8.1fms",
+                entry.getKey(), stat.hits(), stat.misses(), stat.meanHitMillis()));
+        }
+        return summary.toString();
+    }
+
+    /** Writes the stats to the file (via a temp file, so a crash never leaves half a file). */
+    public synchronized Path save() {
+        Map<String, Object> saved = new TreeMap<>();
+        for (Map.Entry<String, Map<Strategy, Counter>> element : elements.entrySet()) {
+            Map<String, Object> strategies = new LinkedHashMap<>();
+            for (Map.Entry<Strategy, Counter> counter : element.getValue().entrySet()) {
+                if (counter.getValue().hits() + counter.getValue().misses() > 0) {
+                    strategies.put(counter.getKey().name(), counter.getValue().toJson());
+                }
+            }
+            if (!strategies.isEmpty()) {
+                saved.put(element.getKey(), strategies);
+            }
+        }
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("version", 1);
+        json.put("elements", saved);
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write(JSON.toJson(json));
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write locator stats to " + file, e);
+        }
+        return file;
+    }
+
+    private void saveQuietly() {
+        if (elements.isEmpty()) {
+            return;
+        }
+        try {
+            save();
+        } catch (RuntimeException e) {
+            System.out.println("Locator stats not saved: " + e.getMessage());
+        }
+    }
+
+    private Map<Strategy, Counter> counters(String key) {
+        return elements.computeIfAbsent(key, k -> {
+            Map<Strategy, Counter> counters = new EnumMap<>(Strategy.class);
+            for (Strategy strategy : Strategy.values()) {
+                counters.put(strategy, new Counter());
+            }
+            return counters;
+        });
+    }
+
+    private static String key(String appPackage, String elementId) {
+        return appPackage + "|" + elementId;
+    }
+
+    /** Hits, misses and mean hit latency of one strategy. */
+    public static final class Stat {
+
+        private final long hits;
+        private final long misses;
+        private final double meanHitMillis;
+
+        Stat(long hits, long misses, double meanHitMillis) {
+            this.hits = hits;
+            this.misses = misses;
+            this.meanHitMillis = meanHitMillis;
+        }
+
+        public long hits() {
+            return hits;
+        }
+
+        public long misses() {
+            return misses;
+        }
+
+        public double meanHitMillis() {
+            return meanHitMillis;
+        }
+    }
+
+    private static final class Counter {
+
+        private long hits;
+        private long misses;
+        private long hitNanos;
+        // Misses since the last hit; any makes the strategy rank behind working ones
+        private int recentMisses;
+
+        synchronized void hit(long nanos) {
+            hits++;
+            hitNanos += nanos;
+            recentMisses = 0;
+        }
+
+        synchronized void miss() {
+            misses++;
+            recentMisses++;
+        }
+
+        synchronized long hits() {
+            return hits;
+        }
+
+        synchronized long misses() {
+            return misses;
+        }
+
+        synchronized boolean failing() {
+            return recentMisses > 0;
+        }
+
+        synchronized double meanHitMillis() {
+            return hits == 0 ? Double.MAX_VALUE : hitNanos / 1e6 / hits;
+        }
+
+        synchronized void add(Counter other) {
+            hits += other.hits();
+            misses += other.misses();
+            hitNanos += other.hitNanos();
+        }
+
+        synchronized long hitNanos() {
+            return hitNanos;
+        }
+
+        synchronized Stat stat() {
+            return new Stat(hits, misses, hits == 0 ? 0 : hitNanos / 1e6 / hits);
+        }
+
+        synchronized Map<String, Object> toJson() {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("hits", hits);
+            json.put("misses", misses);
+            json.put("hitNanos", hitNanos);
+            json.put("recentMisses", recentMisses);
+            return json;
+        }
+
+        synchronized void restore(Map<?, ?> json) {
+            hits = number(json.get("hits"));
+            misses = number(json.get("misses"));
+            hitNanos = number(json.get("hitNanos"));
+            recentMisses = (int) number(json.get("recentMisses"));
+        }
+
+        private static long number(Object value) {
+            return value instanceof Number ? ((Number) value).longValue() : 0;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package nativebridge;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PageSnapshot - Parsed UiAutomator hierarchy with local lookups
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * Holds one getPageSource() result as an in-memory tree indexed by
+ * resource-id, text and class, so existence, visibility and text checks are
+ * answered locally instead of costing a server-side search each. Resource ids
+ * are indexed both in full ({@code com.testapp1:id/text-input}) and by their
+ * short form ({@code text-input}). Anything the indexes don't cover can be
+ * evaluated as XPath against the same tree.
+ *
+ * Parsing needs no driver, so saved hierarchy XML can be checked offline:
+ * {@code java nativebridge.PageSnapshot hierarchy.xml [resource-id...]}
+ */
+public final class PageSnapshot {
+
+    private final Document document;
+    private final List<Node> nodes = new ArrayList<>();
+    private final Map<String, List<Node>> byResourceId = new HashMap<>();
+    private final Map<String, List<Node>> byText = new HashMap<>();
+    private final Map<String, List<Node>> byClass = new HashMap<>();
+
+    private PageSnapshot(Document document) {
+        this.document = document;
+        index(document.getDocumentElement());
+    }
+
+    public static PageSnapshot parse(String pageSource) {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            return new PageSnapshot(factory.newDocumentBuilder().parse(new InputSource(new StringReader(pageSource))));
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Could not parse page source: " + e.getMessage(), e);
+        }
+    }
+
+    private void index(Element element) {
+        Node node = new Node(element);
+        nodes.add(node);
+        String resourceId = node.resourceId();
+        if (!resourceId.isEmpty()) {
+            add(byResourceId, resourceId, node);
+            int shortForm = resourceId.indexOf(":id/");
+            if (shortForm >= 0) {
+                add(byResourceId, resourceId.substring(shortForm + 4), node);
+            }
+        }
+        if (!node.text().isEmpty()) {
+            add(byText, node.text(), node);
+        }
+        add(byClass, node.className(), node);
+
+        NodeList children = element.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            if (children.item(i) instanceof Element) {
+                index((Element) children.item(i));
+            }
+        }
+    }
+
+    private static void add(Map<String, List<Node>> index, String key, Node node) {
+        index.computeIfAbsent(key, k -> new ArrayList<>()).add(node);
+    }
+
+    /** First node with this resource-id (full or short form), or null. */
+    public Node find(String resourceId) {
+        List<Node> found = findAll(resourceId);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    public List<Node> findAll(String resourceId) {
+        return byResourceId.getOrDefault(resourceId, Collections.emptyList());
+    }
+
+    public List<Node> findByText(String text) {
+        return byText.getOrDefault(text, Collections.emptyList());
+    }
+
+    public List<Node> findByTextContaining(String fragment) {
+        List<Node> found = new ArrayList<>();
+        for (Map.Entry<String, List<Node>> entry : byText.entrySet()) {
+            if (entry.getKey().contains(fragment)) {
+                found.addAll(entry.getValue());
+            }
+        }
+        return found;
+    }
+
+    public List<Node> findByClass(String className) {
+        return byClass.getOrDefault(className, Collections.emptyList());
+    }
+
+    public boolean exists(String resourceId) {
+        return find(resourceId) != null;
+    }
+
+    public boolean isDisplayed(String resourceId) {
+        Node node = find(resourceId);
+        return node != null && node.isDisplayed();
+    }
+
+    /** Text of the first node with this resource-id, or null when absent. */
+    public String text(String resourceId) {
+        Node node = find(resourceId);
+        return node == null ? null : node.text();
+    }
+
+    /** Evaluates {@code expression} against the snapshot without a server round trip. */
+    public List<Node> xpath(String expression) {
+        try {
+            NodeList matches = (NodeList) XPathFactory.newInstance().newXPath()
+                .evaluate(expression, document, XPathConstants.NODESET);
+            List<Node> found = new ArrayList<>(matches.getLength());
+            for (int i = 0; i < matches.getLength(); i++) {
+                if (matches.item(i) instanceof Element) {
+                    found.add(new Node((Element) matches.item(i)));
+                }
+            }
+            return found;
+        } catch (XPathExpressionException e) {
+            throw new IllegalArgumentException("Invalid XPath: " + expression, e);
+        }
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    /** One element of the hierarchy. */
+    public static final class Node {
+
+        private final Element element;
+
+        private Node(Element element) {
+            this.element = element;
+        }
+
+        public String attribute(String name) {
+            return element.hasAttribute(name) ? element.getAttribute(name) : null;
+        }
+
+        public Map<String, String> attributes() {
+            NamedNodeMap attributes = element.getAttributes();
+            Map<String, String> values = new LinkedHashMap<>();
+            for (int i = 0; i < attributes.getLength(); i++) {
+                values.put(attributes.item(i).getNodeName(), attributes.item(i).getNodeValue());
+            }
+            return values;
+        }
+
+        public String resourceId() {
+            return element.getAttribute("resource-id");
+        }
+
+        public String text() {
+            return element.getAttribute("text");
+        }
+
+        public String className() {
+            String className = element.getAttribute("class");
+            return className.isEmpty() ? element.getTagName() : className;
+        }
+
+        public boolean isDisplayed() {
+            return !"false".equals(element.getAttribute("displayed"));
+        }
+
+        public boolean isEnabled() {
+            return !"false".equals(element.getAttribute("enabled"));
+        }
+
+        @Override
+        public String toString() {
+            return className() + "[resource-id=" + resourceId() + ", text=" + text() + "]";
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: java nativebridge.PageSnapshot <hierarchy.xml> [resource-id...]");
+            System.exit(1);
+        }
+        PageSnapshot snapshot = parse(new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.UTF_8));
+        System.out.println("Parsed " + snapshot.size() + " nodes, "
+            + snapshot.byResourceId.size() + " resource-id keys");
+        for (int i = 1; i < args.length; i++) {
+            Node node = snapshot.find(args[i]);
+            System.out.println(args[i] + ": " + (node == null ? "missing"
+                : (node.isDisplayed() ? "visible" : "hidden") + ", text='" + node.text() + "'"));
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package nativebridge;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * PrepareSession - Asks SessionPool for a JUnit class's session before the run starts
+ * Compatible with Appium 2.x + Java Client 9.x + JUnit 5
+ *
+ * JUnit has no {@code @BeforeSuite}, the hook the TestNG classes use to
+ * prepare their session while the classes before them run. Put this on a
+ * static no-argument method of the test class that calls
+ * SessionPool.prepare; HistoryScheduler calls it for every class it orders,
+ * in schedule order, before the first class starts.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface PrepareSession {
+}
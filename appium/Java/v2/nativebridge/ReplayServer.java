@@ -0,0 +1,429 @@
+package nativebridge;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.openqa.selenium.json.Json;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * ReplayServer - Records a real Appium session and plays it back without a device
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * In record mode the server sits between a script and a real Appium server,
+ * forwards every request and appends the exchange to a journal: one compact
+ * JSON line with the method, path, request body, status, response and how
+ * long the real server took. In replay mode it answers from that journal
+ * alone, so a recorded run of TestApp1/TestApp2 (v1 or v2, plain, JUnit or
+ * TestNG) repeats in milliseconds with no emulator or Appium server.
+ *
+ * Replay matches a request on method, path and body (key order ignored),
+ * then on method and path alone, since capabilities such as udid or
+ * systemPort may differ between runs. Repeated identical requests get the
+ * recorded responses in order; once those run out the last one is repeated,
+ * so a wait that polled three times while recording may poll once or ten
+ * times in replay. Session and element ids come from the journal, so the
+ * paths the script builds from them match as well. A request that was never
+ * recorded fails with "unknown command".
+ *
+ * Replay answers immediately by default. A fixed latency or a scale of the
+ * recorded latency can be added to benchmark helpers against a realistic
+ * (and repeatable) round trip.
+ *
+ * {@code java nativebridge.ReplayServer record --upstream=http://localhost:4723 --journal=testapp1.journal [port]}
+ * {@code java nativebridge.ReplayServer replay --journal=testapp1.journal [--latency-ms=N | --recorded-latency=1.0] [port]}
+ */
+public final class ReplayServer implements AutoCloseable {
+
+    private static final Json JSON = new Json();
+
+    private static final Pattern UNESCAPED_SLASH = Pattern.compile("(?<!\\\\)((?:\\\\\\\\)*)\\\\u002f");
+
+    static {
+        // Same reason as StubAppiumServer: no delayed-ACK stall on small responses
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // Record mode
+    private final URI upstream;
+    private final HttpClient client;
+    private final BufferedWriter journal;
+
+    // Replay mode: recorded exchanges, oldest first, by method, path and body,
+    // and by method and path alone for requests whose body differs
+    private final Map<String, Deque<Exchange>> recorded = new HashMap<>();
+    private final Map<String, Deque<Exchange>> recordedByPath = new HashMap<>();
+    private volatile Duration latency = Duration.ZERO;
+    private volatile double recordedLatencyScale;
+
+    private ReplayServer(int port, URI upstream, BufferedWriter journal, List<Exchange> exchanges) throws IOException {
+        this.upstream = upstream;
+        this.journal = journal;
+        this.client = upstream == null ? null : HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(30))
+            .build();
+        for (Exchange exchange : exchanges) {
+            recorded.computeIfAbsent(exchange.key(true), k -> new ArrayDeque<>()).add(exchange);
+            recordedByPath.computeIfAbsent(exchange.key(false), k -> new ArrayDeque<>()).add(exchange);
+        }
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        this.workers = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(workers);
+        server.createContext("/", upstream == null ? this::replay : this::record);
+    }
+
+    /**
+     * Starts a recording proxy on {@code port} (0 picks a free one) in front of
+     * {@code upstream}, appending to {@code journal}.
+     */
+    public static ReplayServer record(int port, URL upstream, Path journal) throws IOException {
+        Path parent = journal.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        BufferedWriter writer = Files.newBufferedWriter(journal, StandardCharsets.UTF_8);
+        String base = upstream.toString().replaceAll("/+$", "");
+        ReplayServer replayServer = new ReplayServer(port, URI.create(base), writer, Collections.emptyList());
+        replayServer.server.start();
+        return replayServer;
+    }
+
+    /** Starts a server on {@code port} (0 picks a free one) answering from {@code journal}. */
+    public static ReplayServer replay(int port, Path journal) throws IOException {
+        List<Exchange> exchanges = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(journal, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    exchanges.add(Exchange.fromJson(JSON.toType(line, Json.MAP_TYPE)));
+                }
+            }
+        }
+        ReplayServer replayServer = new ReplayServer(port, null, null, exchanges);
+        replayServer.server.start();
+        return replayServer;
+    }
+
+    public URL url() {
+        try {
+            return URI.create("http://127.0.0.1:" + server.getAddress().getPort()).toURL();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /** Replay only: fixed delay before every answer. */
+    public void setLatency(Duration latency) {
+        this.latency = latency;
+    }
+
+    /** Replay only: also wait {@code scale} times the latency recorded for each answer (0 turns it off). */
+    public void setRecordedLatencyScale(double scale) {
+        this.recordedLatencyScale = scale;
+    }
+
+    /** Requests answered (record: forwarded, replay: found in the journal). */
+    public long served() {
+        return served.get();
+    }
+
+    /** Replay only: requests that were not in the journal. */
+    public long misses() {
+        return misses.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        workers.shutdownNow();
+        if (journal != null) {
+            synchronized (journal) {
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    // Nothing left to flush to
+                }
+            }
+        }
+    }
+
+    private void record(HttpExchange http) throws IOException {
+        try {
+            String method = http.getRequestMethod();
+            String path = http.getRequestURI().getRawPath();
+            String body = readBody(http);
+            HttpRequest.BodyPublisher publisher = body.isEmpty()
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(upstream + path))
+                .method(method, publisher)
+                .header("Content-Type", "application/json; charset=utf-8")
+                .build();
+            long start = System.nanoTime();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            long millis = (System.nanoTime() - start) / 1_000_000;
+
+            Exchange exchange = new Exchange(method, path, parse(body), response.statusCode(), parse(response.body()), millis);
+            String line = compact(exchange.toJson());
+            synchronized (journal) {
+                journal.write(line);
+                journal.newLine();
+                // One line per exchange, flushed as it happens, so a crashed run still leaves a usable journal
+                journal.flush();
+            }
+            served.incrementAndGet();
+            respond(http, response.statusCode(), response.body());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(http, 500, error("unknown error", "Interrupted while forwarding"));
+        } catch (IOException | RuntimeException e) {
+            respond(http, 502, error("unknown error", "Upstream " + upstream + " failed: " + e.getMessage()));
+        } finally {
+            http.close();
+        }
+    }
+
+    private void replay(HttpExchange http) throws IOException {
+        try {
+            String method = http.getRequestMethod();
+            String path = http.getRequestURI().getRawPath();
+            Object body = parse(readBody(http));
+            Exchange exchange = next(recorded, Exchange.key(method, path, body));
+            if (exchange == null) {
+                exchange = next(recordedByPath, Exchange.key(method, path, null));
+            }
+            if (exchange == null) {
+                misses.incrementAndGet();
+                respond(http, 404, error("unknown command", "Not in journal: " + method + " " + path));
+                return;
+            }
+            served.incrementAndGet();
+            sleep(latency.toMillis() + Math.round(exchange.millis * recordedLatencyScale));
+            respond(http, exchange.status, compact(exchange.response));
+        } finally {
+            http.close();
+        }
+    }
+
+    // The oldest unused exchange for key; the last one stays to answer any repeats
+    private Exchange next(Map<String, Deque<Exchange>> index, String key) {
+        synchronized (recorded) {
+            Deque<Exchange> queue = index.get(key);
+            if (queue == null || queue.isEmpty()) {
+                return null;
+            }
+            return queue.size() > 1 ? queue.poll() : queue.peek();
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis > 0) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static String readBody(HttpExchange http) throws IOException {
+        try (InputStream in = http.getRequestBody()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+        }
+    }
+
+    private static Object parse(String text) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        try {
+            return JSON.toType(text, Json.OBJECT_TYPE);
+        } catch (RuntimeException e) {
+            // Not JSON (an HTML error page, say): keep it verbatim
+            return text;
+        }
+    }
+
+    private static String compact(Object value) {
+        StringBuilder json = new StringBuilder();
+        JSON.newOutput(json).setPrettyPrint(false).write(value).close();
+        // Selenium escapes every '/' as \u002f; paths read better without (an escaped backslash stays as is)
+        return UNESCAPED_SLASH.matcher(json).replaceAll("$1/");
+    }
+
+    // Maps with sorted keys, so bodies that differ only in key order match
+    private static Object canonical(Object value) {
+        if (value instanceof Map) {
+            Map<String, Object> sorted = new TreeMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                sorted.put(String.valueOf(entry.getKey()), canonical(entry.getValue()));
+            }
+            return sorted;
+        }
+        if (value instanceof List) {
+            List<Object> list = new ArrayList<>();
+            for (Object item : (List<?>) value) {
+                list.add(canonical(item));
+            }
+            return list;
+        }
+        return value;
+    }
+
+    private static Map<String, Object> error(String error, String message) {
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("error", error);
+        value.put("message", message);
+        value.put("stacktrace", "");
+        return Collections.singletonMap("value", value);
+    }
+
+    private static void respond(HttpExchange http, int status, Object body) throws IOException {
+        String text = body instanceof String ? (String) body : compact(body);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        http.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        http.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = http.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    /** One recorded request/response pair, a line of the journal. */
+    private static final class Exchange {
+
+        final String method;
+        final String path;
+        final Object request;
+        final int status;
+        final Object response;
+        final long millis;
+
+        Exchange(String method, String path, Object request, int status, Object response, long millis) {
+            this.method = method;
+            this.path = path;
+            this.request = request;
+            this.status = status;
+            this.response = response;
+            this.millis = millis;
+        }
+
+        String key(boolean withBody) {
+            return key(method, path, withBody ? request : null);
+        }
+
+        static String key(String method, String path, Object body) {
+            String key = method + " " + path;
+            return body == null ? key : key + " " + compact(canonical(body));
+        }
+
+        Map<String, Object> toJson() {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("method", method);
+            json.put("path", path);
+            if (request != null) {
+                json.put("request", request);
+            }
+            json.put("status", status);
+            json.put("response", response);
+            json.put("ms", millis);
+            return json;
+        }
+
+        static Exchange fromJson(Map<String, Object> json) {
+            return new Exchange(
+                String.valueOf(json.get("method")),
+                String.valueOf(json.get("path")),
+                json.get("request"),
+                ((Number) json.get("status")).intValue(),
+                json.get("response"),
+                json.get("ms") instanceof Number ? ((Number) json.get("ms")).longValue() : 0);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0 || !("record".equals(args[0]) || "replay".equals(args[0]))) {
+            System.err.println("Usage: ReplayServer record --upstream=URL --journal=FILE [port]");
+            System.err.println("       ReplayServer replay --journal=FILE [--latency-ms=N] [--recorded-latency=SCALE] [port]");
+            System.exit(2);
+        }
+        boolean record = "record".equals(args[0]);
+        String upstream = DeviceRegistry.DEFAULT_SERVER;
+        Path journal = Paths.get("target", "appium.journal");
+        Duration latency = Duration.ZERO;
+        double scale = 0;
+        int port = 4723;
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("--upstream=")) {
+                upstream = arg.substring("--upstream=".length());
+            } else if (arg.startsWith("--journal=")) {
+                journal = Paths.get(arg.substring("--journal=".length()));
+            } else if (arg.startsWith("--latency-ms=")) {
+                latency = Duration.ofMillis(Long.parseLong(arg.substring("--latency-ms=".length())));
+            } else if (arg.startsWith("--recorded-latency=")) {
+                scale = Double.parseDouble(arg.substring("--recorded-latency=".length()));
+            } else {
+                port = Integer.parseInt(arg);
+            }
+        }
+        ReplayServer replayServer;
+        if (record) {
+            replayServer = record(port, URI.create(upstream).toURL(), journal);
+            System.out.println("Recording " + upstream + " to " + journal + " via " + replayServer.url());
+        } else {
+            replayServer = replay(port, journal);
+            replayServer.setLatency(latency);
+            replayServer.setRecordedLatencyScale(scale);
+            System.out.println("Replaying " + journal + " on " + replayServer.url()
+                + " (latency " + latency.toMillis() + "ms, recorded x" + scale + ")");
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            replayServer.close();
+            System.out.println("Served " + replayServer.served() + " requests"
+                + (record ? "" : ", " + replayServer.misses() + " not in journal"));
+        }));
+        Thread.currentThread().join();
+    }
+}
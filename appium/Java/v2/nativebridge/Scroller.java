@@ -0,0 +1,97 @@
+package nativebridge;
+
+import io.appium.java_client.AppiumBy;
+import org.openqa.selenium.By;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Scroller - Server-side scrolling to an element or to the end of the content
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * The scripts reached off-screen elements by swiping blindly and looking
+ * again, up to three lookups, two swipes and two settle waits per element.
+ * scrollIntoView sends one UiScrollable expression instead: UiAutomator
+ * scrolls the first scrollable container until the element is on screen and
+ * returns it, or gives up at the end of the content, all in one request.
+ * scrollToTop/scrollToBottom use {@code mobile: scrollGesture}, which reports
+ * whether there is more to scroll, so they stop exactly at the edge.
+ *
+ * Lookups run with the implicit wait at zero: UiAutomator already searched the
+ * whole list, retrying would only scroll it again.
+ */
+public final class Scroller {
+
+    // Upper bound on scroll steps, in case a list keeps growing while scrolling
+    private static final int MAX_SCROLLS = 20;
+
+    private final RemoteWebDriver driver;
+    private final ElementProbe probe;
+    private final String appPackage;
+
+    public Scroller(RemoteWebDriver driver, String appPackage) {
+        this.driver = driver;
+        this.probe = ElementProbe.of(driver);
+        this.appPackage = appPackage;
+    }
+
+    /**
+     * Scrolls until the element with resource-id {@code elementId} (bare or
+     * package-qualified) is on screen and returns it, or null if the content
+     * ends without it.
+     */
+    public WebElement scrollIntoView(String elementId) {
+        return probe.findFirst(byScrollingTo(appPackage, elementId));
+    }
+
+    /** The UiScrollable locator behind {@link #scrollIntoView}. */
+    public static By byScrollingTo(String appPackage, String elementId) {
+        String resourceId = elementId.contains(":id/") || appPackage == null
+            ? Pattern.quote(elementId)
+            : "(" + Pattern.quote(appPackage + ":id/") + ")?" + Pattern.quote(elementId);
+        return AppiumBy.androidUIAutomator(
+            "new UiScrollable(new UiSelector().scrollable(true).instance(0)).setMaxSearchSwipes(" + MAX_SCROLLS + ")"
+                + ".scrollIntoView(new UiSelector().resourceIdMatches(\"" + CompositeLocator.quote(resourceId) + "\"))");
+    }
+
+    /** Scrolls up until the content can't scroll further; returns the number of scroll gestures. */
+    public int scrollToTop() {
+        return scrollToEdge("up");
+    }
+
+    /** Scrolls down until the content can't scroll further; returns the number of scroll gestures. */
+    public int scrollToBottom() {
+        return scrollToEdge("down");
+    }
+
+    private int scrollToEdge(String direction) {
+        // Middle 80% of the screen, clear of the status and navigation bars
+        Dimension size = Viewport.size(driver);
+        Map<String, Object> args = new HashMap<>();
+        args.put("left", 0);
+        args.put("top", size.getHeight() / 10);
+        args.put("width", size.getWidth());
+        args.put("height", size.getHeight() * 8 / 10);
+        args.put("direction", direction);
+        args.put("percent", 1.0);
+        int scrolls = 0;
+        while (scrolls < MAX_SCROLLS) {
+            scrolls++;
+            Object canScrollMore = driver.executeScript("mobile: scrollGesture", args);
+            if (!Boolean.TRUE.equals(canScrollMore)) {
+                break;
+            }
+        }
+        return scrolls;
+    }
+
+    /** True if {@code using}/{@code value} scroll the screen when evaluated, e.g. a UiScrollable lookup. */
+    static boolean scrollsOnLookup(Object using, Object value) {
+        return "-android uiautomator".equals(using) && String.valueOf(value).contains("UiScrollable");
+    }
+}
@@ -0,0 +1,273 @@
+package nativebridge;
+
+import org.openqa.selenium.ElementNotInteractableException;
+import org.openqa.selenium.InvalidElementStateException;
+import org.openqa.selenium.InvalidSelectorException;
+import org.openqa.selenium.NoSuchSessionException;
+import org.openqa.selenium.NotFoundException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+import org.openqa.selenium.remote.UnreachableBrowserException;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.http.HttpTimeoutException;
+import java.nio.channels.ClosedChannelException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * SessionBreaker - Stops a run at the first sign that its session is gone
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * The helpers treat every failure as "element not there" and carry on, which
+ * is right for a missing element and wrong for a dead session: after a
+ * newCommandTimeout, a UiAutomator2 crash or a lost device every remaining
+ * lookup fails too, each after its own implicit wait, and a doomed run takes
+ * minutes to finish. The breaker watches the driver's command path and sorts
+ * failures into kinds. Element failures are business as usual. A lost
+ * session, an unreachable server or a crashed UiAutomator2 trips it at once;
+ * other server errors trip it after a few in a row. Once tripped, every
+ * further command fails immediately with a SessionLostException naming the
+ * original cause, without a request, so the rest of the run takes no time.
+ *
+ * The scripts' helpers let SessionLostException through instead of reporting
+ * "could not find". A tripped session is not reused: the SessionPool health
+ * check drops it and the next test class starts a new one; onTrip() is the
+ * place for anything more, e.g. collecting logs or restarting a device.
+ */
+public final class SessionBreaker implements HookedCommandExecutor.Listener {
+
+    /** What a failed command says about the session. */
+    public enum Kind {
+        /** The element or its state, e.g. no such element; the session is fine. */
+        ELEMENT(false),
+        /** The server no longer knows the session (invalid session id, newCommandTimeout). */
+        SESSION_LOST(true),
+        /** No connection to the Appium server (refused, reset, timed out). */
+        SERVER_UNREACHABLE(true),
+        /** The server is up but UiAutomator2 on the device is not. */
+        DEVICE_LOST(true),
+        /** Any other server-side error; fatal only when it keeps happening. */
+        SERVER_ERROR(false);
+
+        private final boolean fatal;
+
+        Kind(boolean fatal) {
+            this.fatal = fatal;
+        }
+
+        public boolean isFatal() {
+            return fatal;
+        }
+    }
+
+    /** The failure that tripped the breaker. */
+    public static final class Failure {
+
+        private final Kind kind;
+        private final String command;
+        private final Throwable cause;
+
+        Failure(Kind kind, String command, Throwable cause) {
+            this.kind = kind;
+            this.command = command;
+            this.cause = cause;
+        }
+
+        public Kind kind() {
+            return kind;
+        }
+
+        public String command() {
+            return command;
+        }
+
+        public Throwable cause() {
+            return cause;
+        }
+
+        @Override
+        public String toString() {
+            return kind + " on " + command + ": " + firstLine(cause.getMessage());
+        }
+    }
+
+    /** Thrown for every command after the breaker tripped, and by helpers that hit one. */
+    public static final class SessionLostException extends WebDriverException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Failure failure;
+
+        SessionLostException(Failure failure, String skipped) {
+            super("Session is gone (" + failure + "), not sending " + skipped, failure.cause());
+            this.failure = failure;
+        }
+
+        public Failure failure() {
+            return failure;
+        }
+    }
+
+    // Consecutive generic server errors that count as a dead server
+    private static final int DEFAULT_SERVER_ERRORS = Integer.getInteger("nativebridge.breaker.serverErrors", 3);
+
+    // Messages Appium sends when UiAutomator2 on the device died or the device went away
+    private static final String[] DEVICE_LOST_MESSAGES = {
+        "instrumentation process is not running",
+        "could not proxy command to the remote server",
+        "socket hang up",
+        "device offline",
+    };
+
+    private final int serverErrorLimit;
+    private final List<Consumer<Failure>> tripListeners = new CopyOnWriteArrayList<>();
+    private volatile Failure failure;
+    private int serverErrors;
+    private int elementFailures;
+
+    public SessionBreaker() {
+        this(DEFAULT_SERVER_ERRORS);
+    }
+
+    public SessionBreaker(int serverErrorLimit) {
+        this.serverErrorLimit = serverErrorLimit;
+    }
+
+    /** A breaker watching {@code driver}'s commands. */
+    public static SessionBreaker install(RemoteWebDriver driver) {
+        SessionBreaker breaker = new SessionBreaker();
+        HookedCommandExecutor.of(driver).addListener(breaker);
+        return breaker;
+    }
+
+    /** Runs {@code listener} once, on the thread whose command tripped the breaker. */
+    public void onTrip(Consumer<Failure> listener) {
+        tripListeners.add(listener);
+    }
+
+    public boolean isTripped() {
+        return failure != null;
+    }
+
+    /** The failure that tripped the breaker, or null. */
+    public Failure failure() {
+        return failure;
+    }
+
+    /** Throws SessionLostException if the breaker has tripped, e.g. between steps of a script. */
+    public void check() {
+        Failure current = failure;
+        if (current != null) {
+            throw new SessionLostException(current, "further steps");
+        }
+    }
+
+    public synchronized String summary() {
+        return failure != null
+            ? "Session breaker tripped: " + failure
+            : "Session breaker closed (" + elementFailures + " element failures, " + serverErrors + " server errors in a row)";
+    }
+
+    @Override
+    public void beforeCommand(Command command) {
+        Failure current = failure;
+        if (current != null) {
+            throw new SessionLostException(current, command.getName());
+        }
+    }
+
+    @Override
+    public void afterCommand(Command command, Response response, long elapsedNanos) {
+        // Errors the server answers with come back as a response; the driver throws them afterwards
+        Object value = response != null ? response.getValue() : null;
+        if (value instanceof Throwable) {
+            onCommandFailure(command, (Throwable) value, elapsedNanos);
+        } else {
+            synchronized (this) {
+                serverErrors = 0;
+            }
+        }
+    }
+
+    @Override
+    public void onCommandFailure(Command command, Throwable error, long elapsedNanos) {
+        if (error instanceof SessionLostException) {
+            return;
+        }
+        Kind kind = classify(error);
+        Failure tripped = null;
+        synchronized (this) {
+            if (failure != null) {
+                return;
+            }
+            if (kind == Kind.ELEMENT) {
+                elementFailures++;
+                serverErrors = 0;
+            } else if (kind.isFatal() || ++serverErrors >= serverErrorLimit) {
+                tripped = failure = new Failure(kind, command.getName(), error);
+            }
+        }
+        if (tripped != null) {
+            System.out.println("Session breaker tripped, skipping the rest of the session: " + tripped);
+            for (Consumer<Failure> listener : tripListeners) {
+                listener.accept(tripped);
+            }
+        }
+    }
+
+    /**
+     * Sorts a command failure into a Kind. The cause chain comes first: the
+     * HTTP clients report a request that got no answer in time as a Selenium
+     * TimeoutException wrapping the transport's own timeout, which says the
+     * server is unreachable. Only a TimeoutException without one is the W3C
+     * {@code timeout} error, i.e. the element did not show up in time.
+     */
+    public static Kind classify(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof UnreachableBrowserException
+                || cause instanceof ConnectException
+                || cause instanceof HttpTimeoutException
+                || cause instanceof java.util.concurrent.TimeoutException
+                || cause instanceof ClosedChannelException
+                || cause instanceof IOException && String.valueOf(cause.getMessage()).contains("Connection reset")) {
+                return Kind.SERVER_UNREACHABLE;
+            }
+        }
+        if (error instanceof NoSuchSessionException) {
+            return Kind.SESSION_LOST;
+        }
+        if (error instanceof NotFoundException
+            || error instanceof StaleElementReferenceException
+            || error instanceof ElementNotInteractableException
+            || error instanceof InvalidElementStateException
+            || error instanceof InvalidSelectorException
+            || error instanceof TimeoutException) {
+            return Kind.ELEMENT;
+        }
+        String message = String.valueOf(error.getMessage()).toLowerCase();
+        if (message.contains("invalid session id") || message.contains("session is either terminated or not started")) {
+            return Kind.SESSION_LOST;
+        }
+        for (String deviceLost : DEVICE_LOST_MESSAGES) {
+            if (message.contains(deviceLost)) {
+                return Kind.DEVICE_LOST;
+            }
+        }
+        return Kind.SERVER_ERROR;
+    }
+
+    private static String firstLine(String message) {
+        if (message == null) {
+            return "";
+        }
+        int end = message.indexOf('\n');
+        return end < 0 ? message : message.substring(0, end);
+    }
+}
@@ -0,0 +1,650 @@
+package nativebridge;
+
+import io.appium.java_client.android.AndroidDriver;
+import io.appium.java_client.android.options.UiAutomator2Options;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.remote.http.HttpClient;
+
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * SessionPool - Warm AndroidDriver sessions shared across test classes
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * Creating a session with noReset=false reinstalls or clears the app and costs
+ * 10-30s on a real device. The pool keeps released sessions warm, keyed by
+ * server URL and capability set, and hands them to the next class that asks
+ * for the same capabilities. Instead of a new session the app is reset in
+ * place (clearApp or terminateApp) and the requested package is activated, so
+ * one warm session serves TestApp1 and then TestApp2.
+ *
+ * Idle sessions are health-checked before reuse and evicted once they have
+ * been idle longer than their newCommandTimeout, since the server will have
+ * dropped them by then. Idle sessions left at JVM exit are quit.
+ *
+ * prepare() moves that work off the test thread: it queues the session a
+ * later class will ask for, and a background worker creates it, or, while
+ * the device's session is still leased, waits for its release and resets it
+ * for the next app straight away, while the finished class is still tearing
+ * down. acquire() then picks up the prepared session instead of starting the
+ * work itself. Sessions that have to go are quit in the background too, so
+ * neither release() nor acquire() waits for a quit. A prepared session that
+ * is not ready within {@code -Dnativebridge.pool.preparedWaitSeconds} (120
+ * by default) is given up on, and acquire() gets a session the usual way;
+ * should the prepared one turn up later, it joins the idle sessions.
+ *
+ * Sessions talk to their servers through SharedHttpClientFactory, so all of
+ * them share one bounded set of connections instead of a client and thread
+ * pool each; {@code -Dnativebridge.httpClient=selenium} goes back to
+ * Selenium's own client per session.
+ */
+public final class SessionPool {
+
+    /** How a reused session brings the app back to a clean state. */
+    public enum ResetMode {
+        /** mobile: clearApp - wipes app data, like a fresh noReset=false session. */
+        CLEAR,
+        /** terminateApp - restarts the app but keeps its data. */
+        RESTART
+    }
+
+    private static final Duration PREPARED_WAIT =
+        Duration.ofSeconds(Integer.getInteger("nativebridge.pool.preparedWaitSeconds", 120));
+
+    // Null: Selenium's default client per session
+    private static final HttpClient.Factory HTTP_CLIENTS =
+        "selenium".equals(System.getProperty("nativebridge.httpClient")) ? null : SharedHttpClientFactory.shared();
+
+    private static final SessionPool SHARED = new SessionPool(ResetMode.CLEAR, 2);
+
+    // Keep a margin so a session isn't handed out seconds before the server drops it
+    private static final Duration EXPIRY_MARGIN = Duration.ofSeconds(5);
+
+    private final ResetMode resetMode;
+    private final int maxIdlePerKey;
+    private final Duration preparedWait;
+    private final HttpClient.Factory httpClients;
+    private final Map<Key, Deque<Lease>> idle = new HashMap<>();
+    private final Map<AndroidDriver, Lease> leased = new IdentityHashMap<>();
+    // Sessions asked for with prepare(), per key in the order they were asked for
+    private final Map<Key, Deque<Prepared>> prepared = new HashMap<>();
+    private final ExecutorService background = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "session-pool-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private int created;
+    private int reused;
+    private int evicted;
+    private int preparedHits;
+    private boolean closed;
+
+    public SessionPool(ResetMode resetMode, int maxIdlePerKey) {
+        this(resetMode, maxIdlePerKey, PREPARED_WAIT);
+    }
+
+    /** As above; acquire() waits at most {@code preparedWait} for a prepared session. */
+    public SessionPool(ResetMode resetMode, int maxIdlePerKey, Duration preparedWait) {
+        this(resetMode, maxIdlePerKey, preparedWait, HTTP_CLIENTS);
+    }
+
+    /** As above, creating sessions with clients from {@code httpClients} (null: Selenium's default). */
+    public SessionPool(ResetMode resetMode, int maxIdlePerKey, Duration preparedWait, HttpClient.Factory httpClients) {
+        this.resetMode = resetMode;
+        this.maxIdlePerKey = maxIdlePerKey;
+        this.preparedWait = preparedWait;
+        this.httpClients = httpClients;
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "session-pool-shutdown"));
+    }
+
+    /** JVM-wide pool used by the sample scripts. */
+    public static SessionPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns a session for {@code options}, reusing a warm one when possible.
+     * A reused session has {@code appPackage} reset and brought to the
+     * foreground; a new one starts with {@code appPackage} in front.
+     */
+    public AndroidDriver acquire(URL serverUrl, Capabilities options, String appPackage) {
+        Key key = new Key(serverUrl, options);
+        Prepared ready = claimPrepared(key, appPackage);
+        if (ready != null) {
+            try {
+                return lendPrepared(ready, ready.lease.get(preparedWait.toMillis(), TimeUnit.MILLISECONDS));
+            } catch (ExecutionException e) {
+                System.out.println("Prepared session failed, starting one now: " + e.getCause().getMessage());
+                dropPrepared(ready);
+            } catch (TimeoutException e) {
+                Lease late = abandon(ready);
+                if (late != null) {
+                    return lendPrepared(ready, late);
+                }
+                System.out.println("Prepared session not ready after " + preparedWait.toMillis() + "ms, starting one now");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for a prepared session", e);
+            }
+        }
+
+        Lease lease;
+        while ((lease = takeIdle(key)) != null) {
+            if (isHealthy(lease)) {
+                try {
+                    reset(lease.driver, appPackage);
+                    return lend(lease, true);
+                } catch (RuntimeException e) {
+                    System.out.println("Pooled session could not be reset, evicting: " + e.getMessage());
+                }
+            }
+            discard(lease);
+        }
+
+        AndroidDriver driver = newDriver(serverUrl, options);
+        bringToFront(driver, appPackage);
+        return lend(new Lease(key, driver, newCommandTimeout(options)), false);
+    }
+
+    /**
+     * Starts getting a session for {@code options} and {@code appPackage}
+     * ready in the background; the next acquire() with the same arguments
+     * takes it. Only one session per server and capabilities is prepared at a
+     * time: while another is leased, this one waits for its release and then
+     * resets it, so a single device is never asked for two sessions at once.
+     * Asking again for a session that is already on its way does nothing.
+     */
+    public void prepare(URL serverUrl, Capabilities options, String appPackage) {
+        Prepared next = new Prepared(new Key(serverUrl, options), serverUrl, options, appPackage);
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            Deque<Prepared> queue = prepared.computeIfAbsent(next.key, k -> new ArrayDeque<>());
+            for (Prepared pending : queue) {
+                if (!pending.claimed && pending.appPackage.equals(appPackage)
+                    && !pending.lease.isCompletedExceptionally()) {
+                    return;
+                }
+            }
+            queue.addLast(next);
+        }
+        background.execute(() -> provision(next));
+    }
+
+    /**
+     * prepare() for a class that will run on one of {@code registry}'s
+     * devices. The device is only known up front when there is exactly one;
+     * with several, classes run side by side anyway, so nothing is prepared.
+     */
+    public void prepare(DeviceRegistry registry, UiAutomator2Options options, String appPackage) {
+        if (registry.size() == 1) {
+            DeviceRegistry.Device device = registry.devices().get(0);
+            prepare(device.serverUrl(), device.applyTo(options), appPackage);
+        }
+    }
+
+    /** Returns the session to the pool; it is quit if the pool is full or the driver unknown. */
+    public void release(AndroidDriver driver) {
+        if (driver == null) {
+            return;
+        }
+        // Listeners such as a SnapshotCache belong to the previous holder
+        HookedCommandExecutor.of(driver).clearListeners();
+        synchronized (this) {
+            Lease lease = leased.remove(driver);
+            if (lease != null && pool(lease)) {
+                // A prepared session may be waiting for this one
+                notifyAll();
+                return;
+            }
+        }
+        quietlyQuitLater(driver);
+    }
+
+    /**
+     * Quits every idle and every prepared but unclaimed session, then waits
+     * a little for background quits still running. Leased sessions are left
+     * to their holders.
+     */
+    public void shutdown() {
+        for (Lease lease : drainIdle()) {
+            quietlyQuit(lease.driver);
+        }
+        background.shutdown();
+        try {
+            background.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public synchronized String summary() {
+        int idleCount = 0;
+        for (Deque<Lease> queue : idle.values()) {
+            idleCount += queue.size();
+        }
+        return created + " created, " + reused + " reused, " + preparedHits + " prepared in the background, "
+            + evicted + " evicted, " + idleCount + " idle, " + leased.size() + " leased";
+    }
+
+    private synchronized AndroidDriver lendPrepared(Prepared ready, Lease lease) {
+        dropPrepared(ready);
+        leased.put(lease.driver, lease);
+        preparedHits++;
+        if (ready.reused) {
+            reused++;
+        }
+        return lease.driver;
+    }
+
+    private synchronized AndroidDriver lend(Lease lease, boolean wasReused) {
+        leased.put(lease.driver, lease);
+        if (wasReused) {
+            reused++;
+        } else {
+            created++;
+        }
+        return lease.driver;
+    }
+
+    // Keeps a released session unless the pool already has enough for its key
+    private boolean pool(Lease lease) {
+        Deque<Lease> queue = idle.computeIfAbsent(lease.key, k -> new ArrayDeque<>());
+        if (queue.size() >= maxIdlePerKey) {
+            return false;
+        }
+        lease.lastUsedNanos = System.nanoTime();
+        queue.addFirst(lease);
+        return true;
+    }
+
+    private void provision(Prepared next) {
+        try {
+            Lease lease = awaitTurn(next);
+            while (lease != null) {
+                if (isHealthy(lease)) {
+                    try {
+                        reset(lease.driver, next.appPackage);
+                        next.reused = true;
+                        break;
+                    } catch (RuntimeException e) {
+                        System.out.println("Pooled session could not be reset, evicting: " + e.getMessage());
+                    }
+                }
+                discard(lease);
+                lease = takeIdle(next.key);
+            }
+            if (lease == null) {
+                AndroidDriver driver = newDriver(next.serverUrl, next.options);
+                bringToFront(driver, next.appPackage);
+                lease = new Lease(next.key, driver, newCommandTimeout(next.options));
+                synchronized (this) {
+                    created++;
+                }
+            }
+            handOver(next, lease);
+        } catch (Throwable e) {
+            next.lease.completeExceptionally(e);
+            synchronized (this) {
+                if (next.yielding) {
+                    dropPrepared(next);
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Blocks until the sessions ahead of {@code next} are ready and the
+     * device is free: returns an idle session to reuse, or null if a new one
+     * may be created.
+     */
+    private synchronized Lease awaitTurn(Prepared next) throws InterruptedException {
+        while (true) {
+            if (closed) {
+                throw new IllegalStateException("Session pool is shut down");
+            }
+            if (next.abandoned) {
+                throw new IllegalStateException("Abandoned by the class it was prepared for");
+            }
+            if (isNextInLine(next)) {
+                Lease lease = takeIdle(next.key);
+                if (lease != null || !isInUse(next.key)) {
+                    next.started = true;
+                    return lease;
+                }
+            }
+            wait(TimeUnit.SECONDS.toMillis(1));
+        }
+    }
+
+    private synchronized void handOver(Prepared next, Lease lease) {
+        if (closed) {
+            dropPrepared(next);
+            quietlyQuitLater(lease.driver);
+            next.lease.completeExceptionally(new IllegalStateException("Session pool is shut down"));
+        } else if (next.abandoned) {
+            // Too late for the class that claimed it; the next one may reuse it
+            if (!pool(lease)) {
+                quietlyQuitLater(lease.driver);
+            }
+            next.lease.completeExceptionally(new IllegalStateException("Abandoned by the class it was prepared for"));
+        } else if (next.yielding) {
+            // A class that runs now needs the device; this one goes to the back of the line
+            dropPrepared(next);
+            if (!pool(lease)) {
+                quietlyQuitLater(lease.driver);
+            }
+            next.lease.completeExceptionally(new IllegalStateException("Yielded to a claimed session"));
+            requeue(next);
+        } else {
+            next.lease.complete(lease);
+        }
+        notifyAll();
+    }
+
+    private synchronized boolean isNextInLine(Prepared next) {
+        for (Prepared earlier : prepared.getOrDefault(next.key, new ArrayDeque<>())) {
+            if (earlier == next) {
+                return true;
+            }
+            if (!earlier.lease.isDone()) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    // A session of this key is leased, being prepared, or prepared and not yet claimed
+    private synchronized boolean isInUse(Key key) {
+        for (Lease lease : leased.values()) {
+            if (lease.key.equals(key)) {
+                return true;
+            }
+        }
+        for (Prepared other : prepared.getOrDefault(key, new ArrayDeque<>())) {
+            if (other.started && !other.lease.isCompletedExceptionally()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The first unclaimed session prepared for {@code key} and
+     * {@code appPackage}, or null. The class asking is the one about to run,
+     * whatever order the sessions were prepared in (TestNG, for one, creates
+     * test classes in no particular order), so the claimed session moves to
+     * the front of the line, and one already prepared for another app hands
+     * its session over and is prepared again afterwards.
+     */
+    private synchronized Prepared claimPrepared(Key key, String appPackage) {
+        Deque<Prepared> queue = prepared.get(key);
+        if (queue == null) {
+            return null;
+        }
+        Prepared claimed = null;
+        for (Prepared candidate : queue) {
+            if (!candidate.claimed && candidate.appPackage.equals(appPackage)
+                && !candidate.lease.isCompletedExceptionally()) {
+                claimed = candidate;
+                break;
+            }
+        }
+        if (claimed == null) {
+            return null;
+        }
+        claimed.claimed = true;
+        claimed.yielding = false;
+        queue.remove(claimed);
+        queue.addFirst(claimed);
+        for (Prepared other : new ArrayList<>(queue)) {
+            if (other.claimed || !other.started) {
+                continue;
+            }
+            Lease lease = other.lease.getNow(null);
+            if (lease != null) {
+                dropPrepared(other);
+                if (!pool(lease)) {
+                    quietlyQuitLater(lease.driver);
+                }
+                requeue(other);
+            } else if (!other.lease.isDone()) {
+                other.yielding = true;
+            }
+        }
+        notifyAll();
+        return claimed;
+    }
+
+    /**
+     * Gives up on {@code late} for the class that claimed it. Returns its
+     * session if it became ready after all, else null; one that is still on
+     * its way goes to the idle sessions when it arrives.
+     */
+    private synchronized Lease abandon(Prepared late) {
+        if (late.lease.isDone() && !late.lease.isCompletedExceptionally()) {
+            return late.lease.join();
+        }
+        late.abandoned = true;
+        dropPrepared(late);
+        return null;
+    }
+
+    private synchronized void requeue(Prepared yielded) {
+        if (closed) {
+            return;
+        }
+        Prepared again = new Prepared(yielded.key, yielded.serverUrl, yielded.options, yielded.appPackage);
+        prepared.computeIfAbsent(again.key, k -> new ArrayDeque<>()).addLast(again);
+        background.execute(() -> provision(again));
+    }
+
+    private synchronized void dropPrepared(Prepared done) {
+        Deque<Prepared> queue = prepared.get(done.key);
+        if (queue != null) {
+            queue.remove(done);
+            if (queue.isEmpty()) {
+                prepared.remove(done.key);
+            }
+        }
+        notifyAll();
+    }
+
+    // Most recently used first: it is the least likely to have expired
+    private synchronized Lease takeIdle(Key key) {
+        Deque<Lease> queue = idle.get(key);
+        if (queue == null) {
+            return null;
+        }
+        for (Iterator<Lease> it = queue.iterator(); it.hasNext(); ) {
+            Lease lease = it.next();
+            it.remove();
+            if (!lease.isExpired()) {
+                return lease;
+            }
+            evicted++;
+            quietlyQuitLater(lease.driver);
+        }
+        return null;
+    }
+
+    private synchronized Iterable<Lease> drainIdle() {
+        closed = true;
+        Deque<Lease> all = new ArrayDeque<>();
+        for (Deque<Lease> queue : idle.values()) {
+            all.addAll(queue);
+        }
+        idle.clear();
+        for (Deque<Prepared> queue : prepared.values()) {
+            for (Prepared unclaimed : queue) {
+                Lease lease = unclaimed.claimed ? null : unclaimed.lease.getNow(null);
+                if (lease != null) {
+                    all.add(lease);
+                }
+            }
+        }
+        prepared.clear();
+        notifyAll();
+        return all;
+    }
+
+    private AndroidDriver newDriver(URL serverUrl, Capabilities options) {
+        return httpClients != null
+            ? DriverFactory.android(serverUrl, options, httpClients)
+            : DriverFactory.android(serverUrl, options);
+    }
+
+    private boolean isHealthy(Lease lease) {
+        try {
+            // Session-scoped and cheap: fails fast if the server dropped the session
+            return lease.driver.getCurrentPackage() != null;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private void reset(AndroidDriver driver, String appPackage) {
+        if (resetMode == ResetMode.CLEAR) {
+            driver.executeScript("mobile: clearApp", Collections.singletonMap("appId", appPackage));
+        } else {
+            driver.terminateApp(appPackage);
+        }
+        driver.activateApp(appPackage);
+    }
+
+    // The capabilities name no app, so a new session shows whatever was in front;
+    // test classes may run in any order, so each one starts in its own app
+    private static void bringToFront(AndroidDriver driver, String appPackage) {
+        try {
+            driver.activateApp(appPackage);
+        } catch (RuntimeException e) {
+            quietlyQuit(driver);
+            throw e;
+        }
+    }
+
+    private synchronized void discard(Lease lease) {
+        evicted++;
+        quietlyQuitLater(lease.driver);
+    }
+
+    private void quietlyQuitLater(AndroidDriver driver) {
+        try {
+            background.execute(() -> quietlyQuit(driver));
+        } catch (RejectedExecutionException e) {
+            // Shutting down: nothing left to overlap with
+            quietlyQuit(driver);
+        }
+    }
+
+    private static void quietlyQuit(AndroidDriver driver) {
+        Viewport.forget(driver);
+        try {
+            driver.quit();
+        } catch (RuntimeException e) {
+            // Already gone on the server side
+        }
+    }
+
+    private static Duration newCommandTimeout(Capabilities options) {
+        Object value = options.getCapability("appium:newCommandTimeout");
+        if (value == null) {
+            value = options.getCapability("newCommandTimeout");
+        }
+        if (value instanceof Number) {
+            return Duration.ofSeconds(((Number) value).longValue());
+        }
+        if (value instanceof Duration) {
+            return (Duration) value;
+        }
+        // Appium's default
+        return Duration.ofSeconds(60);
+    }
+
+    private static final class Prepared {
+
+        final Key key;
+        final URL serverUrl;
+        final Capabilities options;
+        final String appPackage;
+        final CompletableFuture<Lease> lease = new CompletableFuture<>();
+        // Guarded by the pool
+        boolean started;
+        boolean claimed;
+        boolean yielding;
+        boolean abandoned;
+        boolean reused;
+
+        Prepared(Key key, URL serverUrl, Capabilities options, String appPackage) {
+            this.key = key;
+            this.serverUrl = serverUrl;
+            this.options = options;
+            this.appPackage = appPackage;
+        }
+    }
+
+    private static final class Lease {
+
+        final Key key;
+        final AndroidDriver driver;
+        final Duration newCommandTimeout;
+        long lastUsedNanos = System.nanoTime();
+
+        Lease(Key key, AndroidDriver driver, Duration newCommandTimeout) {
+            this.key = key;
+            this.driver = driver;
+            this.newCommandTimeout = newCommandTimeout;
+        }
+
+        boolean isExpired() {
+            long idleNanos = System.nanoTime() - lastUsedNanos;
+            return idleNanos >= newCommandTimeout.minus(EXPIRY_MARGIN).toNanos();
+        }
+    }
+
+    private static final class Key {
+
+        final String serverUrl;
+        final Map<String, Object> capabilities;
+
+        Key(URL serverUrl, Capabilities options) {
+            this.serverUrl = serverUrl.toExternalForm();
+            this.capabilities = new TreeMap<>(options.asMap());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return serverUrl.equals(other.serverUrl) && capabilities.equals(other.capabilities);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(serverUrl, capabilities);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package nativebridge;
+
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.http.BinaryMessage;
+import org.openqa.selenium.remote.http.ClientConfig;
+import org.openqa.selenium.remote.http.CloseMessage;
+import org.openqa.selenium.remote.http.Contents;
+import org.openqa.selenium.remote.http.HttpClient;
+import org.openqa.selenium.remote.http.HttpHandler;
+import org.openqa.selenium.remote.http.HttpRequest;
+import org.openqa.selenium.remote.http.HttpResponse;
+import org.openqa.selenium.remote.http.Message;
+import org.openqa.selenium.remote.http.TextMessage;
+import org.openqa.selenium.remote.http.WebSocket;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SharedHttpClientFactory - One bounded, virtual-thread HTTP client for many sessions
+ * Compatible with Appium 2.x + Java Client 9.x (Java 21)
+ *
+ * Selenium's default client factory builds a java.net.http client per
+ * session, and each of those owns a cached pool of platform threads for its
+ * async plumbing. With hundreds of sessions in one JVM that is hundreds of
+ * pools and connection caches. This factory gives every session a thin
+ * client over one shared java.net.http client whose internal work runs on
+ * virtual threads, with keep-alive connections shared across sessions.
+ *
+ * At most {@code maxConnections} requests are in flight at once; further
+ * commands wait for a slot, which bounds the number of open connections to
+ * the Appium servers. Commands block only the calling thread, so callers that
+ * run each session on its own virtual thread (see ExecutorBenchmark) can
+ * drive hundreds of sessions without a platform thread per session.
+ *
+ * WebSockets (BiDi, or a plugin's event stream) open on the same shared
+ * client; they don't take a connection slot, since they stay open for as
+ * long as the session does.
+ */
+public final class SharedHttpClientFactory implements HttpClient.Factory {
+
+    // Managed by java.net.http itself; setting them throws IllegalArgumentException
+    private static final Set<String> RESTRICTED_HEADERS =
+        Set.of("connection", "content-length", "expect", "host", "upgrade");
+
+    private static final SharedHttpClientFactory SHARED = new SharedHttpClientFactory(64, Duration.ofSeconds(10));
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final java.net.http.HttpClient http;
+    private final Semaphore slots;
+    private final int maxConnections;
+
+    public SharedHttpClientFactory(int maxConnections, Duration connectTimeout) {
+        this.maxConnections = maxConnections;
+        this.slots = new Semaphore(maxConnections, true);
+        this.http = java.net.http.HttpClient.newBuilder()
+            .version(java.net.http.HttpClient.Version.HTTP_1_1)
+            .connectTimeout(connectTimeout)
+            .executor(executor)
+            .build();
+    }
+
+    /** JVM-wide factory: 64 concurrent requests, 10s connect timeout. */
+    public static SharedHttpClientFactory shared() {
+        return SHARED;
+    }
+
+    public int maxConnections() {
+        return maxConnections;
+    }
+
+    /** Requests currently waiting for or holding a connection slot. */
+    public int inFlight() {
+        return maxConnections - slots.availablePermits() + slots.getQueueLength();
+    }
+
+    @Override
+    public HttpClient createClient(ClientConfig config) {
+        return new Client(config);
+    }
+
+    private final class Client implements HttpClient {
+
+        private final ClientConfig config;
+        private final HttpHandler handler;
+
+        Client(ClientConfig config) {
+            this.config = config;
+            // Keeps Selenium's own filters (user agent, retries) in front of the request
+            this.handler = config.filter().andFinally(this::send);
+        }
+
+        @Override
+        public HttpResponse execute(HttpRequest request) {
+            return handler.execute(request);
+        }
+
+        @Override
+        public WebSocket openSocket(HttpRequest request, WebSocket.Listener listener) {
+            URI uri = URI.create(uri(request).toString().replaceFirst("^http", "ws"));
+            Duration timeout = config.connectionTimeout();
+            try {
+                java.net.http.WebSocket socket = http.newWebSocketBuilder()
+                    .connectTimeout(timeout)
+                    .buildAsync(uri, new Relay(listener))
+                    .get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+                return new Socket(socket);
+            } catch (ExecutionException e) {
+                throw new WebDriverException("Could not open a WebSocket to " + uri, e.getCause());
+            } catch (java.util.concurrent.TimeoutException e) {
+                throw new TimeoutException("No WebSocket to " + uri + " within " + timeout, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new WebDriverException("Interrupted while opening a WebSocket to " + uri, e);
+            }
+        }
+
+        private HttpResponse send(HttpRequest request) {
+            java.net.http.HttpRequest outgoing = toJdk(request);
+            try {
+                slots.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new WebDriverException("Interrupted while waiting for a connection slot", e);
+            }
+            try {
+                return fromJdk(http.send(outgoing, java.net.http.HttpResponse.BodyHandlers.ofByteArray()));
+            } catch (HttpConnectTimeoutException e) {
+                throw new WebDriverException("Could not connect to " + outgoing.uri(), e);
+            } catch (HttpTimeoutException e) {
+                throw new TimeoutException("No response from " + outgoing.uri() + " within " + config.readTimeout(), e);
+            } catch (IOException e) {
+                throw new WebDriverException("Request to " + outgoing.uri() + " failed: " + e.getMessage(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new WebDriverException("Interrupted while waiting for " + outgoing.uri(), e);
+            } finally {
+                slots.release();
+            }
+        }
+
+        private java.net.http.HttpRequest toJdk(HttpRequest request) {
+            byte[] body = Contents.bytes(request.getContent());
+            java.net.http.HttpRequest.Builder builder = java.net.http.HttpRequest.newBuilder(uri(request))
+                .timeout(config.readTimeout())
+                .method(request.getMethod().name(), body.length == 0
+                    ? java.net.http.HttpRequest.BodyPublishers.noBody()
+                    : java.net.http.HttpRequest.BodyPublishers.ofByteArray(body));
+            for (String name : request.getHeaderNames()) {
+                if (RESTRICTED_HEADERS.contains(name.toLowerCase())) {
+                    continue;
+                }
+                for (String value : request.getHeaders(name)) {
+                    builder.header(name, value);
+                }
+            }
+            return builder.build();
+        }
+
+        // Appium's base URL may carry a path (e.g. /wd/hub) that command paths are relative to
+        private URI uri(HttpRequest request) {
+            String base = config.baseUri().toString().replaceAll("/+$", "");
+            StringBuilder uri = new StringBuilder(base).append(request.getUri());
+            char separator = '?';
+            for (String name : request.getQueryParameterNames()) {
+                for (String value : request.getQueryParameters(name)) {
+                    uri.append(separator)
+                        .append(URLEncoder.encode(name, StandardCharsets.UTF_8)).append('=')
+                        .append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+                    separator = '&';
+                }
+            }
+            return URI.create(uri.toString());
+        }
+
+        private HttpResponse fromJdk(java.net.http.HttpResponse<byte[]> received) {
+            HttpResponse response = new HttpResponse();
+            response.setStatus(received.statusCode());
+            for (Map.Entry<String, List<String>> header : received.headers().map().entrySet()) {
+                for (String value : header.getValue()) {
+                    response.addHeader(header.getKey(), value);
+                }
+            }
+            response.setContent(Contents.bytes(received.body()));
+            return response;
+        }
+    }
+
+    /** Selenium's view of a java.net.http WebSocket. */
+    private static final class Socket implements WebSocket {
+
+        private final java.net.http.WebSocket socket;
+
+        Socket(java.net.http.WebSocket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public WebSocket send(Message message) {
+            CompletableFuture<java.net.http.WebSocket> sent;
+            if (message instanceof TextMessage) {
+                sent = socket.sendText(((TextMessage) message).text(), true);
+            } else if (message instanceof BinaryMessage) {
+                sent = socket.sendBinary(ByteBuffer.wrap(((BinaryMessage) message).data()), true);
+            } else if (message instanceof CloseMessage) {
+                CloseMessage close = (CloseMessage) message;
+                sent = socket.sendClose(close.code(), close.reason() != null ? close.reason() : "");
+            } else {
+                throw new IllegalArgumentException("Unsupported message " + message.getClass().getName());
+            }
+            try {
+                sent.join();
+            } catch (CompletionException e) {
+                throw new WebDriverException("Could not send over WebSocket", e.getCause());
+            }
+            return this;
+        }
+
+        @Override
+        public void close() {
+            if (!socket.isOutputClosed()) {
+                socket.sendClose(java.net.http.WebSocket.NORMAL_CLOSURE, "").exceptionally(e -> null);
+            }
+        }
+    }
+
+    /** Hands whole messages to Selenium's listener; java.net.http may deliver them in parts. */
+    private static final class Relay implements java.net.http.WebSocket.Listener {
+
+        private final WebSocket.Listener listener;
+        private final StringBuilder text = new StringBuilder();
+        private final ByteArrayOutputStream binary = new ByteArrayOutputStream();
+
+        Relay(WebSocket.Listener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public CompletionStage<?> onText(java.net.http.WebSocket socket, CharSequence part, boolean last) {
+            text.append(part);
+            if (last) {
+                String message = text.toString();
+                text.setLength(0);
+                listener.onText(message);
+            }
+            socket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onBinary(java.net.http.WebSocket socket, ByteBuffer part, boolean last) {
+            byte[] bytes = new byte[part.remaining()];
+            part.get(bytes);
+            binary.write(bytes, 0, bytes.length);
+            if (last) {
+                byte[] message = binary.toByteArray();
+                binary.reset();
+                listener.onBinary(message);
+            }
+            socket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onClose(java.net.http.WebSocket socket, int code, String reason) {
+            listener.onClose(code, reason);
+            return null;
+        }
+
+        @Override
+        public void onError(java.net.http.WebSocket socket, Throwable error) {
+            listener.onError(error);
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package nativebridge;
+
+import org.openqa.selenium.Rectangle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+
+/**
+ * SimulatedApp - State machine and screen layout of an app on a SimulatedDevice
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * An app keeps its state in plain fields and lays out the current state on
+ * every render: titles, buttons, inputs, switches and sliders stacked top to
+ * bottom in a scrolling column, plus an optional overlay window (modal,
+ * dropdown menu) that hides the column while it is open. Handlers attached to
+ * the widgets change the state when the device clicks, types or slides them.
+ *
+ * The base class owns what every Android app shares: the scroll position of
+ * the column, native alerts ({@code android:id/button1} dismisses them, as does
+ * the back key) and restarting from a clean state.
+ */
+public abstract class SimulatedApp {
+
+    public static final int SCREEN_WIDTH = 1080;
+    public static final int SCREEN_HEIGHT = 2340;
+
+    private final String appPackage;
+    private int scrollY;
+    private String alertTitle;
+    private String alertMessage;
+
+    protected SimulatedApp(String appPackage) {
+        this.appPackage = appPackage;
+    }
+
+    public String appPackage() {
+        return appPackage;
+    }
+
+    /** Lays out the current state; called for every command, so keep it cheap. */
+    protected abstract void render(Screen screen);
+
+    /** Restores the state of a freshly installed app. */
+    protected abstract void reset();
+
+    /** Back key with no alert showing; returns false if the app has nothing to close. */
+    protected boolean back() {
+        return false;
+    }
+
+    /** Shows a native alert with a single OK button. */
+    protected final void showAlert(String title, String message) {
+        this.alertTitle = title;
+        this.alertMessage = message;
+    }
+
+    public final boolean alertShowing() {
+        return alertTitle != null;
+    }
+
+    /** Back to the initial state: no alert, scrolled to the top, app state reset. */
+    public final synchronized void restart() {
+        scrollY = 0;
+        alertTitle = null;
+        alertMessage = null;
+        reset();
+    }
+
+    /** The current screen, with content positioned for the scroll offset. */
+    public final synchronized Screen screen() {
+        Screen screen = new Screen(appPackage);
+        render(screen);
+        if (alertTitle != null) {
+            screen.overlay();
+            screen.widget("android:id/alertTitle", "android.widget.TextView", alertTitle);
+            screen.widget("android:id/message", "android.widget.TextView", alertMessage);
+            screen.button("android:id/button1", "OK", this::dismissAlert);
+        }
+        scrollY = Math.max(0, Math.min(scrollY, screen.maxScroll()));
+        screen.scrollY = scrollY;
+        return screen;
+    }
+
+    /** Back key: closes the alert, else whatever the app has open. */
+    public final synchronized boolean pressBack() {
+        if (alertTitle != null) {
+            dismissAlert();
+            return true;
+        }
+        return back();
+    }
+
+    /** Scrolls the column by {@code dy} pixels (positive moves content up); true if it can scroll further that way. */
+    public final synchronized boolean scrollBy(int dy) {
+        Screen screen = screen();
+        if (screen.overlayActive()) {
+            return false;
+        }
+        scrollY = Math.max(0, Math.min(scrollY + dy, screen.maxScroll()));
+        return dy > 0 ? scrollY < screen.maxScroll() : scrollY > 0;
+    }
+
+    /** Scrolls just enough for {@code widget} to be fully on screen. */
+    public final synchronized void scrollTo(Widget widget) {
+        if (widget.inOverlay) {
+            return;
+        }
+        if (widget.y < scrollY) {
+            scrollY = widget.y;
+        } else if (widget.y + widget.height > scrollY + SCREEN_HEIGHT) {
+            scrollY = widget.y + widget.height - SCREEN_HEIGHT;
+        }
+    }
+
+    private void dismissAlert() {
+        alertTitle = null;
+        alertMessage = null;
+    }
+
+    /** One render of the app: the scrolling column and the overlay window. */
+    public static final class Screen {
+
+        private static final int ROW_HEIGHT = 160;
+
+        private final String appPackage;
+        private final List<Widget> content = new ArrayList<>();
+        private final List<Widget> overlay = new ArrayList<>();
+        private final Map<String, Integer> classCounts = new HashMap<>();
+        private boolean inOverlay;
+        private int contentHeight;
+        private int overlayHeight;
+        private int scrollY;
+
+        Screen(String appPackage) {
+            this.appPackage = appPackage;
+        }
+
+        public String appPackage() {
+            return appPackage;
+        }
+
+        /** Widgets added from now on go to the overlay window. */
+        public Screen overlay() {
+            inOverlay = true;
+            return this;
+        }
+
+        public Widget text(String id, String text) {
+            return widget(id, "android.widget.TextView", text);
+        }
+
+        public Widget button(String id, String label, Runnable onClick) {
+            Widget widget = widget(id, "android.widget.Button", label);
+            widget.onClick = onClick;
+            widget.clickable = true;
+            return widget;
+        }
+
+        public Widget input(String id, String text, Consumer<String> onText) {
+            Widget widget = widget(id, "android.widget.EditText", text);
+            widget.onText = onText;
+            widget.clickable = true;
+            widget.focusable = true;
+            return widget;
+        }
+
+        public Widget toggle(String id, boolean checked, Runnable onToggle) {
+            Widget widget = widget(id, "android.widget.Switch", checked ? "ON" : "OFF");
+            widget.onClick = onToggle;
+            widget.clickable = true;
+            widget.checkable = true;
+            widget.checked = checked;
+            return widget;
+        }
+
+        /** A horizontal slider; {@code onSlide} gets the touch position as a fraction of its width. */
+        public Widget slider(String id, DoubleConsumer onSlide) {
+            Widget widget = widget(id, "android.widget.SeekBar", "");
+            widget.onSlide = onSlide;
+            widget.clickable = true;
+            return widget;
+        }
+
+        /** A scrollable region, e.g. a nested list the user can swipe in. */
+        public Widget area(String id, int height) {
+            Widget widget = widget(id, "android.widget.ScrollView", "");
+            widget.scrollable = true;
+            return widget.height(height);
+        }
+
+        Widget widget(String id, String className, String text) {
+            int ordinal = classCounts.merge(className, 1, Integer::sum) - 1;
+            String key = id != null ? id : className + "#" + ordinal;
+            Widget widget = new Widget(key, id, className, text, inOverlay);
+            if (inOverlay) {
+                widget.y = 400 + overlayHeight;
+                overlay.add(widget);
+            } else {
+                widget.y = contentHeight;
+                content.add(widget);
+            }
+            widget.attach(this);
+            widget.height(ROW_HEIGHT);
+            return widget;
+        }
+
+        // Heights may change after a widget is added, so stacking happens here
+        void grow(Widget widget, int delta) {
+            List<Widget> column = widget.inOverlay ? overlay : content;
+            boolean after = false;
+            for (Widget other : column) {
+                if (after) {
+                    other.y += delta;
+                }
+                after |= other == widget;
+            }
+            if (widget.inOverlay) {
+                overlayHeight += delta;
+            } else {
+                contentHeight += delta;
+            }
+        }
+
+        public boolean overlayActive() {
+            return !overlay.isEmpty();
+        }
+
+        int maxScroll() {
+            return Math.max(0, contentHeight - SCREEN_HEIGHT);
+        }
+
+        public int scrollY() {
+            return scrollY;
+        }
+
+        /** Every widget of the layer in front, on screen or not. */
+        public List<Widget> activeLayer() {
+            return Collections.unmodifiableList(overlayActive() ? overlay : content);
+        }
+
+        /** Widgets UiAutomator would report: the layer in front, clipped to the screen. */
+        public List<Widget> visible() {
+            List<Widget> visible = new ArrayList<>();
+            for (Widget widget : activeLayer()) {
+                if (isOnScreen(widget)) {
+                    visible.add(widget);
+                }
+            }
+            return visible;
+        }
+
+        /** Every widget by key, in render order; hidden ones included. */
+        public Map<String, Widget> all() {
+            Map<String, Widget> all = new LinkedHashMap<>();
+            for (Widget widget : content) {
+                all.put(widget.key, widget);
+            }
+            for (Widget widget : overlay) {
+                all.put(widget.key, widget);
+            }
+            return all;
+        }
+
+        public boolean isOnScreen(Widget widget) {
+            if (widget.inOverlay != overlayActive()) {
+                return false;
+            }
+            Rectangle rect = rect(widget);
+            return rect.getY() < SCREEN_HEIGHT && rect.getY() + rect.getHeight() > 0;
+        }
+
+        /** Position on screen for the current scroll offset. */
+        public Rectangle rect(Widget widget) {
+            int y = widget.inOverlay ? widget.y : widget.y - scrollY;
+            return new Rectangle(widget.x, y, widget.height, widget.width);
+        }
+
+        /** Topmost clickable widget of the front layer under ({@code x}, {@code y}), or null. */
+        public Widget hit(int x, int y) {
+            List<Widget> layer = visible();
+            for (int i = layer.size() - 1; i >= 0; i--) {
+                Widget widget = layer.get(i);
+                Rectangle rect = rect(widget);
+                if (widget.clickable && x >= rect.getX() && x < rect.getX() + rect.getWidth()
+                    && y >= rect.getY() && y < rect.getY() + rect.getHeight()) {
+                    return widget;
+                }
+            }
+            return null;
+        }
+    }
+
+    /** One view in the hierarchy. Package-private fields are read by SimulatedDevice. */
+    public static final class Widget {
+
+        final String key;
+        final String resourceId;
+        final String className;
+        final boolean inOverlay;
+        String text;
+        String description = "";
+        int x;
+        int y;
+        int width = SCREEN_WIDTH;
+        int height;
+        boolean clickable;
+        boolean focusable;
+        boolean checkable;
+        boolean checked;
+        boolean scrollable;
+        boolean enabled = true;
+        Runnable onClick;
+        Consumer<String> onText;
+        DoubleConsumer onSlide;
+        private Screen screen;
+
+        Widget(String key, String resourceId, String className, String text, boolean inOverlay) {
+            this.key = key;
+            this.resourceId = resourceId;
+            this.className = className;
+            this.text = text;
+            this.inOverlay = inOverlay;
+        }
+
+        public Widget height(int height) {
+            int delta = height - this.height;
+            this.height = height;
+            if (screen != null) {
+                screen.grow(this, delta);
+            }
+            return this;
+        }
+
+        public Widget description(String description) {
+            this.description = description;
+            return this;
+        }
+
+        public Widget enabled(boolean enabled) {
+            this.enabled = enabled;
+            return this;
+        }
+
+        public String key() {
+            return key;
+        }
+
+        public String text() {
+            return text;
+        }
+
+        void attach(Screen screen) {
+            this.screen = screen;
+        }
+    }
+}
@@ -0,0 +1,824 @@
+package nativebridge;
+
+import org.openqa.selenium.Rectangle;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SimulatedDevice - An Android device with TestApp1/TestApp2 behind a StubAppiumServer session
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * Answers the part of the UiAutomator2 protocol the sample scripts use from
+ * in-memory apps instead of an emulator: element lookups by xpath, id, class
+ * name, accessibility id and UiSelector/UiScrollable expressions; click,
+ * sendKeys, clear, text, attributes and rect; page source; W3C pointer
+ * actions (taps, swipes, slider drags); and the {@code mobile:} commands for
+ * keys, scrolling and app lifecycle.
+ *
+ * Like UiAutomator, lookups and page source only see the layer in front (a
+ * native alert or modal hides the app underneath) and only what is on screen,
+ * so off-screen elements have to be scrolled to. Element ids are stable per
+ * widget; an id whose widget is no longer rendered is stale.
+ *
+ * A device is cheap, one per session, so a single StubAppiumServer can stand
+ * in for thousands of devices when load testing session pools, parallel
+ * runners or waits:
+ * {@code stub.setDevices(capabilities -> SimulatedDevice.withTestApps(SimulatedTestApp2.PACKAGE));}
+ */
+public final class SimulatedDevice {
+
+    /** Returned by {@link #handle} for commands left to the stub's defaults. */
+    static final Object UNHANDLED = new Object();
+
+    private static final String ELEMENT_PREFIX = "sim-";
+    private static final String WIDGET = "widget";
+    private static final int TAP_SLOP = 20;
+    private static final int KEYCODE_BACK = 4;
+
+    private static final Pattern CALL =
+        Pattern.compile("\\.\\s*(\\w+)\\s*\\(\\s*(?:\"((?:[^\"\\\\]|\\\\.)*)\"|([^()\"]*?))\\s*\\)");
+
+    private static final DocumentBuilderFactory DOCUMENTS = DocumentBuilderFactory.newInstance();
+    private static final ThreadLocal<XPathFactory> XPATHS = ThreadLocal.withInitial(XPathFactory::newInstance);
+
+    private final Map<String, SimulatedApp> installed = new LinkedHashMap<>();
+    // Widget keys can hold '/' (android:id/button1), so element ids are numbered instead
+    private final Map<String, String> elementIds = new HashMap<>();
+    private final Map<String, String> widgetKeys = new HashMap<>();
+    private SimulatedApp foreground;
+
+    public SimulatedDevice(String foregroundPackage, SimulatedApp... apps) {
+        for (SimulatedApp app : apps) {
+            installed.put(app.appPackage(), app);
+        }
+        this.foreground = app(foregroundPackage);
+    }
+
+    /** TestApp1 and TestApp2 installed, {@code foregroundPackage} launched. */
+    public static SimulatedDevice withTestApps(String foregroundPackage) {
+        return new SimulatedDevice(foregroundPackage, new SimulatedTestApp1(), new SimulatedTestApp2());
+    }
+
+    /**
+     * A device per session with the app named by the {@code appium:appPackage}
+     * capability in front, else {@code defaultPackage}.
+     */
+    public static Function<Map<String, Object>, SimulatedDevice> testApps(String defaultPackage) {
+        return capabilities -> {
+            Object requested = capabilities.get("appium:appPackage");
+            return withTestApps(requested != null ? String.valueOf(requested) : defaultPackage);
+        };
+    }
+
+    public synchronized SimulatedApp foreground() {
+        return foreground;
+    }
+
+    /** Element ids matching {@code using}/{@code value}, searched under {@code parentId} when given. */
+    synchronized List<String> find(String parentId, String using, String value) {
+        SimulatedApp.Screen screen = foreground.screen();
+        Document document = document(screen);
+        Node context = document;
+        if (parentId != null) {
+            context = element(document, resolve(screen, parentId).key);
+            if (context == null) {
+                return Collections.emptyList();
+            }
+        }
+        List<SimulatedApp.Widget> found;
+        switch (using) {
+            case "xpath":
+                found = xpath(context, value);
+                break;
+            case "id":
+                found = filter(descendants(context), w -> idMatches(w, value));
+                break;
+            case "css selector":
+                // Selenium sends By.id as a CSS id selector
+                if (!value.startsWith("#")) {
+                    throw unsupported(using + " " + value);
+                }
+                String id = value.substring(1).replace("\\", "");
+                found = filter(descendants(context), w -> idMatches(w, id));
+                break;
+            case "class name":
+                found = filter(descendants(context), w -> w.className.equals(value));
+                break;
+            case "accessibility id":
+                found = filter(descendants(context), w -> w.description.equals(value));
+                break;
+            case "-android uiautomator":
+                found = uiAutomator(screen, descendants(context), value);
+                break;
+            default:
+                throw unsupported(using);
+        }
+        List<String> ids = new ArrayList<>(found.size());
+        for (SimulatedApp.Widget widget : found) {
+            ids.add(elementId(widget));
+        }
+        return ids;
+    }
+
+    /**
+     * Answers {@code command} (the path after /session/{id}), or returns
+     * {@link #UNHANDLED} for lookups and anything the stub answers itself.
+     */
+    synchronized Object handle(String method, String[] command, Map<String, Object> body) {
+        if (command.length == 0) {
+            return UNHANDLED;
+        }
+        switch (command[0]) {
+            case "element":
+                if (command.length < 3 || "element".equals(command[2]) || "elements".equals(command[2])) {
+                    return UNHANDLED;
+                }
+                return elementCommand(command[1], command[2], command.length > 3 ? command[3] : null, body);
+            case "source":
+                return source(foreground.screen());
+            case "actions":
+                if ("POST".equals(method)) {
+                    perform(body);
+                }
+                return null;
+            case "back":
+                foreground.pressBack();
+                return null;
+            case "execute":
+                return execute(body);
+            case "appium":
+                return appiumCommand(command, body);
+            default:
+                return UNHANDLED;
+        }
+    }
+
+    private Object elementCommand(String elementId, String name, String argument, Map<String, Object> body) {
+        SimulatedApp.Screen screen = foreground.screen();
+        SimulatedApp.Widget widget = resolve(screen, elementId);
+        switch (name) {
+            case "click":
+                click(screen, widget, 0.5);
+                return null;
+            case "clear":
+                type(widget, "");
+                return null;
+            case "value":
+                type(widget, typedText(body));
+                return null;
+            case "text":
+                return widget.text;
+            case "attribute":
+            case "property":
+                return attribute(screen, widget, argument);
+            case "name":
+                return widget.className;
+            case "displayed":
+                return screen.isOnScreen(widget);
+            case "enabled":
+                return widget.enabled;
+            case "selected":
+                return widget.checked;
+            case "rect":
+            case "location":
+            case "size":
+                return rect(screen.rect(widget));
+            default:
+                return UNHANDLED;
+        }
+    }
+
+    private String elementId(SimulatedApp.Widget widget) {
+        String key = foreground.appPackage() + "|" + widget.key;
+        return elementIds.computeIfAbsent(key, k -> {
+            String id = ELEMENT_PREFIX + (elementIds.size() + 1);
+            widgetKeys.put(id, k);
+            return id;
+        });
+    }
+
+    private SimulatedApp.Widget resolve(SimulatedApp.Screen screen, String elementId) {
+        String key = widgetKeys.get(elementId);
+        String prefix = foreground.appPackage() + "|";
+        SimulatedApp.Widget widget = key != null && key.startsWith(prefix)
+            ? screen.all().get(key.substring(prefix.length()))
+            : null;
+        if (widget == null) {
+            throw new StubAppiumServer.StubError(404, "stale element reference",
+                "The element '" + elementId + "' is no longer attached to the page");
+        }
+        return widget;
+    }
+
+    // A click lands only if the widget is on screen and not covered by an alert or modal
+    private void click(SimulatedApp.Screen screen, SimulatedApp.Widget widget, double fraction) {
+        if (!screen.isOnScreen(widget) || !widget.enabled) {
+            return;
+        }
+        if (widget.onSlide != null) {
+            widget.onSlide.accept(Math.max(0, Math.min(1, fraction)));
+        } else if (widget.onClick != null) {
+            widget.onClick.run();
+        }
+    }
+
+    private static void type(SimulatedApp.Widget widget, String text) {
+        if (widget.onText == null) {
+            throw new StubAppiumServer.StubError(400, "invalid element state",
+                "Cannot set the element '" + widget.key + "' text, it is a " + widget.className);
+        }
+        widget.onText.accept(text);
+    }
+
+    private static String typedText(Map<String, Object> body) {
+        Object text = body.get("text");
+        if (text != null) {
+            return String.valueOf(text);
+        }
+        Object value = body.get("value");
+        if (value instanceof List) {
+            StringBuilder joined = new StringBuilder();
+            for (Object part : (List<?>) value) {
+                joined.append(part);
+            }
+            return joined.toString();
+        }
+        return "";
+    }
+
+    private Object attribute(SimulatedApp.Screen screen, SimulatedApp.Widget widget, String name) {
+        if (name == null) {
+            return null;
+        }
+        Map<String, String> attributes = attributes(screen, widget);
+        switch (name) {
+            case "contentDescription":
+                return attributes.get("content-desc");
+            case "className":
+                return attributes.get("class");
+            case "resourceId":
+                return attributes.get("resource-id");
+            default:
+                return attributes.get(name);
+        }
+    }
+
+    private static Map<String, String> attributes(SimulatedApp.Screen screen, SimulatedApp.Widget widget) {
+        Rectangle rect = screen.rect(widget);
+        Map<String, String> attributes = new LinkedHashMap<>();
+        attributes.put("package", screen.appPackage());
+        attributes.put("class", widget.className);
+        attributes.put("text", widget.text);
+        attributes.put("resource-id", widget.resourceId != null ? widget.resourceId : "");
+        attributes.put("content-desc", widget.description);
+        attributes.put("checkable", String.valueOf(widget.checkable));
+        attributes.put("checked", String.valueOf(widget.checked));
+        attributes.put("clickable", String.valueOf(widget.clickable));
+        attributes.put("enabled", String.valueOf(widget.enabled));
+        attributes.put("focusable", String.valueOf(widget.focusable));
+        attributes.put("focused", "false");
+        attributes.put("scrollable", String.valueOf(widget.scrollable));
+        attributes.put("selected", String.valueOf(widget.checked));
+        attributes.put("bounds", bounds(rect.getX(), rect.getY(), rect.getWidth(), rect.getHeight()));
+        attributes.put("displayed", String.valueOf(screen.isOnScreen(widget)));
+        return attributes;
+    }
+
+    private static boolean idMatches(SimulatedApp.Widget widget, String id) {
+        String resourceId = widget.resourceId;
+        if (resourceId == null) {
+            return false;
+        }
+        // Bare React Native testIDs and package-qualified ids match either way round
+        return resourceId.equals(id)
+            || resourceId.endsWith(":id/" + id)
+            || id.endsWith(":id/" + resourceId);
+    }
+
+    // --- Page source and XPath ---
+
+    private static Document document(SimulatedApp.Screen screen) {
+        Document document;
+        try {
+            DocumentBuilder builder;
+            synchronized (DOCUMENTS) {
+                builder = DOCUMENTS.newDocumentBuilder();
+            }
+            document = builder.newDocument();
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+        Element hierarchy = document.createElement("hierarchy");
+        hierarchy.setAttribute("index", "0");
+        hierarchy.setAttribute("class", "hierarchy");
+        hierarchy.setAttribute("rotation", "0");
+        hierarchy.setAttribute("width", String.valueOf(SimulatedApp.SCREEN_WIDTH));
+        hierarchy.setAttribute("height", String.valueOf(SimulatedApp.SCREEN_HEIGHT));
+        document.appendChild(hierarchy);
+
+        Element parent = container(document, hierarchy, screen.appPackage(), "android.widget.FrameLayout", false);
+        if (!screen.overlayActive()) {
+            parent = container(document, parent, screen.appPackage(), "android.widget.ScrollView", true);
+        }
+        int index = 0;
+        for (SimulatedApp.Widget widget : screen.visible()) {
+            Element element = document.createElement(widget.className);
+            element.setAttribute("index", String.valueOf(index++));
+            for (Map.Entry<String, String> attribute : attributes(screen, widget).entrySet()) {
+                element.setAttribute(attribute.getKey(), attribute.getValue());
+            }
+            element.setUserData(WIDGET, widget, null);
+            parent.appendChild(element);
+        }
+        return document;
+    }
+
+    private static Element container(Document document, Element parent, String appPackage, String className, boolean scrollable) {
+        Element element = document.createElement(className);
+        element.setAttribute("index", "0");
+        element.setAttribute("package", appPackage);
+        element.setAttribute("class", className);
+        element.setAttribute("text", "");
+        element.setAttribute("resource-id", "");
+        element.setAttribute("scrollable", String.valueOf(scrollable));
+        element.setAttribute("enabled", "true");
+        element.setAttribute("bounds", bounds(0, 0, SimulatedApp.SCREEN_WIDTH, SimulatedApp.SCREEN_HEIGHT));
+        element.setAttribute("displayed", "true");
+        parent.appendChild(element);
+        return element;
+    }
+
+    private static String bounds(int x, int y, int width, int height) {
+        return "[" + x + "," + y + "][" + (x + width) + "," + (y + height) + "]";
+    }
+
+    private static Element element(Document document, String key) {
+        NodeList all = document.getElementsByTagName("*");
+        for (int i = 0; i < all.getLength(); i++) {
+            Object widget = all.item(i).getUserData(WIDGET);
+            if (widget != null && ((SimulatedApp.Widget) widget).key.equals(key)) {
+                return (Element) all.item(i);
+            }
+        }
+        return null;
+    }
+
+    private static List<SimulatedApp.Widget> descendants(Node context) {
+        NodeList nodes = context instanceof Document
+            ? ((Document) context).getElementsByTagName("*")
+            : ((Element) context).getElementsByTagName("*");
+        return widgets(nodes);
+    }
+
+    private static List<SimulatedApp.Widget> widgets(NodeList nodes) {
+        List<SimulatedApp.Widget> widgets = new ArrayList<>();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Object widget = nodes.item(i).getUserData(WIDGET);
+            if (widget != null) {
+                widgets.add((SimulatedApp.Widget) widget);
+            }
+        }
+        return widgets;
+    }
+
+    private static List<SimulatedApp.Widget> xpath(Node context, String expression) {
+        try {
+            NodeList nodes = (NodeList) XPATHS.get().newXPath().evaluate(expression, context, XPathConstants.NODESET);
+            return widgets(nodes);
+        } catch (XPathExpressionException e) {
+            throw new StubAppiumServer.StubError(400, "invalid selector", "Invalid XPath " + expression + ": " + e.getMessage());
+        }
+    }
+
+    private static String source(SimulatedApp.Screen screen) {
+        StringBuilder xml = new StringBuilder("<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>\n");
+        write(xml, document(screen).getDocumentElement(), 0);
+        return xml.toString();
+    }
+
+    private static void write(StringBuilder xml, Element element, int depth) {
+        xml.append("  ".repeat(depth)).append('<').append(element.getTagName());
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Node attribute = attributes.item(i);
+            xml.append(' ').append(attribute.getNodeName()).append("=\"").append(escape(attribute.getNodeValue())).append('"');
+        }
+        NodeList children = element.getChildNodes();
+        if (children.getLength() == 0) {
+            xml.append(" />\n");
+            return;
+        }
+        xml.append(">\n");
+        for (int i = 0; i < children.getLength(); i++) {
+            write(xml, (Element) children.item(i), depth + 1);
+        }
+        xml.append("  ".repeat(depth)).append("</").append(element.getTagName()).append(">\n");
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    // --- UiSelector / UiScrollable ---
+
+    // ';'-separated selectors are tried in order, the first with a match wins
+    private List<SimulatedApp.Widget> uiAutomator(SimulatedApp.Screen screen, List<SimulatedApp.Widget> candidates, String expression) {
+        for (String selector : splitSelectors(expression)) {
+            List<SimulatedApp.Widget> found = selector.startsWith("new UiScrollable")
+                ? scrollIntoView(selector)
+                : select(screen, candidates, calls(selector));
+            if (!found.isEmpty()) {
+                return found;
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    // Scrolls the column until a widget matching the scrollIntoView selector is fully on screen
+    private List<SimulatedApp.Widget> scrollIntoView(String expression) {
+        int start = expression.indexOf(".scrollIntoView(");
+        if (start < 0) {
+            throw unsupported("-android uiautomator " + expression);
+        }
+        String inner = innerArgument(expression, start + ".scrollIntoView(".length() - 1);
+        SimulatedApp.Screen screen = foreground.screen();
+        if (screen.overlayActive()) {
+            return Collections.emptyList();
+        }
+        List<SimulatedApp.Widget> content = new ArrayList<>(screen.activeLayer());
+        List<SimulatedApp.Widget> found = select(screen, content, calls(inner));
+        if (found.isEmpty()) {
+            // Searched all the way down without finding it
+            foreground.scrollBy(Integer.MAX_VALUE / 2);
+            return Collections.emptyList();
+        }
+        foreground.scrollTo(found.get(0));
+        return Collections.singletonList(found.get(0));
+    }
+
+    private static String innerArgument(String expression, int open) {
+        int depth = 0;
+        boolean quoted = false;
+        for (int i = open; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (c == '\\' && quoted) {
+                i++;
+            } else if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted && c == '(') {
+                depth++;
+            } else if (!quoted && c == ')' && --depth == 0) {
+                return expression.substring(open + 1, i).trim();
+            }
+        }
+        throw unsupported("-android uiautomator " + expression);
+    }
+
+    private static List<String> splitSelectors(String expression) {
+        List<String> selectors = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (c == '\\' && quoted && i + 1 < expression.length()) {
+                current.append(c).append(expression.charAt(++i));
+                continue;
+            }
+            if (c == '"') {
+                quoted = !quoted;
+            }
+            if (c == ';' && !quoted) {
+                selectors.add(current.toString().trim());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (current.toString().trim().length() > 0) {
+            selectors.add(current.toString().trim());
+        }
+        return selectors;
+    }
+
+    private static List<Map.Entry<String, String>> calls(String selector) {
+        if (!selector.startsWith("new UiSelector()")) {
+            throw unsupported("-android uiautomator " + selector);
+        }
+        List<Map.Entry<String, String>> calls = new ArrayList<>();
+        Matcher matcher = CALL.matcher(selector.substring("new UiSelector()".length()));
+        while (matcher.find()) {
+            String argument = matcher.group(2) != null
+                ? matcher.group(2).replace("\\\"", "\"").replace("\\\\", "\\")
+                : matcher.group(3).trim();
+            calls.add(new AbstractMap.SimpleEntry<>(matcher.group(1), argument));
+        }
+        return calls;
+    }
+
+    private static List<SimulatedApp.Widget> select(SimulatedApp.Screen screen, List<SimulatedApp.Widget> candidates,
+                                                    List<Map.Entry<String, String>> calls) {
+        List<SimulatedApp.Widget> found = new ArrayList<>();
+        int instance = -1;
+        for (Map.Entry<String, String> call : calls) {
+            if ("instance".equals(call.getKey())) {
+                instance = Integer.parseInt(call.getValue());
+            }
+        }
+        for (SimulatedApp.Widget widget : candidates) {
+            boolean matches = true;
+            for (Map.Entry<String, String> call : calls) {
+                matches &= matches(screen, widget, call.getKey(), call.getValue());
+            }
+            if (matches) {
+                found.add(widget);
+            }
+        }
+        if (instance >= 0) {
+            return instance < found.size() ? Collections.singletonList(found.get(instance)) : Collections.emptyList();
+        }
+        return found;
+    }
+
+    private static boolean matches(SimulatedApp.Screen screen, SimulatedApp.Widget widget, String method, String argument) {
+        Map<String, String> attributes = attributes(screen, widget);
+        String resourceId = attributes.get("resource-id");
+        switch (method) {
+            case "resourceId":
+                return resourceId.equals(argument);
+            case "resourceIdMatches":
+                return Pattern.matches(argument, resourceId);
+            case "text":
+                return widget.text.equals(argument);
+            case "textContains":
+                return widget.text.contains(argument);
+            case "textStartsWith":
+                return widget.text.startsWith(argument);
+            case "textMatches":
+                return Pattern.matches(argument, widget.text);
+            case "className":
+                return widget.className.equals(argument);
+            case "classNameMatches":
+                return Pattern.matches(argument, widget.className);
+            case "description":
+                return widget.description.equals(argument);
+            case "descriptionContains":
+                return widget.description.contains(argument);
+            case "descriptionStartsWith":
+                return widget.description.startsWith(argument);
+            case "descriptionMatches":
+                return Pattern.matches(argument, widget.description);
+            case "packageName":
+                return attributes.get("package").equals(argument);
+            case "checkable":
+            case "checked":
+            case "clickable":
+            case "enabled":
+            case "focusable":
+            case "focused":
+            case "scrollable":
+            case "selected":
+                return attributes.get(method).equals(String.valueOf(Boolean.parseBoolean(argument)));
+            case "index":
+            case "instance":
+                return true;
+            default:
+                throw unsupported("UiSelector." + method);
+        }
+    }
+
+    // --- W3C actions ---
+
+    private void perform(Map<String, Object> body) {
+        Object sources = body.get("actions");
+        if (!(sources instanceof List)) {
+            return;
+        }
+        List<List<?>> sequences = new ArrayList<>();
+        for (Object source : (List<?>) sources) {
+            if (source instanceof Map && "pointer".equals(((Map<?, ?>) source).get("type"))) {
+                Object actions = ((Map<?, ?>) source).get("actions");
+                sequences.add(actions instanceof List ? (List<?>) actions : Collections.emptyList());
+            }
+        }
+        Pointer[] pointers = new Pointer[sequences.size()];
+        int ticks = 0;
+        for (int i = 0; i < pointers.length; i++) {
+            pointers[i] = new Pointer();
+            ticks = Math.max(ticks, sequences.get(i).size());
+        }
+        // Tick by tick across all fingers, as the W3C spec dispatches them
+        for (int tick = 0; tick < ticks; tick++) {
+            for (int i = 0; i < pointers.length; i++) {
+                List<?> actions = sequences.get(i);
+                if (tick < actions.size() && actions.get(tick) instanceof Map) {
+                    dispatch(pointers[i], (Map<?, ?>) actions.get(tick));
+                }
+            }
+        }
+    }
+
+    private void dispatch(Pointer pointer, Map<?, ?> action) {
+        switch (String.valueOf(action.get("type"))) {
+            case "pointerMove":
+                int x = number(action.get("x"));
+                int y = number(action.get("y"));
+                Object origin = action.get("origin");
+                if (origin instanceof Map) {
+                    SimulatedApp.Screen screen = foreground.screen();
+                    Object elementId = ((Map<?, ?>) origin).values().iterator().next();
+                    Rectangle rect = screen.rect(resolve(screen, String.valueOf(elementId)));
+                    x += rect.getX() + rect.getWidth() / 2;
+                    y += rect.getY() + rect.getHeight() / 2;
+                } else if ("pointer".equals(origin)) {
+                    x += pointer.x;
+                    y += pointer.y;
+                }
+                pointer.x = x;
+                pointer.y = y;
+                break;
+            case "pointerDown":
+                pointer.down = true;
+                pointer.downX = pointer.x;
+                pointer.downY = pointer.y;
+                break;
+            case "pointerUp":
+                if (pointer.down) {
+                    pointer.down = false;
+                    gesture(pointer.downX, pointer.downY, pointer.x, pointer.y);
+                }
+                break;
+            default:
+                // pause: timing doesn't change the outcome
+                break;
+        }
+    }
+
+    private void gesture(int startX, int startY, int endX, int endY) {
+        SimulatedApp.Screen screen = foreground.screen();
+        SimulatedApp.Widget touched = screen.hit(startX, startY);
+        int dx = endX - startX;
+        int dy = endY - startY;
+        if (Math.abs(dx) < TAP_SLOP && Math.abs(dy) < TAP_SLOP) {
+            if (touched != null) {
+                Rectangle rect = screen.rect(touched);
+                click(screen, touched, (double) (endX - rect.getX()) / rect.getWidth());
+            }
+        } else if (touched != null && touched.onSlide != null) {
+            Rectangle rect = screen.rect(touched);
+            click(screen, touched, (double) (endX - rect.getX()) / rect.getWidth());
+        } else if (Math.abs(dy) >= Math.abs(dx)) {
+            // Finger moving up scrolls the content down
+            foreground.scrollBy(-dy);
+        }
+    }
+
+    private static final class Pointer {
+        int x;
+        int y;
+        int downX;
+        int downY;
+        boolean down;
+    }
+
+    // --- mobile: commands and Appium endpoints ---
+
+    private Object execute(Map<String, Object> body) {
+        String script = String.valueOf(body.get("script")).trim();
+        Object args = body.get("args");
+        Map<?, ?> arguments = args instanceof List && !((List<?>) args).isEmpty() && ((List<?>) args).get(0) instanceof Map
+            ? (Map<?, ?>) ((List<?>) args).get(0)
+            : Collections.emptyMap();
+        switch (script) {
+            case "mobile: pressKey":
+                pressKey(number(arguments.get("keycode")));
+                return null;
+            case "mobile: scrollGesture":
+                return scrollGesture(arguments);
+            case "mobile: clearApp":
+                app(String.valueOf(arguments.get("appId"))).restart();
+                return null;
+            case "mobile: activateApp":
+                foreground = app(String.valueOf(arguments.get("appId")));
+                return null;
+            case "mobile: terminateApp":
+                app(String.valueOf(arguments.get("appId"))).restart();
+                return true;
+            case "mobile: queryAppState":
+                return appState(String.valueOf(arguments.get("appId")));
+            case "mobile: getCurrentPackage":
+                return foreground.appPackage();
+            default:
+                return UNHANDLED;
+        }
+    }
+
+    private Object appiumCommand(String[] command, Map<String, Object> body) {
+        String path = String.join("/", Arrays.copyOfRange(command, 1, command.length));
+        Object appId = body.containsKey("appId") ? body.get("appId") : body.get("bundleId");
+        switch (path) {
+            case "device/current_package":
+                return foreground.appPackage();
+            case "device/activate_app":
+                foreground = app(String.valueOf(appId));
+                return null;
+            case "device/terminate_app":
+                app(String.valueOf(appId)).restart();
+                return true;
+            case "device/app_state":
+                return appState(String.valueOf(appId));
+            case "device/press_keycode":
+                pressKey(number(body.get("keycode")));
+                return null;
+            default:
+                return UNHANDLED;
+        }
+    }
+
+    private void pressKey(int keycode) {
+        if (keycode == KEYCODE_BACK) {
+            foreground.pressBack();
+        }
+    }
+
+    // Returns true while there is more to scroll in that direction, like UiAutomator2
+    private Object scrollGesture(Map<?, ?> arguments) {
+        String direction = String.valueOf(arguments.get("direction")).toLowerCase();
+        int height = arguments.containsKey("height") ? number(arguments.get("height")) : SimulatedApp.SCREEN_HEIGHT;
+        double percent = arguments.get("percent") instanceof Number ? ((Number) arguments.get("percent")).doubleValue() : 1.0;
+        int distance = (int) Math.round(height * percent);
+        switch (direction) {
+            case "down":
+                return foreground.scrollBy(distance);
+            case "up":
+                return foreground.scrollBy(-distance);
+            default:
+                return false;
+        }
+    }
+
+    private int appState(String appPackage) {
+        if (!installed.containsKey(appPackage)) {
+            return 0;
+        }
+        // 4: running in foreground, 3: running in background
+        return foreground.appPackage().equals(appPackage) ? 4 : 3;
+    }
+
+    private SimulatedApp app(String appPackage) {
+        SimulatedApp app = installed.get(appPackage);
+        if (app == null) {
+            throw new StubAppiumServer.StubError(500, "unknown error", "App '" + appPackage + "' is not installed");
+        }
+        return app;
+    }
+
+    private static int number(Object value) {
+        return value instanceof Number ? (int) Math.round(((Number) value).doubleValue()) : 0;
+    }
+
+    private static List<SimulatedApp.Widget> filter(List<SimulatedApp.Widget> widgets,
+                                                    Predicate<SimulatedApp.Widget> predicate) {
+        List<SimulatedApp.Widget> found = new ArrayList<>();
+        for (SimulatedApp.Widget widget : widgets) {
+            if (predicate.test(widget)) {
+                found.add(widget);
+            }
+        }
+        return found;
+    }
+
+    private static Map<String, Object> rect(Rectangle rect) {
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("x", rect.getX());
+        value.put("y", rect.getY());
+        value.put("width", rect.getWidth());
+        value.put("height", rect.getHeight());
+        return value;
+    }
+
+    private static StubAppiumServer.StubError unsupported(String what) {
+        return new StubAppiumServer.StubError(400, "invalid selector", "The simulated device does not support " + what);
+    }
+}
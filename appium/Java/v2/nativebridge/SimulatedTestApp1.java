@@ -0,0 +1,41 @@
+package nativebridge;
+
+/**
+ * SimulatedTestApp1 - TestApp1 (com.testapp1) as a SimulatedApp
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * Title, a press counter with its button, a text input with a submit button
+ * and a swipe area. Pressing the button bumps the counter and shows an
+ * alert; submitting shows an alert with the entered text.
+ */
+public final class SimulatedTestApp1 extends SimulatedApp {
+
+    public static final String PACKAGE = "com.testapp1";
+
+    private int presses;
+    private String input = "";
+
+    public SimulatedTestApp1() {
+        super(PACKAGE);
+    }
+
+    @Override
+    protected void render(Screen screen) {
+        screen.text("app-title", "Appium Test App");
+        screen.text("button-counter", "Button pressed " + presses + " times");
+        screen.button("test-button", "Press Me", () -> {
+            presses++;
+            showAlert("Button Pressed", "You pressed the button " + presses + " times");
+        });
+        screen.input("text-input", input, text -> input = text);
+        screen.button("submit-button", "Submit", () ->
+            showAlert("Submitted", input.isEmpty() ? "Please enter some text" : "You entered: " + input));
+        screen.area("swipe-area", 600).description("Swipe here");
+    }
+
+    @Override
+    protected void reset() {
+        presses = 0;
+        input = "";
+    }
+}
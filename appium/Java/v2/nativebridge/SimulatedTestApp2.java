@@ -0,0 +1,125 @@
+package nativebridge;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * SimulatedTestApp2 - TestApp2 (com.testapp2) as a SimulatedApp
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * Two dropdowns that expand their options in place, two switches with a
+ * status line, a volume slider with its value, a list long enough to scroll
+ * and, at the bottom below the fold, a button opening a modal. The back key
+ * closes the modal or an open dropdown.
+ */
+public final class SimulatedTestApp2 extends SimulatedApp {
+
+    public static final String PACKAGE = "com.testapp2";
+
+    private static final String[] COLORS = {"Red", "Green", "Blue"};
+    private static final String[] SIZES = {"Small", "Medium", "Large"};
+    private static final int LIST_ITEMS = 12;
+
+    private String color;
+    private String size;
+    private boolean colorOpen;
+    private boolean sizeOpen;
+    private boolean notifications;
+    private boolean darkMode;
+    private int volume;
+    private boolean modalOpen;
+
+    public SimulatedTestApp2() {
+        super(PACKAGE);
+        reset();
+    }
+
+    @Override
+    protected void render(Screen screen) {
+        screen.text("app-title", "Advanced Test App");
+
+        screen.button("color-dropdown", color != null ? color : "Select a color", () -> {
+            colorOpen = !colorOpen;
+            sizeOpen = false;
+        });
+        if (colorOpen) {
+            options(screen, "color-dropdown-option-", COLORS, value -> color = value);
+        }
+        screen.button("size-dropdown", size != null ? size : "Select a size", () -> {
+            sizeOpen = !sizeOpen;
+            colorOpen = false;
+        });
+        if (sizeOpen) {
+            options(screen, "size-dropdown-option-", SIZES, value -> size = value);
+        }
+        screen.text("selection-display", selection());
+
+        screen.toggle("notifications-switch", notifications, () -> notifications = !notifications);
+        screen.toggle("dark-mode-switch", darkMode, () -> darkMode = !darkMode);
+        screen.text("switch-status",
+            "Notifications: " + (notifications ? "ON" : "OFF") + " | Dark Mode: " + (darkMode ? "ON" : "OFF"));
+
+        screen.slider("volume-slider", fraction -> volume = (int) Math.round(fraction * 100));
+        screen.text("slider-value", "Current value: " + volume);
+
+        for (int i = 1; i <= LIST_ITEMS; i++) {
+            screen.text("scroll-item-" + i, "Scroll item " + i);
+        }
+        screen.button("show-modal-button", "Show Modal", () -> modalOpen = true);
+
+        if (modalOpen) {
+            screen.overlay();
+            screen.text("modal-text", "This is a modal dialog");
+            screen.button("close-modal-button", "Close Modal", () -> modalOpen = false);
+        }
+    }
+
+    private void options(Screen screen, String idPrefix, String[] values, Consumer<String> onSelect) {
+        for (int i = 0; i < values.length; i++) {
+            String value = values[i];
+            screen.button(idPrefix + i, value, () -> {
+                onSelect.accept(value);
+                colorOpen = false;
+                sizeOpen = false;
+            });
+        }
+    }
+
+    private String selection() {
+        List<String> parts = new ArrayList<>();
+        if (color != null) {
+            parts.add(color);
+        }
+        if (size != null) {
+            parts.add(size);
+        }
+        return parts.isEmpty() ? "Selected:" : "Selected: " + String.join(", ", parts);
+    }
+
+    @Override
+    protected boolean back() {
+        if (modalOpen) {
+            modalOpen = false;
+            return true;
+        }
+        if (colorOpen || sizeOpen) {
+            colorOpen = false;
+            sizeOpen = false;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    protected void reset() {
+        color = null;
+        size = null;
+        colorOpen = false;
+        sizeOpen = false;
+        notifications = false;
+        darkMode = false;
+        volume = 50;
+        modalOpen = false;
+    }
+}
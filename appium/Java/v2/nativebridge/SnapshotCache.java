@@ -0,0 +1,116 @@
+package nativebridge;
+
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * SnapshotCache - Page-source snapshot reused until the UI may have changed
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * Fetches getPageSource() once and serves PageSnapshot lookups from it. The
+ * cache listens to the driver's command path and drops the snapshot after any
+ * command that is not known to be read-only (click, sendKeys, clear, perform,
+ * executeScript, ...), so callers never see a hierarchy older than their last
+ * interaction.
+ */
+public final class SnapshotCache implements HookedCommandExecutor.Listener {
+
+    private static final Set<String> READ_ONLY = new HashSet<>(Arrays.asList(
+        DriverCommand.STATUS,
+        DriverCommand.GET_PAGE_SOURCE,
+        DriverCommand.FIND_ELEMENT,
+        DriverCommand.FIND_ELEMENTS,
+        DriverCommand.FIND_CHILD_ELEMENT,
+        DriverCommand.FIND_CHILD_ELEMENTS,
+        DriverCommand.GET_ELEMENT_TEXT,
+        DriverCommand.GET_ELEMENT_TAG_NAME,
+        DriverCommand.GET_ELEMENT_ATTRIBUTE,
+        DriverCommand.GET_ELEMENT_DOM_ATTRIBUTE,
+        DriverCommand.GET_ELEMENT_DOM_PROPERTY,
+        DriverCommand.GET_ELEMENT_RECT,
+        DriverCommand.GET_ELEMENT_LOCATION,
+        DriverCommand.GET_ELEMENT_SIZE,
+        DriverCommand.IS_ELEMENT_DISPLAYED,
+        DriverCommand.IS_ELEMENT_ENABLED,
+        DriverCommand.IS_ELEMENT_SELECTED,
+        DriverCommand.SCREENSHOT,
+        DriverCommand.ELEMENT_SCREENSHOT,
+        DriverCommand.GET_TIMEOUTS,
+        DriverCommand.SET_TIMEOUT
+    ));
+
+    // executeScript commands that only read; java-client 9 sends getCurrentPackage() as one
+    private static final Set<String> READ_ONLY_SCRIPTS = new HashSet<>(Arrays.asList(
+        "mobile: getCurrentPackage"
+    ));
+
+    private final RemoteWebDriver driver;
+    private volatile PageSnapshot current;
+    private int fetches;
+    private int hits;
+
+    public SnapshotCache(RemoteWebDriver driver) {
+        this.driver = driver;
+        HookedCommandExecutor.of(driver).addListener(this);
+    }
+
+    /** The cached snapshot, fetching a fresh one if the last was invalidated. */
+    public PageSnapshot current() {
+        PageSnapshot snapshot = current;
+        if (snapshot != null) {
+            hits++;
+            return snapshot;
+        }
+        snapshot = PageSnapshot.parse(driver.getPageSource());
+        fetches++;
+        current = snapshot;
+        return snapshot;
+    }
+
+    public void invalidate() {
+        current = null;
+    }
+
+    public static boolean isReadOnly(String commandName) {
+        return READ_ONLY.contains(commandName);
+    }
+
+    /**
+     * Like {@link #isReadOnly(String)}, but also knows read-only mobile: scripts,
+     * and a UiScrollable lookup counts as a change: it scrolls.
+     */
+    public static boolean isReadOnly(Command command) {
+        Map<String, ?> parameters = command.getParameters();
+        if (DriverCommand.EXECUTE_SCRIPT.equals(command.getName())) {
+            return READ_ONLY_SCRIPTS.contains(parameters.get("script"));
+        }
+        if (!isReadOnly(command.getName())) {
+            return false;
+        }
+        return !Scroller.scrollsOnLookup(parameters.get("using"), parameters.get("value"));
+    }
+
+    @Override
+    public void afterCommand(Command command, Response response, long elapsedNanos) {
+        if (!isReadOnly(command)) {
+            invalidate();
+        }
+    }
+
+    @Override
+    public void onCommandFailure(Command command, Throwable error, long elapsedNanos) {
+        // A failed interaction may still have changed the screen
+        afterCommand(command, null, elapsedNanos);
+    }
+
+    public String summary() {
+        return fetches + " page-source fetches, " + hits + " cached lookups";
+    }
+}
@@ -0,0 +1,450 @@
+package nativebridge;
+
+import io.appium.java_client.AppiumDriver;
+import io.appium.java_client.driverscripts.ScriptOptions;
+import io.appium.java_client.driverscripts.ScriptType;
+import org.openqa.selenium.UnsupportedCommandException;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.interactions.PointerInput;
+import org.openqa.selenium.interactions.Sequence;
+import org.openqa.selenium.json.Json;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * StepBatch - A sequence of helper steps sent to Appium as one driver script
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * A workflow such as "type, click, dismiss alert, click, dismiss alert, read
+ * the counter" is a dozen requests from the JVM, each paying the round trip
+ * to the device host. A StepBatch collects the same steps the scripts' helpers
+ * perform (safeFind, safeFindAndClick, dismissAlertIfPresent, performSwipe,
+ * ...) and compiles them into one WebdriverIO script for Appium's
+ * {@code executeDriverScript}, which runs them next to the device and returns
+ * every step's outcome in one response.
+ *
+ * Each step reports ok/value/error on its own and later steps still run after
+ * a failed one, the way the safe* helpers log and carry on. Lookups wait up to
+ * the session's implicit wait, alerts up to the alert timeout. Like the
+ * helpers, a client-side batch lets SessionLostException through: a dead
+ * session ends the batch instead of failing every remaining step.
+ *
+ * executeDriverScript needs the execute-driver plugin and
+ * {@code --allow-insecure=execute_driver_script}. When the server rejects the
+ * command the batch runs the same steps client-side, one request at a time,
+ * and remembers not to try the script again for that session.
+ * {@code -Dnativebridge.driverScript=false} always runs client-side.
+ */
+public final class StepBatch {
+
+    private static final String ELEMENT_KEY = "element-6066-11e4-a52e-4f735466cecf";
+
+    // Sessions whose server turned executeDriverScript down
+    private static final Set<String> CLIENT_SIDE_SESSIONS = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    private static final String RUNTIME = String.join("\n",
+        "const steps = %s;",
+        "const alertSelector = %s;",
+        "const alertWait = %d;",
+        "const results = [];",
+        "const timeouts = await driver.getTimeouts();",
+        "const findWait = timeouts.implicit || 0;",
+        "async function find(selector, wait) {",
+        "  const end = Date.now() + wait;",
+        "  while (true) {",
+        "    const found = await driver.findElements('-android uiautomator', selector);",
+        "    if (found.length > 0) return found[0]['" + ELEMENT_KEY + "'];",
+        "    if (Date.now() >= end) return null;",
+        "    await driver.pause(100);",
+        "  }",
+        "}",
+        "async function gone(selector, wait) {",
+        "  const end = Date.now() + wait;",
+        "  while ((await driver.findElements('-android uiautomator', selector)).length > 0 && Date.now() < end) {",
+        "    await driver.pause(100);",
+        "  }",
+        "}",
+        "await driver.setTimeouts(0);",
+        "try {",
+        "  for (const step of steps) {",
+        "    const started = Date.now();",
+        "    const result = {name: step.name, ok: false, value: null, error: null};",
+        "    try {",
+        "      if (step.op === 'pause') {",
+        "        await driver.pause(step.millis);",
+        "        result.ok = true;",
+        "      } else if (step.op === 'swipe') {",
+        "        await driver.performActions([step.actions]);",
+        "        await driver.releaseActions();",
+        "        result.ok = true;",
+        "      } else if (step.op === 'dismissAlert') {",
+        "        const button = await find(alertSelector, alertWait);",
+        "        if (button) {",
+        "          await driver.elementClick(button);",
+        "          await gone(alertSelector, alertWait);",
+        "          result.value = 'button';",
+        "        } else {",
+        "          await driver.execute('mobile: pressKey', {keycode: 4});",
+        "          result.value = 'back';",
+        "        }",
+        "        result.ok = true;",
+        "      } else {",
+        "        const element = await find(step.selector, findWait);",
+        "        if (!element) {",
+        "          result.error = 'No element matches ' + step.selector;",
+        "        } else if (step.op === 'find') {",
+        "          result.ok = true;",
+        "        } else if (step.op === 'click') {",
+        "          await driver.elementClick(element);",
+        "          result.ok = true;",
+        "        } else if (step.op === 'type') {",
+        "          await driver.elementClear(element);",
+        "          await driver.elementSendKeys(element, step.text);",
+        "          result.ok = true;",
+        "        } else if (step.op === 'text') {",
+        "          result.value = await driver.getElementText(element);",
+        "          result.ok = true;",
+        "        }",
+        "      }",
+        "    } catch (e) {",
+        "      result.error = e.message;",
+        "    }",
+        "    result.millis = Date.now() - started;",
+        "    results.push(result);",
+        "  }",
+        "} finally {",
+        "  await driver.setTimeouts(findWait);",
+        "}",
+        "return results;");
+
+    private final AppiumDriver driver;
+    private final String appPackage;
+    private final List<Step> steps = new ArrayList<>();
+    private Duration alertTimeout = Duration.ofSeconds(5);
+    private Duration scriptTimeout = Duration.ofMinutes(2);
+
+    public StepBatch(AppiumDriver driver, String appPackage) {
+        this.driver = driver;
+        this.appPackage = appPackage;
+    }
+
+    /** How long dismissAlert() waits for an alert to show up, and to go away after the click. */
+    public StepBatch withAlertTimeout(Duration timeout) {
+        this.alertTimeout = timeout;
+        return this;
+    }
+
+    /** Upper bound for the whole script on the server. */
+    public StepBatch withScriptTimeout(Duration timeout) {
+        this.scriptTimeout = timeout;
+        return this;
+    }
+
+    /** safeFind: ok if the element exists. */
+    public StepBatch find(String elementId) {
+        return add(new Step("find " + elementId, "find", elementId));
+    }
+
+    /** safeFindAndClick. */
+    public StepBatch click(String elementId) {
+        return add(new Step("click " + elementId, "click", elementId));
+    }
+
+    /** Clears the field, then types {@code text}. */
+    public StepBatch type(String elementId, String text) {
+        Step step = new Step("type " + elementId, "type", elementId);
+        step.text = text;
+        return add(step);
+    }
+
+    /** The element's text as the step value. */
+    public StepBatch readText(String elementId) {
+        return add(new Step("text " + elementId, "text", elementId));
+    }
+
+    /** dismissAlertIfPresent, waiting for the alert first; the value is "button" or "back". */
+    public StepBatch dismissAlert() {
+        return add(new Step("dismiss alert", "dismissAlert", null));
+    }
+
+    /** performSwipe: one finger from (startX, startY) to (endX, endY). */
+    public StepBatch swipe(int startX, int startY, int endX, int endY, int durationMs) {
+        PointerInput finger = new PointerInput(PointerInput.Kind.TOUCH, "finger");
+        Sequence swipe = new Sequence(finger, 1);
+        swipe.addAction(finger.createPointerMove(Duration.ofMillis(0),
+            PointerInput.Origin.viewport(), startX, startY));
+        swipe.addAction(finger.createPointerDown(PointerInput.MouseButton.LEFT.asArg()));
+        swipe.addAction(finger.createPointerMove(Duration.ofMillis(durationMs),
+            PointerInput.Origin.viewport(), endX, endY));
+        swipe.addAction(finger.createPointerUp(PointerInput.MouseButton.LEFT.asArg()));
+        Step step = new Step("swipe " + startX + "," + startY + " -> " + endX + "," + endY, "swipe", null);
+        step.actions = swipe;
+        return add(step);
+    }
+
+    public StepBatch pause(Duration duration) {
+        Step step = new Step("pause " + duration.toMillis() + "ms", "pause", null);
+        step.millis = duration.toMillis();
+        return add(step);
+    }
+
+    private StepBatch add(Step step) {
+        steps.add(step);
+        return this;
+    }
+
+    /** The WebdriverIO script sent to executeDriverScript. */
+    public String compile() {
+        List<Map<String, Object>> encoded = new ArrayList<>(steps.size());
+        for (Step step : steps) {
+            encoded.add(step.encode());
+        }
+        Json json = new Json();
+        return String.format(RUNTIME, json.toJson(encoded), json.toJson(UiWait.ALERT_SELECTOR), alertTimeout.toMillis());
+    }
+
+    /** Runs every step, on the server if it allows driver scripts, otherwise client-side. */
+    public Result run() {
+        long start = System.nanoTime();
+        String sessionId = String.valueOf(driver.getSessionId());
+        if (!"false".equals(System.getProperty("nativebridge.driverScript")) && !CLIENT_SIDE_SESSIONS.contains(sessionId)) {
+            try {
+                Object value = driver.executeDriverScript(compile(), new ScriptOptions()
+                    .withScriptType(ScriptType.WEBDRIVERIO)
+                    .withTimeout(scriptTimeout.toMillis())).getResult();
+                return new Result(decode(value), true, System.nanoTime() - start);
+            } catch (WebDriverException e) {
+                if (!isUnavailable(e)) {
+                    throw e;
+                }
+                CLIENT_SIDE_SESSIONS.add(sessionId);
+            }
+        }
+        List<StepResult> results = new ArrayList<>(steps.size());
+        UiWait uiWait = new UiWait(driver).withTimeout(alertTimeout);
+        for (Step step : steps) {
+            if (Thread.currentThread().isInterrupted()) {
+                results.add(new StepResult(step.name, false, null, "Not run: interrupted", 0));
+            } else {
+                results.add(runLocally(step, uiWait));
+            }
+        }
+        return new Result(results, false, System.nanoTime() - start);
+    }
+
+    // Plugin not installed (unknown command) or insecure feature not enabled
+    private static boolean isUnavailable(WebDriverException e) {
+        String message = String.valueOf(e.getMessage()).toLowerCase();
+        return e instanceof UnsupportedCommandException
+            || message.contains("execute_driver")
+            || message.contains("insecure feature");
+    }
+
+    private StepResult runLocally(Step step, UiWait uiWait) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        Object value = null;
+        String error = null;
+        try {
+            switch (step.op) {
+                case "pause":
+                    Thread.sleep(step.millis);
+                    ok = true;
+                    break;
+                case "swipe":
+                    driver.perform(Collections.singletonList(step.actions));
+                    ok = true;
+                    break;
+                case "dismissAlert":
+                    WebElement button = uiWait.until(UiWait.alertPresent());
+                    if (button != null) {
+                        button.click();
+                        uiWait.until(UiWait.alertGone());
+                        value = "button";
+                    } else {
+                        driver.executeScript("mobile: pressKey", Collections.singletonMap("keycode", 4));
+                        value = "back";
+                    }
+                    ok = true;
+                    break;
+                default:
+                    List<WebElement> found = CompositeLocator.findAll(driver, appPackage, step.elementId);
+                    if (found.isEmpty()) {
+                        error = "No element matches " + step.selector();
+                        break;
+                    }
+                    WebElement element = found.get(0);
+                    if ("click".equals(step.op)) {
+                        element.click();
+                    } else if ("type".equals(step.op)) {
+                        element.clear();
+                        element.sendKeys(step.text);
+                    } else if ("text".equals(step.op)) {
+                        value = element.getText();
+                    }
+                    ok = true;
+            }
+        } catch (InterruptedException e) {
+            // Keeps the flag set, so run() skips the remaining steps
+            Thread.currentThread().interrupt();
+            error = "Interrupted";
+        } catch (SessionBreaker.SessionLostException e) {
+            throw e;
+        } catch (WebDriverException e) {
+            error = e.getMessage();
+        }
+        return new StepResult(step.name, ok, value, error, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // The step results a driver script returned
+    static List<StepResult> decode(Object value) {
+        if (!(value instanceof List)) {
+            throw new WebDriverException("Driver script returned " + value + " instead of step results");
+        }
+        List<StepResult> results = new ArrayList<>();
+        for (Object item : (List<?>) value) {
+            Map<?, ?> result = (Map<?, ?>) item;
+            Object millis = result.get("millis");
+            results.add(new StepResult(String.valueOf(result.get("name")), Boolean.TRUE.equals(result.get("ok")),
+                result.get("value"), (String) result.get("error"),
+                millis instanceof Number ? ((Number) millis).longValue() : 0));
+        }
+        return results;
+    }
+
+    private final class Step {
+
+        final String name;
+        final String op;
+        final String elementId;
+        String text;
+        long millis;
+        Sequence actions;
+
+        Step(String name, String op, String elementId) {
+            this.name = name;
+            this.op = op;
+            this.elementId = elementId;
+        }
+
+        String selector() {
+            return CompositeLocator.uiSelector(appPackage, elementId);
+        }
+
+        Map<String, Object> encode() {
+            Map<String, Object> encoded = new LinkedHashMap<>();
+            encoded.put("name", name);
+            encoded.put("op", op);
+            if (elementId != null) {
+                encoded.put("selector", selector());
+            }
+            if (text != null) {
+                encoded.put("text", text);
+            }
+            if ("pause".equals(op)) {
+                encoded.put("millis", millis);
+            }
+            if (actions != null) {
+                encoded.put("actions", actions.encode());
+            }
+            return encoded;
+        }
+    }
+
+    /** Outcome of one step. */
+    public static final class StepResult {
+
+        private final String name;
+        private final boolean ok;
+        private final Object value;
+        private final String error;
+        private final long millis;
+
+        StepResult(String name, boolean ok, Object value, String error, long millis) {
+            this.name = name;
+            this.ok = ok;
+            this.value = value;
+            this.error = error;
+            this.millis = millis;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public boolean ok() {
+            return ok;
+        }
+
+        public Object value() {
+            return value;
+        }
+
+        /** The value as text, or null. */
+        public String text() {
+            return value == null ? null : String.valueOf(value);
+        }
+
+        public String error() {
+            return error;
+        }
+
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + (ok ? "ok" : "failed (" + error + ")") + (value != null ? " -> " + value : "")
+                + " in " + millis + "ms";
+        }
+    }
+
+    /** Every step's outcome, in the order the steps were added. */
+    public static final class Result {
+
+        private final List<StepResult> steps;
+        private final boolean serverSide;
+        private final long elapsedNanos;
+
+        Result(List<StepResult> steps, boolean serverSide, long elapsedNanos) {
+            this.steps = Collections.unmodifiableList(steps);
+            this.serverSide = serverSide;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public StepResult get(int index) {
+            return steps.get(index);
+        }
+
+        public List<StepResult> steps() {
+            return steps;
+        }
+
+        public boolean allOk() {
+            return steps.stream().allMatch(StepResult::ok);
+        }
+
+        /** True if the steps ran as one driver script, false if they ran client-side. */
+        public boolean serverSide() {
+            return serverSide;
+        }
+
+        public long elapsedMillis() {
+            return elapsedNanos / 1_000_000;
+        }
+
+        public String summary() {
+            return steps.size() + " steps " + (serverSide ? "in one driver script" : "client-side")
+                + " in " + elapsedMillis() + "ms";
+        }
+    }
+}
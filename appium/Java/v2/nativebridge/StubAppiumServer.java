@@ -0,0 +1,473 @@
+package nativebridge;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.openqa.selenium.json.Json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * StubAppiumServer - Local W3C endpoint that answers like an Appium server
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * Speaks enough of the WebDriver protocol for the sample scripts to create
+ * sessions, find elements, click, type, swipe and read page source, without
+ * a device behind it. Every command waits a configurable latency before it
+ * answers, so the client-side cost of the scripts and helpers can be measured
+ * with a realistic round trip. Element lookups succeed unless an element
+ * lookup says otherwise; misses wait out the implicit wait like a real server. Several instances on different ports stand in
+ * for a device farm when trying out parallel execution.
+ *
+ * With {@link #setDevices} every new session gets a SimulatedDevice that
+ * answers from the TestApp1/TestApp2 state machines instead, so the scripts
+ * see counters move, alerts come and go and content scroll.
+ *
+ * {@link #setXPathLatency} adds what UiAutomator2 spends dumping the view
+ * hierarchy for each XPath lookup, which native selectors don't pay.
+ *
+ * {@code java nativebridge.StubAppiumServer [--latency-ms=N] [--xpath-latency-ms=N] [--simulate=com.testapp2] [port...]}
+ */
+public final class StubAppiumServer implements AutoCloseable {
+
+    private static final String ELEMENT_KEY = "element-6066-11e4-a52e-4f735466cecf";
+
+    private static final String EMPTY_SOURCE =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?><hierarchy rotation=\"0\"/>";
+
+    // 1x1 transparent PNG
+    private static final String BLANK_PNG =
+        "iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNkYPhfDwAChwGA60e6kgAAAABJRU5ErkJggg==";
+
+    private static final Json JSON = new Json();
+
+    static {
+        // Without TCP_NODELAY, small responses sit out the client's delayed ACK
+        // and every command gains ~40ms that a real Appium server doesn't have
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService workers;
+    // Session id -> implicit wait in ms, which misses honour like a real server
+    private final Map<String, Long> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger nextElement = new AtomicInteger();
+    private final AtomicInteger sessionsCreated = new AtomicInteger();
+    private final AtomicLong commands = new AtomicLong();
+    private volatile Duration latency;
+    private volatile Duration xpathLatency = Duration.ZERO;
+    private volatile BiPredicate<String, String> elementLookup = (using, value) -> true;
+    private volatile Function<Map<String, Object>, SimulatedDevice> deviceFactory;
+    private final Map<String, SimulatedDevice> devices = new ConcurrentHashMap<>();
+
+    public StubAppiumServer(int port, Duration latency) throws IOException {
+        this.latency = latency;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        // Latency is a sleep, so a virtual thread per exchange keeps hundreds of
+        // concurrent sessions from costing hundreds of platform threads
+        this.workers = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(workers);
+        server.createContext("/", this::handle);
+    }
+
+    /** Starts a server on {@code port} (0 picks a free one). */
+    public static StubAppiumServer start(int port, Duration latency) throws IOException {
+        StubAppiumServer stub = new StubAppiumServer(port, latency);
+        stub.server.start();
+        return stub;
+    }
+
+    public URL url() {
+        try {
+            return URI.create("http://127.0.0.1:" + server.getAddress().getPort()).toURL();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public void setLatency(Duration latency) {
+        this.latency = latency;
+    }
+
+    /** Extra time every XPath lookup takes on top of the command latency. */
+    public void setXPathLatency(Duration xpathLatency) {
+        this.xpathLatency = xpathLatency;
+    }
+
+    /**
+     * Decides which locators ({@code using}, {@code value}) match an element;
+     * by default every lookup succeeds. A miss blocks for the session's
+     * implicit wait before answering, as on a real server.
+     */
+    public void setElementLookup(BiPredicate<String, String> elementLookup) {
+        this.elementLookup = elementLookup;
+    }
+
+    /**
+     * Gives every new session a device built from its capabilities, e.g.
+     * {@code SimulatedDevice.testApps("com.testapp1")}; null goes back to
+     * the plain stub answers.
+     */
+    public void setDevices(Function<Map<String, Object>, SimulatedDevice> deviceFactory) {
+        this.deviceFactory = deviceFactory;
+    }
+
+    /** The simulated device behind {@code sessionId}, or null. */
+    public SimulatedDevice device(String sessionId) {
+        return devices.get(sessionId);
+    }
+
+    public long commandCount() {
+        return commands.get();
+    }
+
+    public int sessionsCreated() {
+        return sessionsCreated.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        workers.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            commands.incrementAndGet();
+            pause();
+            // Appium 1.x clients (the v1 scripts) prefix every path with /wd/hub
+            String[] path = exchange.getRequestURI().getPath()
+                .replaceFirst("^/+wd/hub(?=/|$)", "")
+                .replaceAll("^/+|/+$", "").split("/");
+            Map<String, Object> body = readBody(exchange);
+            if ("xpath".equals(body.get("using"))) {
+                sleep(xpathLatency.toMillis());
+            }
+            respond(exchange, route(exchange.getRequestMethod(), path, body));
+        } catch (StubError e) {
+            respond(exchange, e.status, error(e.error, e.getMessage()));
+        } catch (RuntimeException e) {
+            respond(exchange, 500, error("unknown error", String.valueOf(e.getMessage())));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void pause() {
+        sleep(latency.toMillis());
+    }
+
+    private static void sleep(long millis) {
+        if (millis > 0) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private Object route(String method, String[] path, Map<String, Object> body) {
+        if (path.length == 1 && "status".equals(path[0])) {
+            return Collections.singletonMap("ready", true);
+        }
+        if (path.length == 0 || !"session".equals(path[0])) {
+            throw new StubError(404, "unknown command", "Unknown path /" + String.join("/", path));
+        }
+        if (path.length == 1 && "POST".equals(method)) {
+            return newSession(body);
+        }
+        String sessionId = path[1];
+        if (!sessions.containsKey(sessionId)) {
+            throw new StubError(404, "invalid session id", "No such session " + sessionId);
+        }
+        if (path.length == 2 && "DELETE".equals(method)) {
+            sessions.remove(sessionId);
+            devices.remove(sessionId);
+            return null;
+        }
+        SimulatedDevice device = devices.get(sessionId);
+        if (device != null) {
+            Object value = device.handle(method, Arrays.copyOfRange(path, 2, path.length), body);
+            if (value != SimulatedDevice.UNHANDLED) {
+                return value;
+            }
+        }
+        String command = path.length > 2 ? path[2] : "";
+        switch (command) {
+            case "element":
+                return path.length > 4 ? elementCommand(sessionId, path, body) : findElement(sessionId, null, body);
+            case "elements":
+                return findElements(sessionId, null, body);
+            case "source":
+                return EMPTY_SOURCE;
+            case "screenshot":
+                return BLANK_PNG;
+            case "timeouts":
+                return "GET".equals(method) ? timeouts(sessionId) : setTimeouts(sessionId, body);
+            case "window":
+                return rect(0, 0, 1080, 2340);
+            case "appium":
+                return appiumCommand(path);
+            case "se":
+                return logCommand(sessionId, path);
+            default:
+                // actions, execute/sync, back, ... succeed without a value
+                return null;
+        }
+    }
+
+    private Object newSession(Map<String, Object> body) {
+        String sessionId = UUID.randomUUID().toString();
+        sessions.put(sessionId, 0L);
+        sessionsCreated.incrementAndGet();
+        Map<String, Object> capabilities = new LinkedHashMap<>();
+        Object requested = body.get("capabilities");
+        if (requested instanceof Map) {
+            Object alwaysMatch = ((Map<?, ?>) requested).get("alwaysMatch");
+            if (alwaysMatch instanceof Map) {
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) alwaysMatch).entrySet()) {
+                    capabilities.put(String.valueOf(entry.getKey()), entry.getValue());
+                }
+            }
+        }
+        capabilities.putIfAbsent("platformName", "Android");
+        Function<Map<String, Object>, SimulatedDevice> factory = deviceFactory;
+        if (factory != null) {
+            devices.put(sessionId, factory.apply(capabilities));
+        }
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("sessionId", sessionId);
+        value.put("capabilities", capabilities);
+        return value;
+    }
+
+    // /session/{id}/element/{elementId}/{command}[/{name}]
+    private Object elementCommand(String sessionId, String[] path, Map<String, Object> body) {
+        switch (path[4]) {
+            case "element":
+                return findElement(sessionId, path[3], body);
+            case "elements":
+                return findElements(sessionId, path[3], body);
+            case "text":
+            case "name":
+                return "";
+            case "attribute":
+            case "property":
+                return null;
+            case "displayed":
+            case "enabled":
+                return true;
+            case "selected":
+                return false;
+            case "rect":
+            case "location":
+            case "size":
+                return rect(0, 0, 100, 100);
+            case "screenshot":
+                return BLANK_PNG;
+            default:
+                // click, clear, value
+                return null;
+        }
+    }
+
+    // se/log/types and se/log: one logcat line per session, enough for log collectors to work with
+    private Object logCommand(String sessionId, String[] path) {
+        if (path.length > 4 && "types".equals(path[4])) {
+            return Collections.singletonList("logcat");
+        }
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("timestamp", System.currentTimeMillis());
+        entry.put("level", "INFO");
+        entry.put("message", "I/StubAppiumServer: session " + sessionId + ", " + commands.get() + " commands served");
+        return Collections.singletonList(entry);
+    }
+
+    private Object appiumCommand(String[] path) {
+        String command = String.join("/", Arrays.copyOfRange(path, 3, path.length));
+        if ("device/current_package".equals(command)) {
+            return "com.testapp1";
+        }
+        if ("device/current_activity".equals(command)) {
+            return ".MainActivity";
+        }
+        if ("device/app_state".equals(command)) {
+            return 4;
+        }
+        if ("execute_driver".equals(command)) {
+            // Like a server without the execute-driver plugin
+            throw new StubError(404, "unknown command", "The execute-driver plugin is not installed");
+        }
+        return null;
+    }
+
+    private Object findElement(String sessionId, String parentId, Map<String, Object> body) {
+        List<Map<String, Object>> found = lookup(sessionId, parentId, body);
+        if (found.isEmpty()) {
+            throw new StubError(404, "no such element", "No element matches " + body.get("using") + " " + body.get("value"));
+        }
+        return found.get(0);
+    }
+
+    private Object findElements(String sessionId, String parentId, Map<String, Object> body) {
+        return lookup(sessionId, parentId, body);
+    }
+
+    private List<Map<String, Object>> lookup(String sessionId, String parentId, Map<String, Object> body) {
+        String using = String.valueOf(body.get("using"));
+        String value = String.valueOf(body.get("value"));
+        SimulatedDevice device = devices.get(sessionId);
+        if (device == null) {
+            if (elementLookup.test(using, value)) {
+                return Collections.singletonList(element("stub-" + nextElement.incrementAndGet()));
+            }
+            sleep(sessions.getOrDefault(sessionId, 0L));
+            return Collections.emptyList();
+        }
+        List<String> ids = device.find(parentId, using, value);
+        if (ids.isEmpty()) {
+            // Only this session's commands change the device, so one look after the wait is enough
+            sleep(sessions.getOrDefault(sessionId, 0L));
+            ids = device.find(parentId, using, value);
+        }
+        List<Map<String, Object>> found = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            found.add(element(id));
+        }
+        return found;
+    }
+
+    private static Map<String, Object> element(String id) {
+        return Collections.singletonMap(ELEMENT_KEY, id);
+    }
+
+    private Object setTimeouts(String sessionId, Map<String, Object> body) {
+        Object implicit = body.get("implicit");
+        if (implicit instanceof Number) {
+            sessions.put(sessionId, ((Number) implicit).longValue());
+        }
+        return null;
+    }
+
+    private Map<String, Object> timeouts(String sessionId) {
+        Map<String, Object> value = new HashMap<>();
+        value.put("implicit", sessions.getOrDefault(sessionId, 0L));
+        value.put("pageLoad", 300000);
+        value.put("script", 30000);
+        return value;
+    }
+
+    private static Map<String, Object> rect(int x, int y, int width, int height) {
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("x", x);
+        value.put("y", y);
+        value.put("width", width);
+        value.put("height", height);
+        return value;
+    }
+
+    private static Map<String, Object> error(String error, String message) {
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("error", error);
+        value.put("message", message);
+        value.put("stacktrace", "");
+        return value;
+    }
+
+    private static Map<String, Object> readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            String text = new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+            if (text.isEmpty() || !text.startsWith("{")) {
+                return Collections.emptyMap();
+            }
+            return JSON.toType(text, Json.MAP_TYPE);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, Object value) throws IOException {
+        respond(exchange, 200, value);
+    }
+
+    private static void respond(HttpExchange exchange, int status, Object value) throws IOException {
+        byte[] bytes = JSON.toJson(Collections.singletonMap("value", value)).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /** A W3C error response; also thrown by SimulatedDevice. */
+    static final class StubError extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+        final String error;
+
+        StubError(int status, String error, String message) {
+            super(message);
+            this.status = status;
+            this.error = error;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Duration latency = Duration.ZERO;
+        Duration xpathLatency = Duration.ZERO;
+        String simulate = null;
+        List<Integer> ports = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--latency-ms=")) {
+                latency = Duration.ofMillis(Long.parseLong(arg.substring("--latency-ms=".length())));
+            } else if (arg.startsWith("--xpath-latency-ms=")) {
+                xpathLatency = Duration.ofMillis(Long.parseLong(arg.substring("--xpath-latency-ms=".length())));
+            } else if (arg.startsWith("--simulate=")) {
+                simulate = arg.substring("--simulate=".length());
+            } else {
+                ports.add(Integer.parseInt(arg));
+            }
+        }
+        if (ports.isEmpty()) {
+            ports.add(4723);
+        }
+        for (int port : ports) {
+            StubAppiumServer stub = start(port, latency);
+            stub.setXPathLatency(xpathLatency);
+            if (simulate != null) {
+                stub.setDevices(SimulatedDevice.testApps(simulate));
+            }
+            System.out.println("Stub Appium server listening on " + stub.url()
+                + " (latency " + latency.toMillis() + "ms" + (simulate != null ? ", simulating " + simulate : "") + ")");
+        }
+        Thread.currentThread().join();
+    }
+}
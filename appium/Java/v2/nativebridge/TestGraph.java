@@ -0,0 +1,267 @@
+package nativebridge;
+
+import org.testng.IMethodInstance;
+import org.testng.IMethodInterceptor;
+import org.testng.ITestContext;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * TestGraph - Splits a test class into lanes that can run on separate devices
+ * Compatible with Appium 2.x + Java Client 9.x + TestNG
+ *
+ * {@code priority} runs a class's methods strictly one after the other on one
+ * session, even where they have nothing to do with each other. From the
+ * methods' {@link AppState} declarations this class builds the real
+ * dependency graph: a method depends on every earlier one it conflicts with
+ * (both change the same state, or one reads what the other changes) and on
+ * the ones it names in {@code after}. Methods connected that way form a chain
+ * that has to share a session; separate chains don't.
+ *
+ * The chains are packed into as many lanes as there are devices, longest
+ * first by the durations in TestHistory, and each lane becomes its own
+ * instance of the test class with its own device and session. With TestNG's
+ * {@code parallel="instances"} the lanes run side by side, so the class takes
+ * as long as its longest lane instead of the sum of its methods. Within a
+ * lane the methods keep their priority order. On a single device there is
+ * one lane and the class runs exactly as before; a lane always starts from
+ * a freshly reset app, like a class does.
+ *
+ * Use: a static {@code @Factory} returning {@code TestGraph.instances(...)},
+ * and this class in testng.xml {@code <listeners>}, which drops from each
+ * instance the methods of the other lanes.
+ */
+public final class TestGraph implements IMethodInterceptor {
+
+    // Lane of each instance created by instances()
+    private static final Map<Object, Lane> LANES = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    // Classes whose lanes were printed; TestNG may run a factory more than once
+    private static final Set<String> REPORTED = ConcurrentHashMap.newKeySet();
+
+    // Guess for a method without history, so unknown chains still spread out
+    private static final double UNKNOWN_MILLIS = 1000;
+
+    private final Class<?> testClass;
+    private final List<Method> methods;
+    // Method name -> names of the earlier methods it depends on
+    private final Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+
+    private TestGraph(Class<?> testClass, List<Method> methods) {
+        this.testClass = testClass;
+        this.methods = methods;
+        for (int i = 0; i < methods.size(); i++) {
+            Method later = methods.get(i);
+            Set<String> needs = new HashSet<>();
+            AppState laterState = later.getAnnotation(AppState.class);
+            if (laterState != null) {
+                needs.addAll(Arrays.asList(laterState.after()));
+            }
+            for (int j = 0; j < i; j++) {
+                Method earlier = methods.get(j);
+                if (conflict(earlier.getAnnotation(AppState.class), laterState)) {
+                    needs.add(earlier.getName());
+                }
+            }
+            dependencies.put(later.getName(), needs);
+        }
+    }
+
+    /** TestNG needs a public no-argument constructor to use this class as a listener. */
+    public TestGraph() {
+        this(Object.class, Collections.emptyList());
+    }
+
+    /** The graph of {@code testClass}'s {@code @Test} methods, in priority order. */
+    public static TestGraph of(Class<?> testClass) {
+        List<Method> methods = new ArrayList<>();
+        for (Method method : testClass.getMethods()) {
+            if (method.isAnnotationPresent(Test.class)) {
+                methods.add(method);
+            }
+        }
+        methods.sort(Comparator.comparingInt((Method m) -> m.getAnnotation(Test.class).priority())
+            .thenComparing(Method::getName));
+        return new TestGraph(testClass, methods);
+    }
+
+    /**
+     * One instance of the test class per lane, for a {@code @Factory}: as many
+     * lanes as DeviceRegistry has devices, at most one per chain.
+     */
+    public static <T> Object[] instances(Class<T> testClass, Function<Lane, T> create) {
+        TestGraph graph = of(testClass);
+        List<Lane> lanes = graph.lanes(DeviceRegistry.shared().size());
+        if (REPORTED.add(testClass.getName())) {
+            System.out.println(graph.summary(lanes));
+        }
+        Object[] instances = new Object[lanes.size()];
+        for (int i = 0; i < lanes.size(); i++) {
+            T instance = create.apply(lanes.get(i));
+            LANES.put(instance, lanes.get(i));
+            instances[i] = instance;
+        }
+        return instances;
+    }
+
+    /** Names of the earlier methods {@code method} has to run after. */
+    public Set<String> dependencies(String method) {
+        Set<String> needs = dependencies.get(method);
+        return needs != null ? Collections.unmodifiableSet(needs) : Collections.emptySet();
+    }
+
+    /** Methods that have to share a session, each chain in priority order. */
+    public List<List<String>> chains() {
+        Map<String, String> root = new LinkedHashMap<>();
+        for (Method method : methods) {
+            root.put(method.getName(), method.getName());
+        }
+        for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+            for (String earlier : entry.getValue()) {
+                if (root.containsKey(earlier)) {
+                    root.put(find(root, entry.getKey()), find(root, earlier));
+                }
+            }
+        }
+        Map<String, List<String>> chains = new LinkedHashMap<>();
+        for (Method method : methods) {
+            chains.computeIfAbsent(find(root, method.getName()), r -> new ArrayList<>()).add(method.getName());
+        }
+        return new ArrayList<>(chains.values());
+    }
+
+    /**
+     * The chains packed into at most {@code count} lanes: longest chain
+     * first, each into the lane that finishes earliest so far.
+     */
+    public List<Lane> lanes(int count) {
+        List<List<String>> chains = chains();
+        chains.sort(Comparator.comparingDouble((List<String> c) -> -millis(c)));
+        List<Lane> lanes = new ArrayList<>();
+        for (List<String> chain : chains) {
+            if (lanes.size() < count) {
+                lanes.add(new Lane(lanes.size() + 1));
+            }
+            Lane shortest = Collections.min(lanes, Comparator.comparingDouble(l -> l.expectedMillis));
+            shortest.methods.addAll(chain);
+            shortest.expectedMillis += millis(chain);
+        }
+        for (Lane lane : lanes) {
+            lane.methods.sort(Comparator.comparingInt(this::position));
+        }
+        return lanes;
+    }
+
+    /** One line per lane with its methods and expected time, for the console. */
+    public String summary(List<Lane> lanes) {
+        double serial = millis(names());
+        double longest = 0;
+        for (Lane lane : lanes) {
+            longest = Math.max(longest, lane.expectedMillis);
+        }
+        StringBuilder summary = new StringBuilder(String.format(
+            "%s: %d lane(s), critical path ~%.1fs instead of ~%.1fs",
+            testClass.getSimpleName(), lanes.size(), longest / 1000, serial / 1000));
+        for (Lane lane : lanes) {
+            summary.append(String.format("%n  lane %d (~%.1fs): %s", lane.number, lane.expectedMillis / 1000,
+                String.join(", ", lane.methods)));
+        }
+        return summary.toString();
+    }
+
+    // TestNG: each lane instance keeps only its own methods
+    @Override
+    public List<IMethodInstance> intercept(List<IMethodInstance> methods, ITestContext context) {
+        List<IMethodInstance> kept = new ArrayList<>(methods.size());
+        for (IMethodInstance method : methods) {
+            Lane lane = LANES.get(method.getInstance());
+            if (lane == null || lane.contains(method.getMethod().getMethodName())) {
+                kept.add(method);
+            }
+        }
+        return kept;
+    }
+
+    private List<String> names() {
+        List<String> names = new ArrayList<>();
+        for (Method method : methods) {
+            names.add(method.getName());
+        }
+        return names;
+    }
+
+    private int position(String method) {
+        return names().indexOf(method);
+    }
+
+    private double millis(List<String> chain) {
+        double millis = 0;
+        for (String method : chain) {
+            TestHistory.Stat stat = TestHistory.shared().method(testClass.getName(), method);
+            millis += stat != null ? stat.meanMillis() : UNKNOWN_MILLIS;
+        }
+        return millis;
+    }
+
+    private static String find(Map<String, String> root, String method) {
+        String current = method;
+        while (!root.get(current).equals(current)) {
+            current = root.get(current);
+        }
+        return current;
+    }
+
+    // Unannotated methods conflict with everything
+    private static boolean conflict(AppState a, AppState b) {
+        if (a == null || b == null) {
+            return true;
+        }
+        return overlaps(a.writes(), b.writes()) || overlaps(a.writes(), b.reads()) || overlaps(a.reads(), b.writes());
+    }
+
+    private static boolean overlaps(String[] a, String[] b) {
+        return !Collections.disjoint(Arrays.asList(a), Arrays.asList(b));
+    }
+
+    /** Methods of one test class instance that run on one device, in priority order. */
+    public static final class Lane {
+
+        private final int number;
+        private final List<String> methods = new ArrayList<>();
+        private double expectedMillis;
+
+        Lane(int number) {
+            this.number = number;
+        }
+
+        public int number() {
+            return number;
+        }
+
+        public List<String> methods() {
+            return Collections.unmodifiableList(methods);
+        }
+
+        public boolean contains(String method) {
+            return methods.contains(method);
+        }
+
+        @Override
+        public String toString() {
+            return "lane " + number + " " + methods;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package nativebridge;
+
+import org.openqa.selenium.json.Json;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TestHistory - How long each test method took and how often it failed, across runs
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * Every finished test method adds one line to an append-only JSON lines file,
+ * {@code .nativebridge/test-history.jsonl} by default
+ * ({@code -Dnativebridge.history.file}): class, method, duration and whether
+ * it passed. Lines are only ever appended, one write each, so parallel
+ * workers and a run that dies halfway never damage what earlier runs wrote.
+ *
+ * The file is read once, on first use. Only the most recent runs of a method
+ * count ({@code -Dnativebridge.history.window}, 20 by default), so a test
+ * that got faster or was fixed is judged by what it does now. HistoryScheduler
+ * uses the means and failure rates to decide which class runs first.
+ */
+public final class TestHistory {
+
+    private static final Json JSON = new Json();
+
+    private static final int WINDOW = Integer.getInteger("nativebridge.history.window", 20);
+
+    private static final TestHistory SHARED = load(defaultFile());
+
+    private final Path file;
+    // "<class>.<method>" -> most recent runs, oldest first
+    private final Map<String, Deque<Run>> runs = new ConcurrentHashMap<>();
+
+    public TestHistory(Path file) {
+        this.file = file;
+    }
+
+    /** JVM-wide history used by HistoryScheduler. */
+    public static TestHistory shared() {
+        return SHARED;
+    }
+
+    public static Path defaultFile() {
+        return Paths.get(System.getProperty("nativebridge.history.file", ".nativebridge/test-history.jsonl"));
+    }
+
+    /** The history in {@code file}; lines that can't be read are skipped. */
+    public static TestHistory load(Path file) {
+        TestHistory history = new TestHistory(file);
+        if (!Files.isRegularFile(file)) {
+            return history;
+        }
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    Map<String, Object> json = JSON.toType(line, Json.MAP_TYPE);
+                    Object millis = json.get("millis");
+                    history.add(key(String.valueOf(json.get("class")), String.valueOf(json.get("method"))),
+                        new Run(millis instanceof Number ? ((Number) millis).longValue() : 0,
+                            Boolean.TRUE.equals(json.get("passed"))));
+                } catch (RuntimeException e) {
+                    // A line cut short by a killed run
+                    skipped++;
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Ignoring test history in " + file + ": " + e.getMessage());
+            history.runs.clear();
+        }
+        if (skipped > 0) {
+            System.out.println("Skipped " + skipped + " unreadable lines in " + file);
+        }
+        return history;
+    }
+
+    /**
+     * Appends one finished run of {@code testClass.method} to the file. A run
+     * that can't be written is still counted in memory; the failure is only logged.
+     */
+    public void record(String testClass, String method, long millis, boolean passed) {
+        add(key(testClass, method), new Run(millis, passed));
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("class", testClass);
+        json.put("method", method);
+        json.put("millis", millis);
+        json.put("passed", passed);
+        json.put("at", System.currentTimeMillis());
+        String line = JSON.toJson(json).replaceAll("\\s*\\n\\s*", " ") + System.lineSeparator();
+        synchronized (this) {
+            try {
+                Path parent = file.toAbsolutePath().getParent();
+                if (parent != null) {
+                    Files.createDirectories(parent);
+                }
+                Files.write(file, line.getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                System.out.println("Test history not saved to " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /** Stats of {@code testClass.method}, or null if it has never run. */
+    public Stat method(String testClass, String method) {
+        Deque<Run> recent = runs.get(key(testClass, method));
+        if (recent == null) {
+            return null;
+        }
+        synchronized (recent) {
+            long millis = 0;
+            int failures = 0;
+            for (Run run : recent) {
+                millis += run.millis;
+                failures += run.passed ? 0 : 1;
+            }
+            return new Stat(recent.size(), (double) millis / recent.size(), (double) failures / recent.size());
+        }
+    }
+
+    /** Stats per method of {@code testClass}, by method name. */
+    public Map<String, Stat> methods(String testClass) {
+        Map<String, Stat> methods = new TreeMap<>();
+        String prefix = testClass + "#";
+        for (String key : runs.keySet()) {
+            if (key.startsWith(prefix)) {
+                String method = key.substring(prefix.length());
+                methods.put(method, method(testClass, method));
+            }
+        }
+        return methods;
+    }
+
+    private void add(String key, Run run) {
+        Deque<Run> recent = runs.computeIfAbsent(key, k -> new ArrayDeque<>());
+        synchronized (recent) {
+            recent.addLast(run);
+            while (recent.size() > WINDOW) {
+                recent.removeFirst();
+            }
+        }
+    }
+
+    private static String key(String testClass, String method) {
+        return testClass + "#" + method;
+    }
+
+    /** Recent runs, mean duration and failure rate of one test method. */
+    public static final class Stat {
+
+        private final int runs;
+        private final double meanMillis;
+        private final double failureRate;
+
+        Stat(int runs, double meanMillis, double failureRate) {
+            this.runs = runs;
+            this.meanMillis = meanMillis;
+            this.failureRate = failureRate;
+        }
+
+        public int runs() {
+            return runs;
+        }
+
+        public double meanMillis() {
+            return meanMillis;
+        }
+
+        /** Failed runs out of the recent ones, 0 to 1. */
+        public double failureRate() {
+            return failureRate;
+        }
+    }
+
+    private static final class Run {
+
+        final long millis;
+        final boolean passed;
+
+        Run(long millis, boolean passed) {
+            this.millis = millis;
+            this.passed = passed;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package nativebridge;
+
+import io.appium.java_client.AppiumBy;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * UiWait - Polling condition waits for the sample scripts
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * Replaces fixed Thread.sleep pacing: a wait returns as soon as its condition
+ * holds (counter text changed, alert shown or dismissed, modal visible) and
+ * gives up at a per-condition deadline. Polls start at a short interval and back
+ * off exponentially up to a cap, so fast transitions cost one or two polls and
+ * slow ones don't flood the server. Polling runs inside an ElementProbe scope
+ * with the implicit wait at zero, otherwise every negative poll would block for
+ * the full implicit wait.
+ */
+public final class UiWait {
+
+    /** UiAutomator expression for the OK button of a native Android alert. */
+    public static final String ALERT_SELECTOR =
+        "new UiSelector().resourceId(\"android:id/button1\");"
+            + "new UiSelector().text(\"OK\");"
+            + "new UiSelector().text(\"ok\")";
+
+    /** OK button of a native Android alert, same candidates as dismissAlertIfPresent. */
+    public static final By ALERT_BUTTON = AppiumBy.androidUIAutomator(ALERT_SELECTOR);
+
+    // First view with a resource-id: it moves while the content scrolls or flings
+    private static final By FIRST_IDENTIFIED_VIEW = AppiumBy.androidUIAutomator("new UiSelector().resourceIdMatches(\".+\")");
+
+    // First view of any kind, for lookups inside a container whose children carry no id
+    private static final By FIRST_VIEW = AppiumBy.androidUIAutomator("new UiSelector().classNameMatches(\".+\")");
+
+    private final WebDriver driver;
+    private final ElementProbe probe;
+    private Duration timeout = Duration.ofSeconds(5);
+    private Duration pollInterval = Duration.ofMillis(100);
+    private double backoffMultiplier = 1.5;
+    private Duration maxPollInterval = Duration.ofSeconds(1);
+
+    public UiWait(WebDriver driver) {
+        this(ElementProbe.of(driver));
+    }
+
+    /** Shares the probe's zero-wait scope, so waits nested in a probe window don't toggle timeouts. */
+    public UiWait(ElementProbe probe) {
+        this.driver = probe.driver();
+        this.probe = probe;
+    }
+
+    /** Default deadline for {@link #until(Function)}. */
+    public UiWait withTimeout(Duration timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /** Delay before the second poll; later polls grow by the backoff multiplier. */
+    public UiWait pollingEvery(Duration interval) {
+        this.pollInterval = interval;
+        return this;
+    }
+
+    /** Exponential backoff between polls, capped at {@code maxInterval}. Use 1.0 for fixed polling. */
+    public UiWait withBackoff(double multiplier, Duration maxInterval) {
+        if (multiplier < 1.0) {
+            throw new IllegalArgumentException("Backoff multiplier must be >= 1.0: " + multiplier);
+        }
+        this.backoffMultiplier = multiplier;
+        this.maxPollInterval = maxInterval;
+        return this;
+    }
+
+    /**
+     * Polls {@code condition} until it returns a non-null, non-false value and
+     * returns that value, or null once the default deadline has passed.
+     */
+    public <T> T until(Function<? super WebDriver, T> condition) {
+        return until(timeout, condition);
+    }
+
+    /** Same as {@link #until(Function)} with a deadline for this condition only. */
+    public <T> T until(Duration deadline, Function<? super WebDriver, T> condition) {
+        long end = System.nanoTime() + deadline.toNanos();
+        long interval = Math.max(1, pollInterval.toMillis());
+        ElementProbe.Scope zeroWait = probe.open();
+        try {
+            while (true) {
+                T value = evaluate(condition);
+                if (value != null && !Boolean.FALSE.equals(value)) {
+                    return value;
+                }
+                long remaining = TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime());
+                if (remaining <= 0) {
+                    return null;
+                }
+                Thread.sleep(Math.min(interval, remaining));
+                interval = Math.min((long) (interval * backoffMultiplier), maxPollInterval.toMillis());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            zeroWait.close();
+        }
+    }
+
+    private <T> T evaluate(Function<? super WebDriver, T> condition) {
+        try {
+            return condition.apply(driver);
+        } catch (SessionBreaker.SessionLostException e) {
+            // No point polling a dead session until the deadline
+            throw e;
+        } catch (WebDriverException e) {
+            // Missing or stale elements just mean "not yet"
+            return null;
+        }
+    }
+
+    // Conditions
+
+    /** The first displayed element matching {@code locator}. */
+    public static Function<WebDriver, WebElement> visible(By locator) {
+        return d -> {
+            for (WebElement element : d.findElements(locator)) {
+                if (element.isDisplayed()) {
+                    return element;
+                }
+            }
+            return null;
+        };
+    }
+
+    /** True once no displayed element matches {@code locator}. */
+    public static Function<WebDriver, Boolean> gone(By locator) {
+        return d -> {
+            List<WebElement> elements = d.findElements(locator);
+            for (WebElement element : elements) {
+                if (element.isDisplayed()) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    public static Function<WebDriver, WebElement> alertPresent() {
+        return visible(ALERT_BUTTON);
+    }
+
+    public static Function<WebDriver, Boolean> alertGone() {
+        return gone(ALERT_BUTTON);
+    }
+
+    /** The new text of the element at {@code locator} once it differs from {@code previous}. */
+    public static Function<WebDriver, String> textChanged(By locator, String previous) {
+        return d -> {
+            String text = d.findElement(locator).getText();
+            return Objects.equals(text, previous) ? null : text;
+        };
+    }
+
+    /** True once the element's text contains {@code expected}. */
+    public static Function<WebDriver, Boolean> textContains(WebElement element, String expected) {
+        return d -> {
+            String text = element.getText();
+            return text != null && text.contains(expected);
+        };
+    }
+
+    /** The new attribute value once it differs from {@code previous}. */
+    public static Function<WebDriver, String> attributeChanged(WebElement element, String name, String previous) {
+        return d -> {
+            String value = element.getAttribute(name);
+            return Objects.equals(value, previous) ? null : value;
+        };
+    }
+
+    /**
+     * True once {@code sample} returns the same value on two consecutive polls,
+     * e.g. after a swipe whose scroll momentum has to die down.
+     */
+    public static Function<WebDriver, Boolean> settled(Function<WebDriver, ?> sample) {
+        Object[] last = {null};
+        return d -> {
+            Object current = sample.apply(d);
+            boolean stable = current != null && current.equals(last[0]);
+            last[0] = current;
+            return stable;
+        };
+    }
+
+    /**
+     * True once the screen stops moving between polls. Samples where the
+     * first view with a resource-id is, a lookup and a rect per poll, instead
+     * of having UiAutomator2 dump the whole hierarchy for the page source.
+     */
+    public static Function<WebDriver, Boolean> screenSettled() {
+        return settled(UiWait::firstViewRect);
+    }
+
+    /**
+     * True once the content of {@code container} stops moving, for a swipe
+     * inside a scroll view or swipe area: the first view with a resource-id
+     * may sit outside it and never move. Samples the container and its first
+     * child view, so it sees a nested list scroll as well as the container
+     * being carried along by the page; without the container on screen it
+     * falls back to {@link #screenSettled()}.
+     */
+    public static Function<WebDriver, Boolean> screenSettled(By container) {
+        return settled(d -> {
+            List<WebElement> found = d.findElements(container);
+            if (found.isEmpty()) {
+                return firstViewRect(d);
+            }
+            WebElement scrolled = found.get(0);
+            List<WebElement> first = scrolled.findElements(FIRST_VIEW);
+            return Arrays.asList(scrolled.getRect(), first.isEmpty() ? null : first.get(0).getRect());
+        });
+    }
+
+    private static Object firstViewRect(WebDriver driver) {
+        List<WebElement> first = driver.findElements(FIRST_IDENTIFIED_VIEW);
+        return first.isEmpty() ? "no views" : first.get(0).getRect();
+    }
+}
@@ -0,0 +1,66 @@
+package nativebridge;
+
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.Point;
+import org.openqa.selenium.Rectangle;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.SessionId;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Viewport - Screen geometry per session, for resolution-independent gestures
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * Swipes written as pixel coordinates only land where intended on the
+ * emulator they were tuned on. Gestures can instead be given as fractions of
+ * the screen (0.5, 0.8 is the horizontal centre, 80% down) or of an element's
+ * rectangle, and this class turns them into pixels for the current device.
+ *
+ * The window size is read once per session and cached, so fractional
+ * gestures cost no extra requests after the first. Call {@link #forget} after
+ * rotating the device.
+ */
+public final class Viewport {
+
+    private static final Map<SessionId, Dimension> SIZES = new ConcurrentHashMap<>();
+
+    private Viewport() {
+    }
+
+    /** The window size of {@code driver}'s session, fetched on first use. */
+    public static Dimension size(RemoteWebDriver driver) {
+        return SIZES.computeIfAbsent(driver.getSessionId(), id -> driver.manage().window().getSize());
+    }
+
+    /** Drops the cached size, e.g. after a rotation or before the session quits. */
+    public static void forget(RemoteWebDriver driver) {
+        SessionId sessionId = driver.getSessionId();
+        if (sessionId != null) {
+            SIZES.remove(sessionId);
+        }
+    }
+
+    /** The pixel at ({@code fx}, {@code fy}) as fractions of the screen width and height. */
+    public static Point at(RemoteWebDriver driver, double fx, double fy) {
+        Dimension size = size(driver);
+        return within(new Rectangle(0, 0, size.getHeight(), size.getWidth()), fx, fy);
+    }
+
+    /** The pixel at ({@code fx}, {@code fy}) as fractions of {@code rect}. */
+    public static Point within(Rectangle rect, double fx, double fy) {
+        checkFraction(fx);
+        checkFraction(fy);
+        // Stay one pixel inside the edge: a touch on the last pixel row may miss the rectangle
+        int x = rect.getX() + (int) Math.round(fx * (rect.getWidth() - 1));
+        int y = rect.getY() + (int) Math.round(fy * (rect.getHeight() - 1));
+        return new Point(x, y);
+    }
+
+    private static void checkFraction(double fraction) {
+        if (fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("Fraction must be within 0..1, got " + fraction);
+        }
+    }
+}
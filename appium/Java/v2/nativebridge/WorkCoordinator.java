@@ -0,0 +1,495 @@
+package nativebridge;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.openqa.selenium.json.Json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WorkCoordinator - Hands test classes to worker JVMs across a device farm
+ * Compatible with Appium 2.x + Java Client 9.x + JUnit 5 + TestNG
+ *
+ * A small HTTP server holding the queue of a distributed run. Each WorkRunner
+ * JVM drives the devices of one host and offers the test classes it can run;
+ * a class goes into the queue of the first worker that offers it, longest
+ * first by TestHistory. Every device thread of a worker then pulls the next
+ * class from its own worker's queue, and once that is empty steals from the
+ * worker with the most classes still waiting that it can run too. So a fast
+ * host or one with more devices ends up running more classes, and adding a
+ * worker adds throughput without anyone deciding the split in advance.
+ *
+ * A claimed class is leased to its worker, which renews the lease with
+ * every request and a heartbeat while it runs. A worker that stops talking
+ * for longer than the lease ({@code --lease=SECONDS}, 60 by default) is
+ * taken for dead: its running classes go back to the front of its queue,
+ * where the other workers steal them first. A late {@code /finished} for a
+ * class that has been handed out again is ignored.
+ *
+ * Workers stream every test result back as it finishes; the coordinator
+ * prints them as they arrive and a summary per worker once every class has
+ * finished. With {@code --workers=N} it exits after that, as soon as N
+ * workers have joined, with status 1 if anything failed.
+ *
+ * Plain JSON over HTTP, {@code {"value": ...}} like the Appium protocol:
+ * {@code POST /offer {worker, units}}, {@code POST /claim {worker}} (null
+ * once nothing is left; it waits while a class the worker could run is still
+ * leased to another worker, which may yet die), {@code POST /result {worker, test, status, millis, message}},
+ * {@code POST /heartbeat {worker}}, {@code POST /finished {worker, unit}}
+ * and {@code GET /status}.
+ *
+ * Listens on 127.0.0.1 unless told otherwise; workers on other hosts need
+ * {@code --host=0.0.0.0} or the address of the interface they can reach.
+ *
+ * {@code java nativebridge.WorkCoordinator [--host=127.0.0.1] [--workers=N] [--lease=SECONDS] [port]}
+ */
+public final class WorkCoordinator implements AutoCloseable {
+
+    private static final Json JSON = new Json();
+
+    private static final Duration DEFAULT_LEASE =
+        Duration.ofSeconds(Integer.getInteger("nativebridge.coordinator.leaseSeconds", 60));
+
+    // How often a waiting claim looks for requeued classes
+    private static final long CLAIM_POLL_MILLIS = 500;
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final ScheduledExecutorService reaper;
+    private final long leaseNanos;
+    private final HistoryScheduler scheduler = new HistoryScheduler();
+    private final int expectedWorkers;
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    // Guarded by this
+    private final Map<String, Worker> workers = new LinkedHashMap<>();
+    private final Set<String> known = new HashSet<>();
+    // Running class -> the worker it is leased to
+    private final Map<String, Lease> running = new LinkedHashMap<>();
+    private int finished;
+    private int passed;
+    private int failed;
+    private int skipped;
+    private boolean reported;
+
+    private WorkCoordinator(String host, int port, int expectedWorkers, Duration lease) throws IOException {
+        this.expectedWorkers = expectedWorkers;
+        this.leaseNanos = lease.toNanos();
+        this.server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        // Claims wait on nothing, but results arrive from every device at once
+        this.handlers = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(handlers);
+        server.createContext("/", this::handle);
+        this.reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "work-coordinator-leases");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(lease.toMillis() / 4, 10);
+        reaper.scheduleAtFixedRate(this::expireLeases, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts a coordinator on {@code port} (0 picks a free one). With
+     * {@code expectedWorkers} above 0 the run counts as done only once that
+     * many workers have offered their classes.
+     */
+    public static WorkCoordinator start(String host, int port, int expectedWorkers) throws IOException {
+        return start(host, port, expectedWorkers, DEFAULT_LEASE);
+    }
+
+    /** As above, requeueing the classes of a worker that has not been heard from for {@code lease}. */
+    public static WorkCoordinator start(String host, int port, int expectedWorkers, Duration lease) throws IOException {
+        WorkCoordinator coordinator = new WorkCoordinator(host, port, expectedWorkers, lease);
+        coordinator.server.start();
+        return coordinator;
+    }
+
+    public URL url() {
+        try {
+            return URI.create("http://127.0.0.1:" + server.getAddress().getPort()).toURL();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Blocks until every offered class has finished and the expected workers have joined. */
+    public void awaitDone() throws InterruptedException {
+        done.await();
+    }
+
+    public synchronized boolean hasFailures() {
+        return failed > 0;
+    }
+
+    /** Queues {@code units} that no worker offered before under {@code worker}, longest first. */
+    public synchronized int offer(String worker, List<String> units) {
+        Worker owner = worker(worker);
+        renew(worker);
+        owner.runnable.addAll(units);
+        List<String> fresh = new ArrayList<>();
+        for (String unit : units) {
+            if (known.add(unit)) {
+                fresh.add(unit);
+            }
+        }
+        owner.queue.addAll(scheduler.schedule(fresh));
+        reported &= fresh.isEmpty();
+        System.out.println("Worker " + worker + " joined with " + units.size() + " classes, "
+            + fresh.size() + " new (" + workers.size() + " workers)");
+        return fresh.size();
+    }
+
+    /**
+     * The next class for {@code worker}: its own queue first, then stolen from
+     * the worker with the most waiting classes it can run; null once nothing
+     * is left to start.
+     */
+    public synchronized String claim(String worker) {
+        Worker thief = worker(worker);
+        renew(worker);
+        String unit = thief.queue.pollFirst();
+        if (unit == null) {
+            Worker victim = null;
+            for (Worker other : workers.values()) {
+                if (other != thief && thief.stealableFrom(other) > 0
+                        && (victim == null || thief.stealableFrom(other) > thief.stealableFrom(victim))) {
+                    victim = other;
+                }
+            }
+            if (victim == null) {
+                // A worker that joins after the rest ran everything ends the run too
+                checkDone();
+                return null;
+            }
+            // Longest waiting class first, like the owner would have
+            for (String candidate : victim.queue) {
+                if (thief.runnable.contains(candidate)) {
+                    unit = candidate;
+                    break;
+                }
+            }
+            victim.queue.remove(unit);
+            thief.stolen++;
+            System.out.println("Worker " + worker + " stole " + unit + " from " + victim.name);
+        }
+        running.put(unit, new Lease(worker, System.nanoTime() + leaseNanos));
+        return unit;
+    }
+
+    public synchronized void result(String worker, String test, String status, long millis, String message) {
+        Worker reporter = worker(worker);
+        renew(worker);
+        if ("SUCCESSFUL".equals(status)) {
+            passed++;
+            reporter.passed++;
+        } else if ("SKIPPED".equals(status)) {
+            skipped++;
+        } else {
+            failed++;
+            reporter.failed++;
+        }
+        System.out.println(String.format("[%s] %-10s %s (%.1fs)%s", worker, status, test, millis / 1000.0,
+            message != null && !message.isEmpty() ? " - " + message : ""));
+    }
+
+    /** True while a class {@code worker} could run is leased to another worker, so claim() may have more later. */
+    public synchronized boolean waitingOn(String worker) {
+        Worker candidate = workers.get(worker);
+        if (candidate == null) {
+            return false;
+        }
+        for (Map.Entry<String, Lease> entry : running.entrySet()) {
+            if (!entry.getValue().worker.equals(worker) && candidate.runnable.contains(entry.getKey())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Renews the leases of everything {@code worker} is running. */
+    public synchronized void heartbeat(String worker) {
+        worker(worker);
+        renew(worker);
+    }
+
+    public synchronized void finished(String worker, String unit) {
+        renew(worker);
+        Lease lease = running.get(unit);
+        if (lease != null && lease.worker.equals(worker)) {
+            running.remove(unit);
+            finished++;
+            worker(worker).classes++;
+        } else if (lease == null && requeued(unit)) {
+            // Its lease expired, yet it finished before anyone else claimed it
+            finished++;
+            worker(worker).classes++;
+        }
+        checkDone();
+    }
+
+    /** Totals and one line per worker: classes run, stolen, passed and failed tests. */
+    public synchronized String summary() {
+        StringBuilder summary = new StringBuilder(String.format(
+            "Distributed run: %d/%d classes finished, %d running; %d passed, %d failed, %d skipped",
+            finished, known.size(), running.size(), passed, failed, skipped));
+        for (Worker worker : workers.values()) {
+            summary.append(String.format("%n  %s: %d classes (%d stolen), %d passed, %d failed, %d queued",
+                worker.name, worker.classes, worker.stolen, worker.passed, worker.failed, worker.queue.size()));
+        }
+        return summary.toString();
+    }
+
+    @Override
+    public void close() {
+        reaper.shutdownNow();
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    // Puts the classes of workers not heard from within the lease back in front of their queues
+    synchronized void expireLeases() {
+        long now = System.nanoTime();
+        for (Iterator<Map.Entry<String, Lease>> it = running.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Lease> entry = it.next();
+            Lease lease = entry.getValue();
+            if (now - lease.deadline > 0) {
+                it.remove();
+                Worker owner = worker(lease.worker);
+                owner.queue.addFirst(entry.getKey());
+                owner.requeued.add(entry.getKey());
+                System.out.println("Worker " + lease.worker + " has not been heard from for "
+                    + TimeUnit.NANOSECONDS.toSeconds(leaseNanos) + "s, requeued " + entry.getKey());
+            }
+        }
+    }
+
+    private void renew(String worker) {
+        long deadline = System.nanoTime() + leaseNanos;
+        for (Lease lease : running.values()) {
+            if (lease.worker.equals(worker)) {
+                lease.deadline = deadline;
+            }
+        }
+    }
+
+    // Takes a class whose lease expired out of the queue it went back to, if it is still there
+    private boolean requeued(String unit) {
+        for (Worker worker : workers.values()) {
+            if (worker.requeued.remove(unit) && worker.queue.remove(unit)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Worker worker(String name) {
+        return workers.computeIfAbsent(name, Worker::new);
+    }
+
+    // Prints the summary once each time the queue runs dry
+    private void checkDone() {
+        if (reported || !running.isEmpty() || workers.size() < expectedWorkers || !isDrained()) {
+            return;
+        }
+        reported = true;
+        System.out.println(summary());
+        if (expectedWorkers > 0) {
+            done.countDown();
+        }
+    }
+
+    private boolean isDrained() {
+        for (Worker worker : workers.values()) {
+            if (!worker.queue.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        synchronized (this) {
+            status.put("classes", known.size());
+            status.put("finished", finished);
+            status.put("running", new ArrayList<>(running.keySet()));
+            status.put("passed", passed);
+            status.put("failed", failed);
+            status.put("skipped", skipped);
+            Map<String, Object> perWorker = new LinkedHashMap<>();
+            for (Worker worker : workers.values()) {
+                Map<String, Object> stats = new LinkedHashMap<>();
+                stats.put("queued", new ArrayList<>(worker.queue));
+                stats.put("classes", worker.classes);
+                stats.put("stolen", worker.stolen);
+                stats.put("passed", worker.passed);
+                stats.put("failed", worker.failed);
+                perWorker.put(worker.name, stats);
+            }
+            status.put("workers", perWorker);
+        }
+        return status;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String route = exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath();
+            if ("GET /status".equals(route)) {
+                respond(exchange, 200, status());
+                return;
+            }
+            Map<String, Object> body = readBody(exchange);
+            String worker = String.valueOf(body.get("worker"));
+            switch (route) {
+                case "POST /offer":
+                    List<String> units = new ArrayList<>();
+                    for (Object unit : (List<?>) body.getOrDefault("units", Collections.emptyList())) {
+                        units.add(String.valueOf(unit));
+                    }
+                    respond(exchange, 200, offer(worker, units));
+                    break;
+                case "POST /claim":
+                    String unit = claim(worker);
+                    while (unit == null && waitingOn(worker)) {
+                        Thread.sleep(CLAIM_POLL_MILLIS);
+                        unit = claim(worker);
+                    }
+                    respond(exchange, 200, unit);
+                    break;
+                case "POST /result":
+                    Object millis = body.get("millis");
+                    result(worker, String.valueOf(body.get("test")),
+                        String.valueOf(body.get("status")), millis instanceof Number ? ((Number) millis).longValue() : 0,
+                        (String) body.get("message"));
+                    respond(exchange, 200, null);
+                    break;
+                case "POST /heartbeat":
+                    heartbeat(worker);
+                    respond(exchange, 200, null);
+                    break;
+                case "POST /finished":
+                    finished(worker, String.valueOf(body.get("unit")));
+                    respond(exchange, 200, null);
+                    break;
+                default:
+                    respond(exchange, 404, "unknown route " + route);
+            }
+        } catch (RuntimeException e) {
+            respond(exchange, 400, String.valueOf(e.getMessage()));
+        } catch (InterruptedException e) {
+            // Closing
+            Thread.currentThread().interrupt();
+            exchange.close();
+        }
+    }
+
+    private static Map<String, Object> readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            String text = new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+            if (text.isEmpty() || !text.startsWith("{")) {
+                return Collections.emptyMap();
+            }
+            return JSON.toType(text, Json.MAP_TYPE);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, Object value) throws IOException {
+        byte[] bytes = JSON.toJson(Collections.singletonMap("value", value)).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /** A running class's worker and when it counts as dead unless heard from. */
+    private static final class Lease {
+
+        final String worker;
+        long deadline;
+
+        Lease(String worker, long deadline) {
+            this.worker = worker;
+            this.deadline = deadline;
+        }
+    }
+
+    /** A worker JVM: its own queue and the classes it offered, which it may steal. */
+    private static final class Worker {
+
+        final String name;
+        final Deque<String> queue = new ArrayDeque<>();
+        final Set<String> runnable = new HashSet<>();
+        // Classes put back in the queue after their lease expired
+        final Set<String> requeued = new HashSet<>();
+        int classes;
+        int stolen;
+        int passed;
+        int failed;
+
+        Worker(String name) {
+            this.name = name;
+        }
+
+        int stealableFrom(Worker victim) {
+            int count = 0;
+            for (String unit : victim.queue) {
+                if (runnable.contains(unit)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = "127.0.0.1";
+        int expectedWorkers = 0;
+        Duration lease = DEFAULT_LEASE;
+        int port = 4900;
+        for (String arg : args) {
+            if (arg.startsWith("--host=")) {
+                host = arg.substring("--host=".length());
+            } else if (arg.startsWith("--workers=")) {
+                expectedWorkers = Integer.parseInt(arg.substring("--workers=".length()));
+            } else if (arg.startsWith("--lease=")) {
+                lease = Duration.ofSeconds(Long.parseLong(arg.substring("--lease=".length())));
+            } else {
+                port = Integer.parseInt(arg);
+            }
+        }
+        WorkCoordinator coordinator = start(host, port, expectedWorkers, lease);
+        System.out.println("Work coordinator listening on " + host + ":" + coordinator.server.getAddress().getPort()
+            + (expectedWorkers > 0 ? " (waiting for " + expectedWorkers + " workers)" : ""));
+        if (expectedWorkers == 0) {
+            Thread.currentThread().join();
+        }
+        coordinator.awaitDone();
+        boolean failures = coordinator.hasFailures();
+        coordinator.close();
+        System.exit(failures ? 1 : 0);
+    }
+}
@@ -0,0 +1,251 @@
+package nativebridge;
+
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.engine.TestSource;
+import org.junit.platform.engine.support.descriptor.ClassSource;
+import org.junit.platform.engine.support.descriptor.MethodSource;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.openqa.selenium.json.Json;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+
+/**
+ * WorkRunner - Runs the test classes a WorkCoordinator hands out on this host's devices
+ * Compatible with Appium 2.x + Java Client 9.x + JUnit 5 + TestNG
+ *
+ * One worker JVM per host of the device farm, pointed at that host's Appium
+ * servers with {@code -Dnativebridge.devices} as usual. The worker offers
+ * the test classes given on the command line to the coordinator and starts
+ * one thread per device; each thread claims a class, runs it through the
+ * JUnit Platform (JUnit and TestNG classes alike, with the listeners and
+ * extensions of a local run) and asks for the next, until the coordinator
+ * has nothing left. Every finished test is sent to the coordinator right
+ * away, so a crashed worker still leaves its results behind, and a
+ * heartbeat every {@code -Dnativebridge.worker.heartbeatSeconds} (10 by
+ * default) keeps the coordinator from requeueing the classes it is running.
+ *
+ * The unit of work is a test class, since its methods share a session and
+ * build on each other's state; TestGraph splits a class into lanes within it.
+ *
+ * {@code java nativebridge.WorkRunner --coordinator=http://host:4900 [--worker=NAME] TestApp1JUnit TestApp2TestNG ...}
+ */
+public final class WorkRunner {
+
+    private static final Json JSON = new Json();
+
+    private static final long HEARTBEAT_SECONDS = Integer.getInteger("nativebridge.worker.heartbeatSeconds", 10);
+
+    // Longest a request other than a claim may take; a claim waits for as long as the coordinator holds it
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final URI coordinator;
+    private final String name;
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    private final AtomicInteger classes = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    public WorkRunner(URI coordinator, String name) {
+        this.coordinator = coordinator;
+        this.name = name;
+    }
+
+    /** Offers {@code testClasses} to the coordinator; returns how many it had not seen yet. */
+    public int offer(List<String> testClasses) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("units", testClasses);
+        return ((Number) post("/offer", body)).intValue();
+    }
+
+    /** Runs claimed classes on {@code threads} threads until the coordinator runs dry. */
+    public void run(int threads) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "work-runner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "work-runner-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeats.scheduleAtFixedRate(this::heartbeat, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+        for (int i = 0; i < threads; i++) {
+            pool.execute(this::drain);
+        }
+        pool.shutdown();
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } finally {
+            heartbeats.shutdownNow();
+        }
+    }
+
+    public String summary() {
+        return "Worker " + name + ": " + classes.get() + " classes, " + failures.get() + " failed tests";
+    }
+
+    public boolean hasFailures() {
+        return failures.get() > 0;
+    }
+
+    private void drain() {
+        Launcher launcher = LauncherFactory.create();
+        Object unit;
+        while ((unit = post("/claim", new LinkedHashMap<>())) != null) {
+            String testClass = String.valueOf(unit);
+            System.out.println("Worker " + name + " running " + testClass);
+            try {
+                launcher.execute(LauncherDiscoveryRequestBuilder.request().selectors(selectClass(testClass)).build(),
+                    new Reporter());
+            } finally {
+                classes.incrementAndGet();
+                Map<String, Object> body = new LinkedHashMap<>();
+                body.put("unit", testClass);
+                post("/finished", body);
+            }
+        }
+    }
+
+    // A missed heartbeat is no reason to stop; missing several costs the lease
+    private void heartbeat() {
+        try {
+            post("/heartbeat", new LinkedHashMap<>());
+        } catch (IllegalStateException e) {
+            System.out.println("Worker " + name + " heartbeat failed: " + e.getMessage());
+        }
+    }
+
+    private Object post(String path, Map<String, Object> body) {
+        body.put("worker", name);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(coordinator.resolve(path));
+        if (!"/claim".equals(path)) {
+            builder.timeout(REQUEST_TIMEOUT);
+        }
+        HttpRequest request = builder
+            .header("Content-Type", "application/json; charset=utf-8")
+            .POST(HttpRequest.BodyPublishers.ofString(JSON.toJson(body), StandardCharsets.UTF_8))
+            .build();
+        try {
+            HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+            Map<String, Object> json = JSON.toType(response.body(), Json.MAP_TYPE);
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Coordinator answered " + response.statusCode() + " to "
+                    + path + ": " + json.get("value"));
+            }
+            return json.get("value");
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not reach coordinator " + coordinator, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted talking to coordinator " + coordinator, e);
+        }
+    }
+
+    // Streams every finished test, and classes skipped or failed as a whole, to the coordinator
+    private final class Reporter implements TestExecutionListener {
+
+        private final Map<String, Long> started = new ConcurrentHashMap<>();
+
+        @Override
+        public void executionStarted(TestIdentifier identifier) {
+            started.put(identifier.getUniqueId(), System.nanoTime());
+        }
+
+        @Override
+        public void executionSkipped(TestIdentifier identifier, String reason) {
+            if (isReported(identifier)) {
+                send(identifier, "SKIPPED", 0, reason);
+            }
+        }
+
+        @Override
+        public void executionFinished(TestIdentifier identifier, TestExecutionResult result) {
+            Long start = started.remove(identifier.getUniqueId());
+            boolean classFailed = !identifier.isTest() && result.getStatus() != TestExecutionResult.Status.SUCCESSFUL;
+            if (identifier.isTest() || (classFailed && isReported(identifier))) {
+                if (result.getStatus() != TestExecutionResult.Status.SUCCESSFUL) {
+                    failures.incrementAndGet();
+                }
+                send(identifier, result.getStatus().name(),
+                    start != null ? (System.nanoTime() - start) / 1_000_000 : 0,
+                    result.getThrowable().map(Throwable::getMessage).orElse(null));
+            }
+        }
+
+        private boolean isReported(TestIdentifier identifier) {
+            return identifier.isTest() || identifier.getSource().filter(ClassSource.class::isInstance).isPresent();
+        }
+
+        private void send(TestIdentifier identifier, String status, long millis, String message) {
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("test", testName(identifier));
+            body.put("status", status);
+            body.put("millis", millis);
+            body.put("message", message);
+            post("/result", body);
+        }
+
+        private String testName(TestIdentifier identifier) {
+            Optional<TestSource> source = identifier.getSource();
+            if (source.isPresent() && source.get() instanceof MethodSource) {
+                MethodSource method = (MethodSource) source.get();
+                return method.getClassName() + "#" + method.getMethodName();
+            }
+            if (source.isPresent() && source.get() instanceof ClassSource) {
+                return ((ClassSource) source.get()).getClassName();
+            }
+            return identifier.getDisplayName();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String coordinator = null;
+        String name = InetAddress.getLocalHost().getHostName() + "-" + ProcessHandle.current().pid();
+        List<String> testClasses = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--coordinator=")) {
+                coordinator = arg.substring("--coordinator=".length());
+            } else if (arg.startsWith("--worker=")) {
+                name = arg.substring("--worker=".length());
+            } else {
+                testClasses.addAll(Arrays.asList(arg.split(",")));
+            }
+        }
+        if (coordinator == null || testClasses.isEmpty()) {
+            System.err.println("Usage: WorkRunner --coordinator=URL [--worker=NAME] TestClass...");
+            System.exit(2);
+        }
+        WorkRunner runner = new WorkRunner(URI.create(coordinator), name);
+        int devices = DeviceRegistry.shared().size();
+        System.out.println("Worker " + name + " offering " + testClasses.size() + " classes ("
+            + runner.offer(testClasses) + " new) on " + devices + " devices");
+        runner.run(devices);
+        System.out.println(runner.summary());
+        System.exit(runner.hasFailures() ? 1 : 0);
+    }
+}
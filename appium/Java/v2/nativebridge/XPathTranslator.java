@@ -0,0 +1,391 @@
+package nativebridge;
+
+import io.appium.java_client.AppiumBy;
+import org.openqa.selenium.By;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * XPathTranslator - Sends common XPath lookups as native UiAutomator selectors
+ * Compatible with Appium 2.x + Java Client 9.x
+ *
+ * UiAutomator2 answers an XPath lookup by dumping the whole view hierarchy to
+ * XML and evaluating the expression on it, one of the slowest things the
+ * server does; a UiSelector is matched against the live views directly. The
+ * XPath the scripts write mostly has one shape, any element with an attribute
+ * equal to, containing or starting with a literal, and UiSelector has a method
+ * for each of those. This class rewrites them:
+ *
+ * <pre>
+ * //*[@resource-id='app-title']        new UiSelector().resourceId("app-title")
+ * //*[@resource-id='com.app:id/title'] id com.app:id/title
+ * //*[contains(@text, 'Red')]          new UiSelector().textContains("Red")
+ * //android.widget.Button[@text='OK']  new UiSelector().className("android.widget.Button").text("OK")
+ * (//*[@clickable='true'])[2]          new UiSelector().clickable(true).instance(1)
+ * </pre>
+ *
+ * Predicates may be combined with {@code and} or repeated brackets; text,
+ * content-desc, resource-id, class, package, index and the boolean attributes
+ * are supported. Anything else (axes, several steps, {@code or}, functions
+ * other than contains/starts-with) is sent unchanged as XPath. Child lookups
+ * are only rewritten for {@code .//} expressions, since {@code //} searches
+ * the whole screen even from an element.
+ *
+ * {@link #install} translates every lookup of a driver on its way out,
+ * except those made inside {@link #verbatim}: AdaptiveLocator times XPath as
+ * a strategy of its own and must get real XPath when it asks for it.
+ * {@code java nativebridge.XPathTranslator "<xpath>"...} shows the translations.
+ */
+public final class XPathTranslator implements HookedCommandExecutor.Rewriter {
+
+    private static final Pattern CLASS_NAME = Pattern.compile("[A-Za-z_$][\\w.$]*");
+
+    private static final Map<String, String> EQUALS = new HashMap<>();
+    private static final Map<String, String> CONTAINS = new HashMap<>();
+    private static final Map<String, String> STARTS_WITH = new HashMap<>();
+    private static final Map<String, String> BOOLEANS = new HashMap<>();
+
+    static {
+        EQUALS.put("text", "text");
+        EQUALS.put("content-desc", "description");
+        EQUALS.put("resource-id", "resourceId");
+        EQUALS.put("class", "className");
+        EQUALS.put("package", "packageName");
+        CONTAINS.put("text", "textContains");
+        CONTAINS.put("content-desc", "descriptionContains");
+        STARTS_WITH.put("text", "textStartsWith");
+        STARTS_WITH.put("content-desc", "descriptionStartsWith");
+        for (String attribute : new String[] {"checkable", "checked", "clickable", "enabled", "focusable",
+            "focused", "scrollable", "selected"}) {
+            BOOLEANS.put(attribute, attribute);
+        }
+        BOOLEANS.put("long-clickable", "longClickable");
+    }
+
+    // Set while this thread's lookups must go out as written
+    private static final ThreadLocal<Boolean> VERBATIM = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private final AtomicInteger translated = new AtomicInteger();
+    private final AtomicInteger unchanged = new AtomicInteger();
+
+    /** Translates every XPath lookup {@code driver} sends from now on; returns the translator for its stats. */
+    public static XPathTranslator install(RemoteWebDriver driver) {
+        HookedCommandExecutor executor = HookedCommandExecutor.of(driver);
+        for (HookedCommandExecutor.Rewriter rewriter : executor.rewriters()) {
+            if (rewriter instanceof XPathTranslator) {
+                return (XPathTranslator) rewriter;
+            }
+        }
+        XPathTranslator translator = new XPathTranslator();
+        executor.addRewriter(translator);
+        return translator;
+    }
+
+    /** Runs {@code lookup} with this thread's XPath lookups sent unchanged. */
+    public static <T> T verbatim(Supplier<T> lookup) {
+        Boolean outer = VERBATIM.get();
+        VERBATIM.set(Boolean.TRUE);
+        try {
+            return lookup.get();
+        } finally {
+            VERBATIM.set(outer);
+        }
+    }
+
+    /** The native equivalent of {@code locator} if it is a translatable XPath, else {@code locator} itself. */
+    public static By translate(By locator) {
+        if (!(locator instanceof By.Remotable)) {
+            return locator;
+        }
+        By.Remotable.Parameters parameters = ((By.Remotable) locator).getRemoteParameters();
+        if (!"xpath".equals(parameters.using())) {
+            return locator;
+        }
+        By translated = translate(String.valueOf(parameters.value()));
+        return translated != null ? translated : locator;
+    }
+
+    /** The native equivalent of {@code xpath}, or null if it has no exact one. */
+    public static By translate(String xpath) {
+        Step step = new Parser(xpath).parse();
+        if (step == null) {
+            return null;
+        }
+        // A full resource-id is what By.id matches natively, no selector needed
+        if (step.calls.size() == 1 && step.calls.get(0).startsWith(".resourceId(\"") && step.instance < 0) {
+            String resourceId = step.values.get(0);
+            if (resourceId.contains(":id/")) {
+                return AppiumBy.id(resourceId);
+            }
+        }
+        return AppiumBy.androidUIAutomator(step.uiSelector());
+    }
+
+    @Override
+    public Command rewrite(Command command) {
+        String name = command.getName();
+        boolean child = DriverCommand.FIND_CHILD_ELEMENT.equals(name) || DriverCommand.FIND_CHILD_ELEMENTS.equals(name);
+        if (!child && !DriverCommand.FIND_ELEMENT.equals(name) && !DriverCommand.FIND_ELEMENTS.equals(name)) {
+            return command;
+        }
+        Map<String, ?> parameters = command.getParameters();
+        if (!"xpath".equals(parameters.get("using"))) {
+            return command;
+        }
+        String xpath = String.valueOf(parameters.get("value"));
+        // From an element, '//' still means the whole screen; only './/' means its descendants
+        By translated = VERBATIM.get() || child && !xpath.trim().startsWith(".//") ? null : translate(xpath);
+        if (translated == null) {
+            unchanged.incrementAndGet();
+            return command;
+        }
+        By.Remotable.Parameters remote = ((By.Remotable) translated).getRemoteParameters();
+        Map<String, Object> rewritten = new HashMap<>(parameters);
+        rewritten.put("using", remote.using());
+        rewritten.put("value", remote.value());
+        this.translated.incrementAndGet();
+        return new Command(command.getSessionId(), name, rewritten);
+    }
+
+    public int translated() {
+        return translated.get();
+    }
+
+    public int unchanged() {
+        return unchanged.get();
+    }
+
+    public String summary() {
+        return String.format("%d XPath lookups sent as native selectors, %d as XPath", translated(), unchanged());
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Usage: java nativebridge.XPathTranslator <xpath>...");
+            return;
+        }
+        for (String xpath : args) {
+            By translated = translate(xpath);
+            System.out.println(xpath);
+            System.out.println("  -> " + (translated != null ? translated : "unchanged (no native equivalent)"));
+        }
+    }
+
+    /** One location step: the UiSelector calls of its node test and predicates. */
+    private static final class Step {
+
+        final List<String> calls = new ArrayList<>();
+        // Literal argument of each call, for the By.id shortcut
+        final List<String> values = new ArrayList<>();
+        int instance = -1;
+
+        void call(String method, String literal) {
+            calls.add("." + method + "(\"" + CompositeLocator.quote(literal) + "\")");
+            values.add(literal);
+        }
+
+        void call(String method, int argument) {
+            calls.add("." + method + "(" + argument + ")");
+            values.add(String.valueOf(argument));
+        }
+
+        void call(String method, boolean argument) {
+            calls.add("." + method + "(" + argument + ")");
+            values.add(String.valueOf(argument));
+        }
+
+        String uiSelector() {
+            StringBuilder selector = new StringBuilder("new UiSelector()");
+            for (String call : calls) {
+                selector.append(call);
+            }
+            if (instance >= 0) {
+                selector.append(".instance(").append(instance).append(')');
+            }
+            return selector.toString();
+        }
+    }
+
+    /**
+     * Recursive descent over the supported subset:
+     * <pre>
+     * xpath     = '(' path ')' '[' number ']' | path
+     * path      = ('//' | './/') ('*' | className) predicate*
+     * predicate = '[' condition ('and' condition)* ']'
+     * condition = '@' attribute '=' literal | ('contains' | 'starts-with') '(' '@' attribute ',' literal ')'
+     * </pre>
+     * Returns null as soon as the input leaves it.
+     */
+    private static final class Parser {
+
+        private final String input;
+        private int pos;
+
+        Parser(String input) {
+            this.input = input;
+        }
+
+        Step parse() {
+            try {
+                Step step;
+                skipSpaces();
+                if (accept("(")) {
+                    step = path();
+                    expect(")");
+                    expect("[");
+                    int position = number();
+                    expect("]");
+                    if (step.instance >= 0 || position < 1) {
+                        return null;
+                    }
+                    step.instance = position - 1;
+                } else {
+                    step = path();
+                }
+                skipSpaces();
+                // A bare //* would be an empty UiSelector, which the server rejects
+                return pos == input.length() && !step.calls.isEmpty() ? step : null;
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        private Step path() {
+            if (!accept(".//") && !accept("//")) {
+                throw new IllegalArgumentException("not a descendant search");
+            }
+            Step step = new Step();
+            if (!accept("*")) {
+                Matcher matcher = CLASS_NAME.matcher(input).region(pos, input.length());
+                if (!matcher.lookingAt()) {
+                    throw new IllegalArgumentException("node test");
+                }
+                step.call("className", matcher.group());
+                pos = matcher.end();
+            }
+            skipSpaces();
+            while (accept("[")) {
+                do {
+                    condition(step);
+                } while (acceptWord("and"));
+                expect("]");
+            }
+            return step;
+        }
+
+        private void condition(Step step) {
+            skipSpaces();
+            Map<String, String> methods;
+            if (acceptWord("contains")) {
+                methods = CONTAINS;
+            } else if (acceptWord("starts-with")) {
+                methods = STARTS_WITH;
+            } else {
+                String attribute = attribute();
+                expect("=");
+                String literal = literal();
+                if (BOOLEANS.containsKey(attribute) && ("true".equals(literal) || "false".equals(literal))) {
+                    step.call(BOOLEANS.get(attribute), Boolean.parseBoolean(literal));
+                } else if ("index".equals(attribute) && literal.matches("\\d+")) {
+                    step.call("index", Integer.parseInt(literal));
+                } else if (EQUALS.containsKey(attribute)) {
+                    step.call(EQUALS.get(attribute), literal);
+                } else {
+                    throw new IllegalArgumentException("attribute " + attribute);
+                }
+                return;
+            }
+            expect("(");
+            String attribute = attribute();
+            expect(",");
+            String literal = literal();
+            expect(")");
+            if (!methods.containsKey(attribute)) {
+                throw new IllegalArgumentException("function on " + attribute);
+            }
+            step.call(methods.get(attribute), literal);
+        }
+
+        private String attribute() {
+            expect("@");
+            int start = pos;
+            while (pos < input.length() && (Character.isLetter(input.charAt(pos)) || input.charAt(pos) == '-')) {
+                pos++;
+            }
+            if (start == pos) {
+                throw new IllegalArgumentException("attribute name");
+            }
+            return input.substring(start, pos);
+        }
+
+        private String literal() {
+            skipSpaces();
+            if (pos >= input.length() || (input.charAt(pos) != '\'' && input.charAt(pos) != '"')) {
+                throw new IllegalArgumentException("literal");
+            }
+            char quote = input.charAt(pos);
+            int end = input.indexOf(quote, pos + 1);
+            if (end < 0) {
+                throw new IllegalArgumentException("unterminated literal");
+            }
+            String literal = input.substring(pos + 1, end);
+            pos = end + 1;
+            return literal;
+        }
+
+        private int number() {
+            skipSpaces();
+            int start = pos;
+            while (pos < input.length() && Character.isDigit(input.charAt(pos))) {
+                pos++;
+            }
+            if (start == pos) {
+                throw new IllegalArgumentException("position");
+            }
+            return Integer.parseInt(input.substring(start, pos));
+        }
+
+        private boolean accept(String token) {
+            skipSpaces();
+            if (input.startsWith(token, pos)) {
+                pos += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        /** Like accept, but a word must not run on into a name, e.g. 'and' vs 'android'. */
+        private boolean acceptWord(String word) {
+            skipSpaces();
+            int end = pos + word.length();
+            if (input.startsWith(word, pos) && (end == input.length() || !Character.isLetterOrDigit(input.charAt(end))
+                && input.charAt(end) != '-' && input.charAt(end) != '.')) {
+                pos = end;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String token) {
+            if (!accept(token)) {
+                throw new IllegalArgumentException("expected " + token);
+            }
+        }
+
+        private void skipSpaces() {
+            while (pos < input.length() && Character.isWhitespace(input.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package nativebridge;
+
+import io.appium.java_client.AppiumBy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openqa.selenium.json.Json;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommandMetricsTest {
+
+    private StubSession session;
+    private CommandMetrics metrics;
+
+    @BeforeEach
+    void startSession() throws Exception {
+        session = new StubSession("com.testapp1");
+        metrics = new CommandMetrics();
+        HookedCommandExecutor.of(session.driver).addListener(metrics);
+    }
+
+    @AfterEach
+    void stop() {
+        CommandMetrics.clearCurrentTest();
+        session.close();
+    }
+
+    @Test
+    void commandsGoToTheTestRunningOnTheirThread() throws Exception {
+        runCommands();
+        Map<String, Object> json = new Json().toType(metrics.toJson(), Json.MAP_TYPE);
+
+        Map<?, ?> tests = (Map<?, ?>) json.get("tests");
+        assertEquals(Arrays.asList("(outside tests)", "Suite.first", "Suite.second"), List.copyOf(tests.keySet()));
+        assertEquals(5L, count(tests, "Suite.first"));
+        assertEquals(1L, count(tests, "Suite.second"));
+        assertEquals(1L, count(tests, "(outside tests)"));
+
+        // Another thread is outside any test until it says otherwise
+        Thread other = new Thread(() -> session.driver.getPageSource());
+        other.start();
+        other.join();
+        tests = dimension("tests");
+        assertEquals(2L, count(tests, "(outside tests)"));
+    }
+
+    @Test
+    void jsonHasCountsAndPercentilesPerCommandAndStrategy() {
+        runCommands();
+        Map<String, Object> json = new Json().toType(metrics.toJson(), Json.MAP_TYPE);
+        assertEquals("ms", json.get("unit"));
+
+        Map<?, ?> commands = (Map<?, ?>) json.get("commands");
+        assertEquals(2L, count(commands, "findElement"));
+        assertEquals(1L, count(commands, "findElements"));
+        assertEquals(1L, count(commands, "clickElement"));
+        assertEquals(1L, count(commands, "executeScript[mobile: scrollGesture]"));
+        assertEquals(2L, count(commands, "getPageSource"));
+
+        Map<?, ?> strategies = (Map<?, ?>) json.get("locatorStrategies");
+        assertEquals(2L, count(strategies, "id"));
+        assertEquals(1L, count(strategies, "-android uiautomator"));
+
+        Map<?, ?> find = (Map<?, ?>) commands.get("findElement");
+        for (String key : new String[] {"total", "mean", "p50", "p90", "p99", "max"}) {
+            assertTrue(find.get(key) instanceof Number, key + " in " + find);
+        }
+        double p50 = ((Number) find.get("p50")).doubleValue();
+        double max = ((Number) find.get("max")).doubleValue();
+        assertTrue(p50 <= max, find.toString());
+    }
+
+    @Test
+    void prometheusHasASummaryPerDimension() {
+        runCommands();
+        CommandMetrics.setCurrentTest("Quoted \"test\"");
+        session.driver.getPageSource();
+        String text = metrics.toPrometheus();
+
+        assertTrue(text.contains("# TYPE nativebridge_command_latency_seconds summary\n"), text);
+        assertTrue(text.contains("# TYPE nativebridge_locator_latency_seconds summary\n"), text);
+        assertTrue(text.contains("# TYPE nativebridge_test_command_latency_seconds summary\n"), text);
+        assertTrue(text.contains("nativebridge_command_latency_seconds_count{command=\"findElement\"} 2\n"), text);
+        assertTrue(text.contains("nativebridge_locator_latency_seconds_count{strategy=\"-android uiautomator\"} 1\n"), text);
+        assertTrue(text.contains("nativebridge_test_command_latency_seconds_count{test=\"Suite.first\"} 5\n"), text);
+        assertTrue(text.contains("nativebridge_test_command_latency_seconds_count{test=\"Quoted \\\"test\\\"\"} 1\n"), text);
+        for (String quantile : new String[] {"0.5", "0.9", "0.99"}) {
+            assertTrue(text.matches("(?s).*nativebridge_command_latency_seconds\\{command=\"clickElement\",quantile=\""
+                + quantile.replace(".", "\\.") + "\"} \\d+\\.\\d{6}\n.*"), text);
+        }
+        assertTrue(text.matches("(?s).*nativebridge_command_latency_seconds_sum\\{command=\"clickElement\"} \\d+\\.\\d{6}\n.*"), text);
+    }
+
+    @Test
+    void exportWritesBothFiles(@TempDir Path directory) throws Exception {
+        runCommands();
+        metrics.export(directory);
+        assertEquals(metrics.toPrometheus(), Files.readString(directory.resolve("command-latency.prom")));
+        Map<String, Object> json = new Json().toType(Files.readString(directory.resolve("command-latency.json")), Json.MAP_TYPE);
+        assertEquals(2L, count((Map<?, ?>) json.get("commands"), "findElement"));
+
+        metrics.reset();
+        assertTrue(dimension("commands").isEmpty());
+    }
+
+    // Suite.first: two id lookups, a UiAutomator miss, a click and a scroll; Suite.second: the page source
+    private void runCommands() {
+        CommandMetrics.setCurrentTest("Suite.first");
+        session.driver.findElement(AppiumBy.id("com.testapp1:id/app-title"));
+        session.driver.findElement(AppiumBy.id("com.testapp1:id/test-button")).click();
+        session.driver.findElements(AppiumBy.androidUIAutomator("new UiSelector().resourceId(\"no-such-view\")"));
+        Map<String, Object> args = new HashMap<>();
+        args.put("direction", "down");
+        args.put("percent", 0.5);
+        session.driver.executeScript("mobile: scrollGesture", args);
+
+        CommandMetrics.setCurrentTest("Suite.second");
+        session.driver.getPageSource();
+
+        CommandMetrics.clearCurrentTest();
+        session.driver.getPageSource();
+    }
+
+    private Map<?, ?> dimension(String name) {
+        Map<String, Object> json = new Json().toType(metrics.toJson(), Json.MAP_TYPE);
+        return (Map<?, ?>) json.get(name);
+    }
+
+    private static long count(Map<?, ?> dimension, String key) {
+        Object stats = dimension.get(key);
+        assertTrue(stats instanceof Map, key + " in " + dimension.keySet());
+        return ((Number) ((Map<?, ?>) stats).get("count")).longValue();
+    }
+}
@@ -0,0 +1,82 @@
+package nativebridge;
+
+import io.appium.java_client.android.AndroidDriver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.remote.Command;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CompositeLocatorTest {
+
+    @TempDir
+    Path dir;
+
+    private StubSession session;
+    private AndroidDriver driver;
+
+    @BeforeEach
+    void startSession() throws Exception {
+        session = new StubSession("com.testapp1");
+        driver = session.driver;
+    }
+
+    @AfterEach
+    void stop() {
+        session.close();
+    }
+
+    @Test
+    void everyCandidateGoesOutInOneLookup() {
+        assertEquals("Appium Test App", CompositeLocator.find(driver, "com.testapp1", "app-title").getText());
+        assertEquals(List.of(CompositeLocator.uiSelector("com.testapp1", "app-title")), lookups());
+    }
+
+    @Test
+    void aMissIsOneLookupToo() {
+        assertThrows(NoSuchElementException.class, () -> CompositeLocator.find(driver, "com.testapp1", "no-such-view"));
+        assertEquals(1, lookups().size(), lookups().toString());
+        assertEquals(0, CompositeLocator.findAll(driver, "com.testapp1", "no-such-view").size());
+        assertEquals(2, lookups().size(), lookups().toString());
+    }
+
+    @Test
+    void qualifiedIdIsNotQualifiedAgain() {
+        assertEquals("new UiSelector().resourceId(\"app-title\");new UiSelector().resourceId(\"com.testapp1:id/app-title\")",
+            CompositeLocator.uiSelector("com.testapp1", "app-title"));
+        assertEquals("new UiSelector().resourceId(\"com.testapp1:id/app-title\")",
+            CompositeLocator.uiSelector("com.testapp1", "com.testapp1:id/app-title"));
+        assertEquals("new UiSelector().resourceId(\"say \\\"hi\\\"\")", CompositeLocator.uiSelector(null, "say \"hi\""));
+    }
+
+    @Test
+    void safeFindOfAKnownElementIsOneLookup() {
+        // The path the scripts' safeFind takes
+        AdaptiveLocator locator = new AdaptiveLocator(driver, "com.testapp1", new LocatorStats(dir.resolve("stats.json")));
+        locator.find("test-button");
+        session.clearCommands();
+        for (int i = 0; i < 3; i++) {
+            locator.find("test-button");
+        }
+        assertEquals(3, lookups().size(), lookups().toString());
+    }
+
+    // The selector of every find request since the last clearCommands()
+    private List<String> lookups() {
+        List<String> lookups = new ArrayList<>();
+        for (Command command : session.commands()) {
+            if (command.getName().startsWith("findElement")) {
+                lookups.add(String.valueOf(command.getParameters().get("value")));
+            }
+        }
+        return lookups;
+    }
+}
@@ -0,0 +1,57 @@
+package nativebridge;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeviceRegistryTest {
+
+    @Test
+    void freeDeviceIsNotHeldForARankThatHasNotAsked() throws Exception {
+        DeviceRegistry registry = DeviceRegistry.parse("emulator-5554@http://127.0.0.1:4723");
+        registry.expectRanks(3);
+        long start = System.nanoTime();
+        DeviceRegistry.Device device = CompletableFuture.supplyAsync(() -> acquire(registry, 2))
+            .get(5, TimeUnit.SECONDS);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        assertSame(registry.devices().get(0), device);
+    }
+
+    @Test
+    void queuedLowerRankGetsTheNextFreeDevice() throws Exception {
+        DeviceRegistry registry = DeviceRegistry.parse("http://127.0.0.1:4723");
+        DeviceRegistry.Device held = registry.acquire();
+        List<Integer> served = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Void> late = CompletableFuture.runAsync(() -> serve(registry, acquire(registry, 5), served, 5));
+        Thread.sleep(200);
+        CompletableFuture<Void> early = CompletableFuture.runAsync(() -> serve(registry, acquire(registry, 1), served, 1));
+        Thread.sleep(200);
+        assertFalse(late.isDone());
+        registry.release(held);
+        CompletableFuture.allOf(late, early).get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(1, 5), served);
+    }
+
+    private static DeviceRegistry.Device acquire(DeviceRegistry registry, int rank) {
+        registry.rankNextAcquire(rank);
+        try {
+            return registry.acquire();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void serve(DeviceRegistry registry, DeviceRegistry.Device device, List<Integer> served, int rank) {
+        served.add(rank);
+        registry.release(device);
+    }
+}
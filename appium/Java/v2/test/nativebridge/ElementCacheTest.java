@@ -0,0 +1,66 @@
+package nativebridge;
+
+import io.appium.java_client.AppiumBy;
+import io.appium.java_client.android.AndroidDriver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.remote.DriverCommand;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ElementCacheTest {
+
+    private StubSession session;
+    private AndroidDriver driver;
+    private ElementCache elements;
+
+    @BeforeEach
+    void startSession() throws Exception {
+        session = new StubSession("com.testapp1");
+        driver = session.driver;
+        elements = new ElementCache(driver);
+    }
+
+    @AfterEach
+    void stop() {
+        session.close();
+    }
+
+    @Test
+    void fetchReadsTheRectAndTheAttributesAskedFor() {
+        WebElement title = driver.findElement(AppiumBy.id("com.testapp1:id/app-title"));
+        session.clearCommands();
+        ElementCache.Snapshot snapshot = elements.of(title).fetch("text");
+        assertEquals(Arrays.asList(DriverCommand.GET_ELEMENT_RECT, DriverCommand.GET_ELEMENT_ATTRIBUTE), session.commandNames());
+
+        snapshot.rect();
+        snapshot.attribute("text");
+        assertEquals(2, session.commands().size(), session.commandNames().toString());
+    }
+
+    @Test
+    void propertiesAreReadOnFirstUseOnly() {
+        WebElement title = driver.findElement(AppiumBy.id("com.testapp1:id/app-title"));
+        session.clearCommands();
+        ElementCache.Snapshot snapshot = elements.of(title);
+        assertTrue(session.commands().isEmpty(), session.commandNames().toString());
+        assertTrue(snapshot.isDisplayed());
+        snapshot.isDisplayed();
+        assertEquals(Arrays.asList(DriverCommand.IS_ELEMENT_DISPLAYED), session.commandNames());
+    }
+
+    @Test
+    void anInteractionForgetsEveryValue() {
+        WebElement title = driver.findElement(AppiumBy.id("com.testapp1:id/app-title"));
+        ElementCache.Snapshot snapshot = elements.of(title).fetch();
+        title.click();
+        session.clearCommands();
+        snapshot.rect();
+        assertEquals(Arrays.asList(DriverCommand.GET_ELEMENT_RECT), session.commandNames());
+    }
+}
@@ -0,0 +1,121 @@
+package nativebridge;
+
+import io.appium.java_client.AppiumBy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.RemoteWebElement;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ElementHandleTest {
+
+    // Found by text: the resource-id, and so the element id, changes on every re-render
+    private static final By LABEL = AppiumBy.androidUIAutomator("new UiSelector().text(\"Label\")");
+
+    private StubSession session;
+
+    @BeforeEach
+    void startSession() throws Exception {
+        session = new StubSession(capabilities -> new SimulatedDevice(Rerendering.PACKAGE, new Rerendering()));
+    }
+
+    @AfterEach
+    void stop() {
+        session.close();
+    }
+
+    @Test
+    void aValidElementIsNotLookedUpAgain() {
+        ElementHandle label = ElementHandle.of(session.driver, LABEL);
+        assertEquals("Label", label.getText());
+        assertTrue(label.isDisplayed());
+        assertEquals("Label", label.getText());
+
+        assertEquals(1, label.lookups());
+        assertEquals(0, label.recoveries());
+        assertEquals(1, lookups(), session.commandNames().toString());
+    }
+
+    @Test
+    void aStaleElementIsLookedUpOnceAndTheCallRetried() {
+        ElementHandle label = ElementHandle.of(session.driver, LABEL);
+        String before = id(label);
+        click("rerender-button");
+        session.clearCommands();
+
+        assertEquals("Label", label.getText());
+        assertEquals(1, lookups(), session.commandNames().toString());
+        assertEquals(2, Collections.frequency(session.commandNames(), DriverCommand.GET_ELEMENT_TEXT), session.commandNames().toString());
+        assertEquals(2, label.lookups());
+        assertEquals(1, label.recoveries());
+        assertNotEquals(before, id(label));
+
+        // The new id is kept
+        session.clearCommands();
+        assertEquals("Label", label.getText());
+        assertEquals(0, lookups(), session.commandNames().toString());
+    }
+
+    @Test
+    void anElementGoneForGoodFailsAfterOneLookup() {
+        ElementHandle label = ElementHandle.of(session.driver, LABEL);
+        label.getText();
+        click("remove-button");
+        session.clearCommands();
+
+        assertThrows(NoSuchElementException.class, label::getText);
+        assertEquals(1, lookups(), session.commandNames().toString());
+        assertEquals(2, label.lookups());
+        assertEquals(0, label.recoveries());
+    }
+
+    private void click(String id) {
+        session.driver.findElement(AppiumBy.id(Rerendering.PACKAGE + ":id/" + id)).click();
+    }
+
+    private static String id(ElementHandle handle) {
+        return ((RemoteWebElement) handle.getWrappedElement()).getId();
+    }
+
+    private int lookups() {
+        return Collections.frequency(session.commandNames(), DriverCommand.FIND_ELEMENT)
+            + Collections.frequency(session.commandNames(), DriverCommand.FIND_ELEMENTS);
+    }
+
+    // A label React Native-style replaces on re-render, and can take away altogether
+    private static final class Rerendering extends SimulatedApp {
+
+        static final String PACKAGE = "com.rerender";
+
+        private int generation;
+        private boolean removed;
+
+        Rerendering() {
+            super(PACKAGE);
+        }
+
+        @Override
+        protected void render(Screen screen) {
+            if (!removed) {
+                screen.text("label-" + generation, "Label");
+            }
+            screen.button("rerender-button", "Re-render", () -> generation++);
+            screen.button("remove-button", "Remove", () -> removed = true);
+        }
+
+        @Override
+        protected void reset() {
+            generation = 0;
+            removed = false;
+        }
+    }
+}
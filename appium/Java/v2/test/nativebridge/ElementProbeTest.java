@@ -0,0 +1,125 @@
+package nativebridge;
+
+import io.appium.java_client.AppiumBy;
+import io.appium.java_client.android.AndroidDriver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openqa.selenium.By;
+import org.openqa.selenium.remote.DriverCommand;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ElementProbeTest {
+
+    private static final By MISSING = AppiumBy.id("com.testapp1:id/no_such_view");
+
+    private StubSession session;
+    private AndroidDriver driver;
+
+    @BeforeEach
+    void startSession() throws Exception {
+        session = new StubSession("com.testapp1");
+        driver = session.driver;
+    }
+
+    @AfterEach
+    void stop() {
+        session.close();
+    }
+
+    @Test
+    void nestedProbesToggleTheImplicitWaitOnce() {
+        driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
+        session.clearCommands();
+        ElementProbe probe = ElementProbe.of(driver);
+        ElementProbe.Scope scope = probe.open();
+        try {
+            assertFalse(probe.exists(MISSING));
+            assertFalse(probe.exists(MISSING));
+        } finally {
+            scope.close();
+        }
+        assertEquals(2, Collections.frequency(session.commandNames(), DriverCommand.SET_TIMEOUT), session.commandNames().toString());
+        assertEquals(Duration.ofSeconds(10), driver.manage().timeouts().getImplicitWaitTimeout());
+    }
+
+    @Test
+    void zeroImplicitWaitSendsNoTimeoutRequests() {
+        driver.manage().timeouts().implicitlyWait(Duration.ZERO);
+        session.clearCommands();
+        ElementProbe probe = ElementProbe.of(driver);
+        assertFalse(probe.exists(MISSING));
+        assertFalse(probe.exists(MISSING));
+        assertEquals(0, Collections.frequency(session.commandNames(), DriverCommand.SET_TIMEOUT), session.commandNames().toString());
+        assertEquals(0, probe.totalSavedMillis());
+    }
+
+    @Test
+    void sharedProbeCountsEveryThreadsLookups() throws Exception {
+        driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
+        ElementProbe probe = ElementProbe.of(driver);
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        List<Future<?>> runs = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            runs.add(threads.submit(() -> {
+                for (int i = 0; i < 25; i++) {
+                    probe.exists(MISSING);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> run : runs) {
+            run.get(60, TimeUnit.SECONDS);
+        }
+        threads.shutdown();
+        assertEquals(100, probe.calls());
+        assertEquals(100, probe.misses());
+        // The last window to close put the wait back
+        assertEquals(Duration.ofSeconds(10), driver.manage().timeouts().getImplicitWaitTimeout());
+    }
+
+    @Test
+    void oneProbePerDriver() throws Exception {
+        assertSame(ElementProbe.of(driver), ElementProbe.of(driver));
+        try (StubSession other = new StubSession("com.testapp1")) {
+            assertNotSame(ElementProbe.of(driver), ElementProbe.of(other.driver));
+        }
+    }
+
+    @Test
+    void helpersCreatedInsideAWindowStillKnowTheRealWait(@TempDir Path stats) {
+        driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
+        UiWait uiWait;
+        ElementProbe.Scope outer = ElementProbe.of(driver).open();
+        try {
+            // Created while the wait is zero; a probe of their own would take zero for the real wait
+            uiWait = new UiWait(driver);
+            assertEquals(Boolean.TRUE, uiWait.until(Duration.ofMillis(100), UiWait.gone(MISSING)));
+            new AdaptiveLocator(driver, "com.testapp1", new LocatorStats(stats.resolve("locator-stats.json"))).find("app-title");
+        } finally {
+            outer.close();
+        }
+        assertEquals(Duration.ofSeconds(10), driver.manage().timeouts().getImplicitWaitTimeout());
+
+        // Used on their own, they still drop the wait to zero and put 10 seconds back
+        session.clearCommands();
+        assertEquals(Boolean.TRUE, uiWait.until(Duration.ofMillis(100), UiWait.gone(MISSING)));
+        assertEquals(2, Collections.frequency(session.commandNames(), DriverCommand.SET_TIMEOUT), session.commandNames().toString());
+        assertEquals(Duration.ofSeconds(10), driver.manage().timeouts().getImplicitWaitTimeout());
+    }
+}
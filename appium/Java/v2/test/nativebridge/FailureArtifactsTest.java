@@ -0,0 +1,87 @@
+package nativebridge;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openqa.selenium.remote.DriverCommand;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FailureArtifactsTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void everyFetchIsDoneBeforeCaptureReturns() throws Exception {
+        FailureArtifacts artifacts = new FailureArtifacts(dir, 32);
+        try (StubSession session = new StubSession("com.testapp1")) {
+            session.clearCommands();
+            artifacts.capture(session.driver, "FailureArtifactsTest.fetch", new AssertionError("boom"));
+            // Nothing may still be talking to the session once the test moves on or the pool resets it
+            List<String> names = session.commandNames();
+            assertTrue(names.contains(DriverCommand.SCREENSHOT), names.toString());
+            assertTrue(names.contains(DriverCommand.GET_PAGE_SOURCE), names.toString());
+            assertTrue(names.contains(DriverCommand.GET_LOG), names.toString());
+        }
+        artifacts.shutdown();
+        assertEquals(Map.of("FailureArtifactsTest.fetch",
+            List.of("failure.txt.gz", "logcat.txt.gz", "page-source.xml.gz", "screenshot.png")), written());
+    }
+
+    @Test
+    void fullQueueDropsTheLeastUsefulArtifacts() throws Exception {
+        // Hold the writer so the queue fills: two captures offer eight artifacts for five places
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        CountDownLatch hold = new CountDownLatch(1);
+        writer.execute(() -> {
+            try {
+                hold.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        FailureArtifacts artifacts = new FailureArtifacts(dir, 5, writer);
+        try (StubSession session = new StubSession("com.testapp1")) {
+            artifacts.capture(session.driver, "first", new AssertionError("first"));
+            artifacts.capture(session.driver, "second", new AssertionError("second"));
+        }
+        hold.countDown();
+        artifacts.shutdown();
+
+        // Both logcats go, then the newer screenshot; failures and page sources all stay
+        Map<String, List<String>> expected = new TreeMap<>();
+        expected.put("first", List.of("failure.txt.gz", "page-source.xml.gz", "screenshot.png"));
+        expected.put("second", List.of("failure.txt.gz", "page-source.xml.gz"));
+        assertEquals(expected, written());
+        assertEquals("2 failures captured, 5 artifacts written, 0 queued, 3 dropped under backpressure, "
+            + "0 could not be fetched", artifacts.summary());
+    }
+
+    // Test name -> files written for it, from the <test>-<yyyyMMdd-HHmmss-SSS> directories
+    private Map<String, List<String>> written() throws IOException {
+        Map<String, List<String>> written = new TreeMap<>();
+        try (Stream<Path> captures = Files.list(dir)) {
+            for (Path capture : captures.collect(Collectors.toList())) {
+                String name = capture.getFileName().toString();
+                try (Stream<Path> files = Files.list(capture)) {
+                    written.put(name.substring(0, name.length() - "-yyyyMMdd-HHmmss-SSS".length()),
+                        files.map(f -> f.getFileName().toString()).sorted().collect(Collectors.toList()));
+                }
+            }
+        }
+        return written;
+    }
+}
@@ -0,0 +1,131 @@
+package nativebridge;
+
+import io.appium.java_client.AppiumBy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.DriverCommand;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GesturesTest {
+
+    private static final By SCROLL_ITEM = AppiumBy.id("com.testapp2:id/scroll-item-5");
+
+    private StubSession session;
+
+    @BeforeEach
+    void startSession() throws Exception {
+        session = new StubSession("com.testapp2");
+    }
+
+    @AfterEach
+    void stop() {
+        session.close();
+    }
+
+    @Test
+    void everyFingerHasOneActionPerTick() {
+        new Gestures(session.driver)
+            .swipe(500, 2000, 500, 1700, 300)
+            .pinch(540, 1000, 600, 200, 400)
+            .tap(540, 1200)
+            .perform();
+        List<List<Map<?, ?>>> fingers = sentActions();
+        assertEquals(2, fingers.size());
+        // Swipe, pinch and tap take 4 + 4 + 3 ticks
+        assertEquals(11, fingers.get(0).size());
+        assertEquals(11, fingers.get(1).size());
+        assertEquals("pointerMove", fingers.get(0).get(4).get("type"));
+        assertEquals("pointerMove", fingers.get(1).get(4).get("type"));
+        assertEquals(240L, number(fingers.get(0).get(4).get("x")));
+        assertEquals(840L, number(fingers.get(1).get(4).get("x")));
+    }
+
+    @Test
+    void idleFingersPauseForZeroMilliseconds() {
+        new Gestures(session.driver)
+            .pinch(540, 1000, 200, 600, 400)
+            .swipe(500, 2000, 500, 1700, 300)
+            .perform();
+        List<Map<?, ?>> second = sentActions().get(1);
+        for (int tick = 4; tick < 8; tick++) {
+            assertEquals("pause", second.get(tick).get("type"), "tick " + tick);
+            assertEquals(0L, number(second.get(tick).get("duration")), "tick " + tick);
+        }
+    }
+
+    @Test
+    void aLateFingerIsPaddedToTheTicksItMissed() {
+        new Gestures(session.driver)
+            .swipe(500, 2000, 500, 1700, 300)
+            .pause(250)
+            .pinch(540, 1000, 600, 200, 400)
+            .perform();
+        List<List<Map<?, ?>>> fingers = sentActions();
+        List<Map<?, ?>> first = fingers.get(0);
+        List<Map<?, ?>> second = fingers.get(1);
+        assertEquals(first.size(), second.size());
+        assertEquals(250L, number(first.get(4).get("duration")));
+        for (int tick = 0; tick < 5; tick++) {
+            assertEquals("pause", second.get(tick).get("type"), "tick " + tick);
+            assertEquals(0L, number(second.get(tick).get("duration")), "tick " + tick);
+        }
+        assertEquals("pointerMove", second.get(5).get("type"));
+    }
+
+    @Test
+    void aChainIsOneActionsRequest() {
+        int before = session.driver.findElement(SCROLL_ITEM).getRect().getY();
+        session.clearCommands();
+        Gestures gestures = new Gestures(session.driver)
+            .swipe(500, 2000, 500, 1700, 300)
+            .pause(100)
+            .swipe(500, 2000, 500, 1700, 300);
+        assertEquals(2, gestures.size());
+        gestures.perform();
+        assertEquals(List.of(DriverCommand.ACTIONS), session.commandNames());
+        // Both swipes were played back: the content moved up twice
+        assertEquals(before - 600, session.driver.findElement(SCROLL_ITEM).getRect().getY());
+
+        // perform() leaves an empty chain, which sends nothing
+        session.clearCommands();
+        assertEquals(0, gestures.size());
+        gestures.perform();
+        assertTrue(session.commandNames().isEmpty(), session.commandNames().toString());
+    }
+
+    // The pointer sequences of the last actions request, as the server received them
+    private List<List<Map<?, ?>>> sentActions() {
+        Command sent = null;
+        for (Command command : session.commands()) {
+            if (DriverCommand.ACTIONS.equals(command.getName())) {
+                sent = command;
+            }
+        }
+        assertTrue(sent != null, session.commandNames().toString());
+        Json json = new Json();
+        Map<String, Object> body = json.toType(json.toJson(sent.getParameters()), Json.MAP_TYPE);
+        List<List<Map<?, ?>>> fingers = new ArrayList<>();
+        for (Object source : (List<?>) body.get("actions")) {
+            List<Map<?, ?>> actions = new ArrayList<>();
+            for (Object action : (List<?>) ((Map<?, ?>) source).get("actions")) {
+                actions.add((Map<?, ?>) action);
+            }
+            fingers.add(actions);
+        }
+        return fingers;
+    }
+
+    private static long number(Object value) {
+        return ((Number) value).longValue();
+    }
+}
@@ -0,0 +1,96 @@
+package nativebridge;
+
+import nativebridge.LocatorStats.Strategy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocatorStatsTest {
+
+    private static final String APP = "com.testapp1";
+    private static final long MS = 1_000_000L;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void untriedStrategiesKeepTheScriptsOrder() {
+        LocatorStats stats = new LocatorStats(dir.resolve("stats.json"));
+        assertEquals(Arrays.asList(Strategy.RESOURCE_ID_XPATH, Strategy.ID, Strategy.PACKAGE_ID),
+            stats.rank(APP, "test-button"));
+        // A package-qualified id has no separate PACKAGE_ID form
+        assertEquals(Arrays.asList(Strategy.RESOURCE_ID_XPATH, Strategy.ID),
+            stats.rank(APP, APP + ":id/test-button"));
+    }
+
+    @Test
+    void fastestKnownGoodStrategyComesFirst() {
+        LocatorStats stats = new LocatorStats(dir.resolve("stats.json"));
+        stats.recordHit(APP, "test-button", Strategy.RESOURCE_ID_XPATH, 150 * MS);
+        stats.recordHit(APP, "test-button", Strategy.RESOURCE_ID_XPATH, 250 * MS);
+        stats.recordHit(APP, "test-button", Strategy.PACKAGE_ID, 30 * MS);
+
+        assertEquals(Arrays.asList(Strategy.PACKAGE_ID, Strategy.RESOURCE_ID_XPATH, Strategy.ID),
+            stats.rank(APP, "test-button"));
+        assertTrue(stats.isKnownGood(APP, "test-button", Strategy.PACKAGE_ID));
+        assertFalse(stats.isKnownGood(APP, "test-button", Strategy.ID));
+        // Other elements are ranked on their own counts
+        assertEquals(Strategy.RESOURCE_ID_XPATH, stats.rank(APP, "button-counter").get(0));
+    }
+
+    @Test
+    void missesDemoteAStrategyUntilItHitsAgain() {
+        LocatorStats stats = new LocatorStats(dir.resolve("stats.json"));
+        stats.recordHit(APP, "test-button", Strategy.ID, 10 * MS);
+        stats.recordHit(APP, "test-button", Strategy.RESOURCE_ID_XPATH, 200 * MS);
+        stats.recordMiss(APP, "test-button", Strategy.ID);
+
+        // Behind the slower working strategy and behind the untried one
+        assertEquals(Arrays.asList(Strategy.RESOURCE_ID_XPATH, Strategy.PACKAGE_ID, Strategy.ID),
+            stats.rank(APP, "test-button"));
+        assertFalse(stats.isKnownGood(APP, "test-button", Strategy.ID));
+
+        stats.recordHit(APP, "test-button", Strategy.ID, 10 * MS);
+        assertEquals(Strategy.ID, stats.rank(APP, "test-button").get(0));
+        assertTrue(stats.isKnownGood(APP, "test-button", Strategy.ID));
+    }
+
+    @Test
+    void savedStatsReloadWithTheSameRanking() {
+        Path file = dir.resolve(".nativebridge/locator-stats.json");
+        LocatorStats stats = new LocatorStats(file);
+        stats.recordHit(APP, "test-button", Strategy.PACKAGE_ID, 20 * MS);
+        stats.recordHit(APP, "test-button", Strategy.RESOURCE_ID_XPATH, 180 * MS);
+        stats.recordHit(APP, "button-counter", Strategy.ID, 40 * MS);
+        stats.recordMiss(APP, "button-counter", Strategy.RESOURCE_ID_XPATH);
+        assertEquals(file, stats.save());
+        assertFalse(Files.exists(file.resolveSibling("locator-stats.json.tmp")));
+
+        LocatorStats reloaded = LocatorStats.load(file);
+        for (String element : Arrays.asList("test-button", "button-counter")) {
+            assertEquals(stats.rank(APP, element), reloaded.rank(APP, element), element);
+        }
+        assertFalse(reloaded.isKnownGood(APP, "button-counter", Strategy.RESOURCE_ID_XPATH));
+        LocatorStats.Stat xpath = reloaded.elements().get(APP + "|test-button").get(Strategy.RESOURCE_ID_XPATH);
+        assertEquals(1, xpath.hits());
+        assertEquals(180.0, xpath.meanHitMillis(), 0.001);
+        assertEquals(1, reloaded.strategies().get(Strategy.RESOURCE_ID_XPATH).misses());
+    }
+
+    @Test
+    void corruptFileStartsOver() throws Exception {
+        Path file = Files.writeString(dir.resolve("locator-stats.json"), "{\"elements\": {\"x|y\": {\"NOPE\": {}}}}");
+        LocatorStats stats = LocatorStats.load(file);
+        assertTrue(stats.elements().isEmpty());
+        List<Strategy> ranked = stats.rank(APP, "test-button");
+        assertEquals(Strategy.RESOURCE_ID_XPATH, ranked.get(0));
+    }
+}
@@ -0,0 +1,90 @@
+package nativebridge;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PageSnapshotTest {
+
+    @Test
+    void resourceIdsResolveInFullAndShortForm() throws IOException {
+        PageSnapshot testApp2 = fixture("testapp2-hierarchy.xml");
+        assertEquals("Advanced Test App", testApp2.text("app-title"));
+        // App ids may come package-qualified; both forms find the same node
+        assertEquals("com.testapp2:id/main-scroll", testApp2.find("main-scroll").resourceId());
+        assertTrue(testApp2.exists("com.testapp2:id/main-scroll"));
+        assertTrue(testApp2.exists("android:id/content"));
+        assertTrue(testApp2.exists("content"));
+        assertFalse(testApp2.exists("modal-text"));
+        assertNull(testApp2.text("modal-text"));
+    }
+
+    @Test
+    void textIndexMatchesWholeTextsAndFragments() throws IOException {
+        PageSnapshot testApp1 = fixture("testapp1-hierarchy.xml");
+        assertEquals("button-counter", testApp1.findByText("Button pressed 0 times").get(0).resourceId());
+        // The label of a React Native button is a child TextView without an id
+        List<PageSnapshot.Node> submit = testApp1.findByText("Submit");
+        assertEquals(1, submit.size());
+        assertEquals("", submit.get(0).resourceId());
+        assertTrue(testApp1.findByText("Button pressed").isEmpty());
+        assertEquals(1, testApp1.findByTextContaining("Button pressed").size());
+
+        PageSnapshot testApp2 = fixture("testapp2-hierarchy.xml");
+        assertEquals(4, testApp2.findByTextContaining("Scroll item").size());
+        assertEquals(2, testApp2.findByText("OFF").size());
+    }
+
+    @Test
+    void classIndexUsesTheClassAttribute() throws IOException {
+        PageSnapshot testApp2 = fixture("testapp2-hierarchy.xml");
+        List<PageSnapshot.Node> switches = testApp2.findByClass("android.widget.Switch");
+        assertEquals(2, switches.size());
+        assertEquals("notifications-switch", switches.get(0).resourceId());
+        assertFalse(switches.get(1).isEnabled());
+        assertEquals(1, testApp2.findByClass("hierarchy").size());
+        assertEquals(testApp2.size(), testApp2.xpath("//*").size());
+    }
+
+    @Test
+    void nodesBelowTheFoldAreNotDisplayed() throws IOException {
+        PageSnapshot testApp2 = fixture("testapp2-hierarchy.xml");
+        assertTrue(testApp2.isDisplayed("scroll-item-3"));
+        assertTrue(testApp2.exists("scroll-item-4"));
+        assertFalse(testApp2.isDisplayed("scroll-item-4"));
+        assertFalse(testApp2.isDisplayed("show-modal-button"));
+        assertFalse(testApp2.isDisplayed("modal-text"));
+    }
+
+    @Test
+    void xpathCoversWhatTheIndexesDoNot() throws IOException {
+        PageSnapshot testApp1 = fixture("testapp1-hierarchy.xml");
+        List<PageSnapshot.Node> labels = testApp1.xpath("//*[@resource-id='test-button']/android.widget.TextView");
+        assertEquals(1, labels.size());
+        assertEquals("Press Me", labels.get(0).text());
+        assertEquals(2, testApp1.xpath("//android.view.ViewGroup[@clickable='true']").size());
+        assertEquals("Swipe here", testApp1.xpath("//*[@resource-id='swipe-area']").get(0).attribute("content-desc"));
+        assertNull(labels.get(0).attribute("resource-id"));
+        assertThrows(IllegalArgumentException.class, () -> testApp1.xpath("//*[@text="));
+    }
+
+    @Test
+    void malformedSourceIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> PageSnapshot.parse("<hierarchy><node></hierarchy>"));
+    }
+
+    private static PageSnapshot fixture(String name) throws IOException {
+        try (InputStream in = PageSnapshotTest.class.getResourceAsStream(name)) {
+            return PageSnapshot.parse(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package nativebridge;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openqa.selenium.json.Json;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReplayServerTest {
+
+    private static final String TEXT = "/session/s1/element/e1/text";
+
+    private static final Json JSON = new Json();
+
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void repeatedGetsReplayEachRecordedAnswerOnceInOrder() throws Exception {
+        Path journal = journal(
+            get(TEXT, "0"),
+            get(TEXT, "1"),
+            get(TEXT, "2"));
+        try (ReplayServer replay = ReplayServer.replay(0, journal)) {
+            assertEquals("0", send(replay, "GET", TEXT, null));
+            assertEquals("1", send(replay, "GET", TEXT, null));
+            assertEquals("2", send(replay, "GET", TEXT, null));
+            // Once the recording runs out the last answer repeats
+            assertEquals("2", send(replay, "GET", TEXT, null));
+        }
+    }
+
+    @Test
+    void bodyMatchesFirstThenPathAlone() throws Exception {
+        String find = "/session/s1/element";
+        Path journal = journal(
+            post(find, "{\"using\":\"id\",\"value\":\"a\"}", "\"found-a\""),
+            post(find, "{\"using\":\"id\",\"value\":\"b\"}", "\"found-b\""));
+        try (ReplayServer replay = ReplayServer.replay(0, journal)) {
+            assertEquals("found-b", send(replay, "POST", find, "{\"value\":\"b\",\"using\":\"id\"}"));
+            assertEquals("found-a", send(replay, "POST", find, "{\"using\":\"id\",\"value\":\"a\"}"));
+            // Never recorded with this body: the path-only answers, in recorded order
+            assertEquals("found-a", send(replay, "POST", find, "{\"using\":\"id\",\"value\":\"c\"}"));
+            assertEquals(0L, replay.misses());
+        }
+    }
+
+    @Test
+    void unrecordedRequestIsAMiss() throws Exception {
+        try (ReplayServer replay = ReplayServer.replay(0, journal(get(TEXT, "0")))) {
+            send(replay, "GET", "/session/s1/source", null);
+            assertEquals(1L, replay.misses());
+        }
+    }
+
+    private Path journal(String... lines) throws IOException {
+        Path journal = dir.resolve("test.journal");
+        Files.write(journal, Arrays.asList(lines), StandardCharsets.UTF_8);
+        return journal;
+    }
+
+    private static String get(String path, String value) {
+        return "{\"method\":\"GET\",\"path\":\"" + path + "\",\"status\":200,\"response\":{\"value\":\"" + value
+            + "\"},\"ms\":5}";
+    }
+
+    private static String post(String path, String request, String value) {
+        return "{\"method\":\"POST\",\"path\":\"" + path + "\",\"request\":" + request
+            + ",\"status\":200,\"response\":{\"value\":" + value + "},\"ms\":5}";
+    }
+
+    // The "value" of the answer
+    private Object send(ReplayServer replay, String method, String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + replay.port() + path))
+            .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+            .build();
+        String answer = http.send(request, HttpResponse.BodyHandlers.ofString()).body();
+        Map<String, Object> json = JSON.toType(answer, Json.MAP_TYPE);
+        return json.get("value");
+    }
+}
@@ -0,0 +1,116 @@
+package nativebridge;
+
+import io.appium.java_client.AppiumBy;
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.Rectangle;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.DriverCommand;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScrollerTest {
+
+    private static final By TITLE = AppiumBy.id("com.testapp2:id/app-title");
+    private static final By MODAL_BUTTON = AppiumBy.id("com.testapp2:id/show-modal-button");
+
+    @Test
+    void scrollIntoViewIsOneLookup() throws Exception {
+        try (StubSession session = new StubSession("com.testapp2")) {
+            // Below the fold at first
+            assertTrue(session.driver.findElements(MODAL_BUTTON).isEmpty());
+            session.clearCommands();
+
+            WebElement button = new Scroller(session.driver, "com.testapp2").scrollIntoView("show-modal-button");
+
+            assertNotNull(button);
+            // UiAutomator scrolled on the device; no swipes or retries from the client
+            assertEquals(1, Collections.frequency(session.commandNames(), DriverCommand.FIND_ELEMENTS), session.commandNames().toString());
+            assertFalse(session.commandNames().contains(DriverCommand.ACTIONS), session.commandNames().toString());
+            assertEquals(0, scrollGestures(session));
+            Rectangle rect = button.getRect();
+            assertTrue(rect.getY() >= 0 && rect.getY() + rect.getHeight() <= SimulatedApp.SCREEN_HEIGHT, rect.toString());
+            button.click();
+            assertFalse(session.driver.findElements(AppiumBy.id("com.testapp2:id/modal-text")).isEmpty());
+        }
+    }
+
+    @Test
+    void scrollIntoViewGivesUpAtTheEndOfTheContent() throws Exception {
+        try (StubSession session = new StubSession("com.testapp2")) {
+            assertNull(new Scroller(session.driver, "com.testapp2").scrollIntoView("no-such-view"));
+            // UiScrollable searched down to the last row
+            assertFalse(session.driver.findElements(MODAL_BUTTON).isEmpty());
+            assertTrue(session.driver.findElements(TITLE).isEmpty());
+        }
+    }
+
+    @Test
+    void scrollToEdgeStopsWhereTheContentEnds() throws Exception {
+        try (StubSession session = new StubSession("com.testapp2")) {
+            Scroller scroller = new Scroller(session.driver, "com.testapp2");
+            session.clearCommands();
+
+            // TestApp2 is less than two screens tall: one gesture reaches the bottom and says so
+            assertEquals(1, scroller.scrollToBottom());
+            assertEquals(1, scrollGestures(session));
+            assertFalse(session.driver.findElements(MODAL_BUTTON).isEmpty());
+
+            // Already there: the first gesture reports there is no more to scroll
+            assertEquals(1, scroller.scrollToBottom());
+
+            assertEquals(1, scroller.scrollToTop());
+            assertFalse(session.driver.findElements(TITLE).isEmpty());
+        }
+    }
+
+    @Test
+    void scrollToEdgeGivesUpAfterTwentyGestures() throws Exception {
+        try (StubSession session = new StubSession(capabilities -> new SimulatedDevice(EndlessList.PACKAGE, new EndlessList()))) {
+            session.clearCommands();
+            assertEquals(20, new Scroller(session.driver, EndlessList.PACKAGE).scrollToBottom());
+            assertEquals(20, scrollGestures(session));
+            // Still more to go
+            assertTrue(session.driver.findElements(AppiumBy.id(EndlessList.PACKAGE + ":id/row-" + (EndlessList.ROWS - 1))).isEmpty());
+        }
+    }
+
+    private static int scrollGestures(StubSession session) {
+        int gestures = 0;
+        for (Command command : session.commands()) {
+            if ("mobile: scrollGesture".equals(command.getParameters().get("script"))) {
+                gestures++;
+            }
+        }
+        return gestures;
+    }
+
+    // Far longer than twenty screens
+    private static final class EndlessList extends SimulatedApp {
+
+        static final String PACKAGE = "com.endless";
+        static final int ROWS = 1000;
+
+        EndlessList() {
+            super(PACKAGE);
+        }
+
+        @Override
+        protected void render(Screen screen) {
+            for (int i = 0; i < ROWS; i++) {
+                screen.text("row-" + i, "Row " + i);
+            }
+        }
+
+        @Override
+        protected void reset() {
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package nativebridge;
+
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.NoSuchSessionException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.UnreachableBrowserException;
+
+import java.net.ConnectException;
+import java.net.http.HttpTimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SessionBreakerTest {
+
+    @Test
+    void elementFailuresLeaveTheSessionAlone() {
+        assertEquals(SessionBreaker.Kind.ELEMENT, SessionBreaker.classify(new NoSuchElementException("no such element")));
+        assertEquals(SessionBreaker.Kind.ELEMENT, SessionBreaker.classify(new StaleElementReferenceException("stale")));
+        // The W3C timeout error: the server answered, the element did not show up
+        assertEquals(SessionBreaker.Kind.ELEMENT, SessionBreaker.classify(new TimeoutException("timeout")));
+    }
+
+    @Test
+    void transportTimeoutsAreUnreachableEvenAsTimeoutException() {
+        // How JdkHttpClient reports a request without an answer
+        assertEquals(SessionBreaker.Kind.SERVER_UNREACHABLE,
+            SessionBreaker.classify(new TimeoutException(new HttpTimeoutException("request timed out"))));
+        assertEquals(SessionBreaker.Kind.SERVER_UNREACHABLE,
+            SessionBreaker.classify(new TimeoutException(new java.util.concurrent.TimeoutException())));
+        // How SharedHttpClientFactory reports it
+        assertEquals(SessionBreaker.Kind.SERVER_UNREACHABLE, SessionBreaker.classify(
+            new TimeoutException("No response within PT3M", new HttpTimeoutException("request timed out"))));
+    }
+
+    @Test
+    void lostServersAndSessions() {
+        assertEquals(SessionBreaker.Kind.SERVER_UNREACHABLE,
+            SessionBreaker.classify(new WebDriverException(new ConnectException("Connection refused"))));
+        assertEquals(SessionBreaker.Kind.SERVER_UNREACHABLE,
+            SessionBreaker.classify(new UnreachableBrowserException("gone")));
+        assertEquals(SessionBreaker.Kind.SESSION_LOST, SessionBreaker.classify(new NoSuchSessionException("invalid session id")));
+        assertEquals(SessionBreaker.Kind.DEVICE_LOST, SessionBreaker.classify(
+            new WebDriverException("An unknown server-side error occurred: instrumentation process is not running")));
+        assertEquals(SessionBreaker.Kind.SERVER_ERROR, SessionBreaker.classify(new WebDriverException("something else")));
+    }
+}
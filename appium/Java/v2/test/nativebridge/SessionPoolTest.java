@@ -0,0 +1,149 @@
+package nativebridge;
+
+import io.appium.java_client.android.AndroidDriver;
+import io.appium.java_client.android.options.UiAutomator2Options;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionPoolTest {
+
+    private StubAppiumServer stub;
+    private SessionPool pool;
+
+    @BeforeEach
+    void startStub() throws Exception {
+        stub = StubAppiumServer.start(0, Duration.ZERO);
+        // Answers the health check (mobile: getCurrentPackage) and the app resets
+        stub.setDevices(SimulatedDevice.testApps("com.testapp1"));
+    }
+
+    @AfterEach
+    void stop() {
+        pool.shutdown();
+        stub.close();
+    }
+
+    @Test
+    void acquirePicksUpThePreparedSession() {
+        pool = new SessionPool(SessionPool.ResetMode.CLEAR, 2);
+        pool.prepare(stub.url(), options(), "com.testapp1");
+        AndroidDriver driver = pool.acquire(stub.url(), options(), "com.testapp1");
+        assertEquals(1, stub.sessionsCreated());
+        assertTrue(pool.summary().contains("1 prepared in the background"), pool.summary());
+        pool.release(driver);
+    }
+
+    @Test
+    void preparedSessionWaitsForTheLeasedOneAndReusesIt() throws Exception {
+        pool = new SessionPool(SessionPool.ResetMode.CLEAR, 2);
+        AndroidDriver first = pool.acquire(stub.url(), options(), "com.testapp1");
+        // Same device: the next class's session is the released one, reset for its app
+        pool.prepare(stub.url(), options(), "com.testapp2");
+        Thread.sleep(200);
+        assertEquals(1, stub.sessionsCreated());
+        pool.release(first);
+        AndroidDriver second = pool.acquire(stub.url(), options(), "com.testapp2");
+        assertSame(first, second);
+        assertEquals(1, stub.sessionsCreated());
+        assertTrue(pool.summary().contains("1 reused, 1 prepared in the background"), pool.summary());
+        pool.release(second);
+    }
+
+    @Test
+    void claimingALaterClassFirstMakesTheEarlierOneYield() {
+        pool = new SessionPool(SessionPool.ResetMode.CLEAR, 2);
+        pool.prepare(stub.url(), options(), "com.testapp1");
+        pool.prepare(stub.url(), options(), "com.testapp2");
+        // TestNG may start the classes in another order than it created them
+        AndroidDriver second = pool.acquire(stub.url(), options(), "com.testapp2");
+        pool.release(second);
+        AndroidDriver first = pool.acquire(stub.url(), options(), "com.testapp1");
+        assertSame(second, first);
+        assertEquals(1, stub.sessionsCreated());
+        pool.release(first);
+    }
+
+    @Test
+    void preparedSessionThatIsLateIsAbandonedAndPooledWhenItArrives() throws Exception {
+        pool = new SessionPool(SessionPool.ResetMode.CLEAR, 2, Duration.ofMillis(300));
+        stub.setLatency(Duration.ofMillis(400));
+        pool.prepare(stub.url(), options(), "com.testapp1");
+        long start = System.nanoTime();
+        AndroidDriver driver = pool.acquire(stub.url(), options(), "com.testapp1");
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // Gave up after the wait and created its own, instead of waiting out the prepared one
+        assertEquals(2, stub.sessionsCreated());
+        assertTrue(waited < 3000, waited + "ms");
+        stub.setLatency(Duration.ZERO);
+        awaitSummary("1 idle");
+        pool.release(driver);
+    }
+
+    @Test
+    void preparedSessionBlockedByALeaseIsAbandoned() {
+        pool = new SessionPool(SessionPool.ResetMode.CLEAR, 2, Duration.ofMillis(300));
+        AndroidDriver held = pool.acquire(stub.url(), options(), "com.testapp1");
+        pool.prepare(stub.url(), options(), "com.testapp2");
+        // The prepared session waits for 'held', which its holder never releases in time
+        AndroidDriver other = pool.acquire(stub.url(), options(), "com.testapp2");
+        assertNotSame(held, other);
+        assertEquals(2, stub.sessionsCreated());
+        pool.release(held);
+        pool.release(other);
+        assertTrue(pool.summary().endsWith("2 idle, 0 leased"), pool.summary());
+    }
+
+    @Test
+    void concurrentClassesNeverDeadlock() throws Exception {
+        pool = new SessionPool(SessionPool.ResetMode.CLEAR, 2, Duration.ofSeconds(2));
+        ExecutorService classes = Executors.newFixedThreadPool(4);
+        List<Future<?>> runs = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            String app = t % 2 == 0 ? "com.testapp1" : "com.testapp2";
+            runs.add(classes.submit(() -> {
+                for (int i = 0; i < 5; i++) {
+                    pool.prepare(stub.url(), options(), app);
+                    AndroidDriver driver = pool.acquire(stub.url(), options(), app);
+                    driver.getCurrentPackage();
+                    pool.release(driver);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> run : runs) {
+            run.get(60, TimeUnit.SECONDS);
+        }
+        classes.shutdown();
+        assertTrue(pool.summary().endsWith("0 leased"), pool.summary());
+    }
+
+    private void awaitSummary(String expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!pool.summary().contains(expected) && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(pool.summary().contains(expected), pool.summary());
+    }
+
+    private static UiAutomator2Options options() {
+        UiAutomator2Options options = new UiAutomator2Options();
+        options.setPlatformName("Android");
+        options.setAutomationName("UiAutomator2");
+        options.setNewCommandTimeout(Duration.ofSeconds(300));
+        return options;
+    }
+}
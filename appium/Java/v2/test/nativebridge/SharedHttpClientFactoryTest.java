@@ -0,0 +1,128 @@
+package nativebridge;
+
+import io.appium.java_client.android.AndroidDriver;
+import io.appium.java_client.android.options.UiAutomator2Options;
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.remote.http.ClientConfig;
+import org.openqa.selenium.remote.http.HttpClient;
+import org.openqa.selenium.remote.http.HttpMethod;
+import org.openqa.selenium.remote.http.HttpRequest;
+import org.openqa.selenium.remote.http.WebSocket;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SharedHttpClientFactoryTest {
+
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    @Test
+    void sessionsRunThroughTheSharedClient() throws Exception {
+        SharedHttpClientFactory factory = new SharedHttpClientFactory(4, Duration.ofSeconds(5));
+        try (StubAppiumServer stub = StubAppiumServer.start(0, Duration.ZERO)) {
+            stub.setDevices(SimulatedDevice.testApps("com.testapp1"));
+            UiAutomator2Options options = new UiAutomator2Options();
+            options.setPlatformName("Android");
+            AndroidDriver driver = DriverFactory.android(stub.url(), options, factory);
+            try {
+                assertEquals("com.testapp1", driver.getCurrentPackage());
+                driver.getPageSource();
+            } finally {
+                driver.quit();
+            }
+            assertEquals(1, stub.sessionsCreated());
+            assertEquals(0, factory.inFlight());
+        }
+    }
+
+    @Test
+    void webSocketMessagesGoBothWays() throws Exception {
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            CompletableFuture<Void> echo = CompletableFuture.runAsync(() -> echoOnce(server));
+            HttpClient client = new SharedHttpClientFactory(4, Duration.ofSeconds(5)).createClient(
+                ClientConfig.defaultConfig().baseUri(URI.create("http://127.0.0.1:" + server.getLocalPort())));
+            CompletableFuture<String> received = new CompletableFuture<>();
+            CompletableFuture<Integer> closed = new CompletableFuture<>();
+            WebSocket socket = client.openSocket(new HttpRequest(HttpMethod.GET, "/events"), new WebSocket.Listener() {
+                @Override
+                public void onText(CharSequence data) {
+                    received.complete(data.toString());
+                }
+
+                @Override
+                public void onClose(int code, String reason) {
+                    closed.complete(code);
+                }
+            });
+            socket.sendText("hello");
+            assertEquals("hello", received.get(5, TimeUnit.SECONDS));
+            socket.close();
+            assertEquals(1000, closed.get(5, TimeUnit.SECONDS));
+            echo.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    // Just enough of RFC 6455 for one text message and the close handshake
+    private static void echoOnce(ServerSocket server) {
+        try (Socket connection = server.accept()) {
+            InputStream in = connection.getInputStream();
+            OutputStream out = connection.getOutputStream();
+            String key = null;
+            for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+                if (line.toLowerCase().startsWith("sec-websocket-key:")) {
+                    key = line.substring(line.indexOf(':') + 1).trim();
+                }
+            }
+            String accept = Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-1")
+                .digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.US_ASCII)));
+            out.write(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: " + accept + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            DataInputStream frames = new DataInputStream(in);
+            while (true) {
+                int opcode = frames.readUnsignedByte() & 0x0F;
+                // Short messages only: a 7-bit length
+                int length = frames.readUnsignedByte() & 0x7F;
+                byte[] mask = new byte[4];
+                frames.readFully(mask);
+                byte[] payload = new byte[length];
+                frames.readFully(payload);
+                for (int i = 0; i < length; i++) {
+                    payload[i] ^= mask[i % 4];
+                }
+                out.write(0x80 | opcode);
+                out.write(length);
+                out.write(payload);
+                out.flush();
+                if (opcode == 0x8) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int c = in.read(); c != '\n' && c >= 0; c = in.read()) {
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,189 @@
+package nativebridge;
+
+import io.appium.java_client.AppiumBy;
+import io.appium.java_client.android.AndroidDriver;
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebElement;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimulatedDeviceTest {
+
+    private static final By ALERT_TITLE = AppiumBy.id("android:id/alertTitle");
+    private static final By ALERT_MESSAGE = AppiumBy.id("android:id/message");
+    private static final By ALERT_OK = AppiumBy.id("android:id/button1");
+
+    @Test
+    void counterButtonCountsAndShowsAnAlert() throws Exception {
+        try (StubSession session = new StubSession("com.testapp1")) {
+            AndroidDriver driver = session.driver;
+            assertEquals("Button pressed 0 times", text(driver, "com.testapp1", "button-counter"));
+
+            find(driver, "com.testapp1", "test-button").click();
+            assertEquals("Button Pressed", driver.findElement(ALERT_TITLE).getText());
+            assertEquals("You pressed the button 1 times", driver.findElement(ALERT_MESSAGE).getText());
+            // The alert covers the app
+            assertTrue(driver.findElements(id("com.testapp1", "test-button")).isEmpty());
+
+            driver.findElement(ALERT_OK).click();
+            assertTrue(driver.findElements(ALERT_TITLE).isEmpty());
+            assertEquals("Button pressed 1 times", text(driver, "com.testapp1", "button-counter"));
+
+            // The back key dismisses an alert too
+            find(driver, "com.testapp1", "test-button").click();
+            driver.navigate().back();
+            assertTrue(driver.findElements(ALERT_TITLE).isEmpty());
+            assertEquals("Button pressed 2 times", text(driver, "com.testapp1", "button-counter"));
+        }
+    }
+
+    @Test
+    void submitShowsWhatWasTyped() throws Exception {
+        try (StubSession session = new StubSession("com.testapp1")) {
+            AndroidDriver driver = session.driver;
+            find(driver, "com.testapp1", "submit-button").click();
+            assertEquals("Please enter some text", driver.findElement(ALERT_MESSAGE).getText());
+            driver.findElement(ALERT_OK).click();
+
+            find(driver, "com.testapp1", "text-input").sendKeys("hello");
+            assertEquals("hello", text(driver, "com.testapp1", "text-input"));
+            find(driver, "com.testapp1", "submit-button").click();
+            assertEquals("Submitted", driver.findElement(ALERT_TITLE).getText());
+            assertEquals("You entered: hello", driver.findElement(ALERT_MESSAGE).getText());
+        }
+    }
+
+    @Test
+    void dropdownsOpenOneAtATimeAndSelect() throws Exception {
+        try (StubSession session = new StubSession("com.testapp2")) {
+            AndroidDriver driver = session.driver;
+            assertEquals("Selected:", text(driver, "com.testapp2", "selection-display"));
+            assertTrue(driver.findElements(id("com.testapp2", "color-dropdown-option-0")).isEmpty());
+
+            find(driver, "com.testapp2", "color-dropdown").click();
+            assertEquals("Red", text(driver, "com.testapp2", "color-dropdown-option-0"));
+            assertEquals("Blue", text(driver, "com.testapp2", "color-dropdown-option-2"));
+
+            // Opening the other dropdown closes this one
+            find(driver, "com.testapp2", "size-dropdown").click();
+            assertTrue(driver.findElements(id("com.testapp2", "color-dropdown-option-0")).isEmpty());
+            find(driver, "com.testapp2", "size-dropdown-option-1").click();
+            assertTrue(driver.findElements(id("com.testapp2", "size-dropdown-option-1")).isEmpty());
+            assertEquals("Medium", text(driver, "com.testapp2", "size-dropdown"));
+
+            find(driver, "com.testapp2", "color-dropdown").click();
+            find(driver, "com.testapp2", "color-dropdown-option-1").click();
+            assertEquals("Green", text(driver, "com.testapp2", "color-dropdown"));
+            assertEquals("Selected: Green, Medium", text(driver, "com.testapp2", "selection-display"));
+
+            // The back key closes an open dropdown without selecting
+            find(driver, "com.testapp2", "color-dropdown").click();
+            driver.navigate().back();
+            assertTrue(driver.findElements(id("com.testapp2", "color-dropdown-option-0")).isEmpty());
+            assertEquals("Selected: Green, Medium", text(driver, "com.testapp2", "selection-display"));
+        }
+    }
+
+    @Test
+    void switchesToggleAndReportTheirState() throws Exception {
+        try (StubSession session = new StubSession("com.testapp2")) {
+            AndroidDriver driver = session.driver;
+            assertEquals("Notifications: OFF | Dark Mode: OFF", text(driver, "com.testapp2", "switch-status"));
+            assertEquals("false", find(driver, "com.testapp2", "notifications-switch").getAttribute("checked"));
+
+            find(driver, "com.testapp2", "notifications-switch").click();
+            assertEquals("true", find(driver, "com.testapp2", "notifications-switch").getAttribute("checked"));
+            assertEquals("Notifications: ON | Dark Mode: OFF", text(driver, "com.testapp2", "switch-status"));
+
+            find(driver, "com.testapp2", "dark-mode-switch").click();
+            find(driver, "com.testapp2", "notifications-switch").click();
+            assertEquals("Notifications: OFF | Dark Mode: ON", text(driver, "com.testapp2", "switch-status"));
+            assertTrue(find(driver, "com.testapp2", "dark-mode-switch").isSelected());
+        }
+    }
+
+    @Test
+    void modalCoversTheContentUntilClosed() throws Exception {
+        try (StubSession session = new StubSession("com.testapp2")) {
+            AndroidDriver driver = session.driver;
+            // Below the fold until scrolled to
+            assertTrue(driver.findElements(id("com.testapp2", "show-modal-button")).isEmpty());
+            assertFalse(scroll(driver, "down"));
+            find(driver, "com.testapp2", "show-modal-button").click();
+
+            assertEquals("This is a modal dialog", text(driver, "com.testapp2", "modal-text"));
+            assertTrue(driver.findElements(id("com.testapp2", "show-modal-button")).isEmpty());
+            // Nothing scrolls behind a modal
+            assertFalse(scroll(driver, "up"));
+
+            find(driver, "com.testapp2", "close-modal-button").click();
+            assertTrue(driver.findElements(id("com.testapp2", "modal-text")).isEmpty());
+            assertFalse(driver.findElements(id("com.testapp2", "show-modal-button")).isEmpty());
+
+            // The back key closes it as well
+            find(driver, "com.testapp2", "show-modal-button").click();
+            driver.navigate().back();
+            assertTrue(driver.findElements(id("com.testapp2", "modal-text")).isEmpty());
+        }
+    }
+
+    @Test
+    void scrollingMovesTheColumnUntilItsEdges() throws Exception {
+        try (StubSession session = new StubSession("com.testapp2")) {
+            AndroidDriver driver = session.driver;
+            int top = find(driver, "com.testapp2", "scroll-item-1").getRect().getY();
+
+            // A quarter of a screen down, with more to come
+            assertTrue(scroll(driver, "down", 0.25));
+            assertEquals(top - SimulatedApp.SCREEN_HEIGHT / 4, find(driver, "com.testapp2", "scroll-item-1").getRect().getY());
+            assertTrue(driver.findElements(id("com.testapp2", "app-title")).isEmpty());
+
+            // The rest of the way; scrolling further reports the end
+            assertFalse(scroll(driver, "down"));
+            assertFalse(scroll(driver, "down"));
+            assertFalse(driver.findElements(id("com.testapp2", "show-modal-button")).isEmpty());
+
+            assertFalse(scroll(driver, "up"));
+            assertEquals(top, find(driver, "com.testapp2", "scroll-item-1").getRect().getY());
+            assertFalse(driver.findElements(id("com.testapp2", "app-title")).isEmpty());
+        }
+        try (StubSession session = new StubSession("com.testapp1")) {
+            // TestApp1 fits on the screen
+            assertFalse(scroll(session.driver, "down"));
+        }
+    }
+
+    private static boolean scroll(AndroidDriver driver, String direction) {
+        return scroll(driver, direction, 1.0);
+    }
+
+    // The whole screen's height times percent, like Scroller's gestures
+    private static boolean scroll(AndroidDriver driver, String direction, double percent) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("left", 0);
+        args.put("top", 0);
+        args.put("width", SimulatedApp.SCREEN_WIDTH);
+        args.put("height", SimulatedApp.SCREEN_HEIGHT);
+        args.put("direction", direction);
+        args.put("percent", percent);
+        return Boolean.TRUE.equals(driver.executeScript("mobile: scrollGesture", args));
+    }
+
+    private static By id(String appPackage, String id) {
+        return AppiumBy.id(appPackage + ":id/" + id);
+    }
+
+    private static WebElement find(AndroidDriver driver, String appPackage, String id) {
+        return driver.findElement(id(appPackage, id));
+    }
+
+    private static String text(AndroidDriver driver, String appPackage, String id) {
+        return find(driver, appPackage, id).getText();
+    }
+}
@@ -0,0 +1,45 @@
+package nativebridge;
+
+import io.appium.java_client.AppiumBy;
+import io.appium.java_client.android.AndroidDriver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SnapshotCacheTest {
+
+    private StubSession session;
+    private AndroidDriver driver;
+
+    @BeforeEach
+    void startSession() throws Exception {
+        session = new StubSession("com.testapp1");
+        driver = session.driver;
+    }
+
+    @AfterEach
+    void stop() {
+        session.close();
+    }
+
+    @Test
+    void currentPackageKeepsTheSnapshot() {
+        SnapshotCache snapshots = new SnapshotCache(driver);
+        PageSnapshot first = snapshots.current();
+        assertEquals("com.testapp1", driver.getCurrentPackage());
+        assertSame(first, snapshots.current());
+    }
+
+    @Test
+    void interactionsDropTheSnapshot() {
+        SnapshotCache snapshots = new SnapshotCache(driver);
+        PageSnapshot first = snapshots.current();
+        driver.findElement(AppiumBy.id("com.testapp1:id/test-button")).click();
+        assertNotSame(first, snapshots.current());
+        assertEquals("2 page-source fetches, 0 cached lookups", snapshots.summary());
+    }
+}
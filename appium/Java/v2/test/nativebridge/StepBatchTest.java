@@ -0,0 +1,162 @@
+package nativebridge;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.Response;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StepBatchTest {
+
+    private StubSession session;
+
+    @BeforeEach
+    void startSession() throws Exception {
+        session = new StubSession("com.testapp1");
+    }
+
+    @AfterEach
+    void stop() {
+        session.close();
+    }
+
+    @Test
+    void compiledScriptCarriesEveryStep() {
+        String script = new StepBatch(session.driver, "com.testapp1")
+            .type("text-input", "hello")
+            .click("test-button")
+            .pause(Duration.ofMillis(250))
+            .compile();
+        String stepsJson = script.substring("const steps = ".length(), script.indexOf(";\nconst alertSelector"));
+        List<Object> steps = new Json().toType(stepsJson, Json.LIST_OF_MAPS_TYPE);
+        assertEquals(3, steps.size());
+        Map<?, ?> type = (Map<?, ?>) steps.get(0);
+        assertEquals("type", type.get("op"));
+        assertEquals("hello", type.get("text"));
+        assertEquals(CompositeLocator.uiSelector("com.testapp1", "text-input"), type.get("selector"));
+        assertEquals("click", ((Map<?, ?>) steps.get(1)).get("op"));
+        assertEquals(250L, ((Number) ((Map<?, ?>) steps.get(2)).get("millis")).longValue());
+        assertTrue(script.endsWith("return results;"));
+    }
+
+    @Test
+    void scriptResultsDecodeInOrder() {
+        Map<String, Object> found = new LinkedHashMap<>();
+        found.put("name", "text button-counter");
+        found.put("ok", true);
+        found.put("value", "Button pressed 1 times");
+        found.put("millis", 42);
+        Map<String, Object> missing = new LinkedHashMap<>();
+        missing.put("name", "click nope");
+        missing.put("ok", false);
+        missing.put("error", "No element matches nope");
+
+        List<StepBatch.StepResult> results = StepBatch.decode(List.of(found, missing));
+        assertEquals("Button pressed 1 times", results.get(0).text());
+        assertEquals(42, results.get(0).millis());
+        assertFalse(results.get(1).ok());
+        assertEquals("No element matches nope", results.get(1).error());
+        assertNull(results.get(1).value());
+        assertThrows(WebDriverException.class, () -> StepBatch.decode(Collections.singletonMap("error", "boom")));
+    }
+
+    @Test
+    void rejectedScriptFallsBackClientSideOncePerSession() throws Exception {
+        // The stub has no execute-driver plugin
+        StepBatch.Result first = workflow(session).run();
+        assertFalse(first.serverSide());
+        assertTrue(first.allOk(), first.steps().toString());
+        assertEquals("Button pressed 1 times", first.get(3).text());
+
+        StepBatch.Result second = workflow(session).run();
+        assertTrue(second.allOk(), second.steps().toString());
+        assertEquals(1, driverScripts(session));
+
+        // Another session asks its own server again
+        try (StubSession other = new StubSession("com.testapp1")) {
+            workflow(other).run();
+            assertEquals(1, driverScripts(other));
+        }
+    }
+
+    @Test
+    void lostSessionEndsTheBatch() {
+        SessionBreaker.install(session.driver);
+        AtomicBoolean deleted = new AtomicBoolean();
+        HookedCommandExecutor.of(session.driver).addListener(new HookedCommandExecutor.Listener() {
+            @Override
+            public void afterCommand(Command command, Response response, long elapsedNanos) {
+                // The server forgets the session right after the first step's lookup
+                if (command.getName().equals("findElements") && deleted.compareAndSet(false, true)) {
+                    deleteSession();
+                }
+            }
+        });
+        StepBatch batch = new StepBatch(session.driver, "com.testapp1")
+            .find("app-title")
+            .click("test-button")
+            .readText("button-counter")
+            .readText("text-input");
+        assertThrows(SessionBreaker.SessionLostException.class, batch::run);
+    }
+
+    @Test
+    void interruptionSkipsTheRemainingSteps() throws Exception {
+        StepBatch batch = new StepBatch(session.driver, "com.testapp1")
+            .pause(Duration.ofSeconds(10))
+            .click("test-button")
+            .readText("button-counter");
+        AtomicReference<StepBatch.Result> result = new AtomicReference<>();
+        Thread runner = new Thread(() -> result.set(batch.run()));
+        runner.start();
+        Thread.sleep(500);
+        runner.interrupt();
+        runner.join(5000);
+        assertFalse(runner.isAlive());
+        assertEquals("Interrupted", result.get().get(0).error());
+        assertEquals("Not run: interrupted", result.get().get(1).error());
+        assertEquals("Not run: interrupted", result.get().get(2).error());
+        assertEquals(0, session.commandNames().stream().filter("elementClick"::equals).count());
+    }
+
+    private static StepBatch workflow(StubSession session) {
+        return new StepBatch(session.driver, "com.testapp1")
+            .type("text-input", "hello")
+            .click("test-button")
+            .dismissAlert()
+            .readText("button-counter");
+    }
+
+    private static long driverScripts(StubSession session) {
+        return session.commandNames().stream().filter("executeDriverScript"::equals).count();
+    }
+
+    private void deleteSession() {
+        try {
+            HttpRequest delete = HttpRequest.newBuilder(session.server.url().toURI()
+                .resolve("/session/" + session.driver.getSessionId())).DELETE().build();
+            HttpClient.newHttpClient().send(delete, HttpResponse.BodyHandlers.discarding());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
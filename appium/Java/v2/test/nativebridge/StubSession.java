@@ -0,0 +1,77 @@
+package nativebridge;
+
+import io.appium.java_client.android.AndroidDriver;
+import io.appium.java_client.android.options.UiAutomator2Options;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.Command;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * StubSession - An AndroidDriver session on a simulated device, for unit tests
+ *
+ * Starts a StubAppiumServer on a free port with a SimulatedDevice running the
+ * given app in the foreground, opens a session through DriverFactory and
+ * records every command the driver sends from then on, so tests can assert
+ * how many requests a helper cost.
+ */
+final class StubSession implements AutoCloseable {
+
+    final StubAppiumServer server;
+    final AndroidDriver driver;
+    private final List<Command> commands = new CopyOnWriteArrayList<>();
+
+    StubSession(String appPackage) throws IOException {
+        this(SimulatedDevice.testApps(appPackage));
+    }
+
+    /** A session on the device {@code devices} makes, e.g. one running an app of the test's own. */
+    StubSession(Function<Map<String, Object>, SimulatedDevice> devices) throws IOException {
+        server = StubAppiumServer.start(0, Duration.ZERO);
+        server.setDevices(devices);
+        UiAutomator2Options options = new UiAutomator2Options();
+        options.setPlatformName("Android");
+        driver = DriverFactory.android(server.url(), options);
+        HookedCommandExecutor.of(driver).addListener(new HookedCommandExecutor.Listener() {
+            @Override
+            public void beforeCommand(Command command) {
+                commands.add(command);
+            }
+        });
+    }
+
+    /** Commands sent since the session started or the last {@link #clearCommands()}. */
+    List<Command> commands() {
+        return new ArrayList<>(commands);
+    }
+
+    /** Names of {@link #commands()}, e.g. {@code findElements}. */
+    List<String> commandNames() {
+        List<String> names = new ArrayList<>();
+        for (Command command : commands) {
+            names.add(command.getName());
+        }
+        return names;
+    }
+
+    void clearCommands() {
+        commands.clear();
+    }
+
+    @Override
+    public void close() {
+        try {
+            driver.quit();
+        } catch (WebDriverException e) {
+            // A test that killed the session on purpose
+        } finally {
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package nativebridge;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TestGraphTest {
+
+    @Test
+    void conflictingStateMakesADependency() {
+        TestGraph graph = TestGraph.of(StateMethods.class);
+        // Both change the counter
+        assertEquals(Collections.singleton("incrementCounter"), graph.dependencies("resetCounter"));
+        // Reads what an earlier method changed
+        assertEquals(Collections.singleton("scrollDown"), graph.dependencies("readScrolledItem"));
+        // Reading the same state as another method is no conflict
+        assertEquals(Collections.emptySet(), graph.dependencies("readTitle"));
+        assertEquals(Collections.emptySet(), graph.dependencies("readTitleAgain"));
+        assertEquals(Arrays.asList(
+            Arrays.asList("incrementCounter", "resetCounter"),
+            Arrays.asList("scrollDown", "readScrolledItem"),
+            Collections.singletonList("readTitle"),
+            Collections.singletonList("readTitleAgain")), graph.chains());
+    }
+
+    @Test
+    void afterJoinsMethodsWithoutSharedState() {
+        TestGraph graph = TestGraph.of(AfterMethods.class);
+        assertEquals(Collections.singleton("login"), graph.dependencies("openSettings"));
+        assertEquals(Arrays.asList(
+            Arrays.asList("login", "openSettings"),
+            Collections.singletonList("typeText")), graph.chains());
+    }
+
+    @Test
+    void unannotatedMethodChangesEverything() {
+        TestGraph graph = TestGraph.of(UnannotatedMethods.class);
+        assertEquals(Collections.emptySet(), graph.dependencies("typeText"));
+        assertEquals(new HashSet<>(Arrays.asList("typeText", "scrollDown")), graph.dependencies("legacyWorkflow"));
+        // The methods after it conflict with it too, even with state nothing else touches
+        assertEquals(Collections.singleton("legacyWorkflow"), graph.dependencies("toggleSwitch"));
+        assertEquals(1, graph.chains().size());
+    }
+
+    @Test
+    void lanesAreCappedByTheDeviceCount() {
+        TestGraph graph = TestGraph.of(StateMethods.class);
+        assertEquals(4, graph.lanes(8).size());
+
+        List<TestGraph.Lane> one = graph.lanes(1);
+        assertEquals(1, one.size());
+        // A single lane runs the whole class in priority order
+        assertEquals(Arrays.asList("incrementCounter", "scrollDown", "resetCounter", "readScrolledItem",
+            "readTitle", "readTitleAgain"), one.get(0).methods());
+    }
+
+    @Test
+    void longestChainsArePlacedFirst() {
+        // Chains of 3, 2, 1 and 1 methods; without history each method counts the same
+        List<TestGraph.Lane> lanes = TestGraph.of(UnevenChains.class).lanes(2);
+        assertEquals(2, lanes.size());
+        // Within a lane the methods are back in priority order
+        assertEquals(Arrays.asList("a1", "d1", "a2", "a3"), lanes.get(0).methods());
+        assertEquals(Arrays.asList("b1", "c1", "b2"), lanes.get(1).methods());
+        assertEquals(1, lanes.get(0).number());
+        assertEquals(2, lanes.get(1).number());
+    }
+
+    // Fixtures: only their annotations are read. Private, so the TestNG engine does not run them
+
+    private static class StateMethods {
+
+        @org.testng.annotations.Test(priority = 1)
+        @AppState(writes = "counter")
+        public void incrementCounter() {
+        }
+
+        @org.testng.annotations.Test(priority = 2)
+        @AppState(writes = "scroll")
+        public void scrollDown() {
+        }
+
+        @org.testng.annotations.Test(priority = 3)
+        @AppState(writes = "counter")
+        public void resetCounter() {
+        }
+
+        @org.testng.annotations.Test(priority = 4)
+        @AppState(reads = "scroll")
+        public void readScrolledItem() {
+        }
+
+        @org.testng.annotations.Test(priority = 5)
+        @AppState(reads = "title")
+        public void readTitle() {
+        }
+
+        @org.testng.annotations.Test(priority = 6)
+        @AppState(reads = "title")
+        public void readTitleAgain() {
+        }
+    }
+
+    private static class AfterMethods {
+
+        @org.testng.annotations.Test(priority = 1)
+        @AppState(writes = "session-user")
+        public void login() {
+        }
+
+        @org.testng.annotations.Test(priority = 2)
+        @AppState(writes = "text-input")
+        public void typeText() {
+        }
+
+        @org.testng.annotations.Test(priority = 3)
+        @AppState(writes = "settings", after = "login")
+        public void openSettings() {
+        }
+    }
+
+    private static class UnannotatedMethods {
+
+        @org.testng.annotations.Test(priority = 1)
+        @AppState(writes = "text-input")
+        public void typeText() {
+        }
+
+        @org.testng.annotations.Test(priority = 2)
+        @AppState(writes = "scroll")
+        public void scrollDown() {
+        }
+
+        @org.testng.annotations.Test(priority = 3)
+        public void legacyWorkflow() {
+        }
+
+        @org.testng.annotations.Test(priority = 4)
+        @AppState(writes = "switches")
+        public void toggleSwitch() {
+        }
+    }
+
+    private static class UnevenChains {
+
+        @org.testng.annotations.Test(priority = 1)
+        @AppState(writes = "a")
+        public void a1() {
+        }
+
+        @org.testng.annotations.Test(priority = 2)
+        @AppState(writes = "b")
+        public void b1() {
+        }
+
+        @org.testng.annotations.Test(priority = 3)
+        @AppState(writes = "c")
+        public void c1() {
+        }
+
+        @org.testng.annotations.Test(priority = 4)
+        @AppState(writes = "d")
+        public void d1() {
+        }
+
+        @org.testng.annotations.Test(priority = 5)
+        @AppState(reads = "a")
+        public void a2() {
+        }
+
+        @org.testng.annotations.Test(priority = 6)
+        @AppState(reads = "b")
+        public void b2() {
+        }
+
+        @org.testng.annotations.Test(priority = 7)
+        @AppState(reads = "a")
+        public void a3() {
+        }
+    }
+}
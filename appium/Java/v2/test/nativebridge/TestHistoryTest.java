@@ -0,0 +1,37 @@
+package nativebridge;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TestHistoryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recordedRunsAreReadBack() {
+        Path file = dir.resolve("history/test-history.jsonl");
+        TestHistory history = new TestHistory(file);
+        history.record("TestApp1JUnit", "testA", 100, true);
+        history.record("TestApp1JUnit", "testA", 300, false);
+
+        TestHistory.Stat stat = TestHistory.load(file).method("TestApp1JUnit", "testA");
+        assertEquals(2, stat.runs());
+        assertEquals(200.0, stat.meanMillis());
+        assertEquals(0.5, stat.failureRate());
+    }
+
+    @Test
+    void unwritableFileDoesNotFailTheRun() throws Exception {
+        // A regular file where the directory should be
+        Path blocker = Files.createFile(dir.resolve("blocker"));
+        TestHistory history = new TestHistory(blocker.resolve("test-history.jsonl"));
+        history.record("TestApp1JUnit", "testA", 100, true);
+        assertEquals(1, history.method("TestApp1JUnit", "testA").runs());
+    }
+}
@@ -0,0 +1,135 @@
+package nativebridge;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.remote.DriverCommand;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UiWaitTest {
+
+    private StubSession session;
+
+    @BeforeEach
+    void startSession() throws Exception {
+        session = new StubSession("com.testapp2");
+    }
+
+    @AfterEach
+    void stop() {
+        session.close();
+    }
+
+    @Test
+    void screenSettledNeverDumpsTheHierarchy() {
+        assertEquals(Boolean.TRUE, new UiWait(session.driver).until(UiWait.screenSettled()));
+        assertFalse(session.commandNames().contains(DriverCommand.GET_PAGE_SOURCE), session.commandNames().toString());
+    }
+
+    @Test
+    void screenSettledSeesTheContentMove() {
+        Function<WebDriver, Boolean> settled = UiWait.screenSettled();
+        assertFalse(settled.apply(session.driver));
+        scrollDown();
+        assertFalse(settled.apply(session.driver));
+        assertTrue(settled.apply(session.driver));
+    }
+
+    @Test
+    void screenSettledSeesAContainerMove() {
+        // The stub's screens are one flat column, so a list item stands in for a nested scroll view
+        Function<WebDriver, Boolean> settled = UiWait.screenSettled(CompositeLocator.byResourceId("com.testapp2", "scroll-item-2"));
+        assertFalse(settled.apply(session.driver));
+        scrollDown();
+        assertFalse(settled.apply(session.driver));
+        assertTrue(settled.apply(session.driver));
+        assertTrue(session.commands().stream().anyMatch(c -> String.valueOf(c.getParameters().get("value")).contains("scroll-item-2")));
+    }
+
+    @Test
+    void screenSettledWithoutTheContainerSamplesTheScreen() {
+        Function<WebDriver, Boolean> settled = UiWait.screenSettled(CompositeLocator.byResourceId("com.testapp2", "no-such-list"));
+        assertFalse(settled.apply(session.driver));
+        scrollDown();
+        assertFalse(settled.apply(session.driver));
+        assertTrue(settled.apply(session.driver));
+    }
+
+    @Test
+    void pollsBackOffUpToTheCap() {
+        List<Long> polls = new ArrayList<>();
+        UiWait uiWait = new UiWait(session.driver)
+            .pollingEvery(Duration.ofMillis(50))
+            .withBackoff(2.0, Duration.ofMillis(150));
+        Boolean done = uiWait.until(d -> {
+            polls.add(System.nanoTime());
+            return polls.size() == 6;
+        });
+        assertEquals(Boolean.TRUE, done);
+        long[] expected = {50, 100, 150, 150, 150};
+        for (int i = 0; i < expected.length; i++) {
+            long gap = TimeUnit.NANOSECONDS.toMillis(polls.get(i + 1) - polls.get(i));
+            assertTrue(gap >= expected[i], "poll " + (i + 1) + " after " + gap + "ms, expected " + expected[i]);
+            assertTrue(gap < expected[i] + 100, "poll " + (i + 1) + " after " + gap + "ms, expected " + expected[i]);
+        }
+    }
+
+    @Test
+    void fixedPollingWithoutBackoff() {
+        List<Long> polls = new ArrayList<>();
+        new UiWait(session.driver)
+            .pollingEvery(Duration.ofMillis(40))
+            .withBackoff(1.0, Duration.ofSeconds(1))
+            .until(d -> {
+                polls.add(System.nanoTime());
+                return polls.size() == 4;
+            });
+        for (int i = 1; i < polls.size(); i++) {
+            long gap = TimeUnit.NANOSECONDS.toMillis(polls.get(i) - polls.get(i - 1));
+            assertTrue(gap >= 40 && gap < 140, "gap " + gap + "ms");
+        }
+        assertThrows(IllegalArgumentException.class, () -> new UiWait(session.driver).withBackoff(0.5, Duration.ofSeconds(1)));
+    }
+
+    @Test
+    void eachConditionCanHaveItsOwnDeadline() {
+        UiWait uiWait = new UiWait(session.driver).withTimeout(Duration.ofSeconds(5)).pollingEvery(Duration.ofSeconds(1));
+
+        long start = System.nanoTime();
+        assertNull(uiWait.until(Duration.ofMillis(300), d -> false));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // The last sleep is cut to what is left of the deadline, not the full poll interval
+        // Sleeps are whole milliseconds, so the last one may end a fraction early
+        assertTrue(elapsed >= 299 && elapsed < 900, "gave up after " + elapsed + "ms");
+
+        start = System.nanoTime();
+        assertNull(uiWait.withTimeout(Duration.ofMillis(200)).until(d -> null));
+        elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsed >= 199 && elapsed < 800, "gave up after " + elapsed + "ms");
+    }
+
+    private void scrollDown() {
+        Map<String, Object> args = new HashMap<>();
+        args.put("left", 0);
+        args.put("top", 200);
+        args.put("width", 1000);
+        args.put("height", 1600);
+        args.put("direction", "down");
+        args.put("percent", 1.0);
+        session.driver.executeScript("mobile: scrollGesture", args);
+    }
+}
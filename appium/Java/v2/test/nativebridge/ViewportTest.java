@@ -0,0 +1,78 @@
+package nativebridge;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.Point;
+import org.openqa.selenium.Rectangle;
+import org.openqa.selenium.remote.DriverCommand;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ViewportTest {
+
+    private StubSession session;
+
+    @BeforeEach
+    void startSession() throws Exception {
+        session = new StubSession("com.testapp2");
+    }
+
+    @AfterEach
+    void stop() {
+        Viewport.forget(session.driver);
+        session.close();
+    }
+
+    @Test
+    void fractionsOfARectangle() {
+        // x 100..400, y 200..700
+        Rectangle rect = new Rectangle(100, 200, 501, 301);
+        assertEquals(new Point(100, 200), Viewport.within(rect, 0, 0));
+        assertEquals(new Point(250, 450), Viewport.within(rect, 0.5, 0.5));
+        // The far edge stays one pixel inside
+        assertEquals(new Point(400, 700), Viewport.within(rect, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> Viewport.within(rect, 1.5, 0.5));
+        assertThrows(IllegalArgumentException.class, () -> Viewport.within(rect, 0.5, -0.1));
+    }
+
+    @Test
+    void fractionsOfTheScreen() {
+        // The stub's screen is 1080 x 2340
+        assertEquals(new Dimension(1080, 2340), Viewport.size(session.driver));
+        assertEquals(new Point(540, 1871), Viewport.at(session.driver, 0.5, 0.8));
+        assertEquals(new Point(1079, 2339), Viewport.at(session.driver, 1, 1));
+    }
+
+    @Test
+    void oneWindowSizeRequestPerSession() throws Exception {
+        session.clearCommands();
+        for (int i = 0; i < 3; i++) {
+            new Gestures(session.driver)
+                .swipeFraction(0.5, 0.8, 0.5, 0.7, 200)
+                .swipeFraction(0.5, 0.7, 0.5, 0.8, 200)
+                .perform();
+        }
+        assertEquals(1, windowSizeRequests(session), session.commandNames().toString());
+
+        // Another session asks for its own
+        try (StubSession other = new StubSession("com.testapp2")) {
+            new Gestures(other.driver).swipeFraction(0.5, 0.8, 0.5, 0.7, 200).perform();
+            assertEquals(1, windowSizeRequests(other), other.commandNames().toString());
+            Viewport.forget(other.driver);
+        }
+
+        // After forget(), e.g. on rotation, the size is read again
+        Viewport.forget(session.driver);
+        Viewport.at(session.driver, 0.5, 0.5);
+        assertEquals(2, windowSizeRequests(session), session.commandNames().toString());
+    }
+
+    private static int windowSizeRequests(StubSession session) {
+        return Collections.frequency(session.commandNames(), DriverCommand.GET_CURRENT_WINDOW_SIZE);
+    }
+}
@@ -0,0 +1,87 @@
+package nativebridge;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WorkCoordinatorTest {
+
+    private static final Duration LEASE = Duration.ofMillis(300);
+
+    @Test
+    void classOfASilentWorkerIsRequeuedAndStolen() throws Exception {
+        try (WorkCoordinator coordinator = WorkCoordinator.start("127.0.0.1", 0, 0, LEASE)) {
+            coordinator.offer("w1", Arrays.asList("A"));
+            coordinator.offer("w2", Arrays.asList("A"));
+            assertEquals("A", coordinator.claim("w1"));
+            assertNull(coordinator.claim("w2"));
+            assertTrue(coordinator.waitingOn("w2"));
+
+            // w1 says nothing for longer than the lease
+            Thread.sleep(LEASE.toMillis() * 2);
+            assertFalse(coordinator.waitingOn("w2"));
+            assertEquals("A", coordinator.claim("w2"));
+
+            // w1 was only slow: its late report does not count for the class w2 now runs
+            coordinator.finished("w1", "A");
+            assertTrue(coordinator.summary().startsWith("Distributed run: 0/1 classes finished, 1 running"));
+            coordinator.finished("w2", "A");
+            assertTrue(coordinator.summary().startsWith("Distributed run: 1/1 classes finished, 0 running"));
+        }
+    }
+
+    @Test
+    void heartbeatsKeepTheLease() throws Exception {
+        try (WorkCoordinator coordinator = WorkCoordinator.start("127.0.0.1", 0, 0, LEASE)) {
+            coordinator.offer("w1", Arrays.asList("A"));
+            assertEquals("A", coordinator.claim("w1"));
+            for (int i = 0; i < 6; i++) {
+                Thread.sleep(LEASE.toMillis() / 3);
+                coordinator.heartbeat("w1");
+            }
+            coordinator.expireLeases();
+            coordinator.finished("w1", "A");
+            assertTrue(coordinator.summary().startsWith("Distributed run: 1/1 classes finished, 0 running"));
+        }
+    }
+
+    @Test
+    void lateFinishOfARequeuedClassNobodyClaimedCounts() throws Exception {
+        try (WorkCoordinator coordinator = WorkCoordinator.start("127.0.0.1", 0, 0, LEASE)) {
+            coordinator.offer("w1", Arrays.asList("A"));
+            assertEquals("A", coordinator.claim("w1"));
+            Thread.sleep(LEASE.toMillis() * 2);
+            coordinator.finished("w1", "A");
+            assertTrue(coordinator.summary().startsWith("Distributed run: 1/1 classes finished, 0 running"));
+            assertNull(coordinator.claim("w1"));
+        }
+    }
+
+    @Test
+    void claimOverHttpWaitsForALeaseToExpire() throws Exception {
+        try (WorkCoordinator coordinator = WorkCoordinator.start("127.0.0.1", 0, 0, LEASE)) {
+            coordinator.offer("w1", Arrays.asList("A"));
+            coordinator.offer("w2", Arrays.asList("A"));
+            assertEquals("A", coordinator.claim("w1"));
+
+            HttpRequest claim = HttpRequest.newBuilder(coordinator.url().toURI().resolve("/claim"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"worker\":\"w2\"}"))
+                .build();
+            CompletableFuture<HttpResponse<String>> answer = HttpClient.newHttpClient()
+                .sendAsync(claim, HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, answer.get(10, TimeUnit.SECONDS).statusCode());
+            assertTrue(answer.get().body().contains("\"A\""), answer.get().body());
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package nativebridge;
+
+import io.appium.java_client.AppiumBy;
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.SessionId;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class XPathTranslatorTest {
+
+    @Test
+    void bareResourceIdBecomesAUiSelector() {
+        assertTranslated("new UiSelector().resourceId(\"app-title\")", "//*[@resource-id='app-title']");
+    }
+
+    @Test
+    void fullResourceIdBecomesAnIdLookup() {
+        assertEquals(AppiumBy.id("com.testapp1:id/title"), XPathTranslator.translate("//*[@resource-id=\"com.testapp1:id/title\"]"));
+    }
+
+    @Test
+    void textEqualsAndContains() {
+        assertTranslated("new UiSelector().text(\"OK\")", "//*[@text='OK']");
+        assertTranslated("new UiSelector().textContains(\"Red\")", "//*[contains(@text, 'Red')]");
+        assertTranslated("new UiSelector().descriptionStartsWith(\"Go\")", "//*[starts-with(@content-desc,'Go')]");
+    }
+
+    @Test
+    void classNameAndCombinedPredicates() {
+        assertTranslated("new UiSelector().className(\"android.widget.Button\").text(\"OK\").enabled(true)",
+            "//android.widget.Button[@text='OK' and @enabled='true']");
+        assertTranslated("new UiSelector().text(\"OK\").index(2)", "//*[@text='OK'][@index='2']");
+    }
+
+    @Test
+    void positionBecomesInstance() {
+        assertTranslated("new UiSelector().clickable(true).instance(1)", "(//*[@clickable='true'])[2]");
+        assertNull(XPathTranslator.translate("(//*[@clickable='true'])[0]"));
+    }
+
+    @Test
+    void andIsAWordNotAPrefix() {
+        // 'android...' after a condition must not read as 'and' followed by 'roid...'
+        assertNull(XPathTranslator.translate("//*[@text='OK' android.widget.Button]"));
+        assertTranslated("new UiSelector().text(\"OK\").className(\"android.widget.Button\")",
+            "//*[@text='OK' and @class='android.widget.Button']");
+    }
+
+    @Test
+    void unsupportedXPathFallsBackUnchanged() {
+        String[] unsupported = {
+            "//*[@text='a' or @text='b']",
+            "//android.widget.LinearLayout/android.widget.TextView",
+            "//*",
+            "//*[@hint='x']",
+            "//*[last()]",
+            "//*[contains(@resource-id, 'title')]",
+            "/hierarchy/android.widget.FrameLayout",
+            "//*[@text='unterminated]",
+        };
+        for (String xpath : unsupported) {
+            assertNull(XPathTranslator.translate(xpath), xpath);
+            By locator = AppiumBy.xpath(xpath);
+            assertSame(locator, XPathTranslator.translate(locator), xpath);
+        }
+    }
+
+    @Test
+    void rewritesLookupsButNotChildSearchesOfTheWholeScreen() {
+        XPathTranslator translator = new XPathTranslator();
+        Command find = lookup(DriverCommand.FIND_ELEMENT, "//*[@text='OK']");
+        assertEquals("-android uiautomator", translator.rewrite(find).getParameters().get("using"));
+
+        Command child = lookup(DriverCommand.FIND_CHILD_ELEMENT, "//*[@text='OK']");
+        assertSame(child, translator.rewrite(child));
+        Command descendant = lookup(DriverCommand.FIND_CHILD_ELEMENT, ".//*[@text='OK']");
+        assertEquals("new UiSelector().text(\"OK\")", translator.rewrite(descendant).getParameters().get("value"));
+    }
+
+    @Test
+    void verbatimLookupsStayXPath() {
+        XPathTranslator translator = new XPathTranslator();
+        Command find = lookup(DriverCommand.FIND_ELEMENTS, "//*[@resource-id='app-title']");
+        assertSame(find, XPathTranslator.verbatim(() -> translator.rewrite(find)));
+        assertEquals(1, translator.unchanged());
+        // Only inside verbatim()
+        assertEquals("-android uiautomator", translator.rewrite(find).getParameters().get("using"));
+    }
+
+    private static void assertTranslated(String uiSelector, String xpath) {
+        By.Remotable.Parameters parameters = ((By.Remotable) XPathTranslator.translate(xpath)).getRemoteParameters();
+        assertEquals("-android uiautomator", parameters.using(), xpath);
+        assertEquals(uiSelector, parameters.value(), xpath);
+    }
+
+    private static Command lookup(String name, String xpath) {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("using", "xpath");
+        parameters.put("value", xpath);
+        if (name.startsWith("findChild")) {
+            parameters.put("id", "element-1");
+        }
+        return new Command(new SessionId("s1"), name, parameters);
+    }
+}